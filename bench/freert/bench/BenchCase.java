@@ -0,0 +1,50 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+/**
+ * One thing to measure, the runner calls op_run() in a loop and measures the time per call
+ * What op_run() returns is summed by the runner, so that the JIT cannot drop the work
+ * @author damiano
+ */
+public abstract class BenchCase
+   {
+   /**
+    * @return the name shown in the results, eg: tree.query
+    */
+   public abstract String name();
+
+   /**
+    * @return true if the case runs on each fixture, false if it does not need a board
+    */
+   public boolean fixture_used()
+      {
+      return true;
+      }
+
+   /**
+    * Prepares what op_run() needs, it is not measured
+    * @param p_fixture the design to run on, null if the case does not use fixtures
+    */
+   public abstract void setup(BenchFixture p_fixture) throws Exception;
+
+   /**
+    * Runs one operation
+    * @return a value depending on the work done
+    */
+   public abstract long op_run() throws Exception;
+   }
@@ -0,0 +1,58 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.varie.IteraNetItem;
+import java.util.ArrayList;
+import board.items.BrdAbitPin;
+import board.items.BrdItem;
+import freert.varie.PlaDelTri;
+import freert.varie.PlaDelTriStorable;
+
+/**
+ * Delaunay triangulation of all the pins of the fixture, as done to compute the incompletes of a net
+ * @author damiano
+ */
+public final class BenchDelTri extends BenchCase
+   {
+   private final ArrayList<PlaDelTriStorable> pin_items = new ArrayList<PlaDelTriStorable>();
+
+   @Override
+   public String name()
+      {
+      return "deltri.triangulate";
+      }
+
+   @Override
+   public void setup(BenchFixture p_fixture) throws Exception
+      {
+      pin_items.clear();
+
+      for ( BrdItem an_item : p_fixture.routing_board_get().get_items() )
+         {
+         if ( an_item instanceof BrdAbitPin ) pin_items.add(new IteraNetItem(an_item, null));
+         }
+      }
+
+   @Override
+   public long op_run()
+      {
+      PlaDelTri triangulation = new PlaDelTri(pin_items);
+
+      return triangulation.get_edge_lines().size();
+      }
+   }
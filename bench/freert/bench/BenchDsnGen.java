@@ -0,0 +1,193 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Writes a synthetic two layer design: a grid of resistors with short nets between nearby pins
+ * The same size and seed always give the same file, the fixtures in bench/fixtures are made with it, eg:
+ * java -cp classes:classes-bench freert.bench.BenchDsnGen 400 1 bench/fixtures/g400.dsn
+ * @author damiano
+ */
+public final class BenchDsnGen
+   {
+   private static final int PITCH = 6000;
+   private static final int MARGIN = 5000;
+   // a net connects its first pin to pins of components at most this many columns and rows away
+   private static final int NET_REACH = 3;
+
+   private final int component_count;
+   private final Random random;
+   private final int side;
+
+   public static void main(String p_args[]) throws IOException
+      {
+      if ( p_args.length < 3 )
+         {
+         System.out.println("BenchDsnGen.main: usage BenchDsnGen component_count seed output.dsn");
+         System.exit(1);
+         }
+
+      BenchDsnGen generator = new BenchDsnGen(Integer.parseInt(p_args[0]), Long.parseLong(p_args[1]));
+
+      PrintWriter writer = new PrintWriter(new FileWriter(p_args[2]));
+
+      generator.write(writer);
+
+      writer.close();
+      }
+
+   public BenchDsnGen(int p_component_count, long p_seed)
+      {
+      component_count = p_component_count;
+      random = new Random(p_seed);
+      side = (int)Math.sqrt(p_component_count) + 1;
+      }
+
+   public void write(PrintWriter p_writer)
+      {
+      int board_side = side * PITCH + 2 * MARGIN;
+
+      p_writer.println("(pcb gen");
+      p_writer.println(" (parser (string_quote \")");
+      p_writer.println("  (space_in_quoted_tokens on)");
+      p_writer.println("  (host_cad \"BenchDsnGen\")");
+      p_writer.println("  (host_version \"1\"))");
+      p_writer.println(" (resolution um 10)");
+      p_writer.println(" (unit um)");
+      p_writer.println(" (structure");
+      p_writer.println("  (layer F.Cu (type signal) (property (index 0)))");
+      p_writer.println("  (layer B.Cu (type signal) (property (index 1)))");
+      p_writer.println("  (boundary (path pcb 0  0 0  "+board_side+" 0  "+board_side+" "+board_side+"  0 "+board_side+"  0 0))");
+      p_writer.println("  (via \"Via[0-1]_600:300_um\")");
+      p_writer.println("  (rule (width 250) (clearance 200.1))");
+      p_writer.println(" )");
+
+      p_writer.println(" (placement");
+      p_writer.println("  (component R");
+
+      for (int index = 0; index < component_count; index++)
+         {
+         int x = MARGIN + (index % side) * PITCH;
+         int y = MARGIN + (index / side) * PITCH;
+         p_writer.println("   (place R"+(index + 1)+" "+x+" "+y+" front 0)");
+         }
+
+      p_writer.println("  )");
+      p_writer.println(" )");
+
+      p_writer.println(" (library");
+      p_writer.println("  (image R");
+      p_writer.println("   (pin Rect[T]Pad_1000x1000_um 1 -1200 0)");
+      p_writer.println("   (pin Rect[T]Pad_1000x1000_um 2 1200 0)");
+      p_writer.println("  )");
+      p_writer.println("  (padstack Rect[T]Pad_1000x1000_um");
+      p_writer.println("   (shape (rect F.Cu -500 -500 500 500))");
+      p_writer.println("   (attach off)");
+      p_writer.println("  )");
+      p_writer.println("  (padstack \"Via[0-1]_600:300_um\"");
+      p_writer.println("   (shape (circle F.Cu 600))");
+      p_writer.println("   (shape (circle B.Cu 600))");
+      p_writer.println("   (attach off)");
+      p_writer.println("  )");
+      p_writer.println(" )");
+
+      StringBuilder net_names = new StringBuilder();
+
+      p_writer.println(" (network");
+
+      write_nets(p_writer, net_names);
+
+      p_writer.println("  (class kicad_default \"\""+net_names);
+      p_writer.println("   (circuit");
+      p_writer.println("    (use_via Via[0-1]_600:300_um)");
+      p_writer.println("   )");
+      p_writer.println("   (rule");
+      p_writer.println("    (width 250)");
+      p_writer.println("    (clearance 200.1)");
+      p_writer.println("   )");
+      p_writer.println("  )");
+      p_writer.println(" )");
+      p_writer.println(" (wiring");
+      p_writer.println(" )");
+      p_writer.println(")");
+      }
+
+   /**
+    * Each pin not yet used starts a net of two or three pins, the others are on components near it
+    */
+   private void write_nets(PrintWriter p_writer, StringBuilder p_net_names)
+      {
+      HashSet<String> used_pins = new HashSet<String>();
+
+      int net_no = 0;
+
+      for (int component = 1; component <= component_count; component++)
+         {
+         for (int pin = 1; pin <= 2; pin++)
+            {
+            String first_pin = pin_name(component, pin);
+
+            if ( used_pins.contains(first_pin) ) continue;
+
+            used_pins.add(first_pin);
+
+            StringBuilder net_pins = new StringBuilder(first_pin);
+
+            int other_count = random.nextInt(4) == 0 ? 2 : 1;
+
+            for (int count = 0; count < other_count; count++)
+               {
+               int other_component = component + random_reach() + random_reach() * side;
+               String other_pin = pin_name(other_component, 1 + random.nextInt(2));
+
+               if ( other_component < 1 || other_component > component_count ) continue;
+
+               if ( used_pins.contains(other_pin) ) continue;
+
+               used_pins.add(other_pin);
+               net_pins.append(' ').append(other_pin);
+               }
+
+            if ( net_pins.length() == first_pin.length() ) continue;
+
+            net_no++;
+
+            p_writer.println("  (net N"+net_no);
+            p_writer.println("   (pins "+net_pins+")");
+            p_writer.println("  )");
+
+            p_net_names.append(" N").append(net_no);
+            }
+         }
+      }
+
+   private int random_reach()
+      {
+      return random.nextInt(2 * NET_REACH + 1) - NET_REACH;
+      }
+
+   private String pin_name(int p_component, int p_pin)
+      {
+      return "R"+p_component+"-"+p_pin;
+      }
+   }
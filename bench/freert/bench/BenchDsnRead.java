@@ -0,0 +1,58 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.IteraBoard;
+import board.varie.IdGenerator;
+import freert.main.Stat;
+import freert.spectra.DsnReadFile;
+import freert.spectra.varie.DsnReadResult;
+
+/**
+ * Reading of the fixture design into a new board, from memory so that the disk is not measured
+ * @author damiano
+ */
+public final class BenchDsnRead extends BenchCase
+   {
+   private BenchFixture fixture;
+
+   @Override
+   public String name()
+      {
+      return "dsn.read";
+      }
+
+   @Override
+   public void setup(BenchFixture p_fixture)
+      {
+      fixture = p_fixture;
+      }
+
+   @Override
+   public long op_run() throws Exception
+      {
+      IteraBoard itera_board = new IteraBoard(Stat.instance);
+
+      DsnReadFile reader = new DsnReadFile(itera_board, fixture.design_stream());
+
+      DsnReadResult read_result = reader.read(new IdGenerator());
+
+      if ( read_result != DsnReadResult.OK ) throw new IllegalStateException("BenchDsnRead: FAIL reading "+fixture.name);
+
+      return itera_board.get_routing_board().get_items().size();
+      }
+   }
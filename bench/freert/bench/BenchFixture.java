@@ -0,0 +1,98 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.IteraBoard;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import board.RoutingBoard;
+import board.varie.IdGenerator;
+import freert.main.Stat;
+
+/**
+ * A design file used by the benchmarks, the file is read in memory once and the board is loaded when first needed
+ * @author damiano
+ */
+public final class BenchFixture
+   {
+   public final String name;
+   public final byte[] design_data;
+
+   private final Stat stat;
+   private IteraBoard itera_board;
+
+   public BenchFixture(File p_file, Stat p_stat) throws IOException
+      {
+      name = p_file.getName();
+      stat = p_stat;
+      design_data = new byte[(int)p_file.length()];
+
+      InputStream input = new FileInputStream(p_file);
+
+      try
+         {
+         int offset = 0;
+
+         while ( offset < design_data.length )
+            {
+            int count = input.read(design_data, offset, design_data.length - offset);
+
+            if ( count < 0 ) throw new IOException("BenchFixture: short read of "+p_file);
+
+            offset += count;
+            }
+         }
+      finally
+         {
+         input.close();
+         }
+      }
+
+   /**
+    * @return a new stream of the design
+    */
+   public InputStream design_stream()
+      {
+      return new ByteArrayInputStream(design_data);
+      }
+
+   /**
+    * @return the board of the design, the same one at every call, cases must leave it as they found it
+    */
+   public IteraBoard itera_board_get() throws IOException
+      {
+      if ( itera_board != null ) return itera_board;
+
+      IteraBoard a_board = new IteraBoard(stat);
+
+      // import_design closes the stream
+      if ( ! a_board.import_design(design_stream(), new IdGenerator(), stat) )
+         throw new IOException("BenchFixture: FAIL reading "+name);
+
+      itera_board = a_board;
+
+      return itera_board;
+      }
+
+   public RoutingBoard routing_board_get() throws IOException
+      {
+      return itera_board_get().get_routing_board();
+      }
+   }
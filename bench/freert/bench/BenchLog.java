@@ -0,0 +1,67 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import freert.main.Stat;
+import freert.main.StatLog;
+import freert.main.StatLogFile;
+
+/**
+ * What the routing code prints goes to a log file, so that the results of the benchmarks are easy to read
+ * Some of the routing code prints on System.out and System.err, so it is the log file that is set as both
+ * @author damiano
+ */
+final class BenchLog
+   {
+   private BenchLog()
+      {
+      }
+
+   /**
+    * @return where to print the results, it is System.out before it was set to the log file
+    */
+   static PrintStream open (Stat p_stat, String p_file_name)
+      {
+      PrintStream risul = System.out;
+
+      try
+         {
+         PrintStream log_stream = new PrintStream(new FileOutputStream(p_file_name), true);
+
+         System.setOut(log_stream);
+         System.setErr(log_stream);
+         }
+      catch ( IOException exc )
+         {
+         System.err.println("BenchLog.open: FAIL opening "+p_file_name+" "+exc);
+         }
+
+      p_stat.log_async = new StatLog(new StatLogFile());
+
+      return risul;
+      }
+
+   static void close (Stat p_stat)
+      {
+      p_stat.log_async.close();
+
+      System.out.flush();
+      }
+   }
@@ -0,0 +1,253 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import freert.main.Stat;
+import freert.varie.JarManifest;
+
+/**
+ * Runs the benchmarks of the routing hot paths on the fixtures, in the way of JMH:
+ * a few warmup iterations for the JIT, then measured iterations of a fixed time, the score is the average time of an operation
+ * The error is the half width of the 99.9% confidence interval of the iterations
+ * What the routing code prints goes to the -log file, bench.log if not given, so that the results are easy to read, eg:
+ * ant bench -Dbench.args="-filter tree -iterations 10"
+ * java -cp classes:classes-bench freert.bench.BenchMain -fixtures bench/fixtures -warmup 3 -iterations 5 -millis 1000
+ * @author damiano
+ */
+public final class BenchMain
+   {
+   private static final String classname="BenchMain.";
+   // Student t quantiles for 99.9% two sided, by degrees of freedom, beyond the table the normal one is close enough
+   private static final double[] T_QUANTILE = { 0, 636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587, 4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850 };
+   private static final double T_QUANTILE_LARGE = 3.291;
+   // the clock is read after a chunk of operations that takes about this long, so that reading it does not add to fast operations
+   private static final long CHUNK_NS = 100000;
+
+   // what op_run() returns ends here, so that the JIT cannot drop the work
+   private static volatile long sink;
+
+   private final Stat stat = new Stat();
+   // where the results are printed, System.out goes to the log file
+   private final PrintStream results_out;
+
+   private String fixtures_dir = "bench/fixtures";
+   private String name_filter = null;
+   private String fixture_filter = null;
+   private String log_file_name = "bench.log";
+   private int warmup_count = 3;
+   private int iteration_count = 5;
+   private long iteration_millis = 1000;
+   // operations run between two readings of the clock, from the time of the previous iteration
+   private long chunk_size = 1;
+
+   public static void main(String p_args[]) throws Exception
+      {
+      System.setProperty("java.awt.headless", "true");
+
+      BenchMain bench = new BenchMain(p_args);
+
+      bench.bench_run();
+
+      BenchLog.close(bench.stat);
+
+      System.exit(0);
+      }
+
+   public BenchMain(String p_args[])
+      {
+      Stat.instance = stat;
+
+      stat.jmanifest = new JarManifest();
+
+      for (int index = 0; index + 1 < p_args.length; index += 2)
+         {
+         String option = p_args[index];
+         String value = p_args[index + 1];
+
+         if ( option.equals("-fixtures") )
+            fixtures_dir = value;
+         else if ( option.equals("-filter") )
+            name_filter = value;
+         else if ( option.equals("-fixture") )
+            fixture_filter = value;
+         else if ( option.equals("-warmup") )
+            warmup_count = Integer.parseInt(value);
+         else if ( option.equals("-iterations") )
+            iteration_count = Math.max(1, Integer.parseInt(value));
+         else if ( option.equals("-millis") )
+            iteration_millis = Long.parseLong(value);
+         else if ( option.equals("-log") )
+            log_file_name = value;
+         else
+            System.err.println(classname+"BenchMain: unknown option "+option);
+         }
+
+      results_out = BenchLog.open(stat, log_file_name);
+      }
+
+   /**
+    * @return all the cases, the order is the order of the results
+    */
+   private ArrayList<BenchCase> cases_new()
+      {
+      ArrayList<BenchCase> risul = new ArrayList<BenchCase>();
+
+      risul.add(new BenchOctagon(true));
+      risul.add(new BenchOctagon(false));
+      risul.add(new BenchPolyline());
+      risul.add(new BenchTreeQuery());
+      risul.add(new BenchDelTri());
+      risul.add(new BenchDsnRead());
+      risul.add(new BenchMazeSearch());
+
+      return risul;
+      }
+
+   /**
+    * @return the fixtures, smallest first
+    */
+   private ArrayList<BenchFixture> fixtures_load() throws Exception
+      {
+      File[] files = new File(fixtures_dir).listFiles();
+
+      ArrayList<BenchFixture> risul = new ArrayList<BenchFixture>();
+
+      if ( files == null )
+         {
+         results_out.println(classname+"fixtures_load: no directory "+fixtures_dir);
+         return risul;
+         }
+
+      Arrays.sort(files, new Comparator<File>()
+         {
+         public int compare(File p_a, File p_b)
+            {
+            return Long.valueOf(p_a.length()).compareTo(p_b.length());
+            }
+         });
+
+      for ( File a_file : files )
+         {
+         if ( ! a_file.getName().endsWith(".dsn") ) continue;
+
+         if ( fixture_filter != null && ! a_file.getName().contains(fixture_filter) ) continue;
+
+         risul.add(new BenchFixture(a_file, stat));
+         }
+
+      return risul;
+      }
+
+   public void bench_run() throws Exception
+      {
+      ArrayList<BenchFixture> fixtures = fixtures_load();
+
+      results_out.println(classname+"bench_run: java "+System.getProperty("java.version")+" fixtures="+fixtures.size()+
+            " warmup="+warmup_count+" iterations="+iteration_count+" millis="+iteration_millis);
+
+      results_out.println(String.format("%-22s %-12s %4s %14s %12s  %s", "Benchmark", "Fixture", "Cnt", "Score", "Error", "Units"));
+
+      for ( BenchCase a_case : cases_new() )
+         {
+         if ( name_filter != null && ! a_case.name().contains(name_filter) ) continue;
+
+         if ( ! a_case.fixture_used() )
+            {
+            case_run(a_case, null);
+            continue;
+            }
+
+         for ( BenchFixture a_fixture : fixtures ) case_run(a_case, a_fixture);
+         }
+      }
+
+   private void case_run(BenchCase p_case, BenchFixture p_fixture) throws Exception
+      {
+      p_case.setup(p_fixture);
+
+      chunk_size = 1;
+
+      for (int index = 0; index < warmup_count; index++) iteration_run(p_case);
+
+      double[] scores = new double[iteration_count];
+
+      for (int index = 0; index < iteration_count; index++) scores[index] = iteration_run(p_case);
+
+      double mean = 0;
+
+      for ( double a_score : scores ) mean += a_score;
+
+      mean /= scores.length;
+
+      double variance = 0;
+
+      for ( double a_score : scores ) variance += (a_score - mean) * (a_score - mean);
+
+      double error = 0;
+
+      if ( scores.length > 1 )
+         {
+         variance /= scores.length - 1;
+
+         int freedom = scores.length - 1;
+
+         double quantile = freedom < T_QUANTILE.length ? T_QUANTILE[freedom] : T_QUANTILE_LARGE;
+
+         error = quantile * Math.sqrt(variance / scores.length);
+         }
+
+      String fixture_name = p_fixture == null ? "-" : p_fixture.name;
+
+      results_out.println(String.format("%-22s %-12s %4d %14.1f %12.1f  ns/op", p_case.name(), fixture_name, scores.length, mean, error));
+      }
+
+   /**
+    * Runs chunks of operations until the iteration time is over, at least one
+    * @return the average time of one operation, in ns
+    */
+   private double iteration_run(BenchCase p_case) throws Exception
+      {
+      long op_sum = 0;
+      long op_count = 0;
+
+      long start_ns = System.nanoTime();
+      long end_ns = start_ns + iteration_millis * 1000000;
+      long now_ns;
+
+      do
+         {
+         for (long index = 0; index < chunk_size; index++) op_sum += p_case.op_run();
+
+         op_count += chunk_size;
+         now_ns = System.nanoTime();
+         }
+      while ( now_ns < end_ns );
+
+      sink += op_sum;
+
+      double op_ns = (double)(now_ns - start_ns) / op_count;
+
+      chunk_size = Math.max(1, (long)(CHUNK_NS / Math.max(1, op_ns)));
+
+      return op_ns;
+      }
+   }
@@ -0,0 +1,127 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.IteraBoard;
+import java.util.ArrayList;
+import java.util.Set;
+import autoroute.ArtControl;
+import autoroute.ArtEngine;
+import autoroute.maze.MazeSearch;
+import autoroute.maze.MazeSearchResult;
+import board.BrdConnectable;
+import board.RoutingBoard;
+import board.items.BrdItem;
+import freert.varie.TimeLimitStoppable;
+
+/**
+ * Maze search of the unrouted connections of the fixture, the way is found but not inserted, so the board does not change
+ * The rooms the search has completed are removed from the autoroute tree after each search, as the autorouter does
+ * @author damiano
+ */
+public final class BenchMazeSearch extends BenchCase
+   {
+   // connections searched in turn, the first ones of the board
+   private static final int CONNECTION_COUNT_MAX = 64;
+   // as the first pass of the batch autorouter
+   private static final int SEARCH_SECONDS_MAX = 11;
+
+   private final ArrayList<BenchConnection> connections = new ArrayList<BenchConnection>();
+   private IteraBoard itera_board;
+   private int connection_index;
+
+   @Override
+   public String name()
+      {
+      return "maze.find_connection";
+      }
+
+   @Override
+   public void setup(BenchFixture p_fixture) throws Exception
+      {
+      itera_board = p_fixture.itera_board_get();
+
+      RoutingBoard r_board = itera_board.get_routing_board();
+
+      connections.clear();
+
+      for ( BrdItem an_item : r_board.get_items() )
+         {
+         if ( connections.size() >= CONNECTION_COUNT_MAX ) break;
+
+         if ( ! (an_item instanceof BrdConnectable) ) continue;
+
+         for (int index = 0; index < an_item.net_count(); index++)
+            {
+            int net_no = an_item.get_net_no(index);
+
+            Set<BrdItem> unconnected_set = an_item.get_unconnected_set(net_no);
+
+            if ( unconnected_set.isEmpty() ) continue;
+
+            connections.add(new BenchConnection(net_no, unconnected_set, an_item.get_connected_set(net_no)));
+            }
+         }
+
+      if ( connections.isEmpty() ) throw new IllegalStateException("BenchMazeSearch: no connections in "+p_fixture.name);
+
+      connection_index = 0;
+      }
+
+   @Override
+   public long op_run()
+      {
+      BenchConnection a_connection = connections.get(connection_index);
+
+      connection_index = (connection_index + 1) % connections.size();
+
+      RoutingBoard r_board = itera_board.get_routing_board();
+
+      ArtControl art_ctrl = new ArtControl(r_board, a_connection.net_no, itera_board.itera_settings);
+
+      ArtEngine art_engine = new ArtEngine(r_board, a_connection.net_no, art_ctrl.trace_clearance_idx, new TimeLimitStoppable(SEARCH_SECONDS_MAX));
+
+      MazeSearch maze_search = new MazeSearch(art_engine, art_ctrl, a_connection.start_set, a_connection.dest_set);
+
+      long risul = 0;
+
+      if ( maze_search.is_initialized() )
+         {
+         MazeSearchResult search_result = maze_search.find_connection();
+
+         if ( search_result != null ) risul = 1;
+         }
+
+      art_engine.autoroute_clear();
+
+      return risul;
+      }
+
+   private static final class BenchConnection
+      {
+      final int net_no;
+      final Set<BrdItem> start_set;
+      final Set<BrdItem> dest_set;
+
+      BenchConnection(int p_net_no, Set<BrdItem> p_start_set, Set<BrdItem> p_dest_set)
+         {
+         net_no = p_net_no;
+         start_set = p_start_set;
+         dest_set = p_dest_set;
+         }
+      }
+   }
@@ -0,0 +1,88 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.Random;
+import freert.planar.ShapeTileBox;
+import freert.planar.ShapeTileOctagon;
+
+/**
+ * Intersection and intersects of octagons, the shapes of most of the items and of the expansion rooms
+ * The octagons are enlarged boxes of random size, about half of the pairs overlap
+ * @author damiano
+ */
+public final class BenchOctagon extends BenchCase
+   {
+   private static final int SHAPE_COUNT = 1024;
+   private static final int AREA_SIDE = 200000;
+   private static final int SHAPE_SIDE_MAX = 60000;
+
+   // true to measure intersection(), false for intersects()
+   private final boolean with_intersection;
+   private final ShapeTileOctagon[] shapes = new ShapeTileOctagon[SHAPE_COUNT];
+   private int shape_index;
+
+   public BenchOctagon(boolean p_with_intersection)
+      {
+      with_intersection = p_with_intersection;
+      }
+
+   @Override
+   public String name()
+      {
+      return with_intersection ? "octagon.intersection" : "octagon.intersects";
+      }
+
+   @Override
+   public boolean fixture_used()
+      {
+      return false;
+      }
+
+   @Override
+   public void setup(BenchFixture p_fixture)
+      {
+      Random random = new Random(1);
+
+      for (int index = 0; index < shapes.length; index++)
+         {
+         int x = random.nextInt(AREA_SIDE);
+         int y = random.nextInt(AREA_SIDE);
+         int width = 1 + random.nextInt(SHAPE_SIDE_MAX);
+         int height = 1 + random.nextInt(SHAPE_SIDE_MAX);
+
+         ShapeTileBox a_box = new ShapeTileBox(x, y, x + width, y + height);
+
+         shapes[index] = a_box.enlarge(random.nextInt(SHAPE_SIDE_MAX / 4));
+         }
+
+      shape_index = 0;
+      }
+
+   @Override
+   public long op_run()
+      {
+      ShapeTileOctagon shape_a = shapes[shape_index];
+      ShapeTileOctagon shape_b = shapes[(shape_index + 1) % SHAPE_COUNT];
+
+      shape_index = (shape_index + 1) % SHAPE_COUNT;
+
+      if ( with_intersection ) return shape_a.intersection(shape_b).is_empty() ? 0 : 1;
+
+      return shape_a.intersects(shape_b) ? 1 : 0;
+      }
+   }
@@ -0,0 +1,226 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.IteraBoard;
+import interactive.IteraClearanceViolations;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import autoroute.ArtSettings;
+import autoroute.batch.BatchAutorouteThread;
+import board.RoutingBoard;
+import board.varie.IdGenerator;
+import freert.main.Stat;
+import freert.varie.JarManifest;
+
+/**
+ * Compares the serial and the parallel batch optimizer starting from the same routed board
+ * For each thread count the design is read and routed again with one thread and without optimizer, the routing is repeatable
+ * so the optimizer always starts from the same board, the route_crc column tells if it is so. Then only the optimizer is run.
+ * On a machine with less cores than threads the parallel optimizer still runs, use -XX:ActiveProcessorCount to allow it, eg:
+ * java -XX:ActiveProcessorCount=4 -cp classes:classes-bench freert.bench.BenchOptimize bench/fixtures/g400.dsn -threads 1,4
+ * @author damiano
+ */
+public final class BenchOptimize
+   {
+   private static final String classname="BenchOptimize.";
+   private static final String CSV_HEADER = "design,threads,route_crc,optimize_ms,unrouted,violations,vias_before,vias_after,length_before,length_after,session_crc";
+
+   private final Stat stat = new Stat();
+   // where the results are printed, System.out goes to the log file
+   private final PrintStream results_out;
+
+   private final ArrayList<File> designs = new ArrayList<File>();
+   private final ArrayList<Integer> thread_counts = new ArrayList<Integer>();
+   private String csv_file_name = "bench-optimize.csv";
+   private String log_file_name = "bench-optimize.log";
+
+   public static void main(String p_args[]) throws IOException
+      {
+      System.setProperty("java.awt.headless", "true");
+
+      BenchOptimize bench = new BenchOptimize(p_args);
+
+      boolean all_read = bench.bench_run();
+
+      BenchLog.close(bench.stat);
+
+      System.exit(all_read ? 0 : 1);
+      }
+
+   public BenchOptimize(String p_args[])
+      {
+      Stat.instance = stat;
+
+      stat.jmanifest = new JarManifest();
+
+      for (int index = 0; index < p_args.length; index++)
+         {
+         String option = p_args[index];
+
+         if ( ! option.startsWith("-") )
+            designs.add(new File(option));
+         else if ( index + 1 >= p_args.length )
+            System.err.println(classname+"BenchOptimize: missing value of "+option);
+         else if ( option.equals("-threads") )
+            for ( String a_count : p_args[++index].split(",") ) thread_counts.add(Math.max(1, Integer.parseInt(a_count)));
+         else if ( option.equals("-csv") )
+            csv_file_name = p_args[++index];
+         else if ( option.equals("-log") )
+            log_file_name = p_args[++index];
+         else
+            System.err.println(classname+"BenchOptimize: unknown option "+option);
+         }
+
+      if ( thread_counts.isEmpty() )
+         {
+         thread_counts.add(1);
+         thread_counts.add(Runtime.getRuntime().availableProcessors());
+         }
+
+      results_out = BenchLog.open(stat, log_file_name);
+      }
+
+   /**
+    * @return true if all the designs have been read
+    */
+   public boolean bench_run() throws IOException
+      {
+      boolean risul = true;
+
+      PrintWriter csv_writer = new PrintWriter(new FileWriter(csv_file_name));
+
+      csv_writer.println(CSV_HEADER);
+
+      results_out.println(classname+"bench_run: java "+System.getProperty("java.version")+" processors="+Runtime.getRuntime().availableProcessors()+" csv="+csv_file_name);
+      results_out.println(CSV_HEADER);
+
+      for ( File a_design : designs )
+         {
+         for ( int thread_count : thread_counts )
+            {
+            String csv_line = design_optimize(a_design, thread_count);
+
+            if ( csv_line == null )
+               {
+               risul = false;
+               break;
+               }
+
+            // written at each run, a long run that is stopped still has the ones done
+            csv_writer.println(csv_line);
+            csv_writer.flush();
+
+            results_out.println(csv_line);
+            }
+         }
+
+      csv_writer.close();
+
+      return risul;
+      }
+
+   /**
+    * @return the CSV line of p_design optimized with p_thread_count, null if it cannot be read
+    */
+   private String design_optimize(File p_design, int p_thread_count)
+      {
+      IteraBoard itera_board = new IteraBoard(stat);
+
+      try
+         {
+         // import_design closes the stream
+         if ( ! itera_board.import_design(new FileInputStream(p_design), new IdGenerator(), stat) )
+            {
+            results_out.println(classname+"design_optimize: FAIL reading "+p_design);
+            return null;
+            }
+         }
+      catch ( IOException exc )
+         {
+         results_out.println(classname+"design_optimize: "+p_design+" "+exc);
+         return null;
+         }
+
+      ArtSettings settings = itera_board.itera_settings.autoroute_settings;
+
+      settings.set_parallel_threads(1);
+      settings.set_with_postroute(false);
+
+      // no need to start a new thread, there is no GUI to keep alive
+      new BatchAutorouteThread(itera_board).run();
+
+      RoutingBoard r_board = itera_board.get_routing_board();
+
+      String route_crc = session_crc(itera_board, p_design.getName());
+      int vias_before = r_board.get_vias().size();
+      double length_before = r_board.cumulative_trace_length();
+
+      settings.set_parallel_threads(p_thread_count);
+      settings.set_with_fanout(false);
+      settings.set_with_autoroute(false);
+      settings.set_with_postroute(true);
+
+      long start_ms = System.currentTimeMillis();
+
+      new BatchAutorouteThread(itera_board).run();
+
+      long optimize_ms = System.currentTimeMillis() - start_ms;
+
+      StringBuilder risul = new StringBuilder(200);
+
+      risul.append(p_design.getName()).append(',');
+      risul.append(p_thread_count).append(',');
+      risul.append(route_crc).append(',');
+      risul.append(optimize_ms).append(',');
+      risul.append(itera_board.get_ratsnest().incomplete_count()).append(',');
+      // the parallel optimizer must not leave a worse board than the serial one
+      risul.append(new IteraClearanceViolations(r_board, r_board.get_items()).violation_list().size()).append(',');
+      risul.append(vias_before).append(',');
+      risul.append(r_board.get_vias().size()).append(',');
+      risul.append(String.format(Locale.ROOT, "%.0f", length_before)).append(',');
+      risul.append(String.format(Locale.ROOT, "%.0f", r_board.cumulative_trace_length())).append(',');
+      risul.append(session_crc(itera_board, p_design.getName()));
+
+      return risul.toString();
+      }
+
+   /**
+    * @return the CRC of the session file, as hex, the same board gives the same CRC
+    */
+   private String session_crc(IteraBoard p_itera_board, String p_design_name)
+      {
+      ByteArrayOutputStream session_data = new ByteArrayOutputStream();
+
+      // the ses writer closes the stream
+      if ( ! p_itera_board.export_specctra_session_file(p_design_name, session_data) ) return "-";
+
+      CRC32 crc = new CRC32();
+
+      crc.update(session_data.toByteArray());
+
+      return Long.toHexString(crc.getValue());
+      }
+   }
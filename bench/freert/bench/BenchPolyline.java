@@ -0,0 +1,99 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.Random;
+import freert.planar.PlaPointInt;
+import freert.planar.Polyline;
+
+/**
+ * Construction of a Polyline from its corners, done for every trace that is inserted or changed
+ * The corners are random walks of a few segments, with some of them on the same line, to be removed
+ * @author damiano
+ */
+public final class BenchPolyline extends BenchCase
+   {
+   private static final int POLYLINE_COUNT = 1024;
+   private static final int CORNER_COUNT_MAX = 8;
+   private static final int SEGMENT_LENGTH_MAX = 20000;
+
+   private final PlaPointInt[][] corners = new PlaPointInt[POLYLINE_COUNT][];
+   private int polyline_index;
+
+   @Override
+   public String name()
+      {
+      return "polyline.new";
+      }
+
+   @Override
+   public boolean fixture_used()
+      {
+      return false;
+      }
+
+   @Override
+   public void setup(BenchFixture p_fixture)
+      {
+      Random random = new Random(1);
+
+      for (int index = 0; index < corners.length; index++)
+         {
+         int corner_count = 2 + random.nextInt(CORNER_COUNT_MAX - 1);
+
+         PlaPointInt[] polyline_corners = new PlaPointInt[corner_count];
+
+         int x = random.nextInt(SEGMENT_LENGTH_MAX);
+         int y = random.nextInt(SEGMENT_LENGTH_MAX);
+
+         for (int corner = 0; corner < corner_count; corner++)
+            {
+            polyline_corners[corner] = new PlaPointInt(x, y);
+
+            int length = 1 + random.nextInt(SEGMENT_LENGTH_MAX);
+
+            // horizontal, vertical or 45 degree, as the autorouter makes them
+            switch ( random.nextInt(3) )
+               {
+               case 0:
+                  x += length;
+                  break;
+               case 1:
+                  y += length;
+                  break;
+               default:
+                  x += length;
+                  y += length;
+               }
+            }
+
+         corners[index] = polyline_corners;
+         }
+
+      polyline_index = 0;
+      }
+
+   @Override
+   public long op_run()
+      {
+      Polyline a_polyline = new Polyline(corners[polyline_index]);
+
+      polyline_index = (polyline_index + 1) % POLYLINE_COUNT;
+
+      return a_polyline.corner_count();
+      }
+   }
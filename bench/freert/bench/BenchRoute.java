@@ -0,0 +1,280 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.IteraBoard;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import autoroute.batch.BatchAutorouteThread;
+import board.RoutingBoard;
+import board.items.BrdAbitVia;
+import board.items.BrdItem;
+import board.varie.IdGenerator;
+import freert.main.Stat;
+import freert.varie.JarManifest;
+
+/**
+ * Routes every dsn of a directory as the batch mode does, fanout, autoroute and optimize as set in the design,
+ * and writes one CSV line per board with the time, the peak heap and the quality of the result
+ * The routing is repeatable: the maze search random numbers are seeded from the ripup costs and the triangulation from a fixed seed,
+ * one thread is used unless -threads is given. The maze search has a time limit, so a much slower machine may give a different result.
+ * The CRC of the session file tells if the result is the same of another build, eg:
+ * ant bench-route -Dbench.route.args="-fixture g100"
+ * java -cp classes:classes-bench freert.bench.BenchRoute -dir bench/fixtures -csv bench-route.csv
+ * @author damiano
+ */
+public final class BenchRoute
+   {
+   private static final String classname="BenchRoute.";
+   private static final String CSV_HEADER = "design,read_ms,route_ms,peak_heap_mb,passes,unrouted,vias,trace_length,session_crc";
+
+   private final Stat stat = new Stat();
+   // where the results are printed, System.out goes to the log file
+   private final PrintStream results_out;
+
+   private String designs_dir = "bench/fixtures";
+   private String design_filter = null;
+   private String csv_file_name = "bench-route.csv";
+   private String log_file_name = "bench-route.log";
+   private int parallel_threads = 1;
+
+   public static void main(String p_args[]) throws IOException
+      {
+      System.setProperty("java.awt.headless", "true");
+
+      BenchRoute bench = new BenchRoute(p_args);
+
+      boolean all_read = bench.bench_run();
+
+      BenchLog.close(bench.stat);
+
+      System.exit(all_read ? 0 : 1);
+      }
+
+   public BenchRoute(String p_args[])
+      {
+      Stat.instance = stat;
+
+      stat.jmanifest = new JarManifest();
+
+      for (int index = 0; index + 1 < p_args.length; index += 2)
+         {
+         String option = p_args[index];
+         String value = p_args[index + 1];
+
+         if ( option.equals("-dir") )
+            designs_dir = value;
+         else if ( option.equals("-fixture") )
+            design_filter = value;
+         else if ( option.equals("-csv") )
+            csv_file_name = value;
+         else if ( option.equals("-log") )
+            log_file_name = value;
+         else if ( option.equals("-threads") )
+            parallel_threads = Math.max(1, Integer.parseInt(value));
+         else
+            System.err.println(classname+"BenchRoute: unknown option "+option);
+         }
+
+      results_out = BenchLog.open(stat, log_file_name);
+      }
+
+   /**
+    * @return the dsn files of the directory, by name so that the CSV lines are always in the same order
+    */
+   private ArrayList<File> designs_list()
+      {
+      ArrayList<File> risul = new ArrayList<File>();
+
+      File[] files = new File(designs_dir).listFiles();
+
+      if ( files == null )
+         {
+         results_out.println(classname+"designs_list: no directory "+designs_dir);
+         return risul;
+         }
+
+      Arrays.sort(files);
+
+      for ( File a_file : files )
+         {
+         if ( ! a_file.getName().endsWith(".dsn") ) continue;
+
+         if ( design_filter != null && ! a_file.getName().contains(design_filter) ) continue;
+
+         risul.add(a_file);
+         }
+
+      return risul;
+      }
+
+   /**
+    * @return true if all the designs have been read
+    */
+   public boolean bench_run() throws IOException
+      {
+      boolean risul = true;
+
+      PrintWriter csv_writer = new PrintWriter(new FileWriter(csv_file_name));
+
+      csv_writer.println(CSV_HEADER);
+
+      results_out.println(classname+"bench_run: java "+System.getProperty("java.version")+" threads="+parallel_threads+" csv="+csv_file_name);
+      results_out.println(CSV_HEADER);
+
+      for ( File a_design : designs_list() )
+         {
+         String csv_line = design_route(a_design);
+
+         if ( csv_line == null )
+            {
+            risul = false;
+            continue;
+            }
+
+         // written at each board, a long run that is stopped still has the boards done
+         csv_writer.println(csv_line);
+         csv_writer.flush();
+
+         results_out.println(csv_line);
+         }
+
+      csv_writer.close();
+
+      return risul;
+      }
+
+   /**
+    * @return the CSV line of p_design, null if it cannot be read
+    */
+   private String design_route(File p_design)
+      {
+      // what the previous board left should not count in the peak of this one
+      System.gc();
+
+      heap_peak_reset();
+
+      long start_ms = System.currentTimeMillis();
+
+      IteraBoard itera_board = new IteraBoard(stat);
+
+      try
+         {
+         // import_design closes the stream
+         if ( ! itera_board.import_design(new FileInputStream(p_design), new IdGenerator(), stat) )
+            {
+            results_out.println(classname+"design_route: FAIL reading "+p_design);
+            return null;
+            }
+         }
+      catch ( IOException exc )
+         {
+         results_out.println(classname+"design_route: "+p_design+" "+exc);
+         return null;
+         }
+
+      long read_ms = System.currentTimeMillis() - start_ms;
+
+      itera_board.itera_settings.autoroute_settings.set_parallel_threads(parallel_threads);
+
+      BatchAutorouteThread route_thread = new BatchAutorouteThread(itera_board);
+
+      start_ms = System.currentTimeMillis();
+
+      // no need to start a new thread, there is no GUI to keep alive
+      route_thread.run();
+
+      long route_ms = System.currentTimeMillis() - start_ms;
+
+      long peak_heap_mb = heap_peak_get() / (1024 * 1024);
+
+      RoutingBoard r_board = itera_board.get_routing_board();
+
+      StringBuilder risul = new StringBuilder(200);
+
+      risul.append(p_design.getName()).append(',');
+      risul.append(read_ms).append(',');
+      risul.append(route_ms).append(',');
+      risul.append(peak_heap_mb).append(',');
+      risul.append(route_thread.autoroute_pass_count()).append(',');
+      risul.append(itera_board.get_ratsnest().incomplete_count()).append(',');
+      risul.append(via_count(r_board)).append(',');
+      risul.append(String.format(Locale.ROOT, "%.0f", r_board.cumulative_trace_length())).append(',');
+      risul.append(session_crc(itera_board, p_design.getName()));
+
+      return risul.toString();
+      }
+
+   private int via_count(RoutingBoard p_board)
+      {
+      int risul = 0;
+
+      for ( BrdItem an_item : p_board.get_items() )
+         if ( an_item instanceof BrdAbitVia ) risul++;
+
+      return risul;
+      }
+
+   /**
+    * @return the CRC of the session file, as hex, the same result gives the same CRC
+    */
+   private String session_crc(IteraBoard p_itera_board, String p_design_name)
+      {
+      ByteArrayOutputStream session_data = new ByteArrayOutputStream();
+
+      // the ses writer closes the stream
+      if ( ! p_itera_board.export_specctra_session_file(p_design_name, session_data) ) return "-";
+
+      CRC32 crc = new CRC32();
+
+      crc.update(session_data.toByteArray());
+
+      return Long.toHexString(crc.getValue());
+      }
+
+   private void heap_peak_reset()
+      {
+      for ( MemoryPoolMXBean a_pool : ManagementFactory.getMemoryPoolMXBeans() )
+         if ( a_pool.getType() == MemoryType.HEAP ) a_pool.resetPeakUsage();
+      }
+
+   /**
+    * The pools do not reach their peak at the same time, so the sum is a bit more than the real peak
+    * @return the peak heap since the last reset, in bytes
+    */
+   private long heap_peak_get()
+      {
+      long risul = 0;
+
+      for ( MemoryPoolMXBean a_pool : ManagementFactory.getMemoryPoolMXBeans() )
+         if ( a_pool.getType() == MemoryType.HEAP ) risul += a_pool.getPeakUsage().getUsed();
+
+      return risul;
+      }
+   }
@@ -0,0 +1,84 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.Random;
+import board.RoutingBoard;
+import board.awtree.AwtreeShapeSearch;
+import freert.planar.ShapeTileBox;
+import freert.varie.NetNosList;
+
+/**
+ * Overlap queries with clearance on the default search tree of the fixture, as done for every shape that is checked or inserted
+ * The query shapes are squares at random places of the board, on each layer in turn
+ * @author damiano
+ */
+public final class BenchTreeQuery extends BenchCase
+   {
+   private static final int QUERY_COUNT = 1024;
+   // side of the square used as query shape
+   private static final int QUERY_SIDE = 20000;
+
+   private final ShapeTileBox[] query_shapes = new ShapeTileBox[QUERY_COUNT];
+   private AwtreeShapeSearch search_tree;
+   private int layer_count;
+   private int query_index;
+
+   @Override
+   public String name()
+      {
+      return "tree.query";
+      }
+
+   @Override
+   public void setup(BenchFixture p_fixture) throws Exception
+      {
+      RoutingBoard r_board = p_fixture.routing_board_get();
+
+      search_tree = r_board.search_tree_manager.get_default_tree();
+      layer_count = r_board.get_layer_count();
+
+      ShapeTileBox bounding_box = r_board.get_bounding_box();
+
+      int width = Math.max(1, bounding_box.box_ur.v_x - bounding_box.box_ll.v_x);
+      int height = Math.max(1, bounding_box.box_ur.v_y - bounding_box.box_ll.v_y);
+
+      Random random = new Random(1);
+
+      for (int index = 0; index < query_shapes.length; index++)
+         {
+         int x = bounding_box.box_ll.v_x + random.nextInt(width);
+         int y = bounding_box.box_ll.v_y + random.nextInt(height);
+
+         query_shapes[index] = new ShapeTileBox(x, y, x + QUERY_SIDE, y + QUERY_SIDE);
+         }
+
+      query_index = 0;
+      }
+
+   @Override
+   public long op_run()
+      {
+      int layer = query_index % layer_count;
+
+      long risul = search_tree.find_overlap_tree_entries_with_clearance(query_shapes[query_index], layer, NetNosList.EMPTY, 1).size();
+
+      query_index = (query_index + 1) % QUERY_COUNT;
+
+      return risul;
+      }
+   }
@@ -0,0 +1,222 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import interactive.IteraBoard;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import autoroute.batch.BatchAutorouteThread;
+import board.awtree.AwtreeShapeSearch;
+import board.varie.IdGenerator;
+import freert.main.Stat;
+import freert.planar.ShapeTileBox;
+import freert.varie.JarManifest;
+import freert.varie.NetNosList;
+
+/**
+ * Stress test of the search tree, reader threads query the default tree while the autorouter changes it
+ * It also measures what the locking costs a query when concurrent readers are registered, eg:
+ * java -cp classes:classes-bench freert.bench.BenchTreeStress bench/fixtures/g100.dsn 4
+ * @author damiano
+ */
+public final class BenchTreeStress
+   {
+   private static final String classname="BenchTreeStress.";
+   // queries used to measure the cost of locking, run a few times so the JIT has done its job
+   private static final int BENCH_QUERY_COUNT = 200000;
+   private static final int BENCH_ROUNDS = 5;
+   // side of the square used as query shape
+   private static final int QUERY_SIDE = 20000;
+
+   private final Stat stat = new Stat();
+   private final AtomicBoolean readers_stop = new AtomicBoolean();
+   private final AtomicLong query_count = new AtomicLong();
+   private final AtomicLong error_count = new AtomicLong();
+   
+   private IteraBoard itera_board;
+   private AwtreeShapeSearch search_tree;
+   private ShapeTileBox bounding_box;
+
+   public static void main(String p_args[])
+      {
+      System.setProperty("java.awt.headless", "true");
+
+      if ( p_args.length < 1 )
+         {
+         System.out.println(classname+"main: usage BenchTreeStress design_file.dsn [reader_threads]");
+         System.exit(1);
+         }
+      
+      int reader_count = p_args.length > 1 ? Integer.parseInt(p_args[1]) : 4;
+      
+      BenchTreeStress stress = new BenchTreeStress();
+
+      System.exit(stress.stress_run(new File(p_args[0]), reader_count) ? 0 : 1);
+      }
+
+   public BenchTreeStress()
+      {
+      Stat.instance = stat;
+
+      stat.jmanifest = new JarManifest();
+      }
+
+   /**
+    * @return true if no reader has seen an exception
+    */
+   public boolean stress_run(File p_design_file, int p_reader_count)
+      {
+      itera_board = new IteraBoard(stat);
+
+      try
+         {
+         // import_design closes the stream
+         if ( ! itera_board.import_design(new FileInputStream(p_design_file), new IdGenerator(), stat) )
+            {
+            stat.userPrintln(classname+"stress_run: FAIL reading "+p_design_file);
+            return false;
+            }
+         }
+      catch ( Exception exc )
+         {
+         stat.userPrintln(classname+"stress_run: "+p_design_file, exc);
+         return false;
+         }
+
+      search_tree = itera_board.get_routing_board().search_tree_manager.get_default_tree();
+      bounding_box = itera_board.get_routing_board().get_bounding_box();
+
+      lock_cost_measure();
+      
+      Thread[] readers = new Thread[p_reader_count];
+
+      for (int index = 0; index < readers.length; index++)
+         {
+         readers[index] = new StressReader(index);
+         readers[index].start();
+         }
+
+      long start_ms = System.currentTimeMillis();
+      
+      // the autorouter is the thread owning the board, it changes the tree while the readers query it
+      new BatchAutorouteThread(itera_board).run();
+      
+      long route_ms = System.currentTimeMillis() - start_ms;
+      
+      readers_stop.set(true);
+      
+      for (Thread a_reader : readers)
+         {
+         try
+            {
+            a_reader.join();
+            }
+         catch ( InterruptedException exc )
+            {
+            Thread.currentThread().interrupt();
+            }
+         }
+
+      stat.userPrintln(classname+"stress_run: readers="+p_reader_count+" queries="+query_count+" errors="+error_count+" route time="+route_ms+"ms");
+      
+      return error_count.get() == 0;
+      }
+   
+   /**
+    * Runs the same queries with no readers registered, no locking, and with one registered, read lock and thread buffers
+    */
+   private void lock_cost_measure()
+      {
+      for (int round = 0; round < BENCH_ROUNDS; round++)
+         {
+         long single_ns = queries_time_ns(round);
+         
+         search_tree.concurrent_reader_add();
+         
+         long locked_ns = queries_time_ns(round);
+         
+         search_tree.concurrent_reader_remove();
+         
+         stat.userPrintln(classname+"lock_cost_measure: round="+round+
+               " unlocked="+(single_ns / BENCH_QUERY_COUNT)+"ns/query"+
+               " locked="+(locked_ns / BENCH_QUERY_COUNT)+"ns/query");
+         }
+      }
+   
+   private long queries_time_ns(int p_seed)
+      {
+      Random random = new Random(p_seed);
+      
+      long start_ns = System.nanoTime();
+      
+      for (int index = 0; index < BENCH_QUERY_COUNT; index++)
+         search_tree.find_overlap_tree_entries_with_clearance(query_shape(random), -1, NetNosList.EMPTY, 1);
+      
+      return System.nanoTime() - start_ns;
+      }
+   
+   private ShapeTileBox query_shape(Random p_random)
+      {
+      int width = Math.max(1, bounding_box.box_ur.v_x - bounding_box.box_ll.v_x);
+      int height = Math.max(1, bounding_box.box_ur.v_y - bounding_box.box_ll.v_y);
+      
+      int x = bounding_box.box_ll.v_x + p_random.nextInt(width);
+      int y = bounding_box.box_ll.v_y + p_random.nextInt(height);
+      
+      return new ShapeTileBox(x, y, x + QUERY_SIDE, y + QUERY_SIDE);
+      }
+   
+   private final class StressReader extends Thread
+      {
+      private final Random random;
+      
+      StressReader(int p_seed)
+         {
+         super(classname+"reader"+p_seed);
+         random = new Random(p_seed);
+         }
+      
+      @Override
+      public void run()
+         {
+         search_tree.concurrent_reader_add();
+         
+         try
+            {
+            while ( ! readers_stop.get() )
+               {
+               try
+                  {
+                  search_tree.find_overlap_tree_entries_with_clearance(query_shape(random), -1, NetNosList.EMPTY, 1);
+                  query_count.incrementAndGet();
+                  }
+               catch ( Exception exc )
+                  {
+                  if ( error_count.incrementAndGet() < 5 ) stat.userPrintln(classname+"reader exc", exc);
+                  }
+               }
+            }
+         finally
+            {
+            search_tree.concurrent_reader_remove();
+            }
+         }
+      }
+   }
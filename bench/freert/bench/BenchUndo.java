@@ -0,0 +1,167 @@
+package freert.bench;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.Iterator;
+import java.util.Random;
+import freert.main.Stat;
+import freert.varie.UndoObjectNode;
+import freert.varie.UndoObjectStorable;
+import freert.varie.UndoObjects;
+
+/**
+ * Measures what a trial reroute costs the undo database, as the optimizer does it:
+ * snapshot, rip up a few items, insert the new ones, then undo if it is not better or pop the snapshot if it is
+ * The cost should not depend on the number of objects, a full read of the objects is measured for comparison, eg:
+ * java -cp classes:classes-bench freert.bench.BenchUndo 50000
+ * @author damiano
+ */
+public final class BenchUndo
+   {
+   private static final String classname="BenchUndo.";
+   // run a few times so the JIT has done its job
+   private static final int BENCH_ROUNDS = 5;
+   private static final int TRIAL_COUNT = 20000;
+   // what a trial reroute of a connection changes
+   private static final int TRIAL_DELETED = 20;
+   private static final int TRIAL_INSERTED = 25;
+   private static final int TRIAL_CHANGED = 5;
+   // one trial out of this is accepted
+   private static final int TRIAL_ACCEPT_RATIO = 10;
+
+   private final Stat stat = new Stat();
+   private final Random random = new Random(1);
+   private final UndoObjects undo_objects = new UndoObjects();
+
+   private int next_id_no = 1;
+
+   public static void main(String p_args[])
+      {
+      int object_count = p_args.length > 0 ? Integer.parseInt(p_args[0]) : 50000;
+
+      BenchUndo bench = new BenchUndo();
+
+      bench.bench_run(object_count);
+      }
+
+   public BenchUndo()
+      {
+      Stat.instance = stat;
+      }
+
+   public void bench_run(int p_object_count)
+      {
+      for (int index = 0; index < p_object_count; index++) undo_objects.insert(new BenchObject(next_id_no++));
+
+      // the interactive state keeps a snapshot, the trials are nested in it
+      undo_objects.generate_snapshot();
+
+      for (int round = 0; round < BENCH_ROUNDS; round++)
+         {
+         long trial_ns = trials_time_ns();
+         long read_ns = read_time_ns();
+
+         stat.userPrintln(classname+"bench_run: objects="+p_object_count+" round="+round+
+               " trial="+(trial_ns / TRIAL_COUNT)+"ns"+
+               " full read="+read_ns+"ns");
+         }
+      }
+
+   private long trials_time_ns()
+      {
+      long start_ns = System.nanoTime();
+
+      for (int index = 0; index < TRIAL_COUNT; index++)
+         {
+         undo_objects.generate_snapshot();
+
+         for (int count = 0; count < TRIAL_DELETED; count++)
+            {
+            UndoObjectStorable an_object = random_object();
+
+            if ( an_object != null ) undo_objects.delete(an_object);
+            }
+
+         for (int count = 0; count < TRIAL_CHANGED; count++)
+            {
+            UndoObjectStorable an_object = random_object();
+
+            if ( an_object != null ) undo_objects.save_for_undo(an_object);
+            }
+
+         for (int count = 0; count < TRIAL_INSERTED; count++) undo_objects.insert(new BenchObject(next_id_no++));
+
+         if ( index % TRIAL_ACCEPT_RATIO == 0 )
+            undo_objects.pop_snapshot();
+         else
+            undo_objects.undo(null, null);
+         }
+
+      return System.nanoTime() - start_ns;
+      }
+
+   /**
+    * The cost of reading all the objects once, what undo did before each level had a journal
+    */
+   private long read_time_ns()
+      {
+      long start_ns = System.nanoTime();
+
+      Iterator<UndoObjectNode> iter = undo_objects.start_read_object();
+
+      int count = 0;
+
+      while ( undo_objects.read_next(iter) != null ) count++;
+
+      if ( count == 0 ) stat.userPrintln(classname+"read_time_ns: no objects");
+
+      return System.nanoTime() - start_ns;
+      }
+
+   private UndoObjectStorable random_object()
+      {
+      return undo_objects.get(1 + random.nextInt(next_id_no - 1));
+      }
+
+   private static final class BenchObject implements UndoObjectStorable
+      {
+      private final int id_no;
+
+      BenchObject(int p_id_no)
+         {
+         id_no = p_id_no;
+         }
+
+      @Override
+      public Object copy()
+         {
+         return new BenchObject(id_no);
+         }
+
+      @Override
+      public int get_id_no()
+         {
+         return id_no;
+         }
+
+      @Override
+      public int compareTo(Object p_other)
+         {
+         return id_no - ((BenchObject)p_other).id_no;
+         }
+      }
+   }
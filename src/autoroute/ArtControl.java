@@ -21,6 +21,7 @@ package autoroute;
 
 import interactive.IteraSettings;
 import autoroute.expand.ExpandCostFactor;
+import autoroute.varie.ArtMetrics;
 import autoroute.varie.ArtViaCost;
 import autoroute.varie.ArtViaMask;
 import board.RoutingBoard;
@@ -50,6 +51,8 @@ public final class ArtControl
    // The currently used compensated trace half widths in the autoroute algorithm on each layer. 
    // Equal to trace_half_width if no clearance compensation is used.
    public final int[] compensated_trace_half_width;
+   // where the autorouter counts what it does, the batch autorouter sets its own
+   public ArtMetrics metrics = new ArtMetrics();
 
    public final double[] via_radius_arr;
    double via_radius_max;
@@ -95,6 +98,9 @@ public final class ArtControl
    // request to stop remove fanout vias, they are classified as "tails" and would normally be removed
    // Normally true, if the autoroute contains no fanout pass
    public boolean stop_remove_fanout_vias;
+   
+   // use the old TreeSet as maze expansion list instead of the heap, to compare them
+   public final boolean maze_tree_queue;
 
    public ArtControl(RoutingBoard p_board, int p_net_no, IteraSettings p_settings)
       {
@@ -124,6 +130,7 @@ public final class ArtControl
       compensated_trace_half_width = new int[layer_count];
       layer_active = new boolean[layer_count];
       vias_allowed = p_settings.autoroute_settings.vias_allowed;
+      maze_tree_queue = p_settings.autoroute_settings.maze_tree_queue;
       via_radius_arr = new double[layer_count];
       add_via_costs = new ArtViaCost[layer_count];
 
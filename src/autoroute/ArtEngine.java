@@ -36,8 +36,10 @@ import autoroute.expand.ExpandRoomObstacle;
 import autoroute.maze.MazeSearch;
 import autoroute.maze.MazeSearchResult;
 import autoroute.sorted.SortedRoomsTop;
+import autoroute.varie.ArtMetrics;
 import autoroute.varie.ArtResult;
 import board.RoutingBoard;
+import board.awtree.AwtreeFindBuffer;
 import board.awtree.AwtreeObject;
 import board.awtree.AwtreeShapeSearch;
 import board.items.BrdItem;
@@ -67,6 +69,8 @@ public final class ArtEngine
    private final int route_net_no;
    // The 2-dimensional array of rectangular pages of ExpansionDrills
    public final DrillPageArray drill_page_array;
+   // Reused by the drill queries on the search tree, they are not nested so one is enough
+   public final AwtreeFindBuffer drill_find_buffer = new AwtreeFindBuffer();
    // To be able to stop the expansion algorithm.
    final ThreadStoppable stoppable;
    // The list of incomplete expansion rooms on the routing board
@@ -75,6 +79,8 @@ public final class ArtEngine
    private final List<ExpandRoomFreespaceComplete> complete_expansion_rooms = new LinkedList<ExpandRoomFreespaceComplete>();;
    // The count of expansion rooms created so far
    private IdGenerator expansion_room_instance_count = new IdGenerator();
+   // where what is done is counted, it is the one of the ArtControl of the connection being routed
+   public ArtMetrics metrics = new ArtMetrics();
 
    public ArtEngine(RoutingBoard p_board, int p_net_no, int p_trace_clearance_class_no, ThreadStoppable p_stoppable )
       {
@@ -87,7 +93,9 @@ public final class ArtEngine
       double max_drill_page_width = 5 * r_board.brd_rules.get_default_via_diameter();
       max_drill_page_width = Math.max(max_drill_page_width, 10000);
 
-      drill_page_array = new DrillPageArray(r_board, max_drill_page_width);
+      // the pages are reused for every connection on this board, just clear what the previous one left
+      drill_page_array = r_board.get_drill_page_array(max_drill_page_width);
+      drill_page_array.reset();
       }
 
    /*
@@ -95,6 +103,28 @@ public final class ArtEngine
     */
    public ArtResult autoroute_connection(Set<BrdItem> p_start_set, Set<BrdItem> p_dest_set, ArtControl p_ctrl, SortedSet<BrdItem> p_ripped_item_list)
       {
+      metrics = p_ctrl.metrics;
+      
+      long query_count = art_search_tree.query_count();
+      
+      ArtResult risul = autoroute_connection_try(p_start_set, p_dest_set, p_ctrl, p_ripped_item_list);
+      
+      metrics.count(ArtMetrics.TREE_QUERIES, art_search_tree.query_count() - query_count);
+      
+      if ( risul == ArtResult.ROUTED )
+         metrics.count(ArtMetrics.ROUTED);
+      else if ( risul == ArtResult.INSERT_ERROR )
+         metrics.count(ArtMetrics.INSERT_FAILED);
+      else
+         metrics.count(ArtMetrics.NOT_ROUTED);
+      
+      return risul;
+      }
+   
+   private ArtResult autoroute_connection_try(Set<BrdItem> p_start_set, Set<BrdItem> p_dest_set, ArtControl p_ctrl, SortedSet<BrdItem> p_ripped_item_list)
+      {
+      long phase_start = System.nanoTime();
+      
       MazeSearch maze_search = new MazeSearch ( this, p_ctrl, p_start_set, p_dest_set);
 
       if ( ! maze_search.is_initialized() )
@@ -104,6 +134,9 @@ public final class ArtEngine
          }
 
       MazeSearchResult search_result = maze_search.find_connection();
+      
+      phase_start = metrics.time_add(ArtMetrics.TIME_SEARCH, phase_start);
+      
       if ( search_result == null )
          {
          r_board.userPrintln(classname+"autoroute_connection: search_result NULL");
@@ -111,6 +144,9 @@ public final class ArtEngine
          }
 
       ArtConnectionLocate locate_connection = ArtConnectionLocate.get_instance(search_result, p_ctrl, art_search_tree, r_board.brd_rules.get_trace_snap_angle(), p_ripped_item_list);
+      
+      phase_start = metrics.time_add(ArtMetrics.TIME_LOCATE, phase_start);
+      
       if ( ! locate_connection.is_initialized() )
          {
          r_board.userPrintln(classname+"autoroute_connection: ! is_initialized");
@@ -158,6 +194,10 @@ public final class ArtEngine
       
       r_board.end_notify_observers();
       
+      metrics.count(ArtMetrics.RIPUPS, p_ripped_item_list.size());
+      
+      metrics.time_add(ArtMetrics.TIME_INSERT, phase_start);
+      
       return inserted ? ArtResult.ROUTED : ArtResult.INSERT_ERROR;
       }
 
@@ -382,6 +422,8 @@ public final class ArtEngine
                   }
                }
             }
+         metrics.count(ArtMetrics.ROOMS_COMPLETED, result.size());
+         
          return result;
          }
       catch (Exception e)
@@ -37,6 +37,7 @@ public final class ArtSettings implements java.io.Serializable
    public boolean no_ripup;      // do not rip current traces
    public boolean vias_allowed;
    public boolean stop_remove_fanout_vias;  // damiano, was in batch autorouter
+   public boolean maze_tree_queue;          // maze search uses the old TreeSet expansion list, for benchmarks
    
    private boolean with_fanout;
    private boolean with_autoroute;
@@ -45,6 +46,7 @@ public final class ArtSettings implements java.io.Serializable
    private int plane_via_costs;
    private int start_ripup_costs;
    private int autoroute_pass_no;
+   private int parallel_threads;   // number of batch autoroute workers, 0 (old saved settings) means one
 
    private final ArrayList<ArtLayer> layers_list;
    
@@ -65,6 +67,7 @@ public final class ArtSettings implements java.io.Serializable
       via_costs = 50;
       plane_via_costs = 1;
       stop_remove_fanout_vias = true;
+      parallel_threads = 1;
       }
 
    public ArtSettings(RoutingBoard p_board)
@@ -177,6 +180,20 @@ public final class ArtSettings implements java.io.Serializable
       autoroute_pass_no++;
       }
 
+   /**
+    * Set how many threads the batch autorouter uses to route nets that are far apart
+    * @param p_value the value is clipped between 1 and 64
+    */
+   public void set_parallel_threads(int p_value)
+      {
+      parallel_threads = Math.min(Math.max(p_value, 1), 64);
+      }
+
+   public int get_parallel_threads()
+      {
+      return Math.max(parallel_threads, 1);
+      }
+
    public void set_with_fanout(boolean p_value)
       {
       with_fanout = p_value;
@@ -22,6 +22,7 @@
 package autoroute;
 
 import java.awt.Graphics;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import autoroute.expand.ExpandDrillPage;
@@ -49,10 +50,15 @@ public final class DrillPageArray
    private final int page_height;
    // as far as I can tell the whole array is initialized, no null holes
    private final ExpandDrillPage[][] page_arr;
+   // the pages used since the last reset, only these need to be cleared for the next connection
+   private final ArrayList<ExpandDrillPage> used_pages = new ArrayList<ExpandDrillPage>();
+   
+   public final double max_page_width;
    
    public DrillPageArray(RoutingBoard p_board, double p_max_page_width)
       {
       bounding_box = p_board.bounding_box;
+      max_page_width = p_max_page_width;
       
       double length = bounding_box.box_ur.v_x - bounding_box.box_ll.v_x;
       double height = bounding_box.box_ur.v_y - bounding_box.box_ll.v_y;
@@ -126,7 +132,9 @@ public final class DrillPageArray
             
             if (intersection.dimension().is_area())
                {
-               result.add(page_arr[j][i]);
+               result.add(curr_page);
+               
+               if ( curr_page.mark_used() ) used_pages.add(curr_page);
                }
             }
          }
@@ -134,21 +142,15 @@ public final class DrillPageArray
       }
 
    /**
-    * Resets all drill pages for autorouting the next connection.
-    * this is also never caller, weird/.....
-   private void reset()
+    * Resets the drill pages for autorouting the next connection, the array is kept by the board between connections
+    * Only the pages used by the previous connection have search marks or drills, the others are left alone
+    */
+   public void reset()
       {
-      for (int row_idx = 0; row_idx < page_arr.length; ++row_idx)
-         {
-         ExpandDrillPage[] curr_row = page_arr[row_idx];
-         
-         for (int col_idx = 0; col_idx < curr_row.length; ++col_idx)
-            {
-            curr_row[col_idx].reset();
-            }
-         }
+      for (ExpandDrillPage curr_page : used_pages ) curr_page.clear();
+      
+      used_pages.clear();
       }
-    */
    
    /*
     * Test draw of the all drills, apparently never called ?
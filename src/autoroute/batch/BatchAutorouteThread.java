@@ -59,6 +59,22 @@ public final class BatchAutorouteThread extends BrdActionThread
       }
 
    
+   /**
+    * @return what the autorouter has done, as JSON, see BatchAutorouter.metrics_json
+    */
+   public String metrics_json()
+      {
+      return batch_autorouter.metrics_json();
+      }
+   
+   /**
+    * @return the passes done by the autorouter
+    */
+   public int autoroute_pass_count()
+      {
+      return batch_autorouter.pass_count();
+      }
+   
    private void postroute_try ()
       {
       if ( is_stop_requested() ) return;
@@ -140,7 +156,7 @@ public final class BatchAutorouteThread extends BrdActionThread
             hdlg.get_ratsnest().show();
             }
 
-         hdlg.get_panel().board_frame.refresh_windows();
+         if ( ! hdlg.is_headless() ) hdlg.get_panel().board_frame.refresh_windows();
          
          validate_try();
          }
@@ -19,6 +19,7 @@ import freert.main.Ldbg;
 import freert.main.Mdbg;
 import freert.planar.PlaPointFloat;
 import freert.planar.PlaSegmentFloat;
+import freert.planar.ShapeTileBox;
 import freert.rules.RuleNet;
 import freert.varie.NetNosList;
 import freert.varie.TimeLimitStoppable;
@@ -30,6 +31,7 @@ import interactive.IteraBoard;
 import interactive.IteraSettings;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.SortedSet;
@@ -37,6 +39,7 @@ import java.util.TreeSet;
 import autoroute.ArtControl;
 import autoroute.ArtEngine;
 import autoroute.expand.ExpandCostFactor;
+import autoroute.varie.ArtMetrics;
 import autoroute.varie.ArtResult;
 import board.BrdConnectable;
 import board.RoutingBoard;
@@ -53,6 +56,8 @@ import board.varie.BrdStopConnection;
 public class BatchAutorouter
    {
    private static final String classname = "BatchAutorouter.";
+   // the routing info on screen is changed at most once in this time, unless the pass is over
+   private static final long INFO_SHOW_MILLIS = 200;
    
    private final BrdActionThread s_thread;
    private final IteraBoard hdlg;
@@ -65,15 +70,38 @@ public class BatchAutorouter
    // Used to draw the airline of the current routed incomplete
    private PlaSegmentFloat air_line = null;
    
+   // used by autoroute_loop when more than one thread is configured, null otherwise
+   private BatchParallelRouter parallel_router = null;
+   
+   // when not null a pass routes only the nets having all their items in it, a parallel worker must stay in its area
+   private ShapeTileBox route_area = null;
+   
+   // when the routing info on screen has been changed last time
+   private long info_show_time = 0;
+   
+   // what the current pass has done, the parallel workers add theirs at the end of the pass
+   private final ArtMetrics pass_metrics = new ArtMetrics();
+   // what every pass of the last autoroute_loop has done
+   private final ArrayList<ArtMetrics> passes_metrics = new ArrayList<ArtMetrics>();
+   
 
    /**
     * Creates a new batch auto router.
     */
    public BatchAutorouter(BrdActionThread p_thread, boolean p_with_preferred_directions, int p_start_ripup_costs)
+      {
+      this(p_thread, p_thread.hdlg.get_routing_board(), p_with_preferred_directions, p_start_ripup_costs);
+      }
+
+   /**
+    * Creates a batch auto router for p_board, that may be a copy of the board on screen used by a parallel worker
+    * Nothing is shown on screen when routing a copy
+    */
+   BatchAutorouter(BrdActionThread p_thread, RoutingBoard p_board, boolean p_with_preferred_directions, int p_start_ripup_costs)
       {
       s_thread = p_thread;
       hdlg     = p_thread.hdlg;
-      routing_board  = hdlg.get_routing_board();
+      routing_board  = p_board;
       itera_settings = hdlg.itera_settings;
       
       resources = hdlg.newGuiResources("interactive.resources.InteractiveState");
@@ -97,11 +125,27 @@ public class BatchAutorouter
       }
 
 
+   /**
+    * Routes only the nets having all their items in p_box, null to route all the board
+    */
+   void set_route_area(ShapeTileBox p_box)
+      {
+      route_area = p_box;
+      }
+
    public void remove_tails ( )
+      {
+      remove_tails(-1);
+      }
+
+   /**
+    * Removes the tails of p_net_no, of all nets if it is -1, and pulls tight what has changed
+    */
+   void remove_tails ( int p_net_no )
       {
       routing_board.changed_area_clear();
       
-      routing_board.remove_trace_tails(-1, BrdStopConnection.NONE);
+      routing_board.remove_trace_tails(p_net_no, BrdStopConnection.NONE);
       
       TimeLimitStoppable time_limit = new TimeLimitStoppable(10, s_thread);
       
@@ -126,6 +170,24 @@ public class BatchAutorouter
       {
       int previous_unrouted_count=0;
       int unrouted_count=0;
+      int pass_count=0;
+      long start_time = System.currentTimeMillis();
+      
+      int thread_count = itera_settings.autoroute_settings.get_parallel_threads();
+      
+      int cpu_count = Runtime.getRuntime().availableProcessors();
+      
+      if ( thread_count > cpu_count )
+         {
+         // more workers than cores only adds the cost of copying the board
+         hdlg.userPrintln(classname+"autoroute_loop: threads="+thread_count+" reduced to available processors="+cpu_count);
+         thread_count = cpu_count;
+         }
+      
+      if ( thread_count > 1 ) parallel_router = new BatchParallelRouter(this, s_thread, thread_count);
+      
+      passes_metrics.clear();
+      pass_metrics.clear();
       
       while ( ! s_thread.is_stop_requested())
          {
@@ -137,6 +199,12 @@ public class BatchAutorouter
          
          unrouted_count = autoroute_pass(curr_pass_no);
          
+         pass_count++;
+         
+         hdlg.userPrintln(classname+"autoroute_pass "+curr_pass_no+": "+pass_metrics.report());
+         passes_metrics.add(pass_metrics.copy());
+         pass_metrics.clear();
+         
          // no more traces to route
          if ( unrouted_count <= 0 ) break;
          
@@ -148,11 +216,25 @@ public class BatchAutorouter
          itera_settings.autoroute_settings.pass_no_inc();
          }
       
+      parallel_router = null;
+      
+      hdlg.userPrintln(classname+"autoroute_loop: threads="+thread_count+" passes="+pass_count+" unrouted="+unrouted_count+" time="+(System.currentTimeMillis()-start_time)+"ms");
+      hdlg.userPrintln(classname+"autoroute_loop: "+routing_board.contact_cache_stat());
+      hdlg.userPrintln(classname+"autoroute_loop: "+metrics_total().report());
+      
       autoroute_remove_tails_try();
       }
 
-   private void autoroute_info_show (int items_to_go, int routed, int ripped, int failed)
+   void autoroute_info_show (int items_to_go, int routed, int ripped, int failed)
       {
+      if ( ! is_on_screen() ) return;
+      
+      long now = System.currentTimeMillis();
+      
+      if ( items_to_go > 0 && now - info_show_time < INFO_SHOW_MILLIS ) return;
+      
+      info_show_time = now;
+      
       hdlg.screen_messages.set_batch_autoroute_info(items_to_go,routed,ripped,failed);
       
       if ( hdlg.debug(Mdbg.MAZE, Ldbg.TRACE))
@@ -197,9 +279,13 @@ public class BatchAutorouter
             {
             // Go over all nets of the item
             int curr_net_no = curr_item.get_net_no(idx);
+            
+            if ( route_area != null && ! routing_board.get_bounding_box(routing_board.get_connectable_items(curr_net_no)).is_contained_in(route_area) ) continue;
          
-            // Get all connected of the current item
-            Set<BrdItem> connected_set = curr_item.get_connected_set(curr_net_no);
+            // Get all connected of the current item, the set kept by the board is only read here so there is no need of a copy
+            Set<BrdItem> connected_set = routing_board.get_connected_component(curr_item, curr_net_no);
+            
+            if ( connected_set == null || routing_board.connectivity_validate ) connected_set = curr_item.get_connected_set(curr_net_no);
             
             for (BrdItem curr_connected_item : connected_set)
                {
@@ -224,6 +310,8 @@ public class BatchAutorouter
          return 0;
          }
       
+      if ( parallel_router != null ) return parallel_router.autoroute_pass(autoroute_item_list, ar_pass_no);
+      
       int items_to_go_count = autoroute_item_list.size();
       int ripped_item_count = 0;
       int failed_count = 0;
@@ -243,10 +331,10 @@ public class BatchAutorouter
             
             routing_board.changed_area_clear();
             
-            if (autoroute_item(curr_item, r_net_no, ripped_item_list, ar_pass_no))
+            if (autoroute_item(routing_board, curr_item, r_net_no, ripped_item_list, ar_pass_no, pass_metrics))
                {
                routed_count++;
-               hdlg.repaint();
+               if ( is_on_screen() ) hdlg.repaint();
                }
             else
                {
@@ -266,6 +354,14 @@ public class BatchAutorouter
       return failed_count;
       }
 
+   /**
+    * @return false if this router works on a copy of the board, used by a parallel worker
+    */
+   private boolean is_on_screen()
+      {
+      return routing_board == hdlg.get_routing_board();
+      }
+   
    /**
     * Autoroute one pass of all items of the board. 
     * @return the number of failed items in the board
@@ -286,23 +382,86 @@ public class BatchAutorouter
       }
 
 
+   /**
+    * Adds what a parallel worker has done to the current pass
+    */
+   void metrics_add(ArtMetrics p_metrics)
+      {
+      pass_metrics.add(p_metrics);
+      }
+   
+   /**
+    * @return the sum of the passes of the last autoroute_loop
+    */
+   private ArtMetrics metrics_total()
+      {
+      ArtMetrics risul = new ArtMetrics();
+      
+      for ( ArtMetrics a_pass : passes_metrics ) risul.add(a_pass);
+      
+      return risul;
+      }
+   
+   /**
+    * @return the passes done by the last autoroute_loop
+    */
+   public int pass_count()
+      {
+      return passes_metrics.size();
+      }
+   
+   /**
+    * @return the metrics of the last autoroute_loop as JSON, eg: {"passes":[{...},{...}],"total":{...}}
+    */
+   public String metrics_json()
+      {
+      StringBuilder risul = new StringBuilder(1000);
+      
+      risul.append("{\"passes\":[");
+      
+      for (int index = 0; index < passes_metrics.size(); ++index)
+         {
+         if ( index > 0 ) risul.append(',');
+         risul.append(passes_metrics.get(index).to_json());
+         }
+      
+      risul.append("],\"total\":").append(metrics_total().to_json()).append('}');
+      
+      return risul.toString();
+      }
+
    /**
     * Attempt to autoroute one item and a specific net of that item
+    * @param p_board the board where p_item is, it is a copy of the real board when routing in parallel
     * @param p_item
     * @param p_route_net_no
     * @param p_ripped_item_list
     * @param ar_pass_no
+    * @param p_metrics where the routing is counted, each parallel worker has its own
     * @return true if the routing is successful
     */
-   private boolean autoroute_item(BrdItem p_item, int p_route_net_no, SortedSet<BrdItem> p_ripped_item_list, int ar_pass_no)
+   boolean autoroute_item(RoutingBoard p_board, BrdItem p_item, int p_route_net_no, SortedSet<BrdItem> p_ripped_item_list, int ar_pass_no, ArtMetrics p_metrics)
+      {
+      long start_time = System.nanoTime();
+      
+      p_metrics.count(ArtMetrics.CONNECTIONS);
+      
+      boolean risul = autoroute_item_try(p_board, p_item, p_route_net_no, p_ripped_item_list, ar_pass_no, p_metrics);
+      
+      p_metrics.time_add(ArtMetrics.TIME_NET, start_time);
+      
+      return risul;
+      }
+   
+   private boolean autoroute_item_try(RoutingBoard p_board, BrdItem p_item, int p_route_net_no, SortedSet<BrdItem> p_ripped_item_list, int ar_pass_no, ArtMetrics p_metrics)
       {
       boolean contains_plane = false;
       
-      RuleNet route_net = routing_board.brd_rules.nets.get(p_route_net_no);
+      RuleNet route_net = p_board.brd_rules.nets.get(p_route_net_no);
       
       if (route_net != null)
          {
-         hdlg.userPrintln(classname+"autoroute_item_try: net "+route_net.name);
+         if ( hdlg.debug(Mdbg.AUTORT, Ldbg.TRACE)) hdlg.userPrintln(classname+"autoroute_item_try: net "+route_net.name);
          contains_plane = route_net.contains_plane();
          }
       else
@@ -321,9 +480,10 @@ public class BatchAutorouter
          curr_via_costs = itera_settings.autoroute_settings.get_via_costs();
          }
       
-      ArtControl autoroute_control = new ArtControl( routing_board, p_route_net_no, itera_settings, curr_via_costs, trace_cost_arr);
+      ArtControl autoroute_control = new ArtControl( p_board, p_route_net_no, itera_settings, curr_via_costs, trace_cost_arr);
       
       autoroute_control.ripup_costs = start_ripup_costs * ar_pass_no;
+      autoroute_control.metrics = p_metrics;
 
       Set<BrdItem> unconnected_set = p_item.get_unconnected_set(p_route_net_no);
 
@@ -356,17 +516,18 @@ public class BatchAutorouter
          route_dest_set = connected_set;
          }
 
-      calc_airline(route_start_set, route_dest_set);
+      // parallel workers route on a copy of the board, the airline is only for the board on screen
+      if ( p_board == routing_board ) calc_airline(route_start_set, route_dest_set);
 
       TimeLimitStoppable time_limit = new TimeLimitStoppable(10 + ar_pass_no, s_thread);
 
-      ArtEngine autoroute_engine = new ArtEngine(routing_board, p_route_net_no, autoroute_control.trace_clearance_idx, time_limit);
+      ArtEngine autoroute_engine = new ArtEngine(p_board, p_route_net_no, autoroute_control.trace_clearance_idx, time_limit);
       
       ArtResult aresult = autoroute_engine.autoroute_connection(route_start_set, route_dest_set, autoroute_control, p_ripped_item_list);
       
       if (aresult == ArtResult.ALREADY_CONNECTED)
          {
-         routing_board.userPrintln("how can it be already connected ?");
+         p_board.userPrintln("how can it be already connected ?");
          return true;
          }
       
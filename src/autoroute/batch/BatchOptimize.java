@@ -20,6 +20,7 @@ import freert.rules.BoardRules;
 import freert.varie.UndoObjectNode;
 import freert.varie.UndoObjectStorable;
 import interactive.BrdActionThread;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
@@ -43,8 +44,11 @@ public class BatchOptimize
 
    private boolean use_increased_ripup_costs; // in the first passes the ripup costs are icreased for better performance.
    private double min_cumulative_trace_length_before = 0;
-   private static int MAX_AUTOROUTE_PASSES = 6;
+   static int MAX_AUTOROUTE_PASSES = 6;
    private static int ADDITIONAL_RIPUP_COST_FACTOR_AT_START = 10;
+   
+   // used when more than one thread is configured, null otherwise
+   private final BatchParallelOptimizer parallel_optimizer;
 
    /**
     * To optimize the route on the board after the autoroute task is finished.
@@ -54,6 +58,13 @@ public class BatchOptimize
       batch_thread = p_thread;
       r_board = p_thread.hdlg.get_routing_board();
       sorted_route_items = new BatchSortedRouteItems(r_board);
+      
+      int thread_count = Math.min(p_thread.hdlg.itera_settings.autoroute_settings.get_parallel_threads(), Runtime.getRuntime().availableProcessors());
+      
+      if ( thread_count > 1 )
+         parallel_optimizer = new BatchParallelOptimizer(this, p_thread, thread_count);
+      else
+         parallel_optimizer = null;
       }
 
    /**
@@ -77,6 +88,8 @@ public class BatchOptimize
          
          route_improved = optimize_route_pass(curr_pass_no, with_prefered_directions);
          }
+      
+      r_board.userPrintln("After optimize: "+r_board.contact_cache_stat());
       }
 
    /**
@@ -95,7 +108,25 @@ public class BatchOptimize
 
       min_cumulative_trace_length_before = calc_weighted_trace_length(r_board);
 
-      while ( ! batch_thread.is_stop_requested() )
+      boolean run_serial = true;
+      
+      if ( parallel_optimizer != null )
+         {
+         // the items are taken at the start of the pass, the workers try them on copies of the board
+         ArrayList<BrdItem> item_list = new ArrayList<BrdItem>();
+         
+         for (BrdItem curr_item = sorted_route_items.next(); curr_item != null; curr_item = sorted_route_items.next()) item_list.add(curr_item);
+         
+         sorted_route_items.clear();
+         
+         if ( parallel_optimizer.pass_prepare(item_list) )
+            {
+            route_improved = parallel_optimizer.optimize_pass(p_pass_no, p_with_prefered_directions);
+            run_serial = false;
+            }
+         }
+      
+      while ( run_serial && ! batch_thread.is_stop_requested() )
          {
          BrdItem curr_item = sorted_route_items.next();
 
@@ -149,10 +180,18 @@ public class BatchOptimize
    
    
    
+   /**
+    * The trace length the next improvement must be shorter than, when the board has been changed by someone else
+    */
+   void trace_length_baseline_reset()
+      {
+      min_cumulative_trace_length_before = calc_weighted_trace_length(r_board);
+      }
+   
    /**
     * Tries to improve the route by rerouting the connections containing p_item.
     */
-   private boolean optimize_item_route(BrdItem p_item, int p_pass_no, boolean p_with_prefered_directions)
+   boolean optimize_item_route(BrdItem p_item, int p_pass_no, boolean p_with_prefered_directions)
       {
       java.util.ResourceBundle resources = java.util.ResourceBundle.getBundle("interactive.resources.InteractiveState", batch_thread.hdlg.get_locale());
       String start_message = resources.getString("batch_optimizer") + " " + resources.getString("stop_message") + "        " + resources.getString("pass") + " " + (new Integer(p_pass_no)).toString()
@@ -163,6 +202,53 @@ public class BatchOptimize
       int incomplete_count_before = batch_thread.hdlg.get_ratsnest().incomplete_count();
       int via_count_before = r_board.get_vias().size();
       
+      Set<BrdItem> ripped_connections = get_ripped_connections(p_item);
+      
+      if ( ripped_connections == null ) return false;
+      
+      r_board.generate_snapshot();
+      
+      r_board.remove_items_unfixed(ripped_connections);
+      
+      for (int i = 0; i < p_item.net_count(); ++i)
+         {
+         r_board.combine_traces(p_item.get_net_no(i));
+         }
+      
+      int ripup_costs = get_ripup_costs(p_item);
+      
+      optimize_item_autoroute(batch_thread, MAX_AUTOROUTE_PASSES, ripup_costs, p_with_prefered_directions);
+      
+      batch_thread.hdlg.remove_ratsnest();
+      int incomplete_count_after = batch_thread.hdlg.get_ratsnest().incomplete_count();
+      int via_count_after = r_board.get_vias().size();
+      double trace_length_after = calc_weighted_trace_length(r_board);
+      
+      boolean route_improved = !batch_thread.is_stop_requested()
+            && is_improved(incomplete_count_before, via_count_before, min_cumulative_trace_length_before, incomplete_count_after, via_count_after, trace_length_after);
+      
+      if (route_improved)
+         {
+         min_cumulative_trace_length_before = next_trace_length_baseline(incomplete_count_before, via_count_before, min_cumulative_trace_length_before, incomplete_count_after, via_count_after, trace_length_after);
+         
+         r_board.pop_snapshot();
+         
+         double new_trace_length = batch_thread.hdlg.coordinate_transform.board_to_user(r_board.cumulative_trace_length());
+         batch_thread.hdlg.screen_messages.set_post_route_info(via_count_after, new_trace_length);
+         }
+      else
+         {
+         r_board.undo(null);
+         }
+      
+      return route_improved;
+      }
+
+   /**
+    * @return the connections to rip up to route p_item again, null if some of them is fixed by the user
+    */
+   static Set<BrdItem> get_ripped_connections(BrdItem p_item)
+      {
       Set<BrdItem> ripped_items = new TreeSet<BrdItem>();
       ripped_items.add(p_item);
       
@@ -192,19 +278,18 @@ public class BatchOptimize
          {
          if (curr_item.is_user_fixed())
             {
-            return false;
+            return null;
             }
          }
       
-      r_board.generate_snapshot();
-      
-      r_board.remove_items_unfixed(ripped_connections);
-      
-      for (int i = 0; i < p_item.net_count(); ++i)
-         {
-         r_board.combine_traces(p_item.get_net_no(i));
-         }
-      
+      return ripped_connections;
+      }
+
+   /**
+    * @return the ripup costs to use when routing again the connections of p_item
+    */
+   int get_ripup_costs(BrdItem p_item)
+      {
       int ripup_costs = batch_thread.hdlg.itera_settings.autoroute_settings.get_start_ripup_costs();
       if (use_increased_ripup_costs)
          {
@@ -215,44 +300,33 @@ public class BatchOptimize
          // taking less ripup costs seems to produce better results
          ripup_costs = (int) Math.round(0.6 * (double) ripup_costs);
          }
-      
-      optimize_item_autoroute(batch_thread, MAX_AUTOROUTE_PASSES, ripup_costs, p_with_prefered_directions);
-      
-      batch_thread.hdlg.remove_ratsnest();
-      int incomplete_count_after = batch_thread.hdlg.get_ratsnest().incomplete_count();
-      int via_count_after = r_board.get_vias().size();
-      double trace_length_after = calc_weighted_trace_length(r_board);
-      
-      boolean route_improved = !batch_thread.is_stop_requested()
-            && (incomplete_count_after < incomplete_count_before || incomplete_count_after == incomplete_count_before
-                  && (via_count_after < via_count_before || via_count_after == via_count_before && min_cumulative_trace_length_before > trace_length_after));
-      
-      if (route_improved)
+      return ripup_costs;
+      }
+
+   /**
+    * A route is better if it has less incompletes, then less vias, then a shorter weighted trace length
+    */
+   static boolean is_improved(int p_incomplete_before, int p_via_before, double p_length_before, int p_incomplete_after, int p_via_after, double p_length_after)
+      {
+      return p_incomplete_after < p_incomplete_before || p_incomplete_after == p_incomplete_before
+            && (p_via_after < p_via_before || p_via_after == p_via_before && p_length_before > p_length_after);
+      }
+
+   /**
+    * @return the trace length the next improvement has to be shorter than, after an improvement has been accepted
+    */
+   static double next_trace_length_baseline(int p_incomplete_before, int p_via_before, double p_length_before, int p_incomplete_after, int p_via_after, double p_length_after)
+      {
+      if (p_incomplete_after < p_incomplete_before || p_incomplete_after == p_incomplete_before && p_via_after < p_via_before)
          {
-         if (incomplete_count_after < incomplete_count_before || incomplete_count_after == incomplete_count_before && via_count_after < via_count_before)
-            {
-            min_cumulative_trace_length_before = trace_length_after;
-            }
-         else
-            {
-            // Only cumulative trace length shortened.
-            // Catch unexpected increase of cumulative trace length somewhere for examole by removing acid trapsw.
-            min_cumulative_trace_length_before = Math.min(min_cumulative_trace_length_before, trace_length_after);
-            }
-         
-         r_board.pop_snapshot();
-         
-         double new_trace_length = batch_thread.hdlg.coordinate_transform.board_to_user(r_board.cumulative_trace_length());
-         batch_thread.hdlg.screen_messages.set_post_route_info(via_count_after, new_trace_length);
-         }
-      else
-         {
-         r_board.undo(null);
+         return p_length_after;
          }
       
-      return route_improved;
+      // Only cumulative trace length shortened.
+      // Catch unexpected increase of cumulative trace length somewhere for examole by removing acid trapsw.
+      return Math.min(p_length_before, p_length_after);
       }
-
+   
    static boolean contains_only_unfixed_traces(Collection<BrdItem> p_item_list)
       {
       for (BrdItem curr_item : p_item_list)
@@ -268,7 +342,7 @@ public class BatchOptimize
    /**
     * Calculates the cumulative trace lengths multiplied by the trace radius of all traces on the board, which are not shove_fixed.
     */
-   private double calc_weighted_trace_length(RoutingBoard p_board)
+   static double calc_weighted_trace_length(RoutingBoard p_board)
       {
       double result = 0;
       
@@ -282,31 +356,54 @@ public class BatchOptimize
 
          if ( ! ( curr_item instanceof BrdTracep) ) continue;
          
-         BrdTracep curr_trace = (BrdTracep) curr_item;
-         
-         ItemFixState fixed_state = curr_trace.get_fixed_state();
-
-         if ( ! (fixed_state == ItemFixState.UNFIXED || fixed_state == ItemFixState.SHOVE_FIXED) ) continue;
+         result += calc_weighted_trace_length(p_board, (BrdTracep) curr_item);
+         }
 
-         int clearance_value = p_board.get_clearance(curr_trace.clearance_idx(), BoardRules.clearance_default_idx, curr_trace.get_layer());
-         
-         int half_width = curr_trace.get_half_width();
+      return result;
+      }
 
-         double trace_len = curr_trace.get_length();
-         
-         double weighted_trace_length = trace_len * (half_width + clearance_value);
-         
-         if (fixed_state == ItemFixState.SHOVE_FIXED)
-            {
-            // to produce less violations with pin exit directions.
-            weighted_trace_length /= 2;
-            }
+   /**
+    * @return the weighted trace length of the traces in p_items, as calc_weighted_trace_length(RoutingBoard) counts them
+    */
+   static double calc_weighted_trace_length(RoutingBoard p_board, Collection<BrdItem> p_items)
+      {
+      double result = 0;
+      
+      for ( BrdItem curr_item : p_items )
+         {
+         if ( ! ( curr_item instanceof BrdTracep) ) continue;
          
-         result += weighted_trace_length;
+         result += calc_weighted_trace_length(p_board, (BrdTracep) curr_item);
          }
 
       return result;
       }
+   
+   /**
+    * @return the trace length multiplied by the trace radius plus clearance, 0 if the trace is fixed
+    */
+   private static double calc_weighted_trace_length(RoutingBoard p_board, BrdTracep p_trace)
+      {
+      ItemFixState fixed_state = p_trace.get_fixed_state();
+
+      if ( ! (fixed_state == ItemFixState.UNFIXED || fixed_state == ItemFixState.SHOVE_FIXED) ) return 0;
+
+      int clearance_value = p_board.get_clearance(p_trace.clearance_idx(), BoardRules.clearance_default_idx, p_trace.get_layer());
+      
+      int half_width = p_trace.get_half_width();
+
+      double trace_len = p_trace.get_length();
+      
+      double weighted_trace_length = trace_len * (half_width + clearance_value);
+      
+      if (fixed_state == ItemFixState.SHOVE_FIXED)
+         {
+         // to produce less violations with pin exit directions.
+         weighted_trace_length /= 2;
+         }
+      
+      return weighted_trace_length;
+      }
 
    /**
     * @return the current position of the item, which will be rerouted or null, if the optimizer is not active.
@@ -0,0 +1,66 @@
+package autoroute.batch;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import board.items.BrdItem;
+import freert.planar.ShapeTileBox;
+
+/**
+ * A set of jobs whose route boxes overlap, so they must be routed one after the other by the same worker
+ * The box of a group does not intersect the box of any other group of the same pass
+ * @author damiano
+ */
+final class BatchParallelGroup
+   {
+   final ArrayList<BatchParallelJob> jobs = new ArrayList<BatchParallelJob>();
+
+   ShapeTileBox group_box = ShapeTileBox.EMPTY;
+
+   // filled by the worker, the items as they were before routing, only the id is relevant
+   final LinkedList<BrdItem> deleted_items = new LinkedList<BrdItem>();
+   // filled by the worker, the items as they are after routing, they belong to the worker board
+   final LinkedList<BrdItem> created_items = new LinkedList<BrdItem>();
+
+   // set when the worker had a problem, the jobs must then be routed serially
+   boolean worker_failed;
+
+   BatchParallelGroup(BatchParallelJob p_job)
+      {
+      add(p_job);
+      }
+
+   void add(BatchParallelJob p_job)
+      {
+      jobs.add(p_job);
+      group_box = group_box.union(p_job.route_box);
+      }
+
+   /**
+    * Move all jobs of p_other into this group
+    */
+   void absorb(BatchParallelGroup p_other)
+      {
+      for (BatchParallelJob a_job : p_other.jobs ) add(a_job);
+      }
+
+   int job_count()
+      {
+      return jobs.size();
+      }
+   }
@@ -0,0 +1,41 @@
+package autoroute.batch;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import board.items.BrdItem;
+import freert.planar.ShapeTileBox;
+
+/**
+ * One connection to route in a parallel pass, it is one item and one net of the item
+ * @author damiano
+ */
+final class BatchParallelJob
+   {
+   final BrdItem item;           // the item on the real board, workers find their copy using the id
+   final int net_no;
+   final ShapeTileBox route_box; // the area where the routing of this job is allowed to change the board
+
+   boolean routed;
+   int ripped_count;
+
+   BatchParallelJob(BrdItem p_item, int p_net_no, ShapeTileBox p_route_box)
+      {
+      item = p_item;
+      net_no = p_net_no;
+      route_box = p_route_box;
+      }
+   }
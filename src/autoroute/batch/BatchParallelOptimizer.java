@@ -0,0 +1,384 @@
+package autoroute.batch;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.BrdActionThread;
+import interactive.IteraBoard;
+import interactive.RatsNest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import board.RoutingBoard;
+import board.items.BrdAbitVia;
+import board.items.BrdItem;
+import freert.planar.ShapeTileBox;
+
+/**
+ * Runs an optimizer pass using many threads, speculatively
+ * Items whose areas are far apart are tried by workers, each one on its own copy of the board, exactly as the serial optimizer does:
+ * rip up the connections of the item, route them again and keep the result only if it is better.
+ * The coordinator then applies the kept changes of a group to the real board and checks that the board is really better,
+ * incompletes, then vias, then weighted trace length, otherwise the changes are undone.
+ * This is done in rounds, each one made of the items not yet tried whose areas do not intersect, 
+ * until there are less than two of them. The rest, items whose changes cannot be applied and items 
+ * with an area too big to share, are optimized serially
+ * @author damiano
+ */
+final class BatchParallelOptimizer
+   {
+   private static final String classname="BatchParallelOptimizer.";
+
+   private final BatchOptimize optimize;
+   private final BrdActionThread s_thread;
+   private final IteraBoard hdlg;
+   private final RoutingBoard routing_board;
+   private final int thread_count;
+   // groups the jobs, runs the workers and applies their changes, as for routing
+   private final BatchParallelRouter parallel_router;
+
+   // items of the current pass not yet tried, in ascending position
+   private final LinkedList<BrdItem> pending_items = new LinkedList<BrdItem>();
+   // items of the current pass to be optimized serially
+   private final LinkedList<BrdItem> serial_items = new LinkedList<BrdItem>();
+   // the items tried together by the workers, one group each, their areas do not intersect
+   private ArrayList<BatchParallelGroup> round_groups = new ArrayList<BatchParallelGroup>();
+   
+   // set for the current pass, the workers read them
+   private volatile int pass_no;
+   private volatile boolean with_prefered_directions;
+
+   BatchParallelOptimizer(BatchOptimize p_optimize, BrdActionThread p_thread, int p_thread_count)
+      {
+      optimize = p_optimize;
+      s_thread = p_thread;
+      hdlg = p_thread.hdlg;
+      routing_board = hdlg.get_routing_board();
+      thread_count = p_thread_count;
+      
+      BatchAutorouter autorouter = new BatchAutorouter(p_thread, false, hdlg.itera_settings.autoroute_settings.get_start_ripup_costs());
+      
+      parallel_router = new BatchParallelRouter(autorouter, p_thread, p_thread_count);
+      }
+
+   /**
+    * Takes the items of the pass, in ascending position, and picks the first round of items far apart
+    * @return false if less than two items can be tried together, nothing to gain in copying the board, the pass should be run serially
+    */
+   boolean pass_prepare(ArrayList<BrdItem> p_item_list)
+      {
+      pending_items.clear();
+      pending_items.addAll(p_item_list);
+      serial_items.clear();
+      
+      round_next();
+
+      if ( round_groups.size() >= 2 ) return true;
+
+      hdlg.userPrintln(classname+"pass_prepare: threads="+thread_count+" items far apart="+round_groups.size()+" the pass is run serially");
+      
+      return false;
+      }
+   
+   /**
+    * Tries to improve the route of the items given to pass_prepare
+    * Rounds of items far apart are given to the workers until there are less than two of them, the rest is done serially
+    * @return true if the route was improved
+    */
+   boolean optimize_pass(int p_pass_no, boolean p_with_prefered_directions)
+      {
+      long start_time = System.currentTimeMillis();
+      
+      pass_no = p_pass_no;
+      with_prefered_directions = p_with_prefered_directions;
+      
+      boolean route_improved = false;
+      int round_count = 0;
+      int tried_count = 0;
+      int committed_count = 0;
+      int rejected_count = 0;
+      
+      parallel_router.timings_clear();
+      
+      while ( round_groups.size() >= 2 && ! s_thread.is_stop_requested() )
+         {
+         round_count++;
+         tried_count += round_groups.size();
+         
+         ArrayList<BatchParallelWorker> workers = parallel_router.run_workers(round_groups, p_pass_no, this);
+
+         // the workers start from this board, the deleted items are looked up here
+         HashMap<Integer,BrdItem> board_items = new HashMap<Integer,BrdItem>();
+
+         for ( BrdItem curr_item : routing_board.get_items() ) board_items.put(curr_item.get_id_no(), curr_item);
+
+         for ( BatchParallelWorker a_worker : workers )
+            {
+            for ( BatchParallelGroup a_group : a_worker.groups )
+               {
+               // no item of the group could be improved
+               if ( ! a_group.worker_failed && a_group.created_items.isEmpty() && a_group.deleted_items.isEmpty() ) continue;
+               
+               if ( commit_group(a_group, board_items) )
+                  {
+                  committed_count++;
+                  route_improved = true;
+                  }
+               else
+                  {
+                  rejected_count++;
+                  for ( BatchParallelJob curr_job : a_group.jobs ) serial_items.add(curr_job.item);
+                  }
+               }
+            }
+         
+         hdlg.repaint();
+         
+         round_next();
+         }
+      
+      // what is left of the last round goes with the serial items
+      for ( BatchParallelGroup a_group : round_groups )
+         for ( BatchParallelJob curr_job : a_group.jobs ) serial_items.add(curr_job.item);
+      
+      serial_items.addAll(pending_items);
+      pending_items.clear();
+      round_groups.clear();
+      
+      // the serial optimizer compares the trace length with the board as it is now
+      optimize.trace_length_baseline_reset();
+      
+      int serial_count = serial_items.size();
+      
+      if ( optimize_serial(serial_items) ) route_improved = true;
+      
+      hdlg.userPrintln(classname+"optimize_pass "+p_pass_no+": threads="+thread_count+" rounds="+round_count+" tried="+tried_count
+            +" committed="+committed_count+" rejected="+rejected_count+" optimized serially="+serial_count+" time="+(System.currentTimeMillis()-start_time)+"ms"
+            +parallel_router.timings_info());
+      
+      return route_improved;
+      }
+
+   /**
+    * Takes out of the pending items the next round, in ascending position each item whose area does not intersect the ones already taken
+    * The area is around the connections that are ripped up to route the item again, items with a big area go to the serial items
+    */
+   private void round_next()
+      {
+      round_groups = new ArrayList<BatchParallelGroup>();
+      
+      double max_parallel_area = parallel_router.max_parallel_area();
+      
+      Iterator<BrdItem> iter = pending_items.iterator();
+      
+      while ( iter.hasNext() )
+         {
+         BrdItem curr_item = iter.next();
+         
+         // a committed change may have ripped it
+         if ( ! curr_item.is_on_the_board() )
+            {
+            iter.remove();
+            continue;
+            }
+         
+         Set<BrdItem> ripped_connections = BatchOptimize.get_ripped_connections(curr_item);
+         
+         // the serial optimizer would not touch it
+         if ( ripped_connections == null ) 
+            {
+            iter.remove();
+            continue;
+            }
+         
+         ShapeTileBox item_box = parallel_router.route_box(routing_board.get_bounding_box(ripped_connections));
+         
+         if ( item_box.is_empty() || item_box.area() > max_parallel_area )
+            {
+            serial_items.add(curr_item);
+            iter.remove();
+            continue;
+            }
+         
+         if ( intersects_round(item_box) ) continue;
+         
+         round_groups.add(new BatchParallelGroup(new BatchParallelJob(curr_item, curr_item.get_net_no(0), item_box)));
+         iter.remove();
+         }
+      }
+   
+   private boolean intersects_round(ShapeTileBox p_box)
+      {
+      for ( BatchParallelGroup a_group : round_groups )
+         if ( a_group.group_box.intersects(p_box) ) return true;
+      
+      return false;
+      }
+
+
+   private boolean optimize_serial(LinkedList<BrdItem> p_item_list)
+      {
+      boolean route_improved = false;
+      
+      for ( BrdItem curr_item : p_item_list )
+         {
+         if ( s_thread.is_stop_requested() ) break;
+         
+         // it may have been ripped by an item optimized before
+         if ( ! curr_item.is_on_the_board() ) continue;
+         
+         if ( optimize.optimize_item_route(curr_item, pass_no, with_prefered_directions) ) route_improved = true;
+         }
+      
+      return route_improved;
+      }
+   
+   /**
+    * Applies the changes of a group and keeps them only if the board is really better
+    * Only the items of the group change, so their vias and trace length are compared instead of the ones of the whole board
+    * The ratsnest computes again only the nets that have changed
+    */
+   private boolean commit_group(BatchParallelGroup p_group, HashMap<Integer,BrdItem> p_board_items)
+      {
+      // the items of the real board that the group removes, group_apply takes them out of p_board_items
+      ArrayList<BrdItem> removed_items = new ArrayList<BrdItem>(p_group.deleted_items.size());
+      
+      for ( BrdItem w_item : p_group.deleted_items )
+         {
+         BrdItem curr_item = p_board_items.get(w_item.get_id_no());
+         
+         if ( curr_item != null ) removed_items.add(curr_item);
+         }
+      
+      hdlg.remove_ratsnest();
+      int incomplete_count_before = hdlg.get_ratsnest().incomplete_count();
+      
+      routing_board.generate_snapshot();
+      
+      if ( ! parallel_router.group_apply(p_group, p_board_items) )
+         {
+         // nothing has been changed
+         routing_board.pop_snapshot();
+         return false;
+         }
+      
+      hdlg.remove_ratsnest();
+      int incomplete_count_after = hdlg.get_ratsnest().incomplete_count();
+      
+      int via_count_before = via_count(removed_items);
+      int via_count_after = via_count(p_group.created_items);
+      double trace_length_before = BatchOptimize.calc_weighted_trace_length(routing_board, removed_items);
+      double trace_length_after = BatchOptimize.calc_weighted_trace_length(routing_board, p_group.created_items);
+      
+      if ( BatchOptimize.is_improved(incomplete_count_before, via_count_before, trace_length_before, incomplete_count_after, via_count_after, trace_length_after) )
+         {
+         routing_board.pop_snapshot();
+         return true;
+         }
+      
+      routing_board.undo(null);
+      
+      return false;
+      }
+   
+   private int via_count(Collection<BrdItem> p_items)
+      {
+      int risul = 0;
+      
+      for ( BrdItem curr_item : p_items )
+         if ( curr_item instanceof BrdAbitVia ) risul++;
+      
+      return risul;
+      }
+   
+   /**
+    * Called by a worker before the jobs of a group, its board is as at the start of the pass
+    */
+   void group_start(BatchParallelWorker p_worker, RoutingBoard p_board)
+      {
+      if ( p_worker.w_ratsnest == null || ! p_worker.w_ratsnest.update(p_board) ) 
+         p_worker.w_ratsnest = new RatsNest(p_board, hdlg.get_stat());
+      
+      p_worker.w_min_trace_length = BatchOptimize.calc_weighted_trace_length(p_board);
+      }
+
+   /**
+    * Called by a worker, tries to improve the route of the item of p_job on the worker board
+    * The changes are kept if the worker board is better, they are then part of the changes of the group
+    * @return true if the route was improved
+    */
+   boolean optimize_job(BatchParallelWorker p_worker, RoutingBoard p_board, BatchParallelJob p_job)
+      {
+      // the version of the item on the worker board, an earlier job of the group may have ripped it
+      BrdItem w_item = p_board.get_route_item(p_job.item);
+      
+      if ( w_item == null ) return false;
+      
+      Set<BrdItem> ripped_connections = BatchOptimize.get_ripped_connections(w_item);
+      
+      if ( ripped_connections == null ) return false;
+
+      p_worker.w_ratsnest.update(p_board);
+      int incomplete_count_before = p_worker.w_ratsnest.incomplete_count();
+      int via_count_before = p_board.get_vias().size();
+      
+      p_board.generate_snapshot();
+
+      p_board.remove_items_unfixed(ripped_connections);
+
+      for (int index = 0; index < w_item.net_count(); ++index) p_board.combine_traces(w_item.get_net_no(index));
+
+      BatchAutorouter router_instance = new BatchAutorouter(s_thread, p_board, with_prefered_directions, optimize.get_ripup_costs(w_item));
+      
+      // the serial optimizer routes every connection of the board, the changes of a worker must stay in the area of its job
+      router_instance.set_route_area(parallel_router.allowed_box(p_job.route_box));
+
+      for (int curr_pass_no = 1; curr_pass_no <= BatchOptimize.MAX_AUTOROUTE_PASSES; curr_pass_no++ )
+         {
+         if ( s_thread.is_stop_requested() ) break;
+         
+         if ( router_instance.autoroute_pass(curr_pass_no) <= 0 ) break;
+         }
+      
+      // the tails of other nets may be anywhere on the board
+      router_instance.remove_tails(p_job.net_no);
+      
+      p_worker.w_ratsnest.update(p_board);
+      int incomplete_count_after = p_worker.w_ratsnest.incomplete_count();
+      int via_count_after = p_board.get_vias().size();
+      double trace_length_after = BatchOptimize.calc_weighted_trace_length(p_board);
+      
+      boolean route_improved = ! s_thread.is_stop_requested() 
+            && BatchOptimize.is_improved(incomplete_count_before, via_count_before, p_worker.w_min_trace_length, incomplete_count_after, via_count_after, trace_length_after);
+      
+      if ( route_improved )
+         {
+         p_worker.w_min_trace_length = BatchOptimize.next_trace_length_baseline(incomplete_count_before, via_count_before, p_worker.w_min_trace_length, incomplete_count_after, via_count_after, trace_length_after);
+         
+         // the changes become part of the group snapshot, the worker takes them back at the end of the group to record them
+         p_board.pop_snapshot();
+         }
+      else
+         {
+         p_board.undo(null);
+         }
+      
+      return route_improved;
+      }
+   }
@@ -0,0 +1,83 @@
+package autoroute.batch;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.HashMap;
+import board.infos.BrdComponent;
+import board.items.BrdItem;
+import freert.host.ObserverItem;
+
+/**
+ * Observer set on a worker board while the changes of a group are undone
+ * Undo cancels the items as they are after routing and restores the ones that were there before
+ * so, by listening to undo the group gets exactly what has been changed by the routing
+ * @author damiano
+ */
+final class BatchParallelRecorder implements ObserverItem
+   {
+   private final BatchParallelGroup group;
+   private final HashMap<Integer,BrdItem> worker_items;
+
+   /**
+    * @param p_worker_items the id map of the worker, restored items replace the stale ones
+    */
+   BatchParallelRecorder(BatchParallelGroup p_group, HashMap<Integer,BrdItem> p_worker_items)
+      {
+      group = p_group;
+      worker_items = p_worker_items;
+      }
+
+   /**
+    * Undo is cancelling an item that was created or changed by routing
+    */
+   public void notify_deleted(BrdItem p_item)
+      {
+      group.created_items.add(p_item);
+      }
+
+   public void notify_changed(BrdItem p_item)
+      {
+      // undo does not change items in place
+      group.worker_failed = true;
+      }
+
+   /**
+    * Undo is restoring an item that was deleted or changed by routing
+    */
+   public void notify_new(BrdItem p_item)
+      {
+      group.deleted_items.add(p_item);
+      worker_items.put(p_item.get_id_no(), p_item);
+      }
+
+   public void notify_moved(BrdComponent p_component)
+      {
+      }
+
+   public void activate()
+      {
+      }
+
+   public void deactivate()
+      {
+      }
+
+   public boolean is_active()
+      {
+      return true;
+      }
+   }
@@ -0,0 +1,514 @@
+package autoroute.batch;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import autoroute.varie.ArtMetrics;
+import interactive.BrdActionThread;
+import interactive.IteraBoard;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import board.RoutingBoard;
+import board.items.BrdAbitVia;
+import board.items.BrdItem;
+import board.items.BrdTracep;
+import freert.library.LibPadstack;
+import freert.planar.ShapeTileBox;
+
+/**
+ * Routes one autoroute pass using many threads
+ * Connections are grouped so that the areas of different groups are far apart, each worker routes its groups
+ * on a copy of the board and the changes are then applied to the real board one group at a time.
+ * A group whose changes are not well inside its area is thrown away and routed again serially,
+ * so the result is always a legal board, even if the routing engine wanders outside of the expected area
+ * Connections spanning a large part of the board are routed serially before the parallel part
+ * @author damiano
+ */
+final class BatchParallelRouter
+   {
+   private static final String classname="BatchParallelRouter.";
+
+   private final BatchAutorouter autorouter;
+   private final BrdActionThread s_thread;
+   private final IteraBoard hdlg;
+   private final RoutingBoard routing_board;
+   private final int thread_count;
+
+   // changes of a group must be at least this far from the group border, so they cannot interfere with other groups
+   private final int guard_distance;
+   // how much the routing is expected to go outside the bounding box of a net
+   private final int route_margin;
+
+   private int items_to_go_count;
+   private int routed_count;
+   private int ripped_item_count;
+   private int failed_count;
+   
+   // timings of the current pass, in ms
+   private long serialize_time;
+   private long commit_time;
+   private long worker_copy_max;
+   private long worker_route_max;
+   private long worker_sum;
+
+   BatchParallelRouter(BatchAutorouter p_autorouter, BrdActionThread p_thread, int p_thread_count)
+      {
+      autorouter = p_autorouter;
+      s_thread = p_thread;
+      hdlg = p_thread.hdlg;
+      routing_board = hdlg.get_routing_board();
+      thread_count = p_thread_count;
+
+      int max_clearance = 0;
+
+      for (int index = 0; index < routing_board.get_layer_count(); ++index)
+         max_clearance = Math.max(max_clearance, routing_board.brd_rules.clearance_matrix.max_value(index));
+
+      double max_width = Math.max(routing_board.brd_rules.get_default_via_diameter(), 2 * routing_board.brd_rules.get_max_trace_half_width());
+
+      guard_distance = (int)Math.ceil(max_clearance + max_width);
+      route_margin = 2 * guard_distance;
+      }
+
+   /**
+    * Autoroute the given items, one job for each net of the item
+    * @return the number of failed connections
+    */
+   int autoroute_pass(Collection<BrdItem> p_item_list, int p_pass_no)
+      {
+      long start_time = System.currentTimeMillis();
+
+      items_to_go_count = p_item_list.size();
+      routed_count = 0;
+      ripped_item_count = 0;
+      failed_count = 0;
+      commit_time = 0;
+      timings_clear();
+
+      autorouter.autoroute_info_show(items_to_go_count, routed_count, ripped_item_count, failed_count);
+
+      LinkedList<BatchParallelJob> all_jobs = new LinkedList<BatchParallelJob>();
+      LinkedList<BatchParallelJob> serial_jobs = new LinkedList<BatchParallelJob>();
+      LinkedList<BatchParallelJob> parallel_jobs = new LinkedList<BatchParallelJob>();
+
+      split_jobs(p_item_list, all_jobs, serial_jobs, parallel_jobs);
+
+      ArrayList<BatchParallelGroup> group_list = make_groups(parallel_jobs);
+
+      if ( group_list.size() < 2 )
+         {
+         // nothing to gain in copying the board, route in the same order as the serial pass, so the result is the same
+         route_serial(all_jobs, p_pass_no);
+         
+         hdlg.userPrintln(classname+"autoroute_pass "+p_pass_no+": threads="+thread_count+" groups="+group_list.size()
+               +" routed serially="+all_jobs.size()+" failed="+failed_count+" time="+(System.currentTimeMillis()-start_time)+"ms");
+         
+         return failed_count;
+         }
+      
+      // the big connections go first, they would force everything else into the same group
+      route_serial(serial_jobs, p_pass_no);
+
+      int committed_count = 0;
+      LinkedList<BatchParallelJob> rejected_jobs = new LinkedList<BatchParallelJob>();
+
+      if ( ! s_thread.is_stop_requested() )
+         {
+         ArrayList<BatchParallelWorker> workers = run_workers(group_list, p_pass_no, null);
+
+         long commit_start = System.currentTimeMillis();
+         
+         // the workers start from this board, the deleted items are looked up here
+         HashMap<Integer,BrdItem> board_items = new HashMap<Integer,BrdItem>();
+
+         for ( BrdItem curr_item : routing_board.get_items() ) board_items.put(curr_item.get_id_no(), curr_item);
+
+         for ( BatchParallelWorker a_worker : workers )
+            {
+            for ( BatchParallelGroup a_group : a_worker.groups )
+               {
+               if ( commit_group(a_group, board_items) )
+                  committed_count++;
+               else
+                  rejected_jobs.addAll(a_group.jobs);
+               }
+            }
+
+         commit_time = System.currentTimeMillis() - commit_start;
+         
+         hdlg.repaint();
+         }
+
+      route_serial(rejected_jobs, p_pass_no);
+
+      hdlg.userPrintln(classname+"autoroute_pass "+p_pass_no+": threads="+thread_count+" serial="+serial_jobs.size()
+            +" groups="+group_list.size()+" committed="+committed_count+" rerouted="+rejected_jobs.size()
+            +" routed="+routed_count+" failed="+failed_count+" time="+(System.currentTimeMillis()-start_time)+"ms"
+            +timings_info()+" commit="+commit_time+"ms");
+
+      return failed_count;
+      }
+
+   /**
+    * Jobs whose route box is too big to be routed together with others go into the serial list
+    * All jobs also go into p_all, in the order of the serial pass
+    */
+   private void split_jobs(Collection<BrdItem> p_item_list, Collection<BatchParallelJob> p_all, Collection<BatchParallelJob> p_serial, Collection<BatchParallelJob> p_parallel)
+      {
+      HashMap<Integer,ShapeTileBox> net_boxes = new HashMap<Integer,ShapeTileBox>();
+
+      double max_parallel_area = max_parallel_area();
+
+      for ( BrdItem curr_item : p_item_list )
+         {
+         for (int index = 0; index < curr_item.net_count(); index++)
+            {
+            int net_no = curr_item.get_net_no(index);
+
+            ShapeTileBox net_box = net_route_box(net_no, net_boxes);
+
+            BatchParallelJob a_job = new BatchParallelJob(curr_item, net_no, net_box);
+            
+            p_all.add(a_job);
+
+            if ( net_box.is_empty() || net_box.area() > max_parallel_area )
+               p_serial.add(a_job);
+            else
+               p_parallel.add(a_job);
+            }
+         }
+      }
+
+   /**
+    * @return the area where routing p_net_no may change the board, the boxes already computed are kept in p_net_boxes
+    */
+   ShapeTileBox net_route_box(int p_net_no, HashMap<Integer,ShapeTileBox> p_net_boxes)
+      {
+      ShapeTileBox net_box = p_net_boxes.get(p_net_no);
+
+      if ( net_box != null ) return net_box;
+      
+      net_box = route_box(routing_board.get_bounding_box(routing_board.get_connectable_items(p_net_no)));
+      p_net_boxes.put(p_net_no, net_box);
+      
+      return net_box;
+      }
+
+   /**
+    * @return the area where routing the items in p_items_box may change the board
+    */
+   ShapeTileBox route_box(ShapeTileBox p_items_box)
+      {
+      return p_items_box.offset(route_margin + guard_distance);
+      }
+
+   /**
+    * @return the area where the changes of a group with p_group_box are allowed
+    */
+   ShapeTileBox allowed_box(ShapeTileBox p_group_box)
+      {
+      return p_group_box.offset(-guard_distance);
+      }
+
+   /**
+    * @return the biggest route box of a job that is worth running in parallel with others
+    */
+   double max_parallel_area()
+      {
+      return routing_board.get_bounding_box().area() / thread_count;
+      }
+   
+   /**
+    * Merge jobs into groups until no two group boxes intersect
+    */
+   private ArrayList<BatchParallelGroup> make_groups(Collection<BatchParallelJob> p_jobs)
+      {
+      ArrayList<BatchParallelGroup> result = new ArrayList<BatchParallelGroup>();
+
+      for ( BatchParallelJob curr_job : p_jobs )
+         {
+         BatchParallelGroup new_group = new BatchParallelGroup(curr_job);
+
+         boolean merged = true;
+
+         // the group box grows while merging, so it may touch groups that were already checked
+         while ( merged )
+            {
+            merged = false;
+
+            Iterator<BatchParallelGroup> iter = result.iterator();
+
+            while ( iter.hasNext() )
+               {
+               BatchParallelGroup a_group = iter.next();
+
+               if ( ! a_group.group_box.intersects(new_group.group_box) ) continue;
+
+               new_group.absorb(a_group);
+               iter.remove();
+               merged = true;
+               }
+            }
+
+         result.add(new_group);
+         }
+
+      return result;
+      }
+
+   /**
+    * Give the groups to the workers, biggest first to the least loaded worker, then wait for all of them
+    * If p_optimizer is not null the workers try to optimize the items of the jobs instead of routing them
+    */
+   ArrayList<BatchParallelWorker> run_workers(ArrayList<BatchParallelGroup> p_groups, int p_pass_no, BatchParallelOptimizer p_optimizer)
+      {
+      ArrayList<BatchParallelWorker> workers = new ArrayList<BatchParallelWorker>(thread_count);
+
+      byte[] board_data = null;
+
+      try
+         {
+         long serialize_start = System.currentTimeMillis();
+         
+         // serialize once, each worker creates its own board from the same data
+         board_data = routing_board.copy_data();
+         
+         serialize_time += System.currentTimeMillis() - serialize_start;
+         }
+      catch ( Exception exc )
+         {
+         hdlg.userPrintln(classname+"run_workers: copy_data", exc);
+         }
+
+      int worker_count = Math.min(thread_count, p_groups.size());
+
+      for (int index = 0; index < worker_count; index++)
+         workers.add(new BatchParallelWorker(autorouter, p_optimizer, s_thread, board_data, hdlg.get_stat(), p_pass_no));
+
+      ArrayList<BatchParallelGroup> sorted_groups = new ArrayList<BatchParallelGroup>(p_groups);
+
+      Collections.sort(sorted_groups, new Comparator<BatchParallelGroup>()
+         {
+         public int compare(BatchParallelGroup p_a, BatchParallelGroup p_b)
+            {
+            return p_b.job_count() - p_a.job_count();
+            }
+         });
+
+      for ( BatchParallelGroup a_group : sorted_groups )
+         {
+         BatchParallelWorker least_loaded = workers.get(0);
+
+         for ( BatchParallelWorker a_worker : workers )
+            if ( a_worker.job_count < least_loaded.job_count ) least_loaded = a_worker;
+
+         least_loaded.add(a_group);
+         }
+
+      if ( board_data == null )
+         {
+         // all groups will be routed serially
+         for ( BatchParallelGroup a_group : p_groups ) a_group.worker_failed = true;
+         return workers;
+         }
+
+      ExecutorService executor = Executors.newFixedThreadPool(worker_count);
+
+      ArrayList<Future<BatchParallelWorker>> futures = new ArrayList<Future<BatchParallelWorker>>(worker_count);
+
+      for ( BatchParallelWorker a_worker : workers ) futures.add(executor.submit(a_worker));
+
+      for (int index = 0; index < worker_count; index++)
+         {
+         try
+            {
+            futures.get(index).get();
+            }
+         catch ( Exception exc )
+            {
+            hdlg.userPrintln(classname+"run_workers: worker "+index, exc);
+            for ( BatchParallelGroup a_group : workers.get(index).groups ) a_group.worker_failed = true;
+            }
+         }
+
+      executor.shutdown();
+
+      for ( BatchParallelWorker a_worker : workers )
+         {
+         worker_copy_max = Math.max(worker_copy_max, a_worker.copy_time_ms);
+         worker_route_max = Math.max(worker_route_max, a_worker.route_time_ms);
+         worker_sum += a_worker.copy_time_ms + a_worker.route_time_ms;
+         autorouter.metrics_add(a_worker.metrics);
+         }
+
+      return workers;
+      }
+
+   /**
+    * Clears the timings of the workers, they add up until the next clear, the optimizer runs the workers once for each round
+    */
+   void timings_clear()
+      {
+      serialize_time = 0;
+      worker_copy_max = 0;
+      worker_route_max = 0;
+      worker_sum = 0;
+      }
+
+   String timings_info()
+      {
+      return " serialize="+serialize_time+"ms worker_copy_max="+worker_copy_max+"ms worker_route_max="+worker_route_max+"ms worker_sum="+worker_sum+"ms";
+      }
+
+   /**
+    * Apply the changes of a group to the real board
+    * @return false if the group cannot be applied, the board is then unchanged
+    */
+   private boolean commit_group(BatchParallelGroup p_group, HashMap<Integer,BrdItem> p_board_items)
+      {
+      if ( ! group_apply(p_group, p_board_items) ) return false;
+
+      for ( BatchParallelJob curr_job : p_group.jobs ) job_done(curr_job);
+
+      return true;
+      }
+   
+   /**
+    * Apply the changes of a group to the real board, if they are well inside the area of the group
+    * @param p_board_items the items of the real board by id, as they were when the workers started, the removed items are taken out of it
+    * @return false if the group cannot be applied, the board is then unchanged
+    */
+   boolean group_apply(BatchParallelGroup p_group, HashMap<Integer,BrdItem> p_board_items)
+      {
+      if ( p_group.worker_failed ) return false;
+
+      ShapeTileBox allowed_box = allowed_box(p_group.group_box);
+
+      ArrayList<BrdItem> remove_list = new ArrayList<BrdItem>(p_group.deleted_items.size());
+
+      for ( BrdItem w_item : p_group.deleted_items )
+         {
+         BrdItem curr_item = p_board_items.get(w_item.get_id_no());
+
+         if ( curr_item == null ) return false;
+
+         if ( ! curr_item.bounding_box().is_contained_in(allowed_box) ) return false;
+
+         remove_list.add(curr_item);
+         }
+
+      for ( BrdItem w_item : p_group.created_items )
+         {
+         if ( ! (w_item instanceof BrdTracep || w_item instanceof BrdAbitVia) ) return false;
+
+         if ( ! w_item.bounding_box().is_contained_in(allowed_box) ) return false;
+         }
+
+      for ( BrdItem curr_item : remove_list )
+         {
+         routing_board.remove_item(curr_item);
+         p_board_items.remove(curr_item.get_id_no());
+         }
+
+      for ( BrdItem w_item : p_group.created_items ) routing_board.insert_item(new_board_item(w_item));
+
+      return true;
+      }
+
+   /**
+    * @return a copy of the worker item that belongs to the real board, with a new id
+    */
+   private BrdItem new_board_item(BrdItem p_item)
+      {
+      if ( p_item instanceof BrdTracep )
+         {
+         BrdTracep w_trace = (BrdTracep) p_item;
+
+         return new BrdTracep(
+               w_trace.polyline(),
+               w_trace.get_layer(),
+               w_trace.get_half_width(),
+               w_trace.net_nos,
+               w_trace.clearance_idx(),
+               0,
+               w_trace.get_fixed_state(),
+               routing_board);
+         }
+
+      BrdAbitVia w_via = (BrdAbitVia) p_item;
+
+      LibPadstack padstack = routing_board.brd_library.padstacks.get(w_via.get_padstack().pads_no);
+
+      return new BrdAbitVia(
+            padstack,
+            w_via.center_get(),
+            w_via.net_nos,
+            w_via.clearance_idx(),
+            0,
+            w_via.get_component_no(),
+            w_via.get_fixed_state(),
+            w_via.attach_allowed,
+            routing_board);
+      }
+
+   private void route_serial(Collection<BatchParallelJob> p_jobs, int p_pass_no)
+      {
+      ArtMetrics serial_metrics = new ArtMetrics();
+      
+      for ( BatchParallelJob curr_job : p_jobs )
+         {
+         if (s_thread.is_stop_requested()) break;
+
+         SortedSet<BrdItem> ripped_item_list = new TreeSet<BrdItem>();
+
+         routing_board.changed_area_clear();
+
+         curr_job.routed = autorouter.autoroute_item(routing_board, curr_job.item, curr_job.net_no, ripped_item_list, p_pass_no, serial_metrics);
+
+         curr_job.ripped_count = ripped_item_list.size();
+
+         if ( curr_job.routed ) hdlg.repaint();
+
+         job_done(curr_job);
+         }
+      
+      autorouter.metrics_add(serial_metrics);
+      }
+
+   private void job_done(BatchParallelJob p_job)
+      {
+      if ( p_job.routed )
+         routed_count++;
+      else
+         failed_count++;
+
+      --items_to_go_count;
+
+      ripped_item_count += p_job.ripped_count;
+
+      autorouter.autoroute_info_show(items_to_go_count, routed_count, ripped_item_count, failed_count);
+      }
+   }
@@ -0,0 +1,169 @@
+package autoroute.batch;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import autoroute.varie.ArtMetrics;
+import interactive.BrdActionThread;
+import interactive.RatsNest;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import board.RoutingBoard;
+import board.items.BrdItem;
+import freert.host.ObserverItemVoid;
+import freert.main.Stat;
+
+/**
+ * Routes a list of groups on a private copy of the board
+ * The autoroute engine and the search trees are not thread safe, so each worker must have its own board
+ * After each group the changes are undone, so every group is routed against the board as it was at the start of the pass
+ * The same is used by the optimizer, then each job is an item to rip up and route again
+ * @author damiano
+ */
+final class BatchParallelWorker implements Callable<BatchParallelWorker>
+   {
+   private static final String classname="BatchParallelWorker.";
+
+   private final BatchAutorouter autorouter;
+   // when not null the jobs are items to optimize
+   private final BatchParallelOptimizer optimizer;
+   private final BrdActionThread s_thread;
+   private final byte[] board_data;
+   private final Stat stat;
+   private final int pass_no;
+
+   final ArrayList<BatchParallelGroup> groups = new ArrayList<BatchParallelGroup>();
+   int job_count;
+   // cpu time spent by the worker thread creating its board and routing, to see what running in parallel can gain
+   long copy_time_ms;
+   long route_time_ms;
+   // what the worker has routed, added to the pass when the worker is done
+   final ArtMetrics metrics = new ArtMetrics();
+
+   private RoutingBoard w_board;
+   private HashMap<Integer,BrdItem> w_items;
+
+   // what the optimizer needs to judge the changes on the worker board
+   RatsNest w_ratsnest;
+   double w_min_trace_length;
+
+   BatchParallelWorker(BatchAutorouter p_autorouter, BatchParallelOptimizer p_optimizer, BrdActionThread p_thread, byte[] p_board_data, Stat p_stat, int p_pass_no)
+      {
+      autorouter = p_autorouter;
+      optimizer = p_optimizer;
+      s_thread = p_thread;
+      board_data = p_board_data;
+      stat = p_stat;
+      pass_no = p_pass_no;
+      }
+
+   void add(BatchParallelGroup p_group)
+      {
+      groups.add(p_group);
+      job_count += p_group.job_count();
+      }
+
+   @Override
+   public BatchParallelWorker call() throws Exception
+      {
+      long start_time = thread_time_ms();
+      
+      w_board = RoutingBoard.copy_from(board_data, stat);
+
+      w_items = new HashMap<Integer,BrdItem>();
+
+      for ( BrdItem curr_item : w_board.get_items() ) w_items.put(curr_item.get_id_no(), curr_item);
+
+      long copy_done = thread_time_ms();
+      
+      copy_time_ms = copy_done - start_time;
+      
+      for ( BatchParallelGroup curr_group : groups )
+         {
+         if ( s_thread.is_stop_requested() ) break;
+
+         route_group(curr_group);
+         }
+
+      route_time_ms = thread_time_ms() - copy_done;
+      
+      return this;
+      }
+
+   /**
+    * Cpu time of this thread, wall time if not available, threads share the cores so wall time would say little
+    */
+   private long thread_time_ms()
+      {
+      ThreadMXBean thread_bean = ManagementFactory.getThreadMXBean();
+      
+      if ( thread_bean.isCurrentThreadCpuTimeSupported() ) return thread_bean.getCurrentThreadCpuTime() / 1000000;
+      
+      return System.currentTimeMillis();
+      }
+
+   private void route_group(BatchParallelGroup p_group)
+      {
+      w_board.generate_snapshot();
+
+      try
+         {
+         if ( optimizer != null ) optimizer.group_start(this, w_board);
+         
+         for ( BatchParallelJob curr_job : p_group.jobs )
+            {
+            if ( s_thread.is_stop_requested() ) break;
+
+            if ( optimizer != null )
+               {
+               curr_job.routed = optimizer.optimize_job(this, w_board, curr_job);
+               continue;
+               }
+
+            BrdItem w_item = w_items.get(curr_job.item.get_id_no());
+
+            if ( w_item == null )
+               {
+               p_group.worker_failed = true;
+               break;
+               }
+
+            SortedSet<BrdItem> ripped_item_list = new TreeSet<BrdItem>();
+
+            w_board.changed_area_clear();
+
+            curr_job.routed = autorouter.autoroute_item(w_board, w_item, curr_job.net_no, ripped_item_list, pass_no, metrics);
+
+            curr_job.ripped_count = ripped_item_list.size();
+            }
+         }
+      catch ( Exception exc )
+         {
+         stat.userPrintln(classname+"route_group", exc);
+         p_group.worker_failed = true;
+         }
+
+      // take back the changes, the recorder tells the group what they were
+      w_board.observers = new BatchParallelRecorder(p_group, w_items);
+      w_board.undo(null);
+      w_board.observers = new ObserverItemVoid();
+      }
+   }
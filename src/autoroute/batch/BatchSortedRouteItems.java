@@ -15,24 +15,32 @@ package autoroute.batch;
  *
  */
 
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.Set;
+import java.util.TreeSet;
+import board.BrdItemListener;
 import board.RoutingBoard;
 import board.items.BrdAbitVia;
 import board.items.BrdItem;
 import board.items.BrdTracep;
 import freert.planar.PlaPointFloat;
-import freert.varie.UndoObjectNode;
-import freert.varie.UndoObjectStorable;
 
 /**
  * Reads the vias and traces on the board in ascending x order. 
- * Because the vias and traces on the board change while optimizing
- * the item list of the board is read from scratch each time the next route item is returned.
+ * The vias and traces on the board change while optimizing, so they are kept sorted by position in a tree 
+ * that is updated with the items the board says have changed, instead of reading the item list of the board on each next().
  */
-public class BatchSortedRouteItems
+public class BatchSortedRouteItems implements BrdItemListener
    {
    private final RoutingBoard r_board;
+   // vias and traces in the order they are returned, at the same position the vias come first
+   private final TreeSet<SortedRouteEntry> sorted_entries = new TreeSet<SortedRouteEntry>();
+   // the entry of each via and trace, by id
+   private final HashMap<Integer,SortedRouteEntry> item_entries = new HashMap<Integer,SortedRouteEntry>();
+   // items changed on the board since the entries were updated, by id
+   private final HashMap<Integer,BrdItem> changed_items = new HashMap<Integer,BrdItem>();
+   // true when the entries are filled and the board is telling the changes
+   private boolean entries_active = false;
 
    private PlaPointFloat min_item_coor;
    private int min_item_layer;
@@ -44,10 +52,21 @@ public class BatchSortedRouteItems
       clear();
       }
 
+   /**
+    * Starts again from the lowest position, the entries are dropped until next() is called
+    */
    public void clear ()
       {
       min_item_coor = new PlaPointFloat(Integer.MIN_VALUE, Integer.MIN_VALUE);
       min_item_layer = -1;
+      
+      if ( ! entries_active ) return;
+      
+      r_board.item_listener_remove(this);
+      sorted_entries.clear();
+      item_entries.clear();
+      changed_items.clear();
+      entries_active = false;
       }
    
    public PlaPointFloat get_current_position()
@@ -55,97 +74,154 @@ public class BatchSortedRouteItems
       return min_item_coor;
       }
    
+   @Override
+   public void item_changed(BrdItem p_item)
+      {
+      if ( p_item instanceof BrdAbitVia || p_item instanceof BrdTracep ) changed_items.put(p_item.get_id_no(), p_item);
+      }
+   
+   /**
+    * @return the first via or trace after the current position, null if there is none
+    */
    public BrdItem next()
       {
-      BrdItem result = null;
-      PlaPointFloat curr_min_coor = new PlaPointFloat(Integer.MAX_VALUE, Integer.MAX_VALUE);
-      int curr_min_layer = Integer.MAX_VALUE;
-      Iterator<UndoObjectNode> it = r_board.undo_items.start_read_object();
-      for (;;)
+      entries_update();
+      
+      SortedRouteEntry curr_position = new SortedRouteEntry(null, min_item_coor, min_item_layer, Integer.MAX_VALUE);
+      
+      for (SortedRouteEntry curr_entry : sorted_entries.tailSet(curr_position, false) )
+         {
+         if ( ! is_route_item(curr_entry.item) ) continue;
+
+         min_item_coor = curr_entry.coor;
+         min_item_layer = curr_entry.layer;
+         return curr_entry.item;
+         }
+
+      min_item_coor = new PlaPointFloat(Integer.MAX_VALUE, Integer.MAX_VALUE);
+      min_item_layer = Integer.MAX_VALUE;
+      return null;
+      }
+
+   /**
+    * Unfixed vias, and unfixed traces that are not connected to an unfixed via, are returned by next()
+    * Fixed state and contacts are looked at here, since they may change without changing the position
+    */
+   private boolean is_route_item(BrdItem p_item)
+      {
+      if (p_item instanceof BrdAbitVia) return ! p_item.is_user_fixed();
+
+      BrdTracep curr_trace = (BrdTracep) p_item;
+
+      if ( curr_trace.is_shove_fixed() ) return false;
+
+      Set<BrdItem> trace_contacts = curr_trace.get_normal_contacts();
+
+      for (BrdItem curr_contact : trace_contacts)
+         {
+         if (curr_contact instanceof BrdAbitVia && !curr_contact.is_user_fixed()) return false;
+         }
+
+      return true;
+      }
+   
+   private void entries_update()
+      {
+      if ( ! entries_active )
          {
-         UndoObjectStorable curr_item = r_board.undo_items.read_next(it);
-         if (curr_item == null)
-            {
-            break;
-            }
-         if (curr_item instanceof BrdAbitVia)
-            {
-            BrdAbitVia curr_via = (BrdAbitVia) curr_item;
-            if (!curr_via.is_user_fixed())
-               {
-               PlaPointFloat curr_via_center = curr_via.center_get().to_float();
-               int curr_via_min_layer = curr_via.first_layer();
-               if (curr_via_center.v_x > min_item_coor.v_x || curr_via_center.v_x == min_item_coor.v_x
-                     && (curr_via_center.v_y > min_item_coor.v_y || curr_via_center.v_y == min_item_coor.v_y && curr_via_min_layer > min_item_layer))
-                  {
-                  if (curr_via_center.v_x < curr_min_coor.v_x || curr_via_center.v_x == curr_min_coor.v_x
-                        && (curr_via_center.v_y < curr_min_coor.v_y || curr_via_center.v_y == curr_min_coor.v_y && curr_via_min_layer < curr_min_layer))
-                     {
-                     curr_min_coor = curr_via_center;
-                     curr_min_layer = curr_via_min_layer;
-                     result = curr_via;
-                     }
-                  }
-               }
-            }
+         for ( BrdAbitVia curr_via : r_board.get_vias() ) entry_add(curr_via);
+         
+         for ( BrdTracep curr_trace : r_board.get_traces() ) entry_add(curr_trace);
+         
+         r_board.item_listener_add(this);
+         entries_active = true;
+         return;
          }
-      // Read traces last to prefer vias to traces at the same location
-      it = r_board.undo_items.start_read_object();
-      for (;;)
+
+      for ( BrdItem curr_item : changed_items.values() )
+         {
+         SortedRouteEntry old_entry = item_entries.remove(curr_item.get_id_no());
+         
+         if ( old_entry != null ) sorted_entries.remove(old_entry);
+         
+         // the version of the item now on the board, if any
+         BrdItem board_item = r_board.get_route_item(curr_item);
+         
+         if ( board_item != null ) entry_add(board_item);
+         }
+      
+      changed_items.clear();
+      }
+   
+   private void entry_add(BrdItem p_item)
+      {
+      SortedRouteEntry new_entry;
+      
+      if (p_item instanceof BrdAbitVia)
          {
-         UndoObjectStorable curr_item = r_board.undo_items.read_next(it);
-         if (curr_item == null)
-            {
-            break;
-            }
-         if (curr_item instanceof BrdTracep)
-            {
-            BrdTracep curr_trace = (BrdTracep) curr_item;
-            if (!curr_trace.is_shove_fixed())
-               {
-               PlaPointFloat first_corner = curr_trace.corner_first().to_float();
-               PlaPointFloat last_corner = curr_trace.corner_last().to_float();
-               PlaPointFloat compare_corner;
-               if (first_corner.v_x < last_corner.v_x || first_corner.v_x == last_corner.v_x && first_corner.v_y < last_corner.v_y)
-                  {
-                  compare_corner = last_corner;
-                  }
-               else
-                  {
-                  compare_corner = first_corner;
-                  }
-               int curr_trace_layer = curr_trace.get_layer();
-               if (compare_corner.v_x > min_item_coor.v_x || compare_corner.v_x == min_item_coor.v_x
-                     && (compare_corner.v_y > min_item_coor.v_y || compare_corner.v_y == min_item_coor.v_y && curr_trace_layer > min_item_layer))
-                  {
-                  if (compare_corner.v_x < curr_min_coor.v_x || compare_corner.v_x == curr_min_coor.v_x
-                        && (compare_corner.v_y < curr_min_coor.v_y || compare_corner.v_y == curr_min_coor.v_y && curr_trace_layer < curr_min_layer))
-                     {
-                     boolean is_connected_to_via = false;
-                     Set<BrdItem> trace_contacts = curr_trace.get_normal_contacts();
-                     for (BrdItem curr_contact : trace_contacts)
-                        {
-                        if (curr_contact instanceof BrdAbitVia && !curr_contact.is_user_fixed())
-                           {
-                           is_connected_to_via = true;
-                           break;
-                           }
-                        }
-                     if (!is_connected_to_via)
-                        {
-                        curr_min_coor = compare_corner;
-                        curr_min_layer = curr_trace_layer;
-                        result = curr_trace;
-                        }
-                     }
-                  }
-               }
-            }
+         BrdAbitVia curr_via = (BrdAbitVia) p_item;
+         
+         new_entry = new SortedRouteEntry(curr_via, curr_via.center_get().to_float(), curr_via.first_layer(), SortedRouteEntry.VIA_KIND);
          }
-      min_item_coor = curr_min_coor;
-      min_item_layer = curr_min_layer;
-      return result;
+      else
+         {
+         BrdTracep curr_trace = (BrdTracep) p_item;
+         
+         PlaPointFloat first_corner = curr_trace.corner_first().to_float();
+         PlaPointFloat last_corner = curr_trace.corner_last().to_float();
+         PlaPointFloat compare_corner;
+         
+         if (first_corner.v_x < last_corner.v_x || first_corner.v_x == last_corner.v_x && first_corner.v_y < last_corner.v_y)
+            compare_corner = last_corner;
+         else
+            compare_corner = first_corner;
 
+         new_entry = new SortedRouteEntry(curr_trace, compare_corner, curr_trace.get_layer(), SortedRouteEntry.TRACE_KIND);
+         }
+      
+      // a position that cannot be compared would never be reached when reading the items in order
+      if ( Double.isNaN(new_entry.coor.v_x) || Double.isNaN(new_entry.coor.v_y) ) return;
+      
+      item_entries.put(p_item.get_id_no(), new_entry);
+      sorted_entries.add(new_entry);
       }
 
+   /**
+    * Sorted by x, y, layer, then vias before traces, then as read from the board, from the highest id to the lowest
+    */
+   private static final class SortedRouteEntry implements Comparable<SortedRouteEntry>
+      {
+      static final int VIA_KIND = 0;
+      static final int TRACE_KIND = 1;
+      
+      final BrdItem item;
+      final PlaPointFloat coor;
+      final int layer;
+      final int kind;
+      
+      SortedRouteEntry(BrdItem p_item, PlaPointFloat p_coor, int p_layer, int p_kind)
+         {
+         item = p_item;
+         coor = p_coor;
+         layer = p_layer;
+         kind = p_kind;
+         }
+
+      @Override
+      public int compareTo(SortedRouteEntry p_other)
+         {
+         if ( coor.v_x != p_other.coor.v_x ) return coor.v_x < p_other.coor.v_x ? -1 : 1;
+
+         if ( coor.v_y != p_other.coor.v_y ) return coor.v_y < p_other.coor.v_y ? -1 : 1;
+
+         if ( layer != p_other.layer ) return layer < p_other.layer ? -1 : 1;
+
+         if ( kind != p_other.kind ) return kind < p_other.kind ? -1 : 1;
+         
+         // an entry used as position has no item and it goes after the items there
+         if ( item == null || p_other.item == null ) return item == p_other.item ? 0 : ( item == null ? 1 : -1 );
+         
+         return item.compareTo(p_other.item);
+         }
+      }
    }
@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import autoroute.ArtEngine;
 import autoroute.maze.MazeSearchElement;
+import board.awtree.AwtreeFindBuffer;
 import board.awtree.AwtreeObject;
 import freert.planar.PlaDimension;
 import freert.planar.PlaPointInt;
@@ -78,28 +79,26 @@ public final class ExpandDrill implements ExpandObject
       {
       ShapeTile search_shape = new ShapeTileBox(location);
       
-      Collection<AwtreeObject> overlaps = p_autoroute_engine.art_search_tree.find_overlap_objects(search_shape, -1, NetNosList.EMPTY);
+      AwtreeFindBuffer overlaps = p_autoroute_engine.drill_find_buffer;
+      
+      p_autoroute_engine.art_search_tree.find_overlap_tree_entries(search_shape, -1, NetNosList.EMPTY, overlaps);
 
       for (int index = first_layer_no; index <= last_layer_no; ++index)
          {
          ExpandRoomComplete found_room = null;
-         Iterator<AwtreeObject> iter = overlaps.iterator();
-         while (iter.hasNext())
+         
+         // the search shape is a point, so there are just a few entries and a room has one shape only
+         for (int e_index = 0; e_index < overlaps.size(); ++e_index)
             {
-            board.awtree.AwtreeObject curr_ob = iter.next();
+            AwtreeObject curr_ob = overlaps.get_object(e_index);
             
-            if (!(curr_ob instanceof ExpandRoomComplete))
-               {
-               iter.remove();
-               continue;
-               }
+            if (!(curr_ob instanceof ExpandRoomComplete)) continue;
             
             ExpandRoomComplete curr_room = (ExpandRoomComplete) curr_ob;
             
             if (curr_room.get_layer() == index)
                {
                found_room = curr_room;
-               iter.remove();
                break;
                }
             }
@@ -27,8 +27,10 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import autoroute.ArtEngine;
 import autoroute.maze.MazeSearchElement;
+import autoroute.varie.ArtMetrics;
 import board.RoutingBoard;
-import board.awtree.AwtreeFindEntry;
+import board.awtree.AwtreeFindBuffer;
+import board.awtree.AwtreeObject;
 import board.awtree.AwtreeShapeSearch;
 import board.items.BrdAbitPin;
 import board.items.BrdItem;
@@ -38,6 +40,7 @@ import freert.planar.PlaDimension;
 import freert.planar.PlaPointInt;
 import freert.planar.ShapeTile;
 import freert.planar.ShapeTileBox;
+import freert.varie.NetNosList;
 
 /**
  *
@@ -55,6 +58,8 @@ public final class ExpandDrillPage implements ExpandObject
    private final Collection<ExpandDrill> drill_list = new LinkedList<ExpandDrill>();
    // The number of the net, for which the drills are calculated 
    private int net_no = -1;
+   // true if the page has been used since the last reset, the page is then in the used list of the page array
+   private boolean used = false;
    
    
    public ExpandDrillPage(ShapeTileBox p_shape, RoutingBoard p_board)
@@ -85,24 +90,28 @@ public final class ExpandDrillPage implements ExpandObject
       // Use the search tree from the autoroute, it is adjusted with compensation
       AwtreeShapeSearch search_tree = p_art_engine.art_search_tree;
       
-      Collection<AwtreeFindEntry> overlaps = search_tree.find_overlap_tree_entries(page_shape, -1);
+      AwtreeFindBuffer overlaps = p_art_engine.drill_find_buffer;
+      
+      search_tree.find_overlap_tree_entries(page_shape, -1, NetNosList.EMPTY, overlaps);
       
       Collection<ShapeTile> cutout_shapes = new LinkedList<ShapeTile>();
 
       // drills on top of existing vias are used in the ripup algorithm
       ShapeTile prev_obstacle_shape = ShapeTileBox.EMPTY;
       
-      for (AwtreeFindEntry curr_entry : overlaps)
+      for (int index = 0; index < overlaps.size(); ++index)
          {
-         if (!(curr_entry.object instanceof BrdItem)) continue;
+         AwtreeObject curr_object = overlaps.get_object(index);
+         
+         if (!(curr_object instanceof BrdItem)) continue;
       
-         BrdItem curr_item = (BrdItem) curr_entry.object;
+         BrdItem curr_item = (BrdItem) curr_object;
          
          if (curr_item.is_drillable(net_no)) continue;
          
          if (p_attach_smd && (curr_item instanceof BrdAbitPin) && ((BrdAbitPin) curr_item).drill_allowed()) continue;
          
-         ShapeTile curr_obstacle_shape = curr_item.get_tree_shape(search_tree, curr_entry.shape_index_in_object);
+         ShapeTile curr_obstacle_shape = curr_item.get_tree_shape(search_tree, overlaps.get_shape_index(index));
 
          if (!prev_obstacle_shape.contains(curr_obstacle_shape))
             {
@@ -157,6 +166,8 @@ public final class ExpandDrillPage implements ExpandObject
             }
          }
 
+      p_art_engine.metrics.count(ArtMetrics.DRILLS, drill_list.size());
+      
       return drill_list;
       }
 
@@ -197,6 +208,29 @@ public final class ExpandDrillPage implements ExpandObject
          curr_info.reset();
       }
 
+   /**
+    * Mark this page as used by the current connection
+    * @return true if it was not marked already
+    */
+   public boolean mark_used()
+      {
+      if ( used ) return false;
+      
+      used = true;
+      
+      return true;
+      }
+
+   /**
+    * Makes the page as if it was just created, the drills refer to expansion rooms of a previous connection
+    */
+   public void clear()
+      {
+      reset();
+      invalidate();
+      used = false;
+      }
+   
    /**
     * Invalidates the drills of this page so that they are recalculated at the
     * next call of get_drills().
@@ -0,0 +1,143 @@
+package autoroute.maze;
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of maze list elements, the keys are kept in primitive arrays so that comparing does not touch the elements
+ * An insertion counter breaks ties, so the order is the same as the one of MazeExpansionTree
+ */
+public final class MazeExpansionHeap implements MazeExpansionList
+   {
+   private static final int INITIAL_CAPACITY = 256;
+
+   private MazeListElement[] elements = new MazeListElement[INITIAL_CAPACITY];
+   private double[] keys = new double[INITIAL_CAPACITY];
+   private long[] insert_nos = new long[INITIAL_CAPACITY];
+
+   private int heap_size = 0;
+   private long insert_count = 0;
+
+   @Override
+   public void add(MazeListElement p_element)
+      {
+      if ( heap_size == elements.length ) grow();
+
+      int index = heap_size++;
+      double key = p_element.sorting_value;
+      long insert_no = insert_count++;
+
+      // move the hole up until the parent is not bigger than the new key
+      while ( index > 0 )
+         {
+         int parent = (index - 1) >>> 1;
+
+         if ( ! is_less(key, insert_no, parent) ) break;
+
+         move(parent, index);
+         index = parent;
+         }
+
+      set(index, p_element, key, insert_no);
+      }
+
+   @Override
+   public MazeListElement poll()
+      {
+      if ( heap_size == 0 ) return null;
+
+      MazeListElement result = elements[0];
+
+      int last = --heap_size;
+
+      MazeListElement last_element = elements[last];
+      double last_key = keys[last];
+      long last_insert_no = insert_nos[last];
+
+      elements[last] = null;
+
+      if ( last == 0 ) return result;
+
+      // move the hole down until the last element fits in it
+      int index = 0;
+      int half = last >>> 1;
+
+      while ( index < half )
+         {
+         int child = 2 * index + 1;
+         int right = child + 1;
+
+         if ( right < last && is_less(keys[right], insert_nos[right], child) ) child = right;
+
+         if ( ! is_less(keys[child], insert_nos[child], last_key, last_insert_no) ) break;
+
+         move(child, index);
+         index = child;
+         }
+
+      set(index, last_element, last_key, last_insert_no);
+
+      return result;
+      }
+
+   @Override
+   public boolean isEmpty()
+      {
+      return heap_size == 0;
+      }
+
+   @Override
+   public int size()
+      {
+      return heap_size;
+      }
+
+   private boolean is_less(double p_key, long p_insert_no, int p_index)
+      {
+      return is_less(p_key, p_insert_no, keys[p_index], insert_nos[p_index]);
+      }
+
+   private static boolean is_less(double p_key, long p_insert_no, double p_other_key, long p_other_insert_no)
+      {
+      if ( p_key < p_other_key ) return true;
+
+      if ( p_key > p_other_key ) return false;
+
+      return p_insert_no < p_other_insert_no;
+      }
+
+   private void move(int p_from, int p_to)
+      {
+      set(p_to, elements[p_from], keys[p_from], insert_nos[p_from]);
+      }
+
+   private void set(int p_index, MazeListElement p_element, double p_key, long p_insert_no)
+      {
+      elements[p_index] = p_element;
+      keys[p_index] = p_key;
+      insert_nos[p_index] = p_insert_no;
+      }
+
+   private void grow()
+      {
+      int new_capacity = elements.length * 2;
+
+      elements = Arrays.copyOf(elements, new_capacity);
+      keys = Arrays.copyOf(keys, new_capacity);
+      insert_nos = Arrays.copyOf(insert_nos, new_capacity);
+      }
+   }
@@ -0,0 +1,36 @@
+package autoroute.maze;
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+/**
+ * The queue of elements waiting to be expanded by the maze search, lowest sorting_value first
+ * Elements with the same sorting_value come out in the order they were added
+ * Elements whose door section is already occupied are not removed, the maze search skips them when they come out
+ */
+public interface MazeExpansionList
+   {
+   public void add(MazeListElement p_element);
+
+   /**
+    * Removes and returns the element with the lowest sorting value
+    * @return null if the list is empty
+    */
+   public MazeListElement poll();
+
+   public boolean isEmpty();
+
+   public int size();
+   }
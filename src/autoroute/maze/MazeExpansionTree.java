@@ -0,0 +1,51 @@
+package autoroute.maze;
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.TreeSet;
+
+/**
+ * The original expansion list, a TreeSet relying on MazeListElement.compareTo never returning 0
+ * Kept to compare the heap against it, every add allocates a tree node and rebalances
+ */
+public final class MazeExpansionTree implements MazeExpansionList
+   {
+   private final TreeSet<MazeListElement> tree_set = new TreeSet<MazeListElement>();
+
+   @Override
+   public void add(MazeListElement p_element)
+      {
+      tree_set.add(p_element);
+      }
+
+   @Override
+   public MazeListElement poll()
+      {
+      return tree_set.pollFirst();
+      }
+
+   @Override
+   public boolean isEmpty()
+      {
+      return tree_set.isEmpty();
+      }
+
+   @Override
+   public int size()
+      {
+      return tree_set.size();
+      }
+   }
@@ -20,11 +20,8 @@
 package autoroute.maze;
 
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import autoroute.ArtConnection;
 import autoroute.ArtControl;
 import autoroute.ArtEngine;
@@ -40,9 +37,11 @@ import autoroute.expand.ExpandRoomFreespace;
 import autoroute.expand.ExpandRoomFreespaceComplete;
 import autoroute.expand.ExpandRoomFreespaceIncomplete;
 import autoroute.expand.ExpandRoomObstacle;
+import autoroute.varie.ArtMetrics;
 import autoroute.varie.ArtViaMask;
 import board.BrdConnectable;
 import board.RoutingBoard;
+import board.awtree.AwtreeFindBuffer;
 import board.awtree.AwtreeObject;
 import board.awtree.AwtreeShapeSearch;
 import board.items.BrdAbitPin;
@@ -90,7 +89,9 @@ public final class MazeSearch
    // The search tree for expanding. It is the tree compensated for the current net.
    private final AwtreeShapeSearch search_tree;
    // The queue of of expanded elements used in this search algorithm.
-   private final SortedSet<MazeListElement> maze_expansion_list = new TreeSet<MazeListElement>();
+   private final MazeExpansionList maze_expansion_list;
+   // reused by the check of small doors, that is done for many expansions
+   private final AwtreeFindBuffer door_find_buffer = new AwtreeFindBuffer();
    // Used for calculating of a good lower bound for the distance between a new MazeExpansionElement and the destination set of the expansion.
    private final ExpandDestinationDistance destination_distance;
    // The destination door found by the expanding algorithm.
@@ -115,6 +116,7 @@ public final class MazeSearch
       search_tree = p_art_engine.art_search_tree;
       destination_distance = new ExpandDestinationDistance(art_ctrl.trace_costs, art_ctrl.layer_active, art_ctrl.min_normal_via_cost, art_ctrl.min_cheap_via_cost);
       maze_shove_trace = new MazeShoveTraceAlgo(r_board, art_ctrl);
+      maze_expansion_list = art_ctrl.maze_tree_queue ? new MazeExpansionTree() : new MazeExpansionHeap();
 
       is_initialized = false; // assume not initialized
       
@@ -250,16 +252,13 @@ public final class MazeSearch
          {
          if (art_engine.is_stop_requested()) return false;
          
-         Iterator<MazeListElement> iter = maze_expansion_list.iterator();
-         
-         list_element = iter.next();
+         list_element = maze_expansion_list.poll();
 
          int curr_section_no = list_element.section_no_of_door;
         
          curr_door_section = list_element.door.get_maze_search_element(curr_section_no);
          
-         iter.remove();
-         
+         // elements of occupied sections are left in the list, they are dropped here
          if ( ! curr_door_section.is_occupied )
             {
             next_element_found = true;
@@ -269,6 +268,8 @@ public final class MazeSearch
       
       if ( ! next_element_found) return false;
 
+      art_ctrl.metrics.count(ArtMetrics.EXPANSIONS);
+      
       curr_door_section.backtrack_door = list_element.backtrack_door;
       curr_door_section.section_no_of_backtrack_door = list_element.section_no_of_backtrack_door;
       curr_door_section.room_ripped = list_element.room_ripped;
@@ -1403,10 +1404,17 @@ public final class MazeSearch
 
       NetNosList ignore_net_nos = new NetNosList(art_ctrl.net_no);
 
-      Set<AwtreeObject> overlapping_objects = art_engine.art_search_tree.find_overlap_objects(check_shape, curr_layer, ignore_net_nos );
+      AwtreeFindBuffer overlapping_objects = door_find_buffer;
+      
+      art_engine.art_search_tree.find_overlap_tree_entries(check_shape, curr_layer, ignore_net_nos, overlapping_objects );
 
-      for (AwtreeObject curr_object : overlapping_objects)
+      for (int index = 0; index < overlapping_objects.size(); ++index)
          {
+         // the same object may be there once for each of its shapes
+         if ( overlapping_objects.is_same_object_as_previous(index) ) continue;
+         
+         AwtreeObject curr_object = overlapping_objects.get_object(index);
+         
          if (!(curr_object instanceof BrdItem) || curr_object == p_ignore_item)
             {
             continue;
@@ -0,0 +1,201 @@
+package autoroute.varie;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.Arrays;
+
+/**
+ * Counters and timers of the autorouter, to see where the time of a batch run goes
+ * Everything is kept in arrays of primitives, counting costs an array increment
+ * It is not thread safe, each routing thread has its own and they are added together with add()
+ * @author damiano
+ */
+public final class ArtMetrics
+   {
+   // counters
+   public static final int CONNECTIONS     = 0;   // connections the autorouter has been asked to route
+   public static final int ROUTED          = 1;
+   public static final int NOT_ROUTED      = 2;   // no way found by the maze search, or the way cannot be located
+   public static final int INSERT_FAILED   = 3;   // a way has been found but inserting it failed
+   public static final int EXPANSIONS      = 4;   // elements taken from the maze expansion list and expanded
+   public static final int ROOMS_COMPLETED = 5;   // expansion rooms completed
+   public static final int DRILLS          = 6;   // drills calculated for the drill pages
+   public static final int TREE_QUERIES    = 7;   // overlap queries on the autoroute search tree
+   public static final int RIPUPS          = 8;   // items ripped to route a connection
+
+   private static final String[] counter_names = { "connections", "routed", "not_routed", "insert_failed", "expansions", "rooms_completed", "drills", "tree_queries", "ripups" };
+
+   // timers, the time of a connection is split in the phases
+   public static final int TIME_SEARCH     = 0;   // maze search, from the start items to the destination
+   public static final int TIME_LOCATE     = 1;   // locating the way of the traces in the rooms found
+   public static final int TIME_INSERT     = 2;   // removing the ripped items and inserting the new traces
+   public static final int TIME_NET        = 3;   // all the routing of the connection
+
+   private static final String[] timer_names = { "search", "locate", "insert", "net" };
+
+   // the time of a connection, bucket i is from 2^(i-1) to 2^i milliseconds, the first one is less than a millisecond
+   private static final int HISTOGRAM_SIZE = 16;
+
+   private final long[] counters = new long[counter_names.length];
+   private final long[] timers_ns = new long[timer_names.length];
+   private final long[] net_time_histogram = new long[HISTOGRAM_SIZE];
+
+   public void count(int p_counter)
+      {
+      counters[p_counter]++;
+      }
+
+   public void count(int p_counter, long p_value)
+      {
+      counters[p_counter] += p_value;
+      }
+
+   public long get(int p_counter)
+      {
+      return counters[p_counter];
+      }
+
+   /**
+    * Adds the time from p_start_ns, taken with System.nanoTime(), to p_timer
+    * @return now, so that it can be the start of the next phase
+    */
+   public long time_add(int p_timer, long p_start_ns)
+      {
+      long now = System.nanoTime();
+
+      timers_ns[p_timer] += now - p_start_ns;
+
+      if ( p_timer == TIME_NET ) net_time_histogram[histogram_index((now - p_start_ns) / 1000000)]++;
+
+      return now;
+      }
+
+   public long get_time_ms(int p_timer)
+      {
+      return timers_ns[p_timer] / 1000000;
+      }
+
+   private int histogram_index(long p_time_ms)
+      {
+      if ( p_time_ms <= 0 ) return 0;
+
+      return Math.min(HISTOGRAM_SIZE - 1, 64 - Long.numberOfLeadingZeros(p_time_ms));
+      }
+
+   /**
+    * Adds the values of p_other to this one, eg: of a parallel worker to the ones of the pass
+    */
+   public void add(ArtMetrics p_other)
+      {
+      for (int index = 0; index < counters.length; ++index) counters[index] += p_other.counters[index];
+
+      for (int index = 0; index < timers_ns.length; ++index) timers_ns[index] += p_other.timers_ns[index];
+
+      for (int index = 0; index < net_time_histogram.length; ++index) net_time_histogram[index] += p_other.net_time_histogram[index];
+      }
+
+   /**
+    * @return a copy of this one
+    */
+   public ArtMetrics copy()
+      {
+      ArtMetrics risul = new ArtMetrics();
+
+      risul.add(this);
+
+      return risul;
+      }
+
+   public void clear()
+      {
+      Arrays.fill(counters, 0);
+      Arrays.fill(timers_ns, 0);
+      Arrays.fill(net_time_histogram, 0);
+      }
+
+   /**
+    * @return the values in one line, to be printed in the log
+    */
+   public String report()
+      {
+      StringBuilder risul = new StringBuilder(300);
+
+      for (int index = 0; index < counters.length; ++index)
+         risul.append(counter_names[index]).append('=').append(counters[index]).append(' ');
+
+      for (int index = 0; index < timers_ns.length; ++index)
+         risul.append(timer_names[index]).append('=').append(timers_ns[index] / 1000000).append("ms ");
+
+      risul.append("net_ms_histogram=");
+
+      histogram_append(risul);
+
+      return risul.toString();
+      }
+
+   /**
+    * @return the values as a JSON object
+    */
+   public String to_json()
+      {
+      StringBuilder risul = new StringBuilder(500);
+
+      risul.append("{\"counters\":{");
+
+      for (int index = 0; index < counters.length; ++index)
+         {
+         if ( index > 0 ) risul.append(',');
+         risul.append('"').append(counter_names[index]).append("\":").append(counters[index]);
+         }
+
+      risul.append("},\"time_ms\":{");
+
+      for (int index = 0; index < timers_ns.length; ++index)
+         {
+         if ( index > 0 ) risul.append(',');
+         risul.append('"').append(timer_names[index]).append("\":").append(timers_ns[index] / 1000000);
+         }
+
+      risul.append("},\"net_ms_histogram\":");
+
+      histogram_append(risul);
+
+      risul.append('}');
+
+      return risul.toString();
+      }
+
+   /**
+    * Appends the histogram up to the last bucket that is not empty, eg: [12,30,4]
+    */
+   private void histogram_append(StringBuilder p_builder)
+      {
+      int last_index = net_time_histogram.length - 1;
+
+      while ( last_index > 0 && net_time_histogram[last_index] == 0 ) last_index--;
+
+      p_builder.append('[');
+
+      for (int index = 0; index <= last_index; ++index)
+         {
+         if ( index > 0 ) p_builder.append(',');
+         p_builder.append(net_time_histogram[index]);
+         }
+
+      p_builder.append(']');
+      }
+   }
@@ -21,6 +21,10 @@
 
 package board;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectInputValidation;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Vector;
 import board.infos.BrdComponent;
@@ -36,13 +40,15 @@ import freert.varie.UndoObjects;
  *
  * @author Alfons Wirtz
  */
-public final class BrdComponents implements java.io.Serializable
+public final class BrdComponents implements java.io.Serializable, ObjectInputValidation
    {
    private static final long serialVersionUID = 1L;
 
    private final UndoObjects undo_list = new UndoObjects();
 
    private final Vector<BrdComponent> component_list = new Vector<BrdComponent>();
+   // The component numbers by name, the number since undo replaces the components in the list with their copies
+   private transient HashMap<String,Integer> name_index = new HashMap<String,Integer>();
 
    // If true, components on the back side are rotated before mirroring, else they are mirrored before rotating.
    private boolean flip_style_rotate_first = false;
@@ -65,6 +71,7 @@ public final class BrdComponents implements java.io.Serializable
             p_position_fixed);
       component_list.add(new_component);
       undo_list.insert(new_component);
+      name_index_add(new_component);
       return new_component;
       }
 
@@ -87,12 +94,21 @@ public final class BrdComponents implements java.io.Serializable
     */
    public BrdComponent get(String p_name)
       {
-      for (BrdComponent curr : component_list )
-         {
-         if (curr.name.equals(p_name)) return curr;
-         }
+      Integer component_no = name_index.get(p_name);
+
+      if ( component_no == null ) return null;
+
+      return get(component_no);
+      }
 
-      return null;
+   /**
+    * If more components have the same name the first one is found, as when the list was scanned
+    */
+   private void name_index_add(BrdComponent p_component)
+      {
+      if ( name_index.containsKey(p_component.name) ) return;
+
+      name_index.put(p_component.name, p_component.id_no);
       }
 
    /**
@@ -232,4 +248,23 @@ public final class BrdComponents implements java.io.Serializable
       {
       return flip_style_rotate_first;
       }
+
+   private void readObject(ObjectInputStream p_stream) throws IOException, ClassNotFoundException
+      {
+      p_stream.defaultReadObject();
+
+      // the objects in the list may be read only in part now, when they refer back to this one
+      p_stream.registerValidation(this, 0);
+      }
+
+   /**
+    * Called when the whole board has been read, the names of the objects are then set
+    */
+   @Override
+   public void validateObject()
+      {
+      name_index = new HashMap<String,Integer>();
+
+      for (BrdComponent curr_component : component_list) name_index_add(curr_component);
+      }
    }
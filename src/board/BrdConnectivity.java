@@ -0,0 +1,260 @@
+package board;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeSet;
+import board.items.BrdItem;
+import freert.varie.NetNosList;
+
+/**
+ * The connected sets of the items of each net, kept so that asking for them many times does not walk the contacts every time
+ * The sets of a net are computed with a union find over the normal contacts of the items of the net, when first asked
+ * Any change to the items of a net, or to their shapes, drops the sets of the net and they are computed again on the next request
+ * If the contacts of a net are not symmetric, or reach items that are not indexed, the net is not cached and the caller must walk the contacts
+ * @author damiano
+ */
+final class BrdConnectivity
+   {
+   // room for this many nets is made at once when a net above the current ones changes
+   private static final int NET_COUNT_STEP = 256;
+   
+   private final BrdItemIndex item_index;
+   // how many times each net has changed, by net number, so that who derives something from a net knows when to compute it again
+   private int[] net_change_count = new int[NET_COUNT_STEP];
+   // the connected sets of each net, a net that is not here has to be computed
+   private final HashMap<Integer,NetComponents> net_components = new HashMap<Integer,NetComponents>();
+   
+   BrdConnectivity(BrdItemIndex p_item_index)
+      {
+      item_index = p_item_index;
+      }
+
+   /**
+    * The connected sets of the given nets are no longer valid
+    */
+   void nets_changed(NetNosList p_net_nos)
+      {
+      if ( p_net_nos == null ) return;
+      
+      for (int net_no : p_net_nos ) 
+         {
+         net_components.remove(net_no);
+         
+         if ( net_no < 0 ) continue;
+         
+         if ( net_no >= net_change_count.length ) net_change_count = Arrays.copyOf(net_change_count, net_no + NET_COUNT_STEP);
+
+         net_change_count[net_no]++;
+         }
+      }
+
+   /**
+    * @return a number that changes every time the items of the net, or their contacts, change
+    */
+   int get_change_count(int p_net_no)
+      {
+      if ( p_net_no < 0 || p_net_no >= net_change_count.length ) return 0;
+      
+      return net_change_count[p_net_no];
+      }
+
+   void clear()
+      {
+      net_components.clear();
+      }
+   
+   /**
+    * @return the set of the items of p_net_no connected to p_item, do not change it, null if it must be computed by walking the contacts
+    */
+   TreeSet<BrdItem> get_component(BrdItem p_item, int p_net_no)
+      {
+      NetComponents components = net_components.get(p_net_no);
+      
+      if ( components == null )
+         {
+         components = calculate(p_net_no);
+         
+         net_components.put(p_net_no, components);
+         }
+
+      if ( components.item_component == null ) return null;
+      
+      TreeSet<BrdItem> risul = components.item_component.get(p_item.get_id_no());
+      
+      if ( risul == null ) return null;
+      
+      // it must be the very same item, not an undo copy of it
+      if ( risul.ceiling(p_item) != p_item ) return null;
+      
+      return risul;
+      }
+   
+   /**
+    * @return a new set with the items of p_net_no that are not connected to p_item, null if it must be computed by walking the contacts
+    * The other connected sets of the net are already there, so the items of the net are not looked at
+    */
+   TreeSet<BrdItem> get_unconnected(BrdItem p_item, int p_net_no)
+      {
+      TreeSet<BrdItem> item_set = get_component(p_item, p_net_no);
+      
+      if ( item_set == null ) return null;
+      
+      TreeSet<BrdItem> risul = new TreeSet<BrdItem>();
+      
+      for (TreeSet<BrdItem> a_set : net_components.get(p_net_no).component_list )
+         {
+         if ( a_set != item_set ) risul.addAll(a_set);
+         }
+      
+      return risul;
+      }
+   
+   private NetComponents calculate(int p_net_no)
+      {
+      TreeSet<BrdItem> net_items = item_index.get_net_items(p_net_no);
+      
+      int item_count = net_items.size();
+      
+      BrdItem[] item_arr = net_items.toArray(new BrdItem[item_count]);
+      
+      HashMap<Integer,Integer> item_pos = new HashMap<Integer,Integer>(item_count * 2);
+      
+      for (int index = 0; index < item_count; ++index) item_pos.put(item_arr[index].get_id_no(), index);
+
+      ArrayList<Set<BrdItem>> contacts_list = new ArrayList<Set<BrdItem>>(item_count);
+
+      int[] parent = new int[item_count];
+      int[] size = new int[item_count];
+      
+      for (int index = 0; index < item_count; ++index)
+         {
+         parent[index] = index;
+         size[index] = 1;
+         }
+      
+      for (int index = 0; index < item_count; ++index)
+         {
+         Set<BrdItem> contacts = item_arr[index].get_normal_contacts();
+         
+         contacts_list.add(contacts);
+         
+         if ( contacts == null ) continue;
+         
+         for (BrdItem curr_contact : contacts )
+            {
+            if ( ! curr_contact.contains_net(p_net_no) ) continue;
+            
+            Integer contact_pos = item_pos.get(curr_contact.get_id_no());
+            
+            // a contact outside of the index, the walk would go where the sets cannot
+            if ( contact_pos == null || item_arr[contact_pos] != curr_contact ) return new NetComponents(null, null);
+            
+            union(parent, size, index, contact_pos);
+            }
+         }
+      
+      // the walk follows the contacts of each item, the sets are the same only if every contact is seen from both sides
+      for (int index = 0; index < item_count; ++index)
+         {
+         Set<BrdItem> contacts = contacts_list.get(index);
+         
+         if ( contacts == null ) continue;
+
+         for (BrdItem curr_contact : contacts )
+            {
+            if ( ! curr_contact.contains_net(p_net_no) ) continue;
+            
+            Set<BrdItem> back_contacts = contacts_list.get(item_pos.get(curr_contact.get_id_no()));
+            
+            if ( back_contacts == null || ! back_contacts.contains(item_arr[index]) ) return new NetComponents(null, null);
+            }
+         }
+      
+      HashMap<Integer,TreeSet<BrdItem>> root_sets = new HashMap<Integer,TreeSet<BrdItem>>();
+      HashMap<Integer,TreeSet<BrdItem>> item_component = new HashMap<Integer,TreeSet<BrdItem>>(item_count * 2);
+      ArrayList<TreeSet<BrdItem>> component_list = new ArrayList<TreeSet<BrdItem>>();
+      
+      for (int index = 0; index < item_count; ++index)
+         {
+         int root = find(parent, index);
+         
+         TreeSet<BrdItem> root_set = root_sets.get(root);
+         
+         if ( root_set == null )
+            {
+            root_set = new TreeSet<BrdItem>();
+            root_sets.put(root, root_set);
+            component_list.add(root_set);
+            }
+         
+         root_set.add(item_arr[index]);
+         
+         item_component.put(item_arr[index].get_id_no(), root_set);
+         }
+      
+      return new NetComponents(item_component, component_list);
+      }
+   
+   private int find(int[] p_parent, int p_index)
+      {
+      while ( p_parent[p_index] != p_index )
+         {
+         // path halving, keeps the trees flat
+         p_parent[p_index] = p_parent[p_parent[p_index]];
+         p_index = p_parent[p_index];
+         }
+      
+      return p_index;
+      }
+   
+   private void union(int[] p_parent, int[] p_size, int p_a, int p_b)
+      {
+      int root_a = find(p_parent, p_a);
+      int root_b = find(p_parent, p_b);
+      
+      if ( root_a == root_b ) return;
+      
+      if ( p_size[root_a] < p_size[root_b] )
+         {
+         int swap = root_a;
+         root_a = root_b;
+         root_b = swap;
+         }
+      
+      p_parent[root_b] = root_a;
+      p_size[root_a] += p_size[root_b];
+      }
+   
+   /**
+    * The connected sets of a net, by item id and as a list, both are null if the net cannot be cached
+    */
+   private static final class NetComponents
+      {
+      final HashMap<Integer,TreeSet<BrdItem>> item_component;
+      final ArrayList<TreeSet<BrdItem>> component_list;
+      
+      NetComponents(HashMap<Integer,TreeSet<BrdItem>> p_item_component, ArrayList<TreeSet<BrdItem>> p_component_list)
+         {
+         item_component = p_item_component;
+         component_list = p_component_list;
+         }
+      }
+   }
@@ -0,0 +1,270 @@
+package board;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.TreeSet;
+import board.items.BrdItem;
+import board.items.BrdTracep;
+import freert.planar.PlaPoint;
+import freert.planar.ShapeTileBox;
+
+/**
+ * The normal contacts at the end points of traces, kept so that asking for them again does not query the search tree
+ * A cached set is dropped when an item it contains changes, when the trace changes or when an item changes over one of the end points
+ * The end points are kept in a grid of cells, a change drops the sets of the traces with an end point in the cells of its box
+ * It is not thread safe, as the rest of the board
+ * @author damiano
+ */
+final class BrdContactCache
+   {
+   // a trace has two end points, contacts with or without the net and with or without areas
+   static final int SLOT_COUNT = 8;
+   // the grid has about this many cells on the longest side of the board
+   private static final int GRID_SIDE_CELLS = 512;
+   // a change covering more cells than this drops all the sets
+   private static final int MAX_CHANGED_CELLS = 4096;
+   // lists of this size, and of any bigger power of two, are cleaned of dropped entries when added to
+   private static final int LIST_COMPACT_SIZE = 16;
+   // more entries than this and the cache starts again, the board is being rebuilt
+   private static final int MAX_ENTRY_COUNT = 1 << 18;
+
+   private final int cell_size;
+   // the entry of each trace, by id, it may belong to an undo copy of the trace
+   private final HashMap<Integer,ContactEntry> trace_entries = new HashMap<Integer,ContactEntry>();
+   // the entries whose contacts include an item, by id of the item
+   private final HashMap<Integer,ArrayList<ContactEntry>> contact_entries = new HashMap<Integer,ArrayList<ContactEntry>>();
+   // the entries with an end point in a cell of the grid
+   private final HashMap<Long,ArrayList<ContactEntry>> cell_entries = new HashMap<Long,ArrayList<ContactEntry>>();
+
+   private long hit_count;
+   private long miss_count;
+   private long drop_count;
+
+   BrdContactCache(ShapeTileBox p_board_box)
+      {
+      int board_side = Math.max(p_board_box.width(), p_board_box.height());
+
+      cell_size = Math.max(1, board_side / GRID_SIDE_CELLS);
+      }
+
+   /**
+    * @return the slot of a contact set of a trace, see SLOT_COUNT
+    */
+   static int slot_no(boolean p_at_end, boolean p_ignore_net, boolean p_skip_areas)
+      {
+      return (p_at_end ? 1 : 0) | (p_ignore_net ? 2 : 0) | (p_skip_areas ? 4 : 0);
+      }
+
+   /**
+    * @return the cached contacts of p_trace at p_point in p_slot_no, do not change it, null if they must be found
+    */
+   TreeSet<BrdItem> get(BrdTracep p_trace, PlaPoint p_point, int p_slot_no)
+      {
+      ContactEntry an_entry = trace_entries.get(p_trace.get_id_no());
+
+      if ( an_entry == null || an_entry.trace != p_trace || an_entry.slot_list.get(p_slot_no) == null || ! an_entry.has_end_point(p_point, p_slot_no) )
+         {
+         miss_count++;
+         return null;
+         }
+
+      hit_count++;
+
+      return an_entry.slot_list.get(p_slot_no);
+      }
+
+   /**
+    * Keeps p_contacts, that must not be changed any more, as the contacts of p_trace in p_slot_no
+    */
+   void put(BrdTracep p_trace, int p_slot_no, TreeSet<BrdItem> p_contacts)
+      {
+      if ( trace_entries.size() >= MAX_ENTRY_COUNT ) clear();
+
+      ContactEntry an_entry = trace_entries.get(p_trace.get_id_no());
+
+      if ( an_entry == null || an_entry.trace != p_trace )
+         {
+         if ( an_entry != null ) an_entry_drop(an_entry);
+
+         an_entry = new ContactEntry(p_trace);
+
+         trace_entries.put(p_trace.get_id_no(), an_entry);
+
+         list_add(cell_entries, cell_key(an_entry.corner_first), an_entry);
+         list_add(cell_entries, cell_key(an_entry.corner_last), an_entry);
+         }
+
+      an_entry.slot_list.set(p_slot_no, p_contacts);
+
+      for ( BrdItem curr_contact : p_contacts ) list_add(contact_entries, curr_contact.get_id_no(), an_entry);
+      }
+
+   /**
+    * p_item has been put on the board, taken off it or changed, the sets it may be part of are dropped
+    */
+   void item_changed(BrdItem p_item)
+      {
+      if ( trace_entries.isEmpty() ) return;
+
+      ContactEntry own_entry = trace_entries.get(p_item.get_id_no());
+
+      if ( own_entry != null ) an_entry_drop(own_entry);
+
+      list_drop(contact_entries.remove(p_item.get_id_no()));
+
+      area_changed(p_item.bounding_box());
+      }
+
+   /**
+    * Something has changed in p_box, the sets of the traces with an end point there are dropped
+    */
+   void area_changed(ShapeTileBox p_box)
+      {
+      if ( trace_entries.isEmpty() ) return;
+
+      if ( p_box == null || p_box.is_empty() ) return;
+
+      long cell_ll_x = cell_no(p_box.box_ll.v_x);
+      long cell_ll_y = cell_no(p_box.box_ll.v_y);
+      long cell_ur_x = cell_no(p_box.box_ur.v_x);
+      long cell_ur_y = cell_no(p_box.box_ur.v_y);
+
+      if ( (cell_ur_x - cell_ll_x + 1) * (cell_ur_y - cell_ll_y + 1) > MAX_CHANGED_CELLS )
+         {
+         clear();
+         return;
+         }
+
+      for (long cell_x = cell_ll_x; cell_x <= cell_ur_x; cell_x++)
+         for (long cell_y = cell_ll_y; cell_y <= cell_ur_y; cell_y++)
+            list_drop(cell_entries.remove(cell_key(cell_x, cell_y)));
+      }
+
+   void clear()
+      {
+      drop_count += trace_entries.size();
+
+      for ( ContactEntry an_entry : trace_entries.values() ) an_entry.dropped = true;
+
+      trace_entries.clear();
+      contact_entries.clear();
+      cell_entries.clear();
+      }
+
+   @Override
+   public String toString()
+      {
+      long ask_count = hit_count + miss_count;
+
+      long hit_percent = ask_count > 0 ? hit_count * 100 / ask_count : 0;
+
+      return "contact cache: hits="+hit_count+" misses="+miss_count+" hit rate="+hit_percent+"% dropped="+drop_count;
+      }
+
+   private void an_entry_drop(ContactEntry p_entry)
+      {
+      if ( p_entry.dropped ) return;
+
+      p_entry.dropped = true;
+
+      drop_count++;
+
+      if ( trace_entries.get(p_entry.trace.get_id_no()) == p_entry ) trace_entries.remove(p_entry.trace.get_id_no());
+      }
+
+   private void list_drop(ArrayList<ContactEntry> p_list)
+      {
+      if ( p_list == null ) return;
+
+      for ( ContactEntry an_entry : p_list ) an_entry_drop(an_entry);
+      }
+
+   private <K> void list_add(HashMap<K,ArrayList<ContactEntry>> p_map, K p_key, ContactEntry p_entry)
+      {
+      ArrayList<ContactEntry> a_list = p_map.get(p_key);
+
+      if ( a_list == null )
+         {
+         a_list = new ArrayList<ContactEntry>(4);
+         p_map.put(p_key, a_list);
+         }
+      else if ( a_list.size() >= LIST_COMPACT_SIZE && Integer.bitCount(a_list.size()) == 1 )
+         {
+         Iterator<ContactEntry> iter = a_list.iterator();
+
+         while ( iter.hasNext() )
+            if ( iter.next().dropped ) iter.remove();
+         }
+
+      // the same contact may be in more slots of an entry
+      if ( ! a_list.isEmpty() && a_list.get(a_list.size() - 1) == p_entry ) return;
+
+      a_list.add(p_entry);
+      }
+
+   private long cell_key(PlaPoint p_point)
+      {
+      ShapeTileBox point_box = p_point.to_box();
+
+      return cell_key(cell_no(point_box.box_ll.v_x), cell_no(point_box.box_ll.v_y));
+      }
+
+   /**
+    * @return the cell of p_coordinate, rounding down also the negative ones
+    */
+   private long cell_no(int p_coordinate)
+      {
+      long risul = p_coordinate / cell_size;
+      
+      if ( p_coordinate < 0 && risul * cell_size != p_coordinate ) risul--;
+      
+      return risul;
+      }
+
+   private static long cell_key(long p_cell_x, long p_cell_y)
+      {
+      return (p_cell_x << 32) ^ (p_cell_y & 0xFFFFFFFFL);
+      }
+
+   private static final class ContactEntry
+      {
+      final BrdTracep trace;
+      // the end points when the entry was made, a trace moved without telling the board has other ones
+      final PlaPoint corner_first;
+      final PlaPoint corner_last;
+      // one contact set for each slot, null until it is found
+      final ArrayList<TreeSet<BrdItem>> slot_list = new ArrayList<TreeSet<BrdItem>>(SLOT_COUNT);
+      boolean dropped;
+
+      ContactEntry(BrdTracep p_trace)
+         {
+         trace = p_trace;
+         corner_first = p_trace.corner_first();
+         corner_last = p_trace.corner_last();
+         
+         for (int index = 0; index < SLOT_COUNT; ++index) slot_list.add(null);
+         }
+
+      boolean has_end_point(PlaPoint p_point, int p_slot_no)
+         {
+         return p_point.equals((p_slot_no & 1) == 0 ? corner_first : corner_last);
+         }
+      }
+   }
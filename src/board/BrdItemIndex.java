@@ -0,0 +1,149 @@
+package board;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.HashMap;
+import java.util.TreeSet;
+import board.items.BrdAbitPin;
+import board.items.BrdAbitVia;
+import board.items.BrdComponentOutline;
+import board.items.BrdItem;
+import board.items.BrdOutline;
+import board.items.BrdTracep;
+import freert.varie.NetNosList;
+
+/**
+ * Indexes of the items on the board by net and by class, so that asking for the items of a net does not scan the whole board
+ * Items are kept in TreeSet, so they are in the same order as when reading the undo list, from the highest id to the lowest
+ * An undo copy has the same id of its item, so removing an item removes whatever version of it is in the index
+ * @author damiano
+ */
+final class BrdItemIndex
+   {
+   // connectable items for each net number
+   private final HashMap<Integer,TreeSet<BrdItem>> net_items = new HashMap<Integer,TreeSet<BrdItem>>();
+   // the nets each item has been indexed with, the item may change its nets later
+   private final HashMap<Integer,NetNosList> indexed_nets = new HashMap<Integer,NetNosList>();
+
+   final TreeSet<BrdAbitPin> pins = new TreeSet<BrdAbitPin>();
+   final TreeSet<BrdAbitVia> vias = new TreeSet<BrdAbitVia>();
+   final TreeSet<BrdTracep> traces = new TreeSet<BrdTracep>();
+   // board and component outlines, they are drawn but may not be found in the default tree
+   final TreeSet<BrdItem> outlines = new TreeSet<BrdItem>();
+
+   void add(BrdItem p_item)
+      {
+      // a stale version of the item may be there, eg: if nets have changed in place
+      remove(p_item);
+      
+      if (p_item instanceof BrdAbitPin)
+         pins.add((BrdAbitPin) p_item);
+      else if (p_item instanceof BrdAbitVia)
+         vias.add((BrdAbitVia) p_item);
+      else if (p_item instanceof BrdTracep)
+         traces.add((BrdTracep) p_item);
+      else if (p_item instanceof BrdOutline || p_item instanceof BrdComponentOutline)
+         outlines.add(p_item);
+      
+      if ( !(p_item instanceof BrdConnectable)) return;
+
+      NetNosList item_nets = p_item.net_nos;
+
+      if ( item_nets.is_empty() ) return;
+      
+      indexed_nets.put(p_item.get_id_no(), item_nets);
+      
+      for (int net_no : item_nets ) net_set_get(net_no).add(p_item);
+      }
+   
+   void remove(BrdItem p_item)
+      {
+      if (p_item instanceof BrdAbitPin)
+         pins.remove(p_item);
+      else if (p_item instanceof BrdAbitVia)
+         vias.remove(p_item);
+      else if (p_item instanceof BrdTracep)
+         traces.remove(p_item);
+      else if (p_item instanceof BrdOutline || p_item instanceof BrdComponentOutline)
+         outlines.remove(p_item);
+
+      NetNosList item_nets = indexed_nets.remove(p_item.get_id_no());
+
+      if ( item_nets == null ) return;
+      
+      for (int net_no : item_nets )
+         {
+         TreeSet<BrdItem> net_set = net_items.get(net_no);
+         
+         if ( net_set == null ) continue;
+         
+         net_set.remove(p_item);
+         
+         if ( net_set.isEmpty() ) net_items.remove(net_no);
+         }
+      }
+
+   /**
+    * @return the connectable items of p_net_no, empty if none, do not change it
+    */
+   TreeSet<BrdItem> get_net_items(int p_net_no)
+      {
+      TreeSet<BrdItem> risul = net_items.get(p_net_no);
+      
+      if ( risul == null ) return new TreeSet<BrdItem>();
+      
+      return risul;
+      }
+   
+   /**
+    * @return the via or trace in the index with the id of p_item, that may be another version of it, null if none
+    */
+   BrdItem get_route_item(BrdItem p_item)
+      {
+      BrdItem risul = null;
+      
+      if (p_item instanceof BrdAbitVia)
+         risul = vias.ceiling((BrdAbitVia) p_item);
+      else if (p_item instanceof BrdTracep)
+         risul = traces.ceiling((BrdTracep) p_item);
+
+      if ( risul == null || risul.get_id_no() != p_item.get_id_no() ) return null;
+      
+      return risul;
+      }
+
+   /**
+    * @return the nets p_id_no has been indexed with, null if none
+    */
+   NetNosList get_indexed_nets(int p_id_no)
+      {
+      return indexed_nets.get(p_id_no);
+      }
+   
+   private TreeSet<BrdItem> net_set_get(int p_net_no)
+      {
+      TreeSet<BrdItem> risul = net_items.get(p_net_no);
+      
+      if ( risul != null ) return risul;
+      
+      risul = new TreeSet<BrdItem>();
+      
+      net_items.put(p_net_no, risul);
+      
+      return risul;
+      }
+   }
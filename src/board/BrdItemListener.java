@@ -0,0 +1,33 @@
+package board;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import board.items.BrdItem;
+
+/**
+ * Who keeps something computed from the items of the board and wants to know when an item changes
+ * Register it with RoutingBoard.item_listener_add() and remove it when done, every change of the board goes trough it
+ * @author damiano
+ */
+public interface BrdItemListener
+   {
+   /**
+    * p_item has been put on the board, taken off it, or its shape or nets are changing
+    * The board may be in the middle of the change, so take note of the item and look at it later
+    */
+   void item_changed(BrdItem p_item);
+   }
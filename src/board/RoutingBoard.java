@@ -18,8 +18,12 @@ package board;
 import interactive.IteraBoard;
 import interactive.IteraSettings;
 import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
@@ -30,6 +34,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import autoroute.ArtControl;
 import autoroute.ArtEngine;
+import autoroute.DrillPageArray;
 import autoroute.expand.ExpandCostFactor;
 import autoroute.varie.ArtResult;
 import board.algo.AlgoMoveDrillItem;
@@ -103,6 +108,8 @@ public final class RoutingBoard implements java.io.Serializable
    private static final long serialVersionUID = 1L;
    private static final String classname = "RoutingBoard.";
    private static final int s_PREVENT_ENDLESS_LOOP = 5;
+   // the area to draw is enlarged by this, so that items just out of it are drawn
+   private static final int DRAW_MARGIN_PIXELS = 4;
 
    // List of items inserted into this board, may be less than all available components
    public final UndoObjects undo_items;
@@ -132,8 +139,22 @@ public final class RoutingBoard implements java.io.Serializable
    public transient ObserverItem observers = new ObserverItemVoid();
    // Handles the search trees pointing into the items of this board, initialized on constructor
    public transient AwtreeManager search_tree_manager;
+   // kept between autoroute connections, the pages depend only on the board size and the via diameter
+   private transient DrillPageArray drill_page_array;
+   // items by net and by class, kept in sync with the items on the board
+   private transient BrdItemIndex item_index = new BrdItemIndex();
+   // connected sets of the nets, computed on request from the index and dropped when a net changes
+   private transient BrdConnectivity connectivity = new BrdConnectivity(item_index);
+   // contacts at the end points of the traces, dropped when an item changes over them
+   private transient BrdContactCache contact_cache;
+   // told of every item that changes, see item_listener_add()
+   private transient ArrayList<BrdItemListener> item_listeners = new ArrayList<BrdItemListener>();
+   // if true every cached connected set and trace contacts are checked against the walk of the contacts and the search tree, slow, for debug
+   public transient boolean connectivity_validate;
    // the rectangle, where the graphics may be not updated
    private transient  ShapeTileBox update_box = ShapeTileBox.EMPTY;
+   // the part of update_box not yet taken by gdi_update_take(), it is reset only when taken
+   private transient  ShapeTileBox update_box_pending = ShapeTileBox.EMPTY;
    // the area marked for optimizing the route 
    public transient BrdChangedArea changed_area = new BrdChangedArea();
    // an obstacle that prevent the possibility of shove
@@ -167,6 +188,7 @@ public final class RoutingBoard implements java.io.Serializable
       brd_components = new BrdComponents();
       host_com = p_host_com;
       bounding_box = p_bounding_box;
+      contact_cache = new BrdContactCache(p_bounding_box);
       search_tree_manager = new AwtreeManager(this);
       
       p_rules.nets.set_board(this);
@@ -477,6 +499,7 @@ public final class RoutingBoard implements java.io.Serializable
       
       search_tree_manager.remove(p_item);
       undo_items.delete(p_item);
+      item_index.remove(p_item);
 
       // let the observers synchronize the deletion
       observers.notify_deleted(p_item);
@@ -487,17 +510,7 @@ public final class RoutingBoard implements java.io.Serializable
     */
    public BrdItem get_item(int p_id_no)
       {
-      Iterator<UndoObjectNode> it = undo_items.start_read_object();
-      for (;;)
-         {
-         BrdItem curr_item = (BrdItem) undo_items.read_next(it);
-
-         if (curr_item == null)  break;
-     
-         if (curr_item.get_id_no() == p_id_no) return curr_item;
-         }
-      
-      return null;
+      return (BrdItem) undo_items.get(p_id_no);
       }
 
    /**
@@ -525,22 +538,7 @@ public final class RoutingBoard implements java.io.Serializable
     */
    public Collection<BrdItem> get_connectable_items(int p_net_no)
       {
-      Collection<BrdItem> result = new LinkedList<BrdItem>();
-      Iterator<UndoObjectNode> it = undo_items.start_read_object();
-      for (;;)
-         {
-         BrdItem curr_item = (BrdItem) undo_items.read_next(it);
-         
-         if (curr_item == null) break;
-
-         if ( !(curr_item instanceof BrdConnectable)) continue;
-         
-         if ( ! curr_item.contains_net(p_net_no)) continue;
-         
-         result.add(curr_item);
-         }
-
-      return result;
+      return new LinkedList<BrdItem>(item_index.get_net_items(p_net_no));
       }
 
    /**
@@ -550,9 +548,7 @@ public final class RoutingBoard implements java.io.Serializable
       {
       int result = 0;
       
-      Collection<BrdItem> net_items = get_connectable_items(net_number);
-      
-      for (BrdItem curr_item : net_items)
+      for (BrdItem curr_item : item_index.get_net_items(net_number))
          {
          if (curr_item instanceof BrdAbitVia) result++;
          }
@@ -565,20 +561,7 @@ public final class RoutingBoard implements java.io.Serializable
     */
    public int connectable_item_count(int p_net_no)
       {
-      int result = 0;
-      Iterator<UndoObjectNode> it = undo_items.start_read_object();
-      for (;;)
-         {
-         BrdItem curr_item = (BrdItem) undo_items.read_next(it);
-      
-         if (curr_item == null) break;
-        
-         if (curr_item instanceof BrdConnectable && curr_item.contains_net(p_net_no))
-            {
-            ++result;
-            }
-         }
-      return result;
+      return item_index.get_net_items(p_net_no).size();
       }
 
    /**
@@ -717,22 +700,7 @@ public final class RoutingBoard implements java.io.Serializable
     */
    public LinkedList<BrdAbitPin> get_pins()
       {
-      LinkedList<BrdAbitPin> result = new LinkedList<BrdAbitPin>();
-
-      Iterator<UndoObjectNode> iter = undo_items.start_read_object();
-      
-      for (;;)
-         {
-         UndoObjectStorable curr_item = undo_items.read_next(iter);
-
-         if (curr_item == null) break;
-
-         if ( ! ( curr_item instanceof BrdAbitPin) ) continue;
-
-         result.add((BrdAbitPin) curr_item);
-         }
-      
-      return result;
+      return new LinkedList<BrdAbitPin>(item_index.pins);
       }
 
    /**
@@ -741,16 +709,9 @@ public final class RoutingBoard implements java.io.Serializable
    public Collection<BrdAbitPin> get_smd_pins()
       {
       Collection<BrdAbitPin> result = new LinkedList<BrdAbitPin>();
-      Iterator<UndoObjectNode> it = undo_items.start_read_object();
-      for (;;)
-         {
-         UndoObjectStorable curr_item = undo_items.read_next(it);
-         if (curr_item == null) break;
 
-         if ( ! ( curr_item instanceof BrdAbitPin) ) continue;
-
-         BrdAbitPin curr_pin = (BrdAbitPin) curr_item;
-      
+      for (BrdAbitPin curr_pin : item_index.pins)
+         {
          if (curr_pin.first_layer() == curr_pin.last_layer())
             result.add(curr_pin);
          }
@@ -763,19 +724,7 @@ public final class RoutingBoard implements java.io.Serializable
     */
    public Collection<BrdAbitVia> get_vias()
       {
-      Collection<BrdAbitVia> result = new LinkedList<BrdAbitVia>();
-      Iterator<UndoObjectNode> it = undo_items.start_read_object();
-      for (;;)
-         {
-         UndoObjectStorable curr_item = undo_items.read_next(it);
-
-         if (curr_item == null) break;
-
-         if (curr_item instanceof BrdAbitVia)
-            result.add((BrdAbitVia) curr_item);
-
-         }
-      return result;
+      return new LinkedList<BrdAbitVia>(item_index.vias);
       }
 
    /**
@@ -783,18 +732,7 @@ public final class RoutingBoard implements java.io.Serializable
     */
    public Collection<BrdTracep> get_traces()
       {
-      Collection<BrdTracep> result = new LinkedList<BrdTracep>();
-      Iterator<UndoObjectNode> it = undo_items.start_read_object();
-      for (;;)
-         {
-         UndoObjectStorable curr_item = undo_items.read_next(it);
-         if (curr_item == null)  break;
-
-         if (curr_item instanceof BrdTracep)
-            result.add((BrdTracep) curr_item);
-
-         }
-      return result;
+      return new LinkedList<BrdTracep>(item_index.traces);
       }
 
    /**
@@ -1128,35 +1066,149 @@ public final class RoutingBoard implements java.io.Serializable
    /**
     * Draws all items of the board on their visible layers. Called in the overwritten paintComponent method of a class derived from
     * JPanel. The value of p_layer_visibility is expected between 0 and 1 for each layer.
+    * Only the items in the clip of p_graphics are drawn, so the time depends on what is on screen and not on the board size
     */
    public void draw(Graphics p_graphics, GdiContext p_graphics_context)
       {
       if (p_graphics_context == null) return;
 
-      // draw all items on the board
-      for (int curr_priority = GdiDrawable.MIN_DRAW_PRIORITY; curr_priority <= GdiDrawable.MIDDLE_DRAW_PRIORITY; ++curr_priority)
+      Rectangle clip_rect = p_graphics.getClipBounds();
+      
+      ShapeTileBox clip_box = null;
+      
+      if ( clip_rect != null )
          {
-         Iterator<UndoObjectNode> iter = undo_items.start_read_object();
-         
-         for (;;)
+         clip_box = p_graphics_context.coordinate_transform.screen_to_board(clip_rect);
+
+         // what an item draws may go a bit out of its tree shapes, eg: the lines of an outline
+         clip_box = clip_box.offset(p_graphics_context.coordinate_transform.screen_to_board(DRAW_MARGIN_PIXELS));
+         }
+      
+      ArrayList<ArrayList<BrdItem>> priority_items;
+      
+      // when all the board is on screen reading the items is faster than asking the tree
+      if ( clip_box == null || clip_box.contains(bounding_box) )
+         priority_items = draw_items_all();
+      else
+         priority_items = draw_items_visible(clip_box, p_graphics_context);
+
+      if ( priority_items == null ) return;
+      
+      // the shapes too small to be seen in detail are kept together and filled at the end of each draw priority
+      p_graphics_context.lod_begin(p_graphics);
+
+      try
+         {
+         for ( ArrayList<BrdItem> curr_items : priority_items )
             {
-            try
-               {
-               BrdItem curr_item = (BrdItem) undo_items.read_next(iter);
-         
-               if (curr_item == null) break;
+            for ( BrdItem curr_item : curr_items ) curr_item.draw(p_graphics, p_graphics_context);
+            
+            p_graphics_context.lod_flush();
+            }
+         }
+      finally
+         {
+         p_graphics_context.lod_end();
+         }
+      }
 
-               if ( curr_item.get_draw_priority() != curr_priority) continue;
+   /**
+    * @return the items to draw for each draw priority, in the order of the undo list, null if the board is being changed
+    */
+   private ArrayList<ArrayList<BrdItem>> draw_items_all()
+      {
+      ArrayList<ArrayList<BrdItem>> risul = draw_items_new();
+      
+      Iterator<UndoObjectNode> iter = undo_items.start_read_object();
+      
+      try
+         {
+         for (;;)
+            {
+            BrdItem curr_item = (BrdItem) undo_items.read_next(iter);
+      
+            if (curr_item == null) break;
 
-               curr_item.draw(p_graphics, p_graphics_context);
-               }
-            catch (ConcurrentModificationException exc)
+            draw_items_add(risul, curr_item);
+            }
+         }
+      catch (ConcurrentModificationException exc)
+         {
+         // may happen when window are changed interactively while running a logfile
+         return null;
+         }
+      
+      return risul;
+      }
+   
+   /**
+    * @return the items overlapping p_clip_box on the layers that are visible, for each draw priority
+    * The default tree is asked for them, an action thread may be changing the board, so this thread reads it as a concurrent reader
+    */
+   private ArrayList<ArrayList<BrdItem>> draw_items_visible(ShapeTileBox p_clip_box, GdiContext p_graphics_context)
+      {
+      // same order as reading the undo list
+      TreeSet<BrdItem> visible_items = new TreeSet<BrdItem>();
+      
+      AwtreeShapeSearch default_tree = search_tree_manager.get_default_tree();
+      
+      default_tree.concurrent_reader_add();
+      
+      try
+         {
+         for (int layer_no = 0; layer_no < get_layer_count(); ++layer_no)
+            {
+            if ( p_graphics_context.get_layer_visibility(layer_no) <= 0 ) continue;
+            
+            for ( AwtreeObject curr_ob : default_tree.find_overlap_objects(p_clip_box, layer_no, NetNosList.EMPTY) )
                {
-               // may happen when window are changed interactively while running a logfile
-               return;
+               if ( curr_ob instanceof BrdItem ) visible_items.add((BrdItem)curr_ob);
                }
             }
          }
+      finally
+         {
+         default_tree.concurrent_reader_remove();
+         }
+      
+      try
+         {
+         for ( BrdItem curr_outline : item_index.outlines )
+            {
+            if ( curr_outline.bounding_box().intersects(p_clip_box) ) visible_items.add(curr_outline);
+            }
+         }
+      catch (ConcurrentModificationException exc)
+         {
+         return null;
+         }
+      
+      ArrayList<ArrayList<BrdItem>> risul = draw_items_new();
+      
+      for ( BrdItem curr_item : visible_items ) draw_items_add(risul, curr_item);
+      
+      return risul;
+      }
+   
+   private ArrayList<ArrayList<BrdItem>> draw_items_new()
+      {
+      int priority_count = GdiDrawable.MIDDLE_DRAW_PRIORITY - GdiDrawable.MIN_DRAW_PRIORITY + 1;
+
+      ArrayList<ArrayList<BrdItem>> risul = new ArrayList<ArrayList<BrdItem>>(priority_count);
+      
+      for (int index = 0; index < priority_count; ++index) risul.add(new ArrayList<BrdItem>());
+      
+      return risul;
+      }
+   
+   private void draw_items_add(ArrayList<ArrayList<BrdItem>> p_priority_items, BrdItem p_item)
+      {
+      int curr_priority = p_item.get_draw_priority();
+      
+      // only these priorities are drawn from the board
+      if ( curr_priority < GdiDrawable.MIN_DRAW_PRIORITY || curr_priority > GdiDrawable.MIDDLE_DRAW_PRIORITY ) return;
+      
+      p_priority_items.get(curr_priority - GdiDrawable.MIN_DRAW_PRIORITY).add(p_item);
       }
 
    /**
@@ -1275,7 +1327,7 @@ public final class RoutingBoard implements java.io.Serializable
    /**
     * Resets the rectangle, where a graphics update is needed.
     */
-   public void reset_graphics_update_box()
+   public synchronized void reset_graphics_update_box()
       {
       update_box = ShapeTileBox.EMPTY;
       }
@@ -1283,19 +1335,34 @@ public final class RoutingBoard implements java.io.Serializable
    /**
     * Gets the rectangle, where a graphics update is needed on the screen.
     */
-   public ShapeTileBox gdi_update_get()
+   public synchronized ShapeTileBox gdi_update_get()
       {
       return update_box;
       }
 
+   /**
+    * Gets and resets at once what has been joined since the previous call, for who keeps images of the board
+    * The box of gdi_update_get() is not changed, so a repaint asked with it still covers the changes
+    */
+   public synchronized ShapeTileBox gdi_update_take()
+      {
+      ShapeTileBox risul = update_box_pending;
+      
+      update_box_pending = ShapeTileBox.EMPTY;
+      
+      return risul;
+      }
+
    /**
     * enlarges the graphics update box, so that it contains p_box
+    * The board may be changed by a thread while the Swing thread takes the box
     */
-   public void gdi_update_join(ShapeTileBox p_box)
+   public synchronized void gdi_update_join(ShapeTileBox p_box)
       {
       if ( p_box == null ) return;
       
       update_box = update_box.union(p_box);
+      update_box_pending = update_box_pending.union(p_box);
       }
 
    /**
@@ -1369,11 +1436,166 @@ public final class RoutingBoard implements java.io.Serializable
       
       undo_items.insert(p_item);
       
+      item_index.add(p_item);
+      
       search_tree_manager.insert(p_item);
 
       observers.notify_new(p_item);
       }
 
+   /**
+    * Inserts an item into the board data base but not into the search trees
+    * Used when the caller moves the tree entries of another item to p_item
+    */
+   public void insert_item_keep_tree_entries(BrdItem p_item)
+      {
+      undo_items.insert(p_item);
+      
+      item_index.add(p_item);
+      
+      item_contacts_changed(p_item);
+      }
+
+   /**
+    * Undo may restore a node with a level above the current one, that is then skipped when reading the items
+    * The index must give the same items as reading them, so such an item is not indexed
+    */
+   private void item_index_restored(BrdItem p_item)
+      {
+      if ( undo_items.get(p_item.get_id_no()) != p_item ) return;
+      
+      item_index.add(p_item);
+      }
+
+   /**
+    * To be called when the nets of p_item, that is on the board, have been changed
+    */
+   public void item_nets_changed(BrdItem p_item)
+      {
+      connectivity.nets_changed(item_index.get_indexed_nets(p_item.get_id_no()));
+      connectivity.nets_changed(p_item.net_nos);
+      
+      contact_cache.item_changed(p_item);
+      
+      item_index.add(p_item);
+      
+      item_listeners_notify(p_item);
+      }
+
+   /**
+    * To be called when p_item is put on or taken off the board or when its shape changes
+    * The connected sets of its nets will be computed again
+    */
+   public void item_contacts_changed(BrdItem p_item)
+      {
+      connectivity.nets_changed(p_item.net_nos);
+      
+      contact_cache.item_changed(p_item);
+      
+      item_listeners_notify(p_item);
+      }
+
+   /**
+    * To be called when the tree entries of p_trace have been changed to p_new_polyline, before p_trace takes it
+    * The contacts at the new end points are dropped too, the trace still has the old ones
+    */
+   public void trace_contacts_changed(BrdTracep p_trace, Polyline p_new_polyline)
+      {
+      item_contacts_changed(p_trace);
+      
+      contact_cache.area_changed(p_new_polyline.bounding_box());
+      }
+
+   /**
+    * @return the cached normal contacts of p_trace at p_point, do not change them, null if they must be found
+    * @param p_slot_no from contact_slot_no()
+    */
+   public TreeSet<BrdItem> contact_cache_get(BrdTracep p_trace, PlaPoint p_point, int p_slot_no)
+      {
+      // the cache is not thread safe, threads reading the board find the contacts in the tree
+      if ( search_tree_manager.get_default_tree().has_concurrent_readers() ) return null;
+      
+      return contact_cache.get(p_trace, p_point, p_slot_no);
+      }
+
+   /**
+    * Keeps the normal contacts of p_trace, p_contacts must not be changed any more
+    */
+   public void contact_cache_put(BrdTracep p_trace, int p_slot_no, TreeSet<BrdItem> p_contacts)
+      {
+      if ( search_tree_manager.get_default_tree().has_concurrent_readers() ) return;
+      
+      contact_cache.put(p_trace, p_slot_no, p_contacts);
+      }
+
+   /**
+    * @return the slot of the normal contacts of a trace at its first or last corner, found with the given options
+    */
+   public static int contact_slot_no(boolean p_at_end, boolean p_ignore_net, boolean p_skip_areas)
+      {
+      return BrdContactCache.slot_no(p_at_end, p_ignore_net, p_skip_areas);
+      }
+
+   /**
+    * @return the hits and misses of the contacts cache
+    */
+   public String contact_cache_stat()
+      {
+      return contact_cache.toString();
+      }
+
+   private void item_listeners_notify(BrdItem p_item)
+      {
+      // this is called for every change of the search trees, no iterator is needed to go trough a few listeners
+      for (int index = 0; index < item_listeners.size(); ++index) item_listeners.get(index).item_changed(p_item);
+      }
+
+   /**
+    * p_listener will be told of every item that is put on the board, taken off it or changed, until it is removed
+    */
+   public void item_listener_add(BrdItemListener p_listener)
+      {
+      if ( ! item_listeners.contains(p_listener) ) item_listeners.add(p_listener);
+      }
+
+   public void item_listener_remove(BrdItemListener p_listener)
+      {
+      item_listeners.remove(p_listener);
+      }
+   
+   /**
+    * @return the via or trace on the board with the id of p_item, it may be another version of it, null if there is none
+    */
+   public BrdItem get_route_item(BrdItem p_item)
+      {
+      return item_index.get_route_item(p_item);
+      }
+
+   /**
+    * @return the items of net p_net_no connected to p_item, do not change it, null if they must be found by walking the contacts
+    */
+   public Set<BrdItem> get_connected_component(BrdItem p_item, int p_net_no)
+      {
+      return connectivity.get_component(p_item, p_net_no);
+      }
+
+   /**
+    * @return a number that changes every time the items of net p_net_no, or their contacts, change
+    * Compare it with a value taken before to know if what has been computed from the net is still valid
+    */
+   public int get_net_change_count(int p_net_no)
+      {
+      return connectivity.get_change_count(p_net_no);
+      }
+
+   /**
+    * @return a new set with the items of net p_net_no not connected to p_item, null if they must be found by walking the contacts
+    */
+   public Set<BrdItem> get_unconnected_items(BrdItem p_item, int p_net_no)
+      {
+      return connectivity.get_unconnected(p_item, p_net_no);
+      }
+
    /**
     * Restores the situation at the previous snapshot.
     * Returns false, if no more undo is possible. 
@@ -1396,6 +1618,7 @@ public final class RoutingBoard implements java.io.Serializable
          BrdItem curr_item = (BrdItem) iter.next();
 
          search_tree_manager.remove(curr_item);
+         item_index.remove(curr_item);
 
          // let the observers syncronize the deletion
          observers.notify_deleted(curr_item);
@@ -1419,6 +1642,7 @@ public final class RoutingBoard implements java.io.Serializable
          curr_item.art_item_clear();
          
          search_tree_manager.insert(curr_item);
+         item_index_restored(curr_item);
 
          // let the observers know the insertion
          observers.notify_new(curr_item);
@@ -1451,6 +1675,7 @@ public final class RoutingBoard implements java.io.Serializable
          {
          BrdItem curr_item = (BrdItem) it.next();
          search_tree_manager.remove(curr_item);
+         item_index.remove(curr_item);
          // let the observers syncronize the deletion
          observers.notify_deleted(curr_item);
          if (p_changed_nets != null)
@@ -1467,6 +1692,7 @@ public final class RoutingBoard implements java.io.Serializable
          BrdItem curr_item = (BrdItem) it.next();
          curr_item.r_board = this;
          search_tree_manager.insert(curr_item);
+         item_index_restored(curr_item);
          curr_item.art_item_clear();
          // let the observers know the insertion
          observers.notify_new(curr_item);
@@ -1585,6 +1811,8 @@ public final class RoutingBoard implements java.io.Serializable
 
       // restore all transient fields to a correct value
       update_box          = ShapeTileBox.EMPTY;
+      update_box_pending  = ShapeTileBox.EMPTY;
+      contact_cache       = new BrdContactCache(bounding_box);
       search_tree_manager = new AwtreeManager(this);
       shove_trace_algo    = new AlgoShoveTrace(this);  
       shove_via_algo      = new AlgoShoveVia(this);
@@ -1596,14 +1824,59 @@ public final class RoutingBoard implements java.io.Serializable
       observers           = new ObserverItemVoid();
       changed_area        = new BrdChangedArea();
       
-      for ( BrdItem curr_item : get_items() )
+      Collection<BrdItem> board_items = get_items();
+      
+      item_index = new BrdItemIndex();
+      connectivity = new BrdConnectivity(item_index);
+      item_listeners = new ArrayList<BrdItemListener>();
+      
+      for ( BrdItem curr_item : board_items ) 
          {
-         // insert the items on the board into the search trees
          curr_item.set_transient_field(this); 
-
-         search_tree_manager.insert(curr_item);
+         item_index.add(curr_item);
          }
+
+      // insert the items on the board into the search trees, all together so the trees are balanced
+      search_tree_manager.insert_all(board_items);
+      
+      }
+   
+   /**
+    * Serialize this board so that independent copies of it can be created with copy_from()
+    * The idea is to serialize once and create many copies, eg: one for each parallel autoroute worker
+    */
+   public byte[] copy_data() throws IOException
+      {
+      ByteArrayOutputStream byte_stream = new ByteArrayOutputStream();
+      ObjectOutputStream object_stream = new ObjectOutputStream(byte_stream);
+      object_stream.writeObject(this);
+      object_stream.close();
+      return byte_stream.toByteArray();
+      }
+
+   /**
+    * Creates a new board from data returned by copy_data(), nothing is shared with the original board
+    * The search trees are rebuilt on read, so this is not cheap, but it can be done in parallel
+    */
+   public static RoutingBoard copy_from(byte[] p_data, Stat p_stat) throws IOException, ClassNotFoundException
+      {
+      ObjectInputStream object_stream = new ObjectInputStream(new ByteArrayInputStream(p_data));
+      RoutingBoard result = (RoutingBoard) object_stream.readObject();
+      object_stream.close();
+      result.stat = p_stat;
+      return result;
+      }
+   
+   /**
+    * The drill pages used by the autoroute engine, they are created once and reset for each connection
+    * The search marks of the pages are per board, so only one connection at a time can be routed on a board
+    */
+   public DrillPageArray get_drill_page_array(double p_max_page_width)
+      {
+      if ( drill_page_array == null || drill_page_array.max_page_width != p_max_page_width )
+         drill_page_array = new DrillPageArray(this, p_max_page_width);
       
+      return drill_page_array;
       }
    
    public void set_transient_item ( IteraBoard p_itera_board )
@@ -17,12 +17,14 @@ package board.algo;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeSet;
 import board.BrdFromSide;
 import board.BrdShapeAndFromSide;
 import board.RoutingBoard;
+import board.awtree.AwtreeFindBuffer;
 import board.awtree.AwtreeObject;
 import board.awtree.AwtreeShapeSearch;
 import board.items.BrdAbit;
@@ -63,6 +65,11 @@ public final class AlgoShoveTrace
    
    private final RoutingBoard r_board;
    
+   // reused by the queries for obstacles, each is read completely before the next query that uses it
+   private final AwtreeFindBuffer obstacle_buffer = new AwtreeFindBuffer();
+   private final AwtreeFindBuffer tie_pin_buffer = new AwtreeFindBuffer();
+   private final AwtreeFindBuffer spring_over_buffer = new AwtreeFindBuffer();
+   
    public AlgoShoveTrace(RoutingBoard p_board)
       {
       r_board = p_board;
@@ -107,9 +114,7 @@ public final class AlgoShoveTrace
       
       AlgoShoveTraceEntries shape_entries = new AlgoShoveTraceEntries(p_trace_shape, p_layer, p_net_no_arr, p_cl_type, p_from_side, r_board);
       AwtreeShapeSearch search_tree = r_board.search_tree_manager.get_default_tree();
-      Collection<BrdItem> obstacles = search_tree.find_overlap_items_with_clearance(p_trace_shape, p_layer, NetNosList.EMPTY, p_cl_type);
-      obstacles.removeAll(get_ignore_items_at_tie_pins(p_trace_shape, p_layer, p_net_no_arr));
-      boolean obstacles_shovable = shape_entries.store_items(obstacles, false, true);
+      boolean obstacles_shovable = store_obstacles(shape_entries, search_tree, p_trace_shape, p_layer, p_cl_type, get_ignore_items_at_tie_pins(p_trace_shape, p_layer, p_net_no_arr));
       
       if (!obstacles_shovable)
          {
@@ -295,8 +300,7 @@ public final class AlgoShoveTrace
       
       BrdFromSide from_side = new BrdFromSide(p_line_segment, trace_shape, p_shove_to_the_left);
       AlgoShoveTraceEntries shape_entries = new AlgoShoveTraceEntries(trace_shape, p_layer, p_net_no_arr, p_cl_type, from_side, r_board);
-      Collection<BrdItem> obstacles = search_tree.find_overlap_items_with_clearance(trace_shape, p_layer, NetNosList.EMPTY, p_cl_type);
-      boolean obstacles_shovable = shape_entries.store_items(obstacles, false, true);
+      boolean obstacles_shovable = store_obstacles(shape_entries, search_tree, trace_shape, p_layer, p_cl_type, Collections.<BrdItem>emptySet());
 
       if (!obstacles_shovable || shape_entries.trace_tails_in_shape()) return 0;
       
@@ -461,6 +465,7 @@ public final class AlgoShoveTrace
       
       AlgoShoveTraceEntries shape_entries = new AlgoShoveTraceEntries(p_trace_shape, p_layer, p_net_no_arr, p_cl_type, p_from_side, r_board);
       AwtreeShapeSearch search_tree = r_board.search_tree_manager.get_default_tree();
+      // the obstacles are needed after storing them, to cut them out of the board, so here they are a real collection
       Collection<BrdItem> obstacles = search_tree.find_overlap_items_with_clearance(p_trace_shape, p_layer, NetNosList.EMPTY, p_cl_type);
       obstacles.removeAll(get_ignore_items_at_tie_pins(p_trace_shape, p_layer, p_net_no_arr));
       boolean obstacles_shovable = shape_entries.store_items(obstacles, false, true);
@@ -575,23 +580,50 @@ public final class AlgoShoveTrace
       return true;
       }
 
+   /**
+    * Finds the items overlapping p_shape inclusive clearance and stores them in p_shape_entries, skipping p_ignore_items
+    * @return false, if there are obstacles which cannot be shoved aside
+    */
+   private boolean store_obstacles(AlgoShoveTraceEntries p_shape_entries, AwtreeShapeSearch p_search_tree, ShapeTile p_shape, int p_layer, int p_cl_type, Collection<BrdItem> p_ignore_items)
+      {
+      p_search_tree.find_overlap_tree_entries_with_clearance(p_shape, p_layer, NetNosList.EMPTY, p_cl_type, obstacle_buffer);
+      
+      // the items in the same order as the set returned by find_overlap_items_with_clearance()
+      int obstacle_count = obstacle_buffer.sort_distinct_objects();
+
+      boolean risul = p_shape_entries.store_items(obstacle_buffer, obstacle_count, p_ignore_items, false, true);
+      
+      obstacle_buffer.clear();
+      
+      return risul;
+      }
+   
    private Collection<BrdItem> get_ignore_items_at_tie_pins(ShapeTile p_trace_shape, int p_layer, NetNosList p_net_no_arr)
       {
-      Collection<AwtreeObject> overlaps = r_board.overlapping_objects(p_trace_shape, p_layer);
+      r_board.search_tree_manager.get_default_tree().find_overlap_tree_entries(p_trace_shape, p_layer, NetNosList.EMPTY, tie_pin_buffer);
 
-      Set<BrdItem> result = new TreeSet<BrdItem>();
+      Set<BrdItem> result = null;
 
-      for (AwtreeObject curr_object : overlaps)
+      for (int index = 0; index < tie_pin_buffer.size(); ++index)
          {
+         AwtreeObject curr_object = tie_pin_buffer.get_object(index);
+         
          if ( ! (curr_object instanceof BrdAbitPin) ) continue;
          
          BrdAbitPin curr_pin = (BrdAbitPin) curr_object;
          
          if (curr_pin.shares_net_no(p_net_no_arr))
             {
+            if ( result == null ) result = new TreeSet<BrdItem>();
+            
             result.addAll(curr_pin.get_all_contacts(p_layer));
             }
          }
+      
+      tie_pin_buffer.clear();
+      
+      if ( result == null ) return Collections.<BrdItem>emptySet();
+      
       return result;
       }
 
@@ -625,10 +657,18 @@ public final class AlgoShoveTrace
          {
          ShapeTile curr_shape = p_polyline.offset_shape(p_half_width, index);
          
-         Collection<BrdItem> obstacles = search_tree.find_overlap_items_with_clearance(curr_shape, p_layer, check_net_no_arr, p_cl_type);
+         search_tree.find_overlap_tree_entries_with_clearance(curr_shape, p_layer, check_net_no_arr, p_cl_type, spring_over_buffer);
+         
+         int obstacle_count = spring_over_buffer.sort_distinct_objects();
          
-         for ( BrdItem curr_item : obstacles )
+         for (int obstacle_index = 0; obstacle_index < obstacle_count; ++obstacle_index)
             {
+            AwtreeObject curr_object = spring_over_buffer.get_distinct_object(obstacle_index);
+            
+            if ( ! (curr_object instanceof BrdItem) ) continue;
+            
+            BrdItem curr_item = (BrdItem) curr_object;
+            
             boolean is_obstacle;
          
             if (curr_item.shares_net_no(p_net_no_arr))
@@ -706,6 +746,8 @@ public final class AlgoShoveTrace
          if (found_obstacle != null)  break;
          }
       
+      spring_over_buffer.clear();
+      
       if (found_obstacle == null)
          {
          // no obstacle in the way, nothing to do
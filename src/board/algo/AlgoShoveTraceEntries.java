@@ -22,6 +22,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import board.BrdFromSide;
 import board.RoutingBoard;
+import board.awtree.AwtreeFindBuffer;
+import board.awtree.AwtreeObject;
 import board.awtree.AwtreeShapeSearch;
 import board.items.BrdAbitPin;
 import board.items.BrdAbitVia;
@@ -93,63 +95,100 @@ public final class AlgoShoveTraceEntries
       {
       for ( BrdItem curr_item : p_item_list )
          {
-         if (!p_is_pad_check && curr_item instanceof BrdAreaObstacleVia || curr_item instanceof BrdAreaObstacleComp)
-            {
-            continue;
-            }
+         if ( ! store_item(curr_item, p_is_pad_check, p_copper_sharing_allowed) ) return false;
+         }
+      
+      return store_items_done();
+      }
 
-         boolean contains_own_net = curr_item.shares_net_no(own_net_nos);
+   /**
+    * As store_items(Collection) but the items are the distinct objects of p_found, that must already be sorted
+    * Items in p_ignore_items are skipped, so the caller does not have to build a collection just to remove them
+    */
+   public boolean store_items(AwtreeFindBuffer p_found, int p_distinct_count, Collection<BrdItem> p_ignore_items, boolean p_is_pad_check, boolean p_copper_sharing_allowed)
+      {
+      for (int index = 0; index < p_distinct_count; ++index)
+         {
+         AwtreeObject curr_object = p_found.get_distinct_object(index);
          
-         if (curr_item instanceof BrdAreaConduction && (contains_own_net || !((BrdAreaConduction) curr_item).is_area_obstacle()))
+         if ( ! ( curr_object instanceof BrdItem ) ) continue;
+         
+         BrdItem curr_item = (BrdItem) curr_object;
+         
+         if ( p_ignore_items.contains(curr_item) ) continue;
+         
+         if ( ! store_item(curr_item, p_is_pad_check, p_copper_sharing_allowed) ) return false;
+         }
+      
+      return store_items_done();
+      }
+   
+   /**
+    * @return false if p_item is an obstacle that cannot be shoved aside
+    */
+   private boolean store_item(BrdItem curr_item, boolean p_is_pad_check, boolean p_copper_sharing_allowed)
+      {
+      if (!p_is_pad_check && curr_item instanceof BrdAreaObstacleVia || curr_item instanceof BrdAreaObstacleComp)
+         {
+         return true;
+         }
+
+      boolean contains_own_net = curr_item.shares_net_no(own_net_nos);
+      
+      if (curr_item instanceof BrdAreaConduction && (contains_own_net || !((BrdAreaConduction) curr_item).is_area_obstacle()))
+         {
+         return true;
+         }
+      
+      if (curr_item.is_shove_fixed() && !contains_own_net)
+         {
+         found_obstacle = curr_item;
+         return false;
+         }
+      
+      if (curr_item instanceof BrdAbitVia)
+         {
+         if (p_is_pad_check || !contains_own_net)
             {
-            continue;
+            shove_via_list.add((BrdAbitVia) curr_item);
             }
-         
-         if (curr_item.is_shove_fixed() && !contains_own_net)
+         }
+      else if (curr_item instanceof BrdTracep)
+         {
+         BrdTracep curr_trace = (BrdTracep) curr_item;
+
+         if (!store_trace(curr_trace))
             {
-            found_obstacle = curr_item;
             return false;
             }
-         
-         if (curr_item instanceof BrdAbitVia)
+         }
+      else
+         {
+         if (contains_own_net)
             {
-            if (p_is_pad_check || !contains_own_net)
+            if (!p_copper_sharing_allowed)
                {
-               shove_via_list.add((BrdAbitVia) curr_item);
+               found_obstacle = curr_item;
+               return false;
                }
-            }
-         else if (curr_item instanceof BrdTracep)
-            {
-            BrdTracep curr_trace = (BrdTracep) curr_item;
-
-            if (!store_trace(curr_trace))
+            if (p_is_pad_check && !((curr_item instanceof BrdAbitPin) && ((BrdAbitPin) curr_item).drill_allowed()))
                {
+               found_obstacle = curr_item;
                return false;
                }
             }
          else
             {
-            if (contains_own_net)
-               {
-               if (!p_copper_sharing_allowed)
-                  {
-                  found_obstacle = curr_item;
-                  return false;
-                  }
-               if (p_is_pad_check && !((curr_item instanceof BrdAbitPin) && ((BrdAbitPin) curr_item).drill_allowed()))
-                  {
-                  found_obstacle = curr_item;
-                  return false;
-                  }
-               }
-            else
-               {
-               found_obstacle = curr_item;
-               return false;
-               }
+            found_obstacle = curr_item;
+            return false;
             }
          }
       
+      return true;
+      }
+   
+   private boolean store_items_done()
+      {
       search_from_side();
       resort();
       
@@ -354,7 +393,7 @@ public final class AlgoShoveTraceEntries
             p_trace.clearance_idx(), 0, ItemFixState.UNFIXED,
             board);
 
-      board.undo_items.insert(start_piece);
+      board.insert_item_keep_tree_entries(start_piece);
       start_piece.set_on_the_board(true);
 
       BrdTracep end_piece = new BrdTracep(
@@ -364,7 +403,7 @@ public final class AlgoShoveTraceEntries
             p_trace.net_nos, 
             p_trace.clearance_idx(), 0, ItemFixState.UNFIXED, board);
 
-      board.undo_items.insert(end_piece);
+      board.insert_item_keep_tree_entries(end_piece);
       end_piece.set_on_the_board(true);
 
       board.search_tree_manager.reuse_entries_after_cutout(p_trace, start_piece, end_piece);
@@ -0,0 +1,56 @@
+package board.awtree;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.Comparator;
+import freert.planar.ShapeTileBox;
+
+/**
+ * A leaf with the center of its bounding box, used to sort leaves when building a balanced tree
+ */
+final class AwtreeBulkEntry
+   {
+   static final Comparator<AwtreeBulkEntry> X_ORDER = new Comparator<AwtreeBulkEntry>()
+      {
+      public int compare(AwtreeBulkEntry p_a, AwtreeBulkEntry p_b)
+         {
+         return Double.compare(p_a.center_x, p_b.center_x);
+         }
+      };
+
+   static final Comparator<AwtreeBulkEntry> Y_ORDER = new Comparator<AwtreeBulkEntry>()
+      {
+      public int compare(AwtreeBulkEntry p_a, AwtreeBulkEntry p_b)
+         {
+         return Double.compare(p_a.center_y, p_b.center_y);
+         }
+      };
+
+   final AwtreeNodeLeaf leaf;
+   final double center_x;
+   final double center_y;
+
+   AwtreeBulkEntry(AwtreeNodeLeaf p_leaf)
+      {
+      leaf = p_leaf;
+
+      ShapeTileBox leaf_box = p_leaf.bounding_shape.bounding_box();
+
+      center_x = ((double)leaf_box.box_ll.v_x + leaf_box.box_ur.v_x) / 2;
+      center_y = ((double)leaf_box.box_ll.v_y + leaf_box.box_ur.v_y) / 2;
+      }
+   }
@@ -0,0 +1,128 @@
+package board.awtree;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.Arrays;
+
+/**
+ * Reusable result of the find methods of the search tree
+ * The caller keeps one of these and passes it to the queries, so that a query does not allocate a new collection every time
+ * The entries are in the same order as the collections returned by the old find methods, sorted by object and shape index
+ * A buffer must not be used by a query nested inside the loop that reads it, use a different buffer for that
+ * @author damiano
+ */
+public final class AwtreeFindBuffer
+   {
+   private AwtreeObject[] object_arr = new AwtreeObject[32];
+   private int[] shape_index_arr = new int[32];
+   private int entry_count;
+   
+   // the objects of the entries without duplicates, in the order of a TreeSet of objects, see sort_distinct_objects()
+   private AwtreeObject[] distinct_arr = new AwtreeObject[32];
+   private int distinct_count;
+   
+   // set while a tree is using this buffer for its own temporary results
+   boolean busy;
+
+   /**
+    * Removes all entries, the arrays are kept for the next query
+    */
+   public void clear()
+      {
+      // release the references, so that deleted items are not kept alive by the buffer
+      Arrays.fill(object_arr, 0, entry_count, null);
+      entry_count = 0;
+      Arrays.fill(distinct_arr, 0, distinct_count, null);
+      distinct_count = 0;
+      }
+
+   public int size()
+      {
+      return entry_count;
+      }
+
+   public boolean is_empty()
+      {
+      return entry_count == 0;
+      }
+
+   public AwtreeObject get_object(int p_index)
+      {
+      return object_arr[p_index];
+      }
+
+   public int get_shape_index(int p_index)
+      {
+      return shape_index_arr[p_index];
+      }
+
+   /**
+    * Since entries are sorted by object all the shapes of an object are next to each other
+    * @return true if the entry at p_index has the same object as the entry before it
+    */
+   public boolean is_same_object_as_previous(int p_index)
+      {
+      return p_index > 0 && object_arr[p_index] == object_arr[p_index - 1];
+      }
+
+   /**
+    * Sorts the objects of the entries in the same order a TreeSet of them would have and removes the duplicates
+    * It is what the find methods returning a set of objects or items do, without building the set
+    * @return the number of distinct objects, read them with get_distinct_object()
+    */
+   public int sort_distinct_objects()
+      {
+      if ( distinct_arr.length < entry_count ) distinct_arr = new AwtreeObject[object_arr.length];
+      
+      Arrays.fill(distinct_arr, 0, distinct_count, null);
+      
+      System.arraycopy(object_arr, 0, distinct_arr, 0, entry_count);
+
+      Arrays.sort(distinct_arr, 0, entry_count);
+      
+      distinct_count = 0;
+      
+      for (int index = 0; index < entry_count; ++index)
+         {
+         if ( distinct_count > 0 && distinct_arr[distinct_count - 1] == distinct_arr[index] ) continue;
+         
+         distinct_arr[distinct_count++] = distinct_arr[index];
+         }
+      
+      Arrays.fill(distinct_arr, distinct_count, entry_count, null);
+      
+      return distinct_count;
+      }
+
+   public AwtreeObject get_distinct_object(int p_index)
+      {
+      return distinct_arr[p_index];
+      }
+
+   void add(AwtreeObject p_object, int p_shape_index)
+      {
+      if ( entry_count >= object_arr.length )
+         {
+         object_arr = Arrays.copyOf(object_arr, object_arr.length * 2);
+         shape_index_arr = Arrays.copyOf(shape_index_arr, shape_index_arr.length * 2);
+         }
+      
+      object_arr[entry_count] = p_object;
+      shape_index_arr[entry_count] = p_shape_index;
+      entry_count++;
+      }
+   }
@@ -0,0 +1,85 @@
+package board.awtree;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.Arrays;
+
+/**
+ * The leaves found by a traversal of the tree, kept by the tree and reused between queries
+ * @author damiano
+ */
+final class AwtreeLeafBuffer
+   {
+   AwtreeNodeLeaf[] leaf_arr = new AwtreeNodeLeaf[64];
+   int leaf_count;
+   
+   // sort keys for the clearance query, the clearance in the high half and the leaf position in the low half
+   long[] key_arr = new long[64];
+
+   // set while a query is reading the leaves, a nested query must then use a new buffer
+   boolean busy;
+
+   void clear()
+      {
+      Arrays.fill(leaf_arr, 0, leaf_count, null);
+      leaf_count = 0;
+      }
+
+   void add(AwtreeNodeLeaf p_leaf)
+      {
+      if ( leaf_count >= leaf_arr.length ) leaf_arr = Arrays.copyOf(leaf_arr, leaf_arr.length * 2);
+      
+      leaf_arr[leaf_count++] = p_leaf;
+      }
+
+   /**
+    * Sets the clearance used by sort_by_clearance() for the leaf at p_pos
+    */
+   void set_clearance(int p_pos, int p_clearance)
+      {
+      if ( p_pos >= key_arr.length ) key_arr = Arrays.copyOf(key_arr, leaf_arr.length);
+      
+      key_arr[p_pos] = ((long)p_clearance << 32) | p_pos;
+      }
+   
+   /**
+    * Sorts the keys of the first p_count leaves by clearance, leaves with the same clearance keep their order
+    * Read the result with sorted_leaf() and sorted_clearance()
+    */
+   void sort_by_clearance(int p_count)
+      {
+      Arrays.sort(key_arr, 0, p_count);
+      }
+
+   AwtreeNodeLeaf sorted_leaf(int p_index)
+      {
+      return leaf_arr[(int)(key_arr[p_index] & 0xFFFFFFFFL)];
+      }
+
+   int sorted_clearance(int p_index)
+      {
+      return (int)(key_arr[p_index] >>> 32);
+      }
+   
+   /**
+    * Sorts the leaves by object and shape index, the same order the TreeSet of leaves had
+    */
+   void sort()
+      {
+      Arrays.sort(leaf_arr, 0, leaf_count);
+      }
+   }
@@ -21,22 +21,35 @@
 
 package board.awtree;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import board.RoutingBoard;
 import board.items.BrdItem;
 import board.items.BrdTracep;
 import freert.planar.Polyline;
+import freert.rules.NetClasses;
 import freert.varie.UndoObjectNode;
 
 /**
  * The "default_tree" normally do not use clearance compensation, and declares to do so
  * It is possible to create other threes that use clearance compensation and this is what it is done
  * Having the "default" tree use a "forced" clearance is no use and especially confuses the logic
+ * Every tree locks itself when changed, so threads can query a tree while the board is changed, the list of trees is not thread safe
+ * Contacts between items are found in the trees, so every change of the entries of an item tells the board its connected sets are stale
  * @author Alfons Wirtz
  */
 public final class AwtreeManager
    {
+   private static final String classname="AwtreeManager.";
+   
    private final RoutingBoard r_board;
    private final LinkedList<AwtreeShapeSearch> search_trees = new LinkedList<AwtreeShapeSearch>();
 
@@ -62,6 +75,31 @@ public final class AwtreeManager
       for (AwtreeShapeSearch curr_tree : search_trees) curr_tree.insert(p_item);
       
       p_item.set_on_the_board(true);
+      
+      r_board.item_contacts_changed(p_item);
+      }
+
+   /**
+    * Inserts many items at once into all search trees, the trees are then balanced
+    * Use it when loading a board, it is much better than inserting one item at a time
+    */
+   public void insert_all(Collection<BrdItem> p_items)
+      {
+      for (AwtreeShapeSearch curr_tree : search_trees) curr_tree.insert_all(p_items);
+      
+      for (BrdItem curr_item : p_items ) 
+         {
+         curr_item.set_on_the_board(true);
+         r_board.item_contacts_changed(curr_item);
+         }
+      }
+
+   /**
+    * Rebuild balanced all search trees, eg: after a design has been read item by item
+    */
+   public void rebalance()
+      {
+      for (AwtreeShapeSearch curr_tree : search_trees) curr_tree.rebalance();
       }
 
    /**
@@ -83,6 +121,8 @@ public final class AwtreeManager
       p_item.clear_search_tree_entries();
       
       p_item.set_on_the_board(false);
+      
+      r_board.item_contacts_changed(p_item);
       }
 
    /**
@@ -111,24 +151,38 @@ public final class AwtreeManager
 
    /**
     * Actions to be done, when a value in the clearance matrix is changed interactively.
+    * A compensated tree depends only on the matrix row of its class, so just the trees whose row has changed are rebuilt
     */
    public void clearance_value_changed()
       {
-      // delete all trees except the default tree
+      LinkedList<Integer> changed_classes = new LinkedList<Integer>();
+      
       Iterator<AwtreeShapeSearch> iter = search_trees.iterator();
 
       while (iter.hasNext())
          {
          AwtreeShapeSearch curr_tree = iter.next();
       
-         if (curr_tree.compensated_clearance_class_no != default_tree.compensated_clearance_class_no)
-            {
-            iter.remove();
-            }
+         if (curr_tree == default_tree) continue;
+
+         if ( ! curr_tree.is_compensation_changed() ) continue;
+         
+         iter.remove();
+         
+         tree_discard(curr_tree);
+         
+         changed_classes.add(curr_tree.compensated_clearance_class_no);
          }
       
-      //remove_all_board_items();
-      //insert_all_board_items();
+      build_autoroute_trees(changed_classes, Runtime.getRuntime().availableProcessors());
+      }
+
+   /**
+    * Items keep their entries and shapes for each tree, a tree no longer used should not be kept alive by them
+    */
+   private void tree_discard(AwtreeShapeSearch p_tree)
+      {
+      for (BrdItem curr_item : r_board.get_items()) curr_item.clear_search_tree_entries(p_tree);
       }
 
    /**
@@ -148,7 +202,11 @@ public final class AwtreeManager
          {
          AwtreeShapeSearch curr_tree = it.next();
          
-         if (curr_tree.compensated_clearance_class_no == p_no) it.remove();
+         if (curr_tree.compensated_clearance_class_no != p_no) continue;
+         
+         it.remove();
+         
+         tree_discard(curr_tree);
          }
       }
 
@@ -158,30 +216,118 @@ public final class AwtreeManager
     */
    public AwtreeShapeSearch get_autoroute_tree(int p_clearance_class_no)
       {
-      for (AwtreeShapeSearch curr_tree : search_trees)
-         {
-         if (curr_tree.compensated_clearance_class_no == p_clearance_class_no)
-            {
-            return curr_tree;
-            }
-         }
+      AwtreeShapeSearch found_tree = find_tree(p_clearance_class_no);
+      
+      if ( found_tree != null ) return found_tree;
 
       AwtreeShapeSearch curr_autoroute_tree = new AwtreeShapeSearch( r_board, p_clearance_class_no);
       
       search_trees.add(curr_autoroute_tree);
       
-      Iterator<UndoObjectNode> iter = r_board.undo_items.start_read_object();
+      curr_autoroute_tree.insert_all(r_board.get_items());
+      
+      return curr_autoroute_tree;
+      }
 
-      for (;;)
+   /**
+    * Builds the compensated trees of the trace clearance classes used by the net classes, so that routing a connection does not have to wait for it
+    * Use it after a design has been read
+    */
+   public void build_autoroute_trees()
+      {
+      TreeSet<Integer> class_set = new TreeSet<Integer>();
+      
+      NetClasses net_classes = r_board.brd_rules.net_classes;
+      
+      for (int index = 0; index < net_classes.count(); ++index) class_set.add(net_classes.get(index).get_trace_clearance_class());
+      
+      build_autoroute_trees(class_set, Runtime.getRuntime().availableProcessors());
+      }
+   
+   /**
+    * Builds the compensated trees of p_clearance_classes that do not exist yet, using up to p_thread_count threads
+    * Each tree is built by one thread, the items are shared, but each tree writes only its own entries in them
+    */
+   public void build_autoroute_trees(Collection<Integer> p_clearance_classes, int p_thread_count)
+      {
+      final ArrayList<AwtreeShapeSearch> new_trees = new ArrayList<AwtreeShapeSearch>();
+
+      for (Integer curr_class : p_clearance_classes )
          {
-         BrdItem curr_item = (BrdItem) r_board.undo_items.read_next(iter);
+         // class 0 is not compensated, it is the default tree
+         if ( curr_class <= 0 || curr_class >= r_board.brd_rules.clearance_matrix.get_class_count() ) continue;
+         
+         if ( find_tree(curr_class) != null ) continue;
+
+         new_trees.add(new AwtreeShapeSearch( r_board, curr_class));
+         }
       
-         if (curr_item == null) break;
+      if ( new_trees.isEmpty() ) return;
+      
+      final Collection<BrdItem> board_items = r_board.get_items();
+      
+      int thread_count = Math.min(p_thread_count, new_trees.size());
+      
+      if ( thread_count <= 1 )
+         {
+         for (AwtreeShapeSearch curr_tree : new_trees ) curr_tree.insert_all(board_items);
+         
+         search_trees.addAll(new_trees);
 
-         curr_autoroute_tree.insert(curr_item);
+         return;
          }
       
-      return curr_autoroute_tree;
+      ArrayList<Callable<AwtreeShapeSearch>> builders = new ArrayList<Callable<AwtreeShapeSearch>>(new_trees.size());
+      
+      for (final AwtreeShapeSearch curr_tree : new_trees )
+         {
+         builders.add(new Callable<AwtreeShapeSearch>()
+            {
+            @Override
+            public AwtreeShapeSearch call()
+               {
+               curr_tree.insert_all(board_items);
+               return curr_tree;
+               }
+            });
+         }
+      
+      ExecutorService executor = Executors.newFixedThreadPool(thread_count);
+      
+      try
+         {
+         for (Future<AwtreeShapeSearch> curr_future : executor.invokeAll(builders))
+            {
+            try
+               {
+               search_trees.add(curr_future.get());
+               }
+            catch ( ExecutionException exc )
+               {
+               // the tree will be built again when it is asked for
+               r_board.userPrintln(classname+"build_autoroute_trees", exc);
+               }
+            }
+         }
+      catch ( InterruptedException exc )
+         {
+         r_board.userPrintln(classname+"build_autoroute_trees: interrupted");
+         Thread.currentThread().interrupt();
+         }
+      finally
+         {
+         executor.shutdown();
+         }
+      }
+
+   private AwtreeShapeSearch find_tree(int p_clearance_class_no)
+      {
+      for (AwtreeShapeSearch curr_tree : search_trees)
+         {
+         if (curr_tree.compensated_clearance_class_no == p_clearance_class_no) return curr_tree;
+         }
+      
+      return null;
       }
 
    /**
@@ -250,6 +396,8 @@ public final class AwtreeManager
          {
          curr_tree.merge_entries_in_front(p_from_trace, p_to_trace, p_joined_polyline, p_from_entry_no, p_to_entry_no);
          }
+      
+      r_board.trace_contacts_changed(p_to_trace, p_joined_polyline);
       }
 
    /**
@@ -262,6 +410,8 @@ public final class AwtreeManager
          {
          curr_tree.merge_entries_at_end(p_from_trace, p_to_trace, p_joined_polyline, p_from_entry_no, p_to_entry_no);
          }
+      
+      r_board.trace_contacts_changed(p_to_trace, p_joined_polyline);
       }
 
    /**
@@ -274,6 +424,8 @@ public final class AwtreeManager
          {
          curr_tree.change_entries(p_obj, p_new_polyline, p_keep_at_start_count, p_keep_at_end_count);
          }
+      
+      r_board.trace_contacts_changed(p_obj, p_new_polyline);
       }
 
    /**
@@ -286,6 +438,8 @@ public final class AwtreeManager
          {
          curr_tree.reuse_entries_after_cutout(p_from_trace, p_start_piece, p_end_piece);
          }
+      
+      r_board.item_contacts_changed(p_from_trace);
       }
 
    /**
@@ -21,24 +21,27 @@
 
 package board.awtree;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
- * Implementation of a stack as a LinkedList
+ * Implementation of a stack as a growing array
  * Since this is used only for KdtreeNode I am making a specific class
+ * The array is kept between queries, so a tree traversal does not allocate anything
  *
  * @author Alfons Wirtz
  */
 public final class AwtreeNodeStack
    {
-   private final LinkedList<AwtreeNode> node_list = new LinkedList<AwtreeNode>();
+   private AwtreeNode[] node_arr = new AwtreeNode[64];
+   private int node_count;
 
    /**
     * Sets the stack to empty.
+    * The references left in the array are overwritten by the next pushes, they are not cleared for speed
     */
    public void reset()
       {
-      node_list.clear();
+      node_count = 0;
       }
 
    /**
@@ -48,7 +51,9 @@ public final class AwtreeNodeStack
       {
       if ( p_element == null ) return;
       
-      node_list.add(p_element);
+      if ( node_count >= node_arr.length ) node_arr = Arrays.copyOf(node_arr, node_arr.length * 2);
+      
+      node_arr[node_count++] = p_element;
       }
 
    /**
@@ -57,9 +62,8 @@ public final class AwtreeNodeStack
     */
    public AwtreeNode pop()
       {
-      if (node_list.isEmpty() )
-         return null;
+      if ( node_count <= 0 ) return null;
 
-      return node_list.removeLast();
+      return node_arr[--node_count];
       }
    }
@@ -0,0 +1,29 @@
+package board.awtree;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+/**
+ * What a query needs to walk a search tree, the tree has one for the queries of the owning thread
+ * and one per thread while concurrent readers are registered
+ * @author damiano
+ */
+final class AwtreeQueryContext
+   {
+   final AwtreeNodeStack node_stack = new AwtreeNodeStack();
+   final AwtreeLeafBuffer leaf_buffer = new AwtreeLeafBuffer();
+   final AwtreeFindBuffer find_buffer = new AwtreeFindBuffer();
+   }
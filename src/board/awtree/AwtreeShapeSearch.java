@@ -18,11 +18,13 @@
 package board.awtree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import autoroute.expand.ExpandRoomFreespaceComplete;
 import autoroute.expand.ExpandRoomFreespaceIncomplete;
 import board.RoutingBoard;
@@ -69,17 +71,43 @@ import freert.varie.UnitMeasure;
  */
 public final class AwtreeShapeSearch
    {
+   // below this number of leaves the tree shape is not worth checking
+   private static final int REBALANCE_MIN_LEAF_COUNT = 1000;
+   // rebalance when the average depth is more than this times the depth of a balanced tree
+   private static final double REBALANCE_DEPTH_FACTOR = 3;
+   
    private final RoutingBoard r_board;
 
-   private final AwtreeNodeStack node_stack = new AwtreeNodeStack();
+   // whatever changes the nodes takes the write lock, queries take the read lock only while concurrent readers are registered
+   private final ReentrantReadWriteLock tree_lock = new ReentrantReadWriteLock();
+   // threads reading this tree while another one changes it, see concurrent_reader_add()
+   private volatile int concurrent_readers = 0;
+   // traversal stack and buffers of the queries when there are no concurrent readers
+   private final AwtreeQueryContext single_context = new AwtreeQueryContext();
+   // same, one per thread while concurrent readers are registered, a query nested in the loop of another one gets new buffers
+   private final ThreadLocal<AwtreeQueryContext> query_context = new ThreadLocal<AwtreeQueryContext>()
+      {
+      @Override
+      protected AwtreeQueryContext initialValue()
+         {
+         return new AwtreeQueryContext();
+         }
+      };
    
    // The clearance class number for which the shapes of this tree is compensated, if 0 shapes are not compensated 
    public final int compensated_clearance_class_no;
 
+   // The values of the clearance matrix row the shapes have been compensated with, null if not compensated
+   private final int[] compensation_row_values;
+
    // Root node - initially null 
    private AwtreeNode root_node = null;
    // The number of entries stored in the tree
    private int leaf_count = 0;
+   // inserted plus removed leaves since the tree was last built balanced
+   private int changes_since_balance = 0;
+   // overlap queries and shape completions done, not exact if there are concurrent readers
+   private long query_count = 0;
 
    /**
     * Creates a new ShapeSearchTree. 
@@ -90,6 +118,11 @@ public final class AwtreeShapeSearch
       {
       r_board = p_board;
       compensated_clearance_class_no = p_compensated_clearance_class_no;
+      
+      if ( is_clearance_compensation_used() )
+         compensation_row_values = r_board.brd_rules.clearance_matrix.get_row_values(compensated_clearance_class_no);
+      else
+         compensation_row_values = null;
       }
 
    /**
@@ -97,18 +130,159 @@ public final class AwtreeShapeSearch
     */
    public final void insert(AwtreeObject p_obj)
       {
-      int shape_count = p_obj.tree_shape_count(this);
+      tree_lock.writeLock().lock();
+      
+      try
+         {
+         int shape_count = p_obj.tree_shape_count(this);
+      
+         if (shape_count <= 0)  return;
+
+         AwtreeNodeLeaf[] leaf_arr = new AwtreeNodeLeaf[shape_count];
+
+         for (int index = 0; index < shape_count; ++index)
+            {
+            leaf_arr[index] = insert(p_obj, index);
+            }
+      
+         p_obj.set_search_tree_entries(this, leaf_arr );
+      
+         // inserting one leaf at a time the tree shape depends on the insertion order, check it once in a while
+         if ( changes_since_balance > leaf_count && leaf_count >= REBALANCE_MIN_LEAF_COUNT ) rebalance_if_degenerate();
+         }
+      finally
+         {
+         tree_lock.writeLock().unlock();
+         }
+      }
+
+   /**
+    * Inserts all shapes of all objects, the tree is then rebuilt balanced with the new and the existing leaves
+    * Much better than inserting one object at a time when there are many objects, eg: when a tree is created
+    * The tree shape is not the one of inserting one object at a time, so the routes may differ, see complete_shape()
+    */
+   public final void insert_all(Collection<? extends AwtreeObject> p_objects)
+      {
+      tree_lock.writeLock().lock();
+      
+      try
+         {
+         ArrayList<AwtreeNodeLeaf> leaf_list = to_array();
+      
+         for (AwtreeObject curr_obj : p_objects )
+            {
+            int shape_count = curr_obj.tree_shape_count(this);
+         
+            if (shape_count <= 0)  continue;
+
+            AwtreeNodeLeaf[] leaf_arr = new AwtreeNodeLeaf[shape_count];
+
+            for (int index = 0; index < shape_count; ++index)
+               {
+               leaf_arr[index] = new_leaf(curr_obj, index);
+            
+               if ( leaf_arr[index] != null ) leaf_list.add(leaf_arr[index]);
+               }
+         
+            curr_obj.set_search_tree_entries(this, leaf_arr );
+            }
+      
+         build_balanced(leaf_list);
+         }
+      finally
+         {
+         tree_lock.writeLock().unlock();
+         }
+      }
+
+   /**
+    * Rebuild the tree with the current leaves, the leaves stay the same, so the objects entries are still valid
+    * The routes found after it may differ, see complete_shape()
+    */
+   public final void rebalance()
+      {
+      tree_lock.writeLock().lock();
       
-      if (shape_count <= 0)  return;
+      try
+         {
+         build_balanced(to_array());
+         }
+      finally
+         {
+         tree_lock.writeLock().unlock();
+         }
+      }
+   
+   /**
+    * Rebalance if the average leaf depth is much worse than the one of a balanced tree
+    */
+   private final void rebalance_if_degenerate()
+      {
+      changes_since_balance = 0;
+      
+      ArrayList<AwtreeNodeLeaf> leaf_list = to_array();
 
-      AwtreeNodeLeaf[] leaf_arr = new AwtreeNodeLeaf[shape_count];
+      double cumulative_depth = 0;
 
-      for (int index = 0; index < shape_count; ++index)
+      for (AwtreeNodeLeaf a_leaf : leaf_list ) cumulative_depth += a_leaf.distance_to_root();
+      
+      double balanced_depth = Math.log(leaf_list.size()) / Math.log(2);
+
+      if ( cumulative_depth / leaf_list.size() <= REBALANCE_DEPTH_FACTOR * balanced_depth ) return;
+
+      build_balanced(leaf_list);
+      }
+   
+   /**
+    * Build the tree top down, each fork splits its leaves in two halves along the longer side of their centers box.
+    * It is the binary tree version of sort tile recursive packing, the result has depth log2(n)
+    */
+   private final void build_balanced(ArrayList<AwtreeNodeLeaf> p_leaf_list)
+      {
+      int count = p_leaf_list.size();
+      
+      AwtreeBulkEntry[] entries = new AwtreeBulkEntry[count];
+      
+      for (int index = 0; index < count; ++index) entries[index] = new AwtreeBulkEntry(p_leaf_list.get(index));
+      
+      leaf_count = count;
+      changes_since_balance = 0;
+      
+      root_node = count == 0 ? null : build_subtree(entries, 0, count, null);
+      }
+   
+   private final AwtreeNode build_subtree(AwtreeBulkEntry[] p_entries, int p_from, int p_to, AwtreeNodeFork p_parent)
+      {
+      if ( p_to - p_from == 1 )
+         {
+         AwtreeNodeLeaf a_leaf = p_entries[p_from].leaf;
+         a_leaf.parent = p_parent;
+         return a_leaf;
+         }
+      
+      double min_x = Double.MAX_VALUE, max_x = -Double.MAX_VALUE;
+      double min_y = Double.MAX_VALUE, max_y = -Double.MAX_VALUE;
+      
+      for (int index = p_from; index < p_to; ++index)
          {
-         leaf_arr[index] = insert(p_obj, index);
+         AwtreeBulkEntry curr_entry = p_entries[index];
+         min_x = Math.min(min_x, curr_entry.center_x);
+         max_x = Math.max(max_x, curr_entry.center_x);
+         min_y = Math.min(min_y, curr_entry.center_y);
+         max_y = Math.max(max_y, curr_entry.center_y);
          }
       
-      p_obj.set_search_tree_entries(this, leaf_arr );
+      Arrays.sort(p_entries, p_from, p_to, max_x - min_x >= max_y - min_y ? AwtreeBulkEntry.X_ORDER : AwtreeBulkEntry.Y_ORDER);
+
+      int middle = (p_from + p_to) >>> 1;
+
+      AwtreeNodeFork new_fork = new AwtreeNodeFork(null, p_parent);
+
+      new_fork.first_child = build_subtree(p_entries, p_from, middle, new_fork);
+      new_fork.second_child = build_subtree(p_entries, middle, p_to, new_fork);
+      new_fork.bounding_shape = new_fork.first_child.bounding_shape.union(new_fork.second_child.bounding_shape);
+      
+      return new_fork;
       }
 
    /**
@@ -116,6 +290,20 @@ public final class AwtreeShapeSearch
     * This is possibly the entry point to understand the whole search tree mechanism
     */
    protected final AwtreeNodeLeaf insert(AwtreeObject p_object, int p_index)
+      {
+      AwtreeNodeLeaf new_leaf = new_leaf(p_object, p_index);
+      
+      if ( new_leaf == null ) return null;
+      
+      insert_leaf(new_leaf);
+      
+      return new_leaf;
+      }
+
+   /**
+    * @return a new leaf for the shape p_index of p_object, not yet linked in the tree, null if the object has no such shape
+    */
+   private final AwtreeNodeLeaf new_leaf(AwtreeObject p_object, int p_index)
       {
       PlaShape object_shape = p_object.get_tree_shape(this, p_index);
       
@@ -134,11 +322,7 @@ public final class AwtreeShapeSearch
          }
       
       // Construct a new KdLeaf and set it up
-      AwtreeNodeLeaf new_leaf = new AwtreeNodeLeaf(p_object, p_index, null, bounding_shape);
-      
-      insert_leaf(new_leaf);
-      
-      return new_leaf;
+      return new AwtreeNodeLeaf(p_object, p_index, null, bounding_shape);
       }
 
    /** 
@@ -184,11 +368,20 @@ public final class AwtreeShapeSearch
     */
    public final void remove(AwtreeNodeLeaf[] p_entries)
       {
-      if (p_entries == null) return;
+      tree_lock.writeLock().lock();
+      
+      try
+         {
+         if (p_entries == null) return;
 
-      for (int index = 0; index < p_entries.length; ++index)
+         for (int index = 0; index < p_entries.length; ++index)
+            {
+            remove_leaf(p_entries[index]);
+            }
+         }
+      finally
          {
-         remove_leaf(p_entries[index]);
+         tree_lock.writeLock().unlock();
          }
       }
 
@@ -243,14 +436,127 @@ public final class AwtreeShapeSearch
    
    
    /**
-    * Calculates the objects in this tree, which overlap with p_shape
+    * Registers a thread that is going to query this tree while the thread owning the board changes it.
+    * Until the matching concurrent_reader_remove() every query takes the read lock and uses the buffers of its own thread.
+    * Without registered readers the tree is used by one thread at a time, the usual case, and queries cost no locking
+    */
+   public void concurrent_reader_add()
+      {
+      // waits for a change in progress, the next queries of the owning thread will see the counter
+      tree_lock.writeLock().lock();
+      
+      try
+         {
+         concurrent_readers++;
+         }
+      finally
+         {
+         tree_lock.writeLock().unlock();
+         }
+      }
+
+   /**
+    * Call it when a thread registered with concurrent_reader_add() has finished reading
     */
-   private final TreeSet<AwtreeNodeLeaf> get_overlaps(ShapeTile p_shape)
+   public void concurrent_reader_remove()
       {
-      TreeSet<AwtreeNodeLeaf> found_overlaps = new TreeSet<AwtreeNodeLeaf>();
+      tree_lock.writeLock().lock();
+      
+      try
+         {
+         if ( concurrent_readers > 0 ) concurrent_readers--;
+         }
+      finally
+         {
+         tree_lock.writeLock().unlock();
+         }
+      }
 
-      if (root_node == null) return found_overlaps;
+   /**
+    * @return the queries done on this tree so far, the difference of two calls tells how many a piece of work did
+    */
+   public long query_count()
+      {
+      return query_count;
+      }
 
+   /**
+    * @return true if other threads may be reading this tree, then what is kept beside the tree must not be changed
+    */
+   public boolean has_concurrent_readers()
+      {
+      return concurrent_readers > 0;
+      }
+
+   /**
+    * @return true if the read lock has been taken and must be released with read_unlock()
+    */
+   private boolean read_lock()
+      {
+      if ( concurrent_readers == 0 ) return false;
+      
+      tree_lock.readLock().lock();
+      
+      return true;
+      }
+
+   private void read_unlock(boolean p_locked)
+      {
+      if ( p_locked ) tree_lock.readLock().unlock();
+      }
+   
+   private AwtreeQueryContext query_context_get()
+      {
+      if ( concurrent_readers == 0 ) return single_context;
+      
+      return query_context.get();
+      }
+   
+   private AwtreeLeafBuffer leaf_buffer_acquire()
+      {
+      AwtreeLeafBuffer leaf_buffer = query_context_get().leaf_buffer;
+      
+      if ( leaf_buffer.busy ) return new AwtreeLeafBuffer();
+      
+      leaf_buffer.busy = true;
+      
+      return leaf_buffer;
+      }
+
+   private void leaf_buffer_release(AwtreeLeafBuffer p_buffer)
+      {
+      p_buffer.clear();
+      p_buffer.busy = false;
+      }
+
+   private AwtreeFindBuffer find_buffer_acquire()
+      {
+      AwtreeFindBuffer find_buffer = query_context_get().find_buffer;
+      
+      if ( find_buffer.busy ) return new AwtreeFindBuffer();
+      
+      find_buffer.busy = true;
+      
+      return find_buffer;
+      }
+
+   private void find_buffer_release(AwtreeFindBuffer p_buffer)
+      {
+      p_buffer.clear();
+      p_buffer.busy = false;
+      }
+
+   /**
+    * Puts the leaves of this tree, which overlap with p_shape, into p_result sorted by object and shape index
+    */
+   private final void get_overlaps(ShapeTile p_shape, AwtreeLeafBuffer p_result)
+      {
+      query_count++;
+      
+      if (root_node == null) return;
+
+      AwtreeNodeStack node_stack = query_context_get().node_stack;
+      
       node_stack.reset();
       node_stack.push(root_node);
       
@@ -266,7 +572,7 @@ public final class AwtreeShapeSearch
          
          if (curr_node instanceof AwtreeNodeLeaf)
             {
-            found_overlaps.add((AwtreeNodeLeaf) curr_node);
+            p_result.add((AwtreeNodeLeaf) curr_node);
             }
          else
             {
@@ -275,12 +581,13 @@ public final class AwtreeShapeSearch
             }
          }
       
-      return found_overlaps;
+      p_result.sort();
       }
 
    private final void insert_leaf(AwtreeNodeLeaf p_leaf)
       {
       leaf_count++;
+      changes_since_balance++;
 
       if (root_node == null)
          {
@@ -355,79 +662,89 @@ public final class AwtreeShapeSearch
 
    public final void remove_leaf(AwtreeNodeLeaf p_leaf)
       {
-      if (p_leaf == null) return;
+      tree_lock.writeLock().lock();
+      
+      try
+         {
+         if (p_leaf == null) return;
 
-      // remove the leaf node
-      AwtreeNodeFork parent = p_leaf.parent;
-      p_leaf.bounding_shape = null;
-      p_leaf.parent = null;
-      p_leaf.object = null;
+         // remove the leaf node
+         AwtreeNodeFork parent = p_leaf.parent;
+         p_leaf.bounding_shape = null;
+         p_leaf.parent = null;
+         p_leaf.object = null;
 
-      leaf_count--;
+         leaf_count--;
+         changes_since_balance++;
       
-      if (parent == null)
-         {
-         // tree gets empty
-         root_node = null;
-         return;
-         }
+         if (parent == null)
+            {
+            // tree gets empty
+            root_node = null;
+            return;
+            }
 
-      // find the other leaf of the parent
-      AwtreeNode other_leaf;
-      if (parent.second_child == p_leaf)
-         {
-         other_leaf = parent.first_child;
-         }
-      else if (parent.first_child == p_leaf)
-         {
-         other_leaf = parent.second_child;
-         }
-      else
-         {
-         System.out.println("MinAreaTree.remove_leaf: parent inconsistent");
-         other_leaf = null;
-         }
-      // link the other leaf to the grand_parent and remove the parent node
-      AwtreeNodeFork grand_parent = parent.parent;
-      other_leaf.parent = grand_parent;
-      if (grand_parent == null)
-         {
-         // only one leaf left in the tree
-         root_node = other_leaf;
-         }
-      else
-         {
-         if (grand_parent.second_child == parent)
+         // find the other leaf of the parent
+         AwtreeNode other_leaf;
+         if (parent.second_child == p_leaf)
             {
-            grand_parent.second_child = other_leaf;
+            other_leaf = parent.first_child;
             }
-         else if (grand_parent.first_child == parent)
+         else if (parent.first_child == p_leaf)
             {
-            grand_parent.first_child = other_leaf;
+            other_leaf = parent.second_child;
             }
          else
             {
-            System.out.println("MinAreaTree.remove_leaf: grand_parent inconsistent");
+            System.out.println("MinAreaTree.remove_leaf: parent inconsistent");
+            other_leaf = null;
             }
-         }
-      parent.parent = null;
-      parent.first_child = null;
-      parent.second_child = null;
-      parent.bounding_shape = null;
-
-      // recalculate the bounding shapes of the ancestors
-      // as long as it gets smaller after removing p_leaf
-      AwtreeNodeFork node_to_recalculate = grand_parent;
-      while (node_to_recalculate != null)
-         {
-         ShapeTileRegular new_bounds = node_to_recalculate.second_child.bounding_shape.union(node_to_recalculate.first_child.bounding_shape);
-         if (new_bounds.contains(node_to_recalculate.bounding_shape))
+         // link the other leaf to the grand_parent and remove the parent node
+         AwtreeNodeFork grand_parent = parent.parent;
+         other_leaf.parent = grand_parent;
+         if (grand_parent == null)
+            {
+            // only one leaf left in the tree
+            root_node = other_leaf;
+            }
+         else
             {
-            // the new bounds are not smaller, no further recalculate nessesary
-            break;
+            if (grand_parent.second_child == parent)
+               {
+               grand_parent.second_child = other_leaf;
+               }
+            else if (grand_parent.first_child == parent)
+               {
+               grand_parent.first_child = other_leaf;
+               }
+            else
+               {
+               System.out.println("MinAreaTree.remove_leaf: grand_parent inconsistent");
+               }
+            }
+         parent.parent = null;
+         parent.first_child = null;
+         parent.second_child = null;
+         parent.bounding_shape = null;
+
+         // recalculate the bounding shapes of the ancestors
+         // as long as it gets smaller after removing p_leaf
+         AwtreeNodeFork node_to_recalculate = grand_parent;
+         while (node_to_recalculate != null)
+            {
+            ShapeTileRegular new_bounds = node_to_recalculate.second_child.bounding_shape.union(node_to_recalculate.first_child.bounding_shape);
+            if (new_bounds.contains(node_to_recalculate.bounding_shape))
+               {
+               // the new bounds are not smaller, no further recalculate nessesary
+               break;
+               }
+            node_to_recalculate.bounding_shape = new_bounds;
+            node_to_recalculate = node_to_recalculate.parent;
             }
-         node_to_recalculate.bounding_shape = new_bounds;
-         node_to_recalculate = node_to_recalculate.parent;
+         }
+      finally
+         {
+         tree_lock.writeLock().unlock();
          }
       }
    
@@ -439,6 +756,17 @@ public final class AwtreeShapeSearch
       return compensated_clearance_class_no > 0;
       }
 
+   /**
+    * Only the row of the compensated class is used to compensate the shapes, so if it is the same the tree is still good
+    * @return true if the clearance matrix row used for the compensation is not the same as when the tree was created
+    */
+   public final boolean is_compensation_changed()
+      {
+      if ( compensation_row_values == null ) return false;
+      
+      return ! Arrays.equals(compensation_row_values, r_board.brd_rules.clearance_matrix.get_row_values(compensated_clearance_class_no));
+      }
+
    /**
     * Return the clearance compensation value of p_clearance_class_no on layer p_layer.
     * Note that it is an actual value in width, not a code 
@@ -463,49 +791,58 @@ public final class AwtreeShapeSearch
     */
    public final void change_entries(BrdTracep p_obj, Polyline p_new_polyline, int p_keep_at_start_count, int p_keep_at_end_count)
       {
-      // calculate the shapes of p_new_polyline from keep_at_start_count to new_shape_count - keep_at_end_count - 1;
-      int compensated_half_width = p_obj.get_half_width() + get_clearance_compensation(p_obj.clearance_idx(), p_obj.get_layer());
-      ArrayList<ShapeTile> changed_shapes = offset_shapes(p_new_polyline, compensated_half_width, p_keep_at_start_count, p_new_polyline.plaline_len(-1) - p_keep_at_end_count);
-      int old_shape_count = p_obj.tree_shape_count(this);
-      int new_shape_count = changed_shapes.size() + p_keep_at_start_count + p_keep_at_end_count;
-      AwtreeNodeLeaf[] new_leaf_arr = new AwtreeNodeLeaf[new_shape_count];
-      ShapeTile[] new_precalculated_tree_shapes = new ShapeTile[new_shape_count];
-      AwtreeNodeLeaf[] old_entries = p_obj.get_search_tree_entries(this);
-      
-      for (int index = 0; index < p_keep_at_start_count; ++index)
-         {
-         new_leaf_arr[index] = old_entries[index];
-         new_precalculated_tree_shapes[index] = p_obj.get_tree_shape(this, index);
-         }
+      tree_lock.writeLock().lock();
       
-      for (int index = p_keep_at_start_count; index < old_shape_count - p_keep_at_end_count; ++index)
+      try
          {
-         remove_leaf(old_entries[index]);
-         }
+         // calculate the shapes of p_new_polyline from keep_at_start_count to new_shape_count - keep_at_end_count - 1;
+         int compensated_half_width = p_obj.get_half_width() + get_clearance_compensation(p_obj.clearance_idx(), p_obj.get_layer());
+         ArrayList<ShapeTile> changed_shapes = offset_shapes(p_new_polyline, compensated_half_width, p_keep_at_start_count, p_new_polyline.plaline_len(-1) - p_keep_at_end_count);
+         int old_shape_count = p_obj.tree_shape_count(this);
+         int new_shape_count = changed_shapes.size() + p_keep_at_start_count + p_keep_at_end_count;
+         AwtreeNodeLeaf[] new_leaf_arr = new AwtreeNodeLeaf[new_shape_count];
+         ShapeTile[] new_precalculated_tree_shapes = new ShapeTile[new_shape_count];
+         AwtreeNodeLeaf[] old_entries = p_obj.get_search_tree_entries(this);
       
-      for (int i = 0; i < p_keep_at_end_count; ++i)
-         {
-         int new_index = new_shape_count - p_keep_at_end_count + i;
-         int old_index = old_shape_count - p_keep_at_end_count + i;
+         for (int index = 0; index < p_keep_at_start_count; ++index)
+            {
+            new_leaf_arr[index] = old_entries[index];
+            new_precalculated_tree_shapes[index] = p_obj.get_tree_shape(this, index);
+            }
+      
+         for (int index = p_keep_at_start_count; index < old_shape_count - p_keep_at_end_count; ++index)
+            {
+            remove_leaf(old_entries[index]);
+            }
+      
+         for (int i = 0; i < p_keep_at_end_count; ++i)
+            {
+            int new_index = new_shape_count - p_keep_at_end_count + i;
+            int old_index = old_shape_count - p_keep_at_end_count + i;
 
-         new_leaf_arr[new_index] = old_entries[old_index];
-         new_leaf_arr[new_index].shape_index_in_object = new_index;
-         new_precalculated_tree_shapes[new_index] = p_obj.get_tree_shape(this, old_index);
-         }
+            new_leaf_arr[new_index] = old_entries[old_index];
+            new_leaf_arr[new_index].shape_index_in_object = new_index;
+            new_precalculated_tree_shapes[new_index] = p_obj.get_tree_shape(this, old_index);
+            }
 
-      // correct the precalculated tree shapes first, because it is used in this.insert
-      for (int index = p_keep_at_start_count; index < new_shape_count - p_keep_at_end_count; ++index)
-         {
-         new_precalculated_tree_shapes[index] = changed_shapes.get(index - p_keep_at_start_count);
-         }
+         // correct the precalculated tree shapes first, because it is used in this.insert
+         for (int index = p_keep_at_start_count; index < new_shape_count - p_keep_at_end_count; ++index)
+            {
+            new_precalculated_tree_shapes[index] = changed_shapes.get(index - p_keep_at_start_count);
+            }
       
-      p_obj.set_precalculated_tree_shapes(new_precalculated_tree_shapes, this);
+         p_obj.set_precalculated_tree_shapes(new_precalculated_tree_shapes, this);
 
-      for (int index = p_keep_at_start_count; index < new_shape_count - p_keep_at_end_count; ++index)
+         for (int index = p_keep_at_start_count; index < new_shape_count - p_keep_at_end_count; ++index)
+            {
+            new_leaf_arr[index] = insert(p_obj, index);
+            }
+         p_obj.set_search_tree_entries(this, new_leaf_arr );
+         }
+      finally
          {
-         new_leaf_arr[index] = insert(p_obj, index);
+         tree_lock.writeLock().unlock();
          }
-      p_obj.set_search_tree_entries(this, new_leaf_arr );
       }
 
    /**
@@ -514,73 +851,82 @@ public final class AwtreeShapeSearch
     */
    public final void merge_entries_in_front(BrdTracep p_from_trace, BrdTracep p_to_trace, Polyline p_joined_polyline, int p_from_entry_no, int p_to_entry_no)
       {
-      int compensated_half_width = p_to_trace.get_half_width() + get_clearance_compensation(p_to_trace.clearance_idx(), p_to_trace.get_layer());
-      ArrayList<ShapeTile> link_shapes = offset_shapes(p_joined_polyline, compensated_half_width, p_from_entry_no, p_to_entry_no);
-      boolean change_order = p_from_trace.corner_first().equals(p_to_trace.corner_first());
-      // remove the last or first tree entry from p_from_trace and the first tree entry from p_to_trace, because they will be replaced by the new link entries.
-      int from_shape_count_minus_1 = p_from_trace.tile_shape_count() - 1;
-      int remove_no;
-      if (change_order)
-         {
-         remove_no = 0;
-         }
-      else
-         {
-         remove_no = from_shape_count_minus_1;
-         }
-      AwtreeNodeLeaf[] from_trace_entries = p_from_trace.get_search_tree_entries(this);
-      AwtreeNodeLeaf[] to_trace_entries = p_to_trace.get_search_tree_entries(this);
-      remove_leaf(from_trace_entries[remove_no]);
-      remove_leaf(to_trace_entries[0]);
-      
-      final int link_shapes_count = link_shapes.size();
-      
-      int new_shape_count = from_trace_entries.length + link_shapes_count + to_trace_entries.length - 2;
-      AwtreeNodeLeaf[] new_leaf_arr = new AwtreeNodeLeaf[new_shape_count];
-      int old_to_shape_count = to_trace_entries.length;
-      ShapeTile[] new_precalculated_tree_shapes = new ShapeTile[new_shape_count];
-      // transfer the tree entries except the last or first from p_from_trace to p_to_trace
-      for (int i = 0; i < from_shape_count_minus_1; ++i)
+      tree_lock.writeLock().lock();
+      
+      try
          {
-         int from_no;
+         int compensated_half_width = p_to_trace.get_half_width() + get_clearance_compensation(p_to_trace.clearance_idx(), p_to_trace.get_layer());
+         ArrayList<ShapeTile> link_shapes = offset_shapes(p_joined_polyline, compensated_half_width, p_from_entry_no, p_to_entry_no);
+         boolean change_order = p_from_trace.corner_first().equals(p_to_trace.corner_first());
+         // remove the last or first tree entry from p_from_trace and the first tree entry from p_to_trace, because they will be replaced by the new link entries.
+         int from_shape_count_minus_1 = p_from_trace.tile_shape_count() - 1;
+         int remove_no;
          if (change_order)
             {
-            from_no = from_shape_count_minus_1 - i;
+            remove_no = 0;
             }
          else
             {
-            from_no = i;
+            remove_no = from_shape_count_minus_1;
+            }
+         AwtreeNodeLeaf[] from_trace_entries = p_from_trace.get_search_tree_entries(this);
+         AwtreeNodeLeaf[] to_trace_entries = p_to_trace.get_search_tree_entries(this);
+         remove_leaf(from_trace_entries[remove_no]);
+         remove_leaf(to_trace_entries[0]);
+      
+         final int link_shapes_count = link_shapes.size();
+      
+         int new_shape_count = from_trace_entries.length + link_shapes_count + to_trace_entries.length - 2;
+         AwtreeNodeLeaf[] new_leaf_arr = new AwtreeNodeLeaf[new_shape_count];
+         int old_to_shape_count = to_trace_entries.length;
+         ShapeTile[] new_precalculated_tree_shapes = new ShapeTile[new_shape_count];
+         // transfer the tree entries except the last or first from p_from_trace to p_to_trace
+         for (int i = 0; i < from_shape_count_minus_1; ++i)
+            {
+            int from_no;
+            if (change_order)
+               {
+               from_no = from_shape_count_minus_1 - i;
+               }
+            else
+               {
+               from_no = i;
+               }
+            new_precalculated_tree_shapes[i] = p_from_trace.get_tree_shape(this, from_no);
+            new_leaf_arr[i] = from_trace_entries[from_no];
+            new_leaf_arr[i].object = p_to_trace;
+            new_leaf_arr[i].shape_index_in_object = i;
             }
-         new_precalculated_tree_shapes[i] = p_from_trace.get_tree_shape(this, from_no);
-         new_leaf_arr[i] = from_trace_entries[from_no];
-         new_leaf_arr[i].object = p_to_trace;
-         new_leaf_arr[i].shape_index_in_object = i;
-         }
       
-      for (int index = 1; index < old_to_shape_count; ++index)
-         {
-         int curr_ind = from_shape_count_minus_1 + link_shapes_count + index - 1;
-         new_precalculated_tree_shapes[curr_ind] = p_to_trace.get_tree_shape(this, index);
-         new_leaf_arr[curr_ind] = to_trace_entries[index];
-         new_leaf_arr[curr_ind].shape_index_in_object = curr_ind;
-         }
+         for (int index = 1; index < old_to_shape_count; ++index)
+            {
+            int curr_ind = from_shape_count_minus_1 + link_shapes_count + index - 1;
+            new_precalculated_tree_shapes[curr_ind] = p_to_trace.get_tree_shape(this, index);
+            new_leaf_arr[curr_ind] = to_trace_entries[index];
+            new_leaf_arr[curr_ind].shape_index_in_object = curr_ind;
+            }
 
-      // correct the precalculated tree shapes first, because it is used in this.insert
-      for (int index = 0; index < link_shapes_count; ++index)
-         {
-         int curr_ind = from_shape_count_minus_1 + index;
-         new_precalculated_tree_shapes[curr_ind] = link_shapes.get(index);
-         }
-      p_to_trace.set_precalculated_tree_shapes(new_precalculated_tree_shapes, this);
+         // correct the precalculated tree shapes first, because it is used in this.insert
+         for (int index = 0; index < link_shapes_count; ++index)
+            {
+            int curr_ind = from_shape_count_minus_1 + index;
+            new_precalculated_tree_shapes[curr_ind] = link_shapes.get(index);
+            }
+         p_to_trace.set_precalculated_tree_shapes(new_precalculated_tree_shapes, this);
 
-      // create the new link entries
-      for (int i = 0; i < link_shapes_count; ++i)
+         // create the new link entries
+         for (int i = 0; i < link_shapes_count; ++i)
+            {
+            int curr_ind = from_shape_count_minus_1 + i;
+            new_leaf_arr[curr_ind] = insert(p_to_trace, curr_ind);
+            }
+
+         p_to_trace.set_search_tree_entries(this, new_leaf_arr);
+         }
+      finally
          {
-         int curr_ind = from_shape_count_minus_1 + i;
-         new_leaf_arr[curr_ind] = insert(p_to_trace, curr_ind);
+         tree_lock.writeLock().unlock();
          }
-
-      p_to_trace.set_search_tree_entries(this, new_leaf_arr);
       }
 
    /**
@@ -589,74 +935,83 @@ public final class AwtreeShapeSearch
     */
    public final void merge_entries_at_end(BrdTracep p_from_trace, BrdTracep p_to_trace, Polyline p_joined_polyline, int p_from_entry_no, int p_to_entry_no)
       {
-      int compensated_half_width = p_to_trace.get_half_width() + get_clearance_compensation(p_to_trace.clearance_idx(), p_to_trace.get_layer());
-      ArrayList<ShapeTile> link_shapes = offset_shapes(p_joined_polyline, compensated_half_width, p_from_entry_no, p_to_entry_no);
-      boolean change_order = p_from_trace.corner_last().equals(p_to_trace.corner_last());
-      AwtreeNodeLeaf[] from_trace_entries = p_from_trace.get_search_tree_entries(this);
-      AwtreeNodeLeaf[] to_trace_entries = p_to_trace.get_search_tree_entries(this);
-      // remove the last or first tree entry from p_from_trace and the
-      // last tree entry from p_to_trace, because they will be replaced by
-      // the new link entries.
-      int to_shape_count_minus_1 = p_to_trace.tile_shape_count() - 1;
-      remove_leaf(to_trace_entries[to_shape_count_minus_1]);
-      int remove_no;
-      if (change_order)
-         {
-         remove_no = p_from_trace.tile_shape_count() - 1;
-         }
-      else
-         {
-         remove_no = 0;
-         }
-      remove_leaf(from_trace_entries[remove_no]);
-      
-      final int link_shapes_count = link_shapes.size();
-      
-      int new_shape_count = from_trace_entries.length + link_shapes_count + to_trace_entries.length - 2;
-      AwtreeNodeLeaf[] new_leaf_arr = new AwtreeNodeLeaf[new_shape_count];
-      ShapeTile[] new_precalculated_tree_shapes = new ShapeTile[new_shape_count];
-      // transfer the tree entries except the last from the old shapes
-      // of p_to_trace to the new shapes of p_to_trace
-      for (int i = 0; i < to_shape_count_minus_1; ++i)
-         {
-         new_precalculated_tree_shapes[i] = p_to_trace.get_tree_shape(this, i);
-         new_leaf_arr[i] = to_trace_entries[i];
-         }
-
-      for (int index = 1; index < from_trace_entries.length; ++index)
-         {
-         int curr_ind = to_shape_count_minus_1 + link_shapes_count + index - 1;
-         int from_no;
+      tree_lock.writeLock().lock();
+      
+      try
+         {
+         int compensated_half_width = p_to_trace.get_half_width() + get_clearance_compensation(p_to_trace.clearance_idx(), p_to_trace.get_layer());
+         ArrayList<ShapeTile> link_shapes = offset_shapes(p_joined_polyline, compensated_half_width, p_from_entry_no, p_to_entry_no);
+         boolean change_order = p_from_trace.corner_last().equals(p_to_trace.corner_last());
+         AwtreeNodeLeaf[] from_trace_entries = p_from_trace.get_search_tree_entries(this);
+         AwtreeNodeLeaf[] to_trace_entries = p_to_trace.get_search_tree_entries(this);
+         // remove the last or first tree entry from p_from_trace and the
+         // last tree entry from p_to_trace, because they will be replaced by
+         // the new link entries.
+         int to_shape_count_minus_1 = p_to_trace.tile_shape_count() - 1;
+         remove_leaf(to_trace_entries[to_shape_count_minus_1]);
+         int remove_no;
          if (change_order)
             {
-            from_no = from_trace_entries.length - index - 1;
+            remove_no = p_from_trace.tile_shape_count() - 1;
             }
          else
             {
-            from_no = index;
+            remove_no = 0;
+            }
+         remove_leaf(from_trace_entries[remove_no]);
+      
+         final int link_shapes_count = link_shapes.size();
+      
+         int new_shape_count = from_trace_entries.length + link_shapes_count + to_trace_entries.length - 2;
+         AwtreeNodeLeaf[] new_leaf_arr = new AwtreeNodeLeaf[new_shape_count];
+         ShapeTile[] new_precalculated_tree_shapes = new ShapeTile[new_shape_count];
+         // transfer the tree entries except the last from the old shapes
+         // of p_to_trace to the new shapes of p_to_trace
+         for (int i = 0; i < to_shape_count_minus_1; ++i)
+            {
+            new_precalculated_tree_shapes[i] = p_to_trace.get_tree_shape(this, i);
+            new_leaf_arr[i] = to_trace_entries[i];
             }
-         new_precalculated_tree_shapes[curr_ind] = p_from_trace.get_tree_shape(this, from_no);
-         new_leaf_arr[curr_ind] = from_trace_entries[from_no];
-         new_leaf_arr[curr_ind].object = p_to_trace;
-         new_leaf_arr[curr_ind].shape_index_in_object = curr_ind;
-         }
 
-      // correct the precalculated tree shapes first, because it is used in this.insert
-      for (int index = 0; index < link_shapes_count; ++index)
-         {
-         int curr_ind = to_shape_count_minus_1 + index;
-         new_precalculated_tree_shapes[curr_ind] = link_shapes.get(index);
-         }
+         for (int index = 1; index < from_trace_entries.length; ++index)
+            {
+            int curr_ind = to_shape_count_minus_1 + link_shapes_count + index - 1;
+            int from_no;
+            if (change_order)
+               {
+               from_no = from_trace_entries.length - index - 1;
+               }
+            else
+               {
+               from_no = index;
+               }
+            new_precalculated_tree_shapes[curr_ind] = p_from_trace.get_tree_shape(this, from_no);
+            new_leaf_arr[curr_ind] = from_trace_entries[from_no];
+            new_leaf_arr[curr_ind].object = p_to_trace;
+            new_leaf_arr[curr_ind].shape_index_in_object = curr_ind;
+            }
+
+         // correct the precalculated tree shapes first, because it is used in this.insert
+         for (int index = 0; index < link_shapes_count; ++index)
+            {
+            int curr_ind = to_shape_count_minus_1 + index;
+            new_precalculated_tree_shapes[curr_ind] = link_shapes.get(index);
+            }
       
-      p_to_trace.set_precalculated_tree_shapes(new_precalculated_tree_shapes, this);
+         p_to_trace.set_precalculated_tree_shapes(new_precalculated_tree_shapes, this);
 
-      // create the new link entries
-      for (int index = 0; index < link_shapes_count; ++index)
+         // create the new link entries
+         for (int index = 0; index < link_shapes_count; ++index)
+            {
+            int curr_ind = to_shape_count_minus_1 + index;
+            new_leaf_arr[curr_ind] = insert(p_to_trace, curr_ind);
+            }
+         p_to_trace.set_search_tree_entries(this, new_leaf_arr);
+         }
+      finally
          {
-         int curr_ind = to_shape_count_minus_1 + index;
-         new_leaf_arr[curr_ind] = insert(p_to_trace, curr_ind);
+         tree_lock.writeLock().unlock();
          }
-      p_to_trace.set_search_tree_entries(this, new_leaf_arr);
       }
 
    /**
@@ -665,36 +1020,45 @@ public final class AwtreeShapeSearch
     */
    public final void reuse_entries_after_cutout(BrdTracep p_from_trace, BrdTracep p_start_piece, BrdTracep p_end_piece)
       {
-      AwtreeNodeLeaf[] start_piece_leaf_arr = new AwtreeNodeLeaf[p_start_piece.polyline().plaline_len(-2)];
-      AwtreeNodeLeaf[] from_trace_entries = p_from_trace.get_search_tree_entries(this);
-      // transfer the entries at the start of p_from_trace to p_start_piece.
-      for (int i = 0; i < start_piece_leaf_arr.length - 1; ++i)
+      tree_lock.writeLock().lock();
+      
+      try
          {
-         start_piece_leaf_arr[i] = from_trace_entries[i];
-         start_piece_leaf_arr[i].object = p_start_piece;
-         start_piece_leaf_arr[i].shape_index_in_object = i;
-         from_trace_entries[i] = null;
-         }
-      start_piece_leaf_arr[start_piece_leaf_arr.length - 1] = insert(p_start_piece, start_piece_leaf_arr.length - 1);
+         AwtreeNodeLeaf[] start_piece_leaf_arr = new AwtreeNodeLeaf[p_start_piece.polyline().plaline_len(-2)];
+         AwtreeNodeLeaf[] from_trace_entries = p_from_trace.get_search_tree_entries(this);
+         // transfer the entries at the start of p_from_trace to p_start_piece.
+         for (int i = 0; i < start_piece_leaf_arr.length - 1; ++i)
+            {
+            start_piece_leaf_arr[i] = from_trace_entries[i];
+            start_piece_leaf_arr[i].object = p_start_piece;
+            start_piece_leaf_arr[i].shape_index_in_object = i;
+            from_trace_entries[i] = null;
+            }
+         start_piece_leaf_arr[start_piece_leaf_arr.length - 1] = insert(p_start_piece, start_piece_leaf_arr.length - 1);
 
-      // create the last tree entry of the start piece.
+         // create the last tree entry of the start piece.
 
-      AwtreeNodeLeaf[] end_piece_leaf_arr = new AwtreeNodeLeaf[p_end_piece.polyline().plaline_len(-2)];
+         AwtreeNodeLeaf[] end_piece_leaf_arr = new AwtreeNodeLeaf[p_end_piece.polyline().plaline_len(-2)];
 
-      // create the first tree entry of the end piece.
-      end_piece_leaf_arr[0] = insert(p_end_piece, 0);
+         // create the first tree entry of the end piece.
+         end_piece_leaf_arr[0] = insert(p_end_piece, 0);
+
+         for (int i = 1; i < end_piece_leaf_arr.length; ++i)
+            {
+            int from_index = from_trace_entries.length - end_piece_leaf_arr.length + i;
+            end_piece_leaf_arr[i] = from_trace_entries[from_index];
+            end_piece_leaf_arr[i].object = p_end_piece;
+            end_piece_leaf_arr[i].shape_index_in_object = i;
+            from_trace_entries[from_index] = null;
+            }
 
-      for (int i = 1; i < end_piece_leaf_arr.length; ++i)
+         p_start_piece.set_search_tree_entries(this, start_piece_leaf_arr );
+         p_end_piece.set_search_tree_entries(this, end_piece_leaf_arr );
+         }
+      finally
          {
-         int from_index = from_trace_entries.length - end_piece_leaf_arr.length + i;
-         end_piece_leaf_arr[i] = from_trace_entries[from_index];
-         end_piece_leaf_arr[i].object = p_end_piece;
-         end_piece_leaf_arr[i].shape_index_in_object = i;
-         from_trace_entries[from_index] = null;
+         tree_lock.writeLock().unlock();
          }
-
-      p_start_piece.set_search_tree_entries(this, start_piece_leaf_arr );
-      p_end_piece.set_search_tree_entries(this, end_piece_leaf_arr );
       }
 
    /**
@@ -705,9 +1069,13 @@ public final class AwtreeShapeSearch
       {
       TreeSet<AwtreeObject> risul = new TreeSet<AwtreeObject>();
 
-      Collection<AwtreeFindEntry> tree_entries = find_overlap_tree_entries(p_shape, p_layer, p_ignore_net_nos);
+      AwtreeFindBuffer tree_entries = find_buffer_acquire();
+      
+      find_overlap_tree_entries(p_shape, p_layer, p_ignore_net_nos, tree_entries);
       
-      for (AwtreeFindEntry curr_entry : tree_entries ) risul.add(curr_entry.object);
+      for (int index = 0; index < tree_entries.size(); ++index) risul.add(tree_entries.get_object(index));
+      
+      find_buffer_release(tree_entries);
       
       return risul;
       }
@@ -728,56 +1096,99 @@ public final class AwtreeShapeSearch
     */
    public final LinkedList<AwtreeFindEntry> find_overlap_tree_entries(ShapeConvex p_shape, int p_layer, NetNosList p_ignore_net_nos)
       {
-      LinkedList<AwtreeFindEntry> risul_list = new LinkedList<AwtreeFindEntry>();
-
-      if (p_shape == null) return risul_list;
+      AwtreeFindBuffer tree_entries = find_buffer_acquire();
       
-      ShapeTileRegular bounds = p_shape.bounding_shape();
-      if (bounds == null)
-         {
-         System.err.println("board.ShapeSearchTree.overlaps: p_shape not bounded");
-         return risul_list;
-         }
+      find_overlap_tree_entries(p_shape, p_layer, p_ignore_net_nos, tree_entries);
 
-      boolean is_45_degree = p_shape instanceof ShapeTileOctagon;
+      LinkedList<AwtreeFindEntry> risul_list = to_entry_list(tree_entries);
+      
+      find_buffer_release(tree_entries);
+      
+      return risul_list;
+      }
 
-      for ( AwtreeNodeLeaf curr_leaf : get_overlaps(bounds) )
+   private LinkedList<AwtreeFindEntry> to_entry_list(AwtreeFindBuffer p_buffer)
+      {
+      LinkedList<AwtreeFindEntry> risul_list = new LinkedList<AwtreeFindEntry>();
+      
+      for (int index = 0; index < p_buffer.size(); ++index) 
+         risul_list.add(new AwtreeFindEntry(p_buffer.get_object(index), p_buffer.get_shape_index(index)));
+      
+      return risul_list;
+      }
+   
+   /**
+    * Same as the one returning a list, but the entries are put into p_result, that is cleared first
+    * This is the one to use in loops that are run very many times, since it does not allocate anything
+    */
+   public final void find_overlap_tree_entries(ShapeConvex p_shape, int p_layer, NetNosList p_ignore_net_nos, AwtreeFindBuffer p_result)
+      {
+      boolean locked = read_lock();
+      
+      try
          {
-         AwtreeObject curr_object = curr_leaf.object;
-         
-         int shape_index = curr_leaf.shape_index_in_object;
-         
-         // ignore object if it is on a different layer
-         boolean ignore_object = p_layer >= 0 && curr_object.shape_layer(shape_index) != p_layer;
-         
-         if ( ignore_object ) continue;
+         p_result.clear();
 
-         // ingore if the given object is somewhat connectable to the net nos
-         ignore_object = p_ignore_net_nos.is_connectable(curr_object); 
-         
-         if ( ignore_object ) continue;
-         
-         ShapeTile curr_shape = curr_object.get_tree_shape(this, curr_leaf.shape_index_in_object);
-         boolean add_item;
-         if (is_45_degree && curr_shape instanceof ShapeTileOctagon)
-         // in this case the check for intersection is redundant and
-         // therefore skipped for performance reasons
+         if (p_shape == null) return;
+      
+         ShapeTileRegular bounds = p_shape.bounding_shape();
+         if (bounds == null)
             {
-            add_item = true;
+            System.err.println("board.ShapeSearchTree.overlaps: p_shape not bounded");
+            return;
             }
-         else
+
+         boolean is_45_degree = p_shape instanceof ShapeTileOctagon;
+
+         AwtreeLeafBuffer leaves = leaf_buffer_acquire();
+      
+         try
             {
-            add_item = curr_shape.intersects(p_shape);
-            }
+            get_overlaps(bounds, leaves);
 
-         if (add_item)
+            for (int index = 0; index < leaves.leaf_count; ++index)
+               {
+               AwtreeNodeLeaf curr_leaf = leaves.leaf_arr[index];
+            
+               AwtreeObject curr_object = curr_leaf.object;
+            
+               int shape_index = curr_leaf.shape_index_in_object;
+            
+               // ignore object if it is on a different layer
+               boolean ignore_object = p_layer >= 0 && curr_object.shape_layer(shape_index) != p_layer;
+            
+               if ( ignore_object ) continue;
+   
+               // ingore if the given object is somewhat connectable to the net nos
+               ignore_object = p_ignore_net_nos.is_connectable(curr_object); 
+            
+               if ( ignore_object ) continue;
+            
+               ShapeTile curr_shape = curr_object.get_tree_shape(this, curr_leaf.shape_index_in_object);
+               boolean add_item;
+               if (is_45_degree && curr_shape instanceof ShapeTileOctagon)
+               // in this case the check for intersection is redundant and
+               // therefore skipped for performance reasons
+                  {
+                  add_item = true;
+                  }
+               else
+                  {
+                  add_item = curr_shape.intersects(p_shape);
+                  }
+   
+               if (add_item) p_result.add(curr_object, shape_index);
+               }
+            }
+         finally
             {
-            AwtreeFindEntry new_entry = new AwtreeFindEntry(curr_object, shape_index);
-            risul_list.add(new_entry);
+            leaf_buffer_release(leaves);
             }
          }
-      
-      return risul_list;
+      finally
+         {
+         read_unlock(locked);
+         }
       }
 
    /**
@@ -788,77 +1199,99 @@ public final class AwtreeShapeSearch
     * if p_layer < 0, the layer is ignored. 
     * Used only internally, because the clearance compensation is not taken innto account.
     */
-   private final Collection<AwtreeFindEntry> find_overlap_tree_entries_with_clearance_fun(ShapeTile p_shape, int p_layer, NetNosList p_ignore_net_nos, int p_cl_type)
+   private final void find_overlap_tree_entries_with_clearance_fun(ShapeTile p_shape, int p_layer, NetNosList p_ignore_net_nos, int p_cl_type, AwtreeFindBuffer p_result)
       {
-      LinkedList<AwtreeFindEntry> result_list = new LinkedList<AwtreeFindEntry>();
+      boolean locked = read_lock();
+      
+      try
+         {
+         p_result.clear();
 
-      if (p_shape == null) return result_list;
+         if (p_shape == null) return;
       
-      ClearanceMatrix cl_matrix = r_board.brd_rules.clearance_matrix;
+         ClearanceMatrix cl_matrix = r_board.brd_rules.clearance_matrix;
       
-      ShapeTileRegular bounds = p_shape.bounding_shape();
+         ShapeTileRegular bounds = p_shape.bounding_shape();
 
-      if (bounds == null)
-         {
-         System.err.println("find_overlap_tree_entries_with_clearance: p_shape is not bounded");
-         return result_list;
-         }
+         if (bounds == null)
+            {
+            System.err.println("find_overlap_tree_entries_with_clearance: p_shape is not bounded");
+            return;
+            }
       
-      int max_clearance = (int) (1.2 * cl_matrix.max_value(p_cl_type, p_layer));
-      // search with the bounds enlarged by the maximum clearance to get all candidates for overlap
-      // a factor less than sqr2 has evtl. be added because enlarging is not symmetric.
-      ShapeTile offset_bounds = bounds.offset(max_clearance);
+         int max_clearance = (int) (1.2 * cl_matrix.max_value(p_cl_type, p_layer));
+         // search with the bounds enlarged by the maximum clearance to get all candidates for overlap
+         // a factor less than sqr2 has evtl. be added because enlarging is not symmetric.
+         ShapeTile offset_bounds = bounds.offset(max_clearance);
 
-      Collection<AwtreeNodeLeaf> tmp_list = get_overlaps(offset_bounds);
+         AwtreeLeafBuffer leaves = leaf_buffer_acquire();
       
-      // sort the found items by its clearances tp p_cl_type on layer p_layer
-      Set<AwtreeNodeLeafSorted> sorted_items = new TreeSet<AwtreeNodeLeafSorted>();
-
-      for ( AwtreeNodeLeaf curr_leaf : tmp_list )
-         {
-         BrdItem curr_item = (BrdItem) curr_leaf.object;
-         
-         int shape_index = curr_leaf.shape_index_in_object;
-         
-         boolean ignore_item = p_layer >= 0 && curr_item.shape_layer(shape_index) != p_layer;
-         
-         if ( ignore_item ) continue;
-
-         ignore_item = p_ignore_net_nos.is_connectable(curr_item);
-         
-         if ( ignore_item ) continue;
-
-         int curr_clearance = cl_matrix.value_at(p_cl_type, curr_item.clearance_idx(), p_layer);
-         
-         AwtreeNodeLeafSorted sorted_ob = new AwtreeNodeLeafSorted(curr_leaf, curr_clearance);
+         try
+            {
+            get_overlaps(offset_bounds, leaves);
          
-         sorted_items.add(sorted_ob);
-         }
+            // the candidates are moved to the front of the buffer and then sorted by their clearance to p_cl_type on layer p_layer
+            int sorted_count = 0;
+            
+            for (int index = 0; index < leaves.leaf_count; ++index)
+               {
+               AwtreeNodeLeaf curr_leaf = leaves.leaf_arr[index];
+            
+               BrdItem curr_item = (BrdItem) curr_leaf.object;
+            
+               int shape_index = curr_leaf.shape_index_in_object;
+            
+               boolean ignore_item = p_layer >= 0 && curr_item.shape_layer(shape_index) != p_layer;
+            
+               if ( ignore_item ) continue;
+   
+               ignore_item = p_ignore_net_nos.is_connectable(curr_item);
+            
+               if ( ignore_item ) continue;
+   
+               int curr_clearance = cl_matrix.value_at(p_cl_type, curr_item.clearance_idx(), p_layer);
+            
+               leaves.leaf_arr[sorted_count] = curr_leaf;
+               leaves.set_clearance(sorted_count, curr_clearance);
+               sorted_count++;
+               }
+            
+            leaves.sort_by_clearance(sorted_count);
       
-      int curr_half_clearance = 0;
+            int curr_half_clearance = 0;
       
-      ShapeTile curr_offset_shape = p_shape;
+            ShapeTile curr_offset_shape = p_shape;
       
-      for ( AwtreeNodeLeafSorted tmp_entry : sorted_items )
-         {
-         int tmp_half_clearance = tmp_entry.clearance / 2;
+            for (int index = 0; index < sorted_count; ++index)
+               {
+               AwtreeNodeLeaf curr_leaf = leaves.sorted_leaf(index);
+               
+               int tmp_half_clearance = leaves.sorted_clearance(index) / 2;
 
-         if (tmp_half_clearance != curr_half_clearance)
-            {
-            curr_half_clearance = tmp_half_clearance;
-            curr_offset_shape = p_shape.enlarge(curr_half_clearance);
-            }
+               if (tmp_half_clearance != curr_half_clearance)
+                  {
+                  curr_half_clearance = tmp_half_clearance;
+                  curr_offset_shape = p_shape.enlarge(curr_half_clearance);
+                  }
          
-         ShapeTile tmp_shape = tmp_entry.leaf.object.get_tree_shape(this, tmp_entry.leaf.shape_index_in_object);
-         // enlarge both item shapes by the half clearance to create symmetry.
-         ShapeConvex tmp_offset_shape = (ShapeConvex) tmp_shape.enlarge(curr_half_clearance);
+               ShapeTile tmp_shape = curr_leaf.object.get_tree_shape(this, curr_leaf.shape_index_in_object);
+               // enlarge both item shapes by the half clearance to create symmetry.
+               ShapeConvex tmp_offset_shape = (ShapeConvex) tmp_shape.enlarge(curr_half_clearance);
          
-         if ( ! curr_offset_shape.intersects(tmp_offset_shape)) continue;
+               if ( ! curr_offset_shape.intersects(tmp_offset_shape)) continue;
 
-         result_list.add(new AwtreeFindEntry(tmp_entry.leaf.object, tmp_entry.leaf.shape_index_in_object));
+               p_result.add(curr_leaf.object, curr_leaf.shape_index_in_object);
+               }
+            }
+         finally
+            {
+            leaf_buffer_release(leaves);
+            }
+         }
+      finally
+         {
+         read_unlock(locked);
          }
-      
-      return result_list;
       }
 
    /**
@@ -871,17 +1304,21 @@ public final class AwtreeShapeSearch
       {
       TreeSet<BrdItem> result = new TreeSet<BrdItem>();
 
-      Collection<AwtreeFindEntry> overlaps = find_overlap_tree_entries_with_clearance(p_shape, p_layer, p_ignore_net_nos, p_clearance_class);
+      AwtreeFindBuffer overlaps = find_buffer_acquire();
       
-      for (AwtreeFindEntry curr_tentry : overlaps)
+      find_overlap_tree_entries_with_clearance(p_shape, p_layer, p_ignore_net_nos, p_clearance_class, overlaps);
+      
+      for (int index = 0; index < overlaps.size(); ++index)
          {
-         AwtreeObject curr_object  = curr_tentry.object;
+         AwtreeObject curr_object  = overlaps.get_object(index);
          
          if ( ! (curr_object instanceof BrdItem) ) continue;
 
          result.add((BrdItem) curr_object);
          }
 
+      find_buffer_release(overlaps);
+      
       return result;
       }
 
@@ -894,11 +1331,27 @@ public final class AwtreeShapeSearch
     * method to do the search with clearance...
     */
    public final Collection<AwtreeFindEntry> find_overlap_tree_entries_with_clearance(ShapeTile p_shape, int p_layer, NetNosList p_ignore_net_nos, int p_clearance_class)
+      {
+      AwtreeFindBuffer overlaps = find_buffer_acquire();
+      
+      find_overlap_tree_entries_with_clearance(p_shape, p_layer, p_ignore_net_nos, p_clearance_class, overlaps);
+      
+      LinkedList<AwtreeFindEntry> result_list = to_entry_list(overlaps);
+      
+      find_buffer_release(overlaps);
+      
+      return result_list;
+      }
+
+   /**
+    * Same as the one returning a collection, but the entries are put into p_result, that is cleared first
+    */
+   public final void find_overlap_tree_entries_with_clearance(ShapeTile p_shape, int p_layer, NetNosList p_ignore_net_nos, int p_clearance_class, AwtreeFindBuffer p_result)
       {
       if ( is_clearance_compensation_used())
-         return find_overlap_tree_entries(p_shape, p_layer, p_ignore_net_nos);
+         find_overlap_tree_entries(p_shape, p_layer, p_ignore_net_nos, p_result);
       else
-         return find_overlap_tree_entries_with_clearance_fun(p_shape, p_layer, p_ignore_net_nos, p_clearance_class);
+         find_overlap_tree_entries_with_clearance_fun(p_shape, p_layer, p_ignore_net_nos, p_clearance_class, p_result);
       }
 
    /**
@@ -907,96 +1360,111 @@ public final class AwtreeShapeSearch
     * is not possible, several rooms are returned with shapes, which intersect with p_room.get_contained_shape(). The result room is
     * not yet complete, because its doors are not yet calculated. 
     * If p_ignore_shape != null, objects of type CompleteFreeSpaceExpansionRoom, whose intersection with the shape of p_room is containes in p_ignore_shape, are ignored.
+    * The obstacles restrain the room in the order of the leaves in the tree, so the result depends on how the tree was built.
+    * Taking them sorted would make it independent but sorting them is too slow, the optimizer on g400 took two or three times longer.
     * Note that this is override in subclasses...
     */
    public Collection<ExpandRoomFreespaceIncomplete> complete_shape(ExpandRoomFreespaceIncomplete p_room, int p_net_no, AwtreeObject p_ignore_object, ShapeTile p_ignore_shape)
       {
-      Collection<ExpandRoomFreespaceIncomplete> result = new LinkedList<ExpandRoomFreespaceIncomplete>();
-
-      if (p_room.get_contained_shape() == null)
+      boolean locked = read_lock();
+      
+      try
          {
-         System.out.println("ShapeSearchTree.complete_shape: p_shape_to_be_contained != null expected");
-         return result;
-         }
+         Collection<ExpandRoomFreespaceIncomplete> result = new LinkedList<ExpandRoomFreespaceIncomplete>();
+
+         if (p_room.get_contained_shape() == null)
+            {
+            System.out.println("ShapeSearchTree.complete_shape: p_shape_to_be_contained != null expected");
+            return result;
+            }
       
-      if ( root_node == null) return result;
+         if ( root_node == null) return result;
 
-      ShapeTile start_shape = r_board.get_bounding_box();
-      if (p_room.get_shape() != null)
-         {
-         start_shape = start_shape.intersection(p_room.get_shape());
-         }
+         ShapeTile start_shape = r_board.get_bounding_box();
+         if (p_room.get_shape() != null)
+            {
+            start_shape = start_shape.intersection(p_room.get_shape());
+            }
 
-      ShapeTileRegular bounding_shape = start_shape.bounding_shape();
-      if (start_shape.dimension() == PlaDimension.AREA)
-         {
-         ExpandRoomFreespaceIncomplete new_room = new ExpandRoomFreespaceIncomplete(start_shape, p_room.get_layer(), p_room.get_contained_shape());
-         result.add(new_room);
-         }
+         ShapeTileRegular bounding_shape = start_shape.bounding_shape();
+         if (start_shape.dimension() == PlaDimension.AREA)
+            {
+            ExpandRoomFreespaceIncomplete new_room = new ExpandRoomFreespaceIncomplete(start_shape, p_room.get_layer(), p_room.get_contained_shape());
+            result.add(new_room);
+            }
       
-      node_stack.reset();
-      node_stack.push(root_node);
-      AwtreeNode curr_node;
-      int room_layer = p_room.get_layer();
+         query_count++;
+         
+         AwtreeNodeStack node_stack = query_context_get().node_stack;
+      
+         node_stack.reset();
+         node_stack.push(root_node);
+         AwtreeNode curr_node;
+         int room_layer = p_room.get_layer();
 
-      for (;;)
-         {
-         curr_node = node_stack.pop();
+         for (;;)
+            {
+            curr_node = node_stack.pop();
          
-         if (curr_node == null) break;
+            if (curr_node == null) break;
          
-         if ( ! curr_node.bounding_shape.intersects(bounding_shape)) continue;
+            if ( ! curr_node.bounding_shape.intersects(bounding_shape)) continue;
          
-         if ( ! (curr_node instanceof AwtreeNodeLeaf) )
-            {
-            node_stack.push(((AwtreeNodeFork) curr_node).first_child);
-            node_stack.push(((AwtreeNodeFork) curr_node).second_child);
-            continue;
-            }
+            if ( ! (curr_node instanceof AwtreeNodeLeaf) )
+               {
+               node_stack.push(((AwtreeNodeFork) curr_node).first_child);
+               node_stack.push(((AwtreeNodeFork) curr_node).second_child);
+               continue;
+               }
 
-         AwtreeNodeLeaf curr_leaf = (AwtreeNodeLeaf) curr_node;
-         AwtreeObject curr_object = curr_leaf.object;
-         int shape_index = curr_leaf.shape_index_in_object;
+            AwtreeNodeLeaf curr_leaf = (AwtreeNodeLeaf) curr_node;
+            AwtreeObject curr_object = curr_leaf.object;
+            int shape_index = curr_leaf.shape_index_in_object;
       
-         if ( ! (curr_object.is_trace_obstacle(p_net_no) && curr_object.shape_layer(shape_index) == room_layer && curr_object != p_ignore_object)) continue;
+            if ( ! (curr_object.is_trace_obstacle(p_net_no) && curr_object.shape_layer(shape_index) == room_layer && curr_object != p_ignore_object)) continue;
          
-         ShapeTile curr_object_shape = curr_object.get_tree_shape(this, shape_index);
-         LinkedList<ExpandRoomFreespaceIncomplete> new_result = new LinkedList<ExpandRoomFreespaceIncomplete>();
-         ShapeTileRegular new_bounding_shape = ShapeTileOctagon.EMPTY;
+            ShapeTile curr_object_shape = curr_object.get_tree_shape(this, shape_index);
+            LinkedList<ExpandRoomFreespaceIncomplete> new_result = new LinkedList<ExpandRoomFreespaceIncomplete>();
+            ShapeTileRegular new_bounding_shape = ShapeTileOctagon.EMPTY;
 
-         for (ExpandRoomFreespaceIncomplete curr_incomplete_room : result)
-            {
-            boolean something_changed = false;
-            ShapeTile intersection = curr_incomplete_room.get_shape().intersection(curr_object_shape);
-            if (intersection.dimension() == PlaDimension.AREA)
+            for (ExpandRoomFreespaceIncomplete curr_incomplete_room : result)
                {
-               boolean ignore_expansion_room = curr_object instanceof ExpandRoomFreespaceComplete && p_ignore_shape != null && p_ignore_shape.contains(intersection);
-               // cannot happen in free angle roouting, because then expansion_rooms may not overlap. 
-               // Therefore that can be removed as soon as special function for 45-degree routing is used.
-               if (!ignore_expansion_room)
+               boolean something_changed = false;
+               ShapeTile intersection = curr_incomplete_room.get_shape().intersection(curr_object_shape);
+               if (intersection.dimension() == PlaDimension.AREA)
                   {
-                  something_changed = true;
-                  new_result.addAll(restrain_shape(curr_incomplete_room, curr_object_shape));
-                  for (ExpandRoomFreespaceIncomplete tmp_room : new_result)
+                  boolean ignore_expansion_room = curr_object instanceof ExpandRoomFreespaceComplete && p_ignore_shape != null && p_ignore_shape.contains(intersection);
+                  // cannot happen in free angle roouting, because then expansion_rooms may not overlap. 
+                  // Therefore that can be removed as soon as special function for 45-degree routing is used.
+                  if (!ignore_expansion_room)
                      {
-                     new_bounding_shape = new_bounding_shape.union(tmp_room.get_shape().bounding_shape());
+                     something_changed = true;
+                     new_result.addAll(restrain_shape(curr_incomplete_room, curr_object_shape));
+                     for (ExpandRoomFreespaceIncomplete tmp_room : new_result)
+                        {
+                        new_bounding_shape = new_bounding_shape.union(tmp_room.get_shape().bounding_shape());
+                        }
                      }
                   }
-               }
 
-            if (!something_changed)
-               {
-               new_result.add(curr_incomplete_room);
-               new_bounding_shape = new_bounding_shape.union(curr_incomplete_room.get_shape().bounding_shape());
+               if (!something_changed)
+                  {
+                  new_result.add(curr_incomplete_room);
+                  new_bounding_shape = new_bounding_shape.union(curr_incomplete_room.get_shape().bounding_shape());
+                  }
                }
+            result = new_result;
+            bounding_shape = new_bounding_shape;
             }
-         result = new_result;
-         bounding_shape = new_bounding_shape;
-         }
 
-      result = divide_large_room(result, r_board.get_bounding_box());
+         result = divide_large_room(result, r_board.get_bounding_box());
       
-      return result;
+         return result;
+         }
+      finally
+         {
+         read_unlock(locked);
+         }
       }
 
    /**
@@ -1145,47 +1613,56 @@ public final class AwtreeShapeSearch
     */
    public final void reduce_trace_shape_at_tie_pin(BrdAbitPin p_tie_pin, BrdTracep p_trace)
       {
-      ShapeTile pin_shape = p_tie_pin.get_tree_shape_on_layer(this, p_trace.get_layer());
-      PlaPointFloat compare_corner;
-      int trace_shape_no;
-      if (p_trace.corner_first().equals(p_tie_pin.center_get()))
+      tree_lock.writeLock().lock();
+      
+      try
          {
-         trace_shape_no = 0;
-         compare_corner = p_trace.polyline().corner_approx(1);
+         ShapeTile pin_shape = p_tie_pin.get_tree_shape_on_layer(this, p_trace.get_layer());
+         PlaPointFloat compare_corner;
+         int trace_shape_no;
+         if (p_trace.corner_first().equals(p_tie_pin.center_get()))
+            {
+            trace_shape_no = 0;
+            compare_corner = p_trace.polyline().corner_approx(1);
 
-         }
-      else if (p_trace.corner_last().equals(p_tie_pin.center_get()))
-         {
-         trace_shape_no = p_trace.corner_count() - 2;
-         compare_corner = p_trace.polyline().corner_approx(p_trace.corner_count() - 2);
-         }
-      else
-         {
-         return;
-         }
-      ShapeTile trace_shape = p_trace.get_tree_shape(this, trace_shape_no);
-      ShapeTile intersection = trace_shape.intersection(pin_shape);
+            }
+         else if (p_trace.corner_last().equals(p_tie_pin.center_get()))
+            {
+            trace_shape_no = p_trace.corner_count() - 2;
+            compare_corner = p_trace.polyline().corner_approx(p_trace.corner_count() - 2);
+            }
+         else
+            {
+            return;
+            }
+         ShapeTile trace_shape = p_trace.get_tree_shape(this, trace_shape_no);
+         ShapeTile intersection = trace_shape.intersection(pin_shape);
       
       
-      if ( ! intersection.dimension().is_area() )
-         {
-         return;
-         }
+         if ( ! intersection.dimension().is_area() )
+            {
+            return;
+            }
       
       
-      ShapeTile[] shape_pieces = trace_shape.cutout(pin_shape);
-      ShapeTile new_trace_shape = ShapeTileSimplex.EMPTY;
-      for (int i = 0; i < shape_pieces.length; ++i)
-         {
-         if (shape_pieces[i].dimension() == PlaDimension.AREA)
+         ShapeTile[] shape_pieces = trace_shape.cutout(pin_shape);
+         ShapeTile new_trace_shape = ShapeTileSimplex.EMPTY;
+         for (int i = 0; i < shape_pieces.length; ++i)
             {
-            if (new_trace_shape == ShapeTileSimplex.EMPTY || shape_pieces[i].contains(compare_corner))
+            if (shape_pieces[i].dimension() == PlaDimension.AREA)
                {
-               new_trace_shape = shape_pieces[i];
+               if (new_trace_shape == ShapeTileSimplex.EMPTY || shape_pieces[i].contains(compare_corner))
+                  {
+                  new_trace_shape = shape_pieces[i];
+                  }
                }
             }
+         change_item_shape(p_trace, trace_shape_no, new_trace_shape);
+         }
+      finally
+         {
+         tree_lock.writeLock().unlock();
          }
-      change_item_shape(p_trace, trace_shape_no, new_trace_shape);
       }
 
    /**
@@ -1193,26 +1670,35 @@ public final class AwtreeShapeSearch
     */
    void change_item_shape(BrdItem p_item, int p_shape_no, ShapeTile p_new_shape)
       {
-      AwtreeNodeLeaf[] old_entries = p_item.get_search_tree_entries(this);
-      AwtreeNodeLeaf[] new_leaf_arr = new AwtreeNodeLeaf[old_entries.length];
-      ShapeTile[] new_precalculated_tree_shapes = new ShapeTile[old_entries.length];
-      remove_leaf(old_entries[p_shape_no]);
-      for (int i = 0; i < new_precalculated_tree_shapes.length; ++i)
+      tree_lock.writeLock().lock();
+      
+      try
          {
-         if (i == p_shape_no)
+         AwtreeNodeLeaf[] old_entries = p_item.get_search_tree_entries(this);
+         AwtreeNodeLeaf[] new_leaf_arr = new AwtreeNodeLeaf[old_entries.length];
+         ShapeTile[] new_precalculated_tree_shapes = new ShapeTile[old_entries.length];
+         remove_leaf(old_entries[p_shape_no]);
+         for (int i = 0; i < new_precalculated_tree_shapes.length; ++i)
             {
-            new_precalculated_tree_shapes[i] = p_new_shape;
+            if (i == p_shape_no)
+               {
+               new_precalculated_tree_shapes[i] = p_new_shape;
 
+               }
+            else
+               {
+               new_precalculated_tree_shapes[i] = p_item.get_tree_shape(this, i);
+               new_leaf_arr[i] = old_entries[i];
+               }
             }
-         else
-            {
-            new_precalculated_tree_shapes[i] = p_item.get_tree_shape(this, i);
-            new_leaf_arr[i] = old_entries[i];
-            }
+         p_item.set_precalculated_tree_shapes(new_precalculated_tree_shapes, this);
+         new_leaf_arr[p_shape_no] = insert(p_item, p_shape_no);
+         p_item.set_search_tree_entries(this, new_leaf_arr );
+         }
+      finally
+         {
+         tree_lock.writeLock().unlock();
          }
-      p_item.set_precalculated_tree_shapes(new_precalculated_tree_shapes, this);
-      new_leaf_arr[p_shape_no] = insert(p_item, p_shape_no);
-      p_item.set_search_tree_entries(this, new_leaf_arr );
       }
 
    
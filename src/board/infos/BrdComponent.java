@@ -206,6 +206,12 @@ public final class BrdComponent implements UndoObjectStorable, PrintableInfo, ja
       if ( location != null ) location = location.mirror_vertical(p_pole);
       }
 
+   @Override
+   public int get_id_no()
+      {
+      return id_no;
+      }
+
    /**
     * Compares 2 components by name. Useful for example to display components in alphabetic order.
     */
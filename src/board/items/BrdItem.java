@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import autoroute.ArtItem;
 import board.BrdConnectable;
 import board.RoutingBoard;
@@ -80,8 +81,8 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
    public transient RoutingBoard r_board;
    // Temporary data used in the auto route algorithm. 
    private transient ArtItem art_item;
-   // points to the entries of this item in the ShapeSearchTrees 
-   private transient LinkedList<BrdItemAwtreeInfoLeaf> awtree_leaves = new LinkedList<BrdItemAwtreeInfoLeaf>();
+   // points to the entries of this item in the ShapeSearchTrees, copy on write since threads querying a tree may add precalculated shapes
+   private transient CopyOnWriteArrayList<BrdItemAwtreeInfoLeaf> awtree_leaves = new CopyOnWriteArrayList<BrdItemAwtreeInfoLeaf>();
 
    /**
     * Called by subclasses, obviously
@@ -134,7 +135,7 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
    public final void set_transient_field ( RoutingBoard p_board )
       {
       r_board = p_board;
-      awtree_leaves = new LinkedList<BrdItemAwtreeInfoLeaf>();
+      awtree_leaves = new CopyOnWriteArrayList<BrdItemAwtreeInfoLeaf>();
       }
    
    
@@ -503,6 +504,20 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
       {
       Collection<BrdItemViolation> result = new LinkedList<BrdItemViolation>();
       
+      clearance_violations(null, result);
+      
+      return result;
+      }
+
+   /**
+    * Adds the clearance violations of this item with other items to p_result, the first_item is always this item
+    * With p_scanned each pair is reported once, when both items are scanned it is left to the one with the lower id
+    * and a pair is a violation if either item is an obstacle for the other
+    * It only reads the board, so it can be called by threads registered as concurrent readers of the default tree
+    * @param p_scanned the items whose violations are being looked for, null if it is only this one
+    */
+   public final void clearance_violations(Set<BrdItem> p_scanned, Collection<BrdItemViolation> p_result)
+      {
       AwtreeShapeSearch default_tree = r_board.search_tree_manager.get_default_tree();
       
       for (int index = 0; index < tile_shape_count(); ++index)
@@ -521,8 +536,15 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
          
             BrdItem curr_item = (BrdItem) curr_entry.object;
             
+            if ( p_scanned != null )
+               {
+               // the other item reports this pair
+               if ( curr_item.get_id_no() < get_id_no() && p_scanned.contains(curr_item) ) continue;
+
+               if (! is_obstacle_clearance(curr_item) && ! curr_item.is_obstacle_clearance(this)) continue;
+               }
             // if current item is not an obstacle for this item, no check to do
-            if (! is_obstacle_clearance(curr_item)) continue;
+            else if (! is_obstacle_clearance(curr_item)) continue;
 
             ShapeTile shape_1 = curr_tile_shape;
             ShapeTile shape_2 = curr_item.get_tree_shape(default_tree, curr_entry.shape_index_in_object);
@@ -543,11 +565,10 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
             if (intersection.dimension() == PlaDimension.AREA )
                {
                BrdItemViolation curr_violation = new BrdItemViolation(this, curr_item, intersection, shape_layer(index));
-               result.add(curr_violation);
+               p_result.add(curr_violation);
                }
             }
          }
-      return result;
       }
 
    /**
@@ -689,8 +710,44 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
     * Returns the set of all Connectable items of the net with number p_net_no which can be reached recursively via normal contacts
     * from this item. If p_net_no <= 0, the net number is ignored. If p_stop_at_plane, the recursive algorithm stops, when a
     * conduction area is reached, which does not belong to a component.
+    * For a given net the board usually has the set already, it is then copied instead of walking the contacts
     */
    public final Set<BrdItem> get_connected_set(int p_net_no, boolean p_stop_at_plane)
+      {
+      if ( p_net_no > 0 && ! p_stop_at_plane && is_on_the_board() )
+         {
+         Set<BrdItem> component = r_board.get_connected_component(this, p_net_no);
+         
+         if ( component != null )
+            {
+            Set<BrdItem> result = new TreeSet<BrdItem>(component);
+            
+            if ( r_board.connectivity_validate ) return connected_set_validate(result, p_net_no);
+            
+            return result;
+            }
+         }
+      
+      return get_connected_set_walk(p_net_no, p_stop_at_plane);
+      }
+
+   /**
+    * Compares the cached connected set with the one found walking the contacts, the walk wins
+    */
+   private Set<BrdItem> connected_set_validate(Set<BrdItem> p_cached, int p_net_no)
+      {
+      Set<BrdItem> result = get_connected_set_walk(p_net_no, false);
+      
+      if ( ! result.equals(p_cached) ) 
+         r_board.userPrintln("Item.connected_set_validate: MISMATCH item="+get_id_no()+" net="+p_net_no+" cached="+p_cached.size()+" walk="+result.size());
+      
+      return result;
+      }
+   
+   /**
+    * The connected set found by walking recursively the normal contacts
+    */
+   private Set<BrdItem> get_connected_set_walk(int p_net_no, boolean p_stop_at_plane)
       {
       Set<BrdItem> result = new TreeSet<BrdItem>();
       
@@ -771,8 +828,42 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
    /**
     * Returns the set of all Connectable items belonging to the net with number p_net_no, which are not in the connected set of this
     * item. If p_net_no <= 0, the net numbers contained in this items are used instead of p_net_no.
+    * For a given net the board usually has the other connected sets of the net, the result is then made of them
     */
    public final Set<BrdItem> get_unconnected_set(int p_net_no)
+      {
+      if ( p_net_no > 0 && is_on_the_board() )
+         {
+         Set<BrdItem> unconnected = r_board.get_unconnected_items(this, p_net_no);
+         
+         if ( unconnected != null )
+            {
+            if ( r_board.connectivity_validate ) return unconnected_set_validate(unconnected, p_net_no);
+            
+            return unconnected;
+            }
+         }
+      
+      return get_unconnected_set_walk(p_net_no);
+      }
+
+   /**
+    * Compares the unconnected set made of the cached connected sets with the one found walking the contacts, the walk wins
+    */
+   private Set<BrdItem> unconnected_set_validate(Set<BrdItem> p_cached, int p_net_no)
+      {
+      Set<BrdItem> result = get_unconnected_set_walk(p_net_no);
+      
+      if ( ! result.equals(p_cached) ) 
+         r_board.userPrintln("Item.unconnected_set_validate: MISMATCH item="+get_id_no()+" net="+p_net_no+" cached="+p_cached.size()+" walk="+result.size());
+      
+      return result;
+      }
+   
+   /**
+    * The unconnected set as all the items of the nets less the connected set
+    */
+   private Set<BrdItem> get_unconnected_set_walk(int p_net_no)
       {
       Set<BrdItem> result = new TreeSet<BrdItem>();
       
@@ -793,7 +884,7 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
             }
          }
       
-      result.removeAll( get_connected_set(p_net_no));
+      result.removeAll( get_connected_set_walk(p_net_no, false));
       
       return result;
       }
@@ -1045,6 +1136,9 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
    public final void set_fixed_state(ItemFixState p_fixed_state)
       {
       fixed_state = p_fixed_state;
+      
+      // fixed items are drawn with other colors
+      if ( is_on_the_board() ) r_board.gdi_update_join(bounding_box());
       }
 
    /**
@@ -1054,7 +1148,7 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
       {
       if (fixed_state != ItemFixState.SYSTEM_FIXED)
          {
-         fixed_state = ItemFixState.UNFIXED;
+         set_fixed_state(ItemFixState.UNFIXED);
          }
       }
 
@@ -1111,6 +1205,8 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
       
       net_nos = new_nets;
       
+      if ( is_on_the_board() ) r_board.item_nets_changed(this);
+      
       return true;
       }
 
@@ -1178,12 +1274,11 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
       r_board.undo_items.save_for_undo(this);
 
       if (p_net_no <= 0)
-         {
          net_nos = NetNosList.EMPTY;
-         return;
-         }
-
-      net_nos = new NetNosList(p_net_no);
+      else
+         net_nos = new NetNosList(p_net_no);
+      
+      if ( is_on_the_board() ) r_board.item_nets_changed(this);
       }
 
    /**
@@ -1296,6 +1391,21 @@ public abstract class BrdItem implements GdiDrawable, AwtreeObject, PrintableInf
       {
       awtree_leaves.clear();
       }
+
+   /**
+    * Forget the entries and shapes of p_tree, used when the tree is discarded
+    */
+   public final void clear_search_tree_entries(AwtreeShapeSearch p_tree)
+      {
+      for (BrdItemAwtreeInfoLeaf curr_tree_info : awtree_leaves)
+         {
+         if (curr_tree_info.tree != p_tree) continue;
+         
+         awtree_leaves.remove(curr_tree_info);
+         
+         return;
+         }
+      }
    
 
    /**
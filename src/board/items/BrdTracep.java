@@ -258,12 +258,56 @@ public final class BrdTracep extends BrdItem implements BrdConnectable, java.io.
     */
    public final TreeSet<BrdItem> get_normal_contacts(PlaPoint p_point, boolean p_ignore_net, boolean p_skip_areas )
       {
-      TreeSet<BrdItem> result = new TreeSet<BrdItem>();
-
-      if ( p_point == null ) return result;
+      if ( p_point == null ) return new TreeSet<BrdItem>();
 
+      boolean at_end;
+      
       // point should land on either first or last corner
-      if ( !(p_point.equals(corner_first()) || p_point.equals(corner_last()))) return result;
+      if ( p_point.equals(corner_first()) )
+         at_end = false;
+      else if ( p_point.equals(corner_last()) )
+         at_end = true;
+      else
+         return new TreeSet<BrdItem>();
+
+      int slot_no = RoutingBoard.contact_slot_no(at_end, p_ignore_net, p_skip_areas);
+      
+      TreeSet<BrdItem> cached = r_board.contact_cache_get(this, p_point, slot_no);
+      
+      if ( cached != null )
+         {
+         if ( r_board.connectivity_validate ) return normal_contacts_validate(cached, p_point, p_ignore_net, p_skip_areas);
+         
+         // callers may change the set they get
+         return new TreeSet<BrdItem>(cached);
+         }
+      
+      TreeSet<BrdItem> result = normal_contacts_search(p_point, p_ignore_net, p_skip_areas);
+      
+      r_board.contact_cache_put(this, slot_no, new TreeSet<BrdItem>(result));
+      
+      return result;
+      }
+   
+   /**
+    * Compares the cached contacts with the ones found in the search tree, the search tree wins
+    */
+   private TreeSet<BrdItem> normal_contacts_validate(TreeSet<BrdItem> p_cached, PlaPoint p_point, boolean p_ignore_net, boolean p_skip_areas )
+      {
+      TreeSet<BrdItem> result = normal_contacts_search(p_point, p_ignore_net, p_skip_areas);
+      
+      if ( ! result.equals(p_cached) )
+         r_board.userPrintln("Trace.normal_contacts_validate: MISMATCH trace="+get_id_no()+" cached="+p_cached.size()+" search="+result.size());
+      
+      return result;
+      }
+   
+   /**
+    * Queries the search tree for the items having a connection point at p_point, that is the first or last corner
+    */
+   private TreeSet<BrdItem> normal_contacts_search(PlaPoint p_point, boolean p_ignore_net, boolean p_skip_areas )
+      {
+      TreeSet<BrdItem> result = new TreeSet<BrdItem>();
 
       ShapeTileBox search_shape = p_point.to_box();
 
@@ -0,0 +1,291 @@
+package board.varie;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import board.RoutingBoard;
+import board.awtree.AwtreeObject;
+import board.awtree.AwtreeShapeSearch;
+import board.infos.BrdItemViolation;
+import board.items.BrdItem;
+import freert.planar.ShapeTileBox;
+import freert.planar.ShapeTileOctagon;
+import freert.varie.NetNosList;
+
+/**
+ * Finds the clearance violations of many items, each violating pair of items once
+ * The items are split by layer and by tile of the board and the parts are checked by a pool of threads
+ * The threads only read the board, they are registered as concurrent readers of the default search tree
+ * The board must not be changed until a scan returns
+ * @author damiano
+ */
+public final class BrdClearanceScan
+   {
+   private static final String classname="BrdClearanceScan.";
+   // the board is split in this many tiles on each side, each tile of each layer is a job for the threads
+   private static final int TILE_SIDE_COUNT = 8;
+   // with less items than this starting the threads costs more than it gives
+   private static final int PARALLEL_MIN_ITEMS = 200;
+
+   private final RoutingBoard r_board;
+   private final int thread_count;
+
+   public BrdClearanceScan(RoutingBoard p_board)
+      {
+      this(p_board, Runtime.getRuntime().availableProcessors());
+      }
+
+   public BrdClearanceScan(RoutingBoard p_board, int p_thread_count)
+      {
+      r_board = p_board;
+      thread_count = Math.max(1, p_thread_count);
+      }
+
+   /**
+    * Finds the clearance violations of p_items and gives them to p_listener as the parts of the board are done
+    * @return the number of violations found
+    */
+   public int scan(Collection<BrdItem> p_items, BrdViolationListener p_listener)
+      {
+      Set<BrdItem> scanned = new TreeSet<BrdItem>(p_items);
+
+      ArrayList<ArrayList<BrdItem>> partitions = partition(scanned);
+
+      if ( thread_count <= 1 || partitions.size() <= 1 || scanned.size() < PARALLEL_MIN_ITEMS )
+         return scan_serial(partitions, scanned, p_listener);
+
+      return scan_parallel(partitions, scanned, p_listener);
+      }
+
+   /**
+    * Checks again only the items in p_changed and the ones in the changed area of the board
+    * The previous violations between items that have not changed are given again to p_listener
+    * @param p_previous the violations found by the previous scan of the board
+    * @param p_changed the items put on the board, taken off it or changed since then, the same id may be there more times
+    * @return the number of violations
+    */
+   public int scan_changed(Collection<BrdItemViolation> p_previous, Collection<BrdItem> p_changed, BrdViolationListener p_listener)
+      {
+      // the items are compared by id, an undo puts back a copy of the item
+      Set<BrdItem> changed = changed_area_items();
+
+      changed.addAll(p_changed);
+
+      int violation_count = 0;
+
+      for ( BrdItemViolation curr_violation : p_previous )
+         {
+         if ( changed.contains(curr_violation.first_item) || changed.contains(curr_violation.second_item) ) continue;
+
+         if ( ! curr_violation.first_item.is_on_the_board() || ! curr_violation.second_item.is_on_the_board() ) continue;
+
+         p_listener.violation_found(curr_violation);
+
+         violation_count++;
+         }
+
+      return violation_count + scan(changed_on_board(changed, p_changed), p_listener);
+      }
+
+   /**
+    * @return the items of p_changed that are on the board, the set may hold an undo copy that is not
+    */
+   private Collection<BrdItem> changed_on_board(Set<BrdItem> p_changed, Collection<BrdItem> p_changed_list)
+      {
+      Set<BrdItem> risul = new TreeSet<BrdItem>();
+
+      for ( BrdItem curr_item : p_changed )
+         if ( curr_item.is_on_the_board() ) risul.add(curr_item);
+
+      for ( BrdItem curr_item : p_changed_list )
+         if ( curr_item.is_on_the_board() ) risul.add(curr_item);
+
+      return risul;
+      }
+
+   /**
+    * @return the items overlapping the changed area of the board, enlarged by the clearance
+    */
+   private Set<BrdItem> changed_area_items()
+      {
+      Set<BrdItem> risul = new TreeSet<BrdItem>();
+
+      if ( r_board.changed_area.is_clear() ) return risul;
+
+      AwtreeShapeSearch default_tree = r_board.search_tree_manager.get_default_tree();
+
+      for (int layer_idx = 0; layer_idx < r_board.get_layer_count(); ++layer_idx)
+         {
+         ShapeTileOctagon changed_region = r_board.changed_area.get_area(layer_idx);
+
+         if ( changed_region == null || changed_region.is_empty() ) continue;
+
+         changed_region = changed_region.enlarge(r_board.brd_rules.clearance_matrix.max_value(layer_idx));
+
+         for ( AwtreeObject curr_ob : default_tree.find_overlap_objects(changed_region, layer_idx, NetNosList.EMPTY) )
+            {
+            if ( curr_ob instanceof BrdItem ) risul.add((BrdItem)curr_ob);
+            }
+         }
+
+      return risul;
+      }
+
+   /**
+    * Splits the items by first layer and by the tile of the board holding the centre of their box
+    */
+   private ArrayList<ArrayList<BrdItem>> partition(Collection<BrdItem> p_items)
+      {
+      ShapeTileBox board_box = r_board.get_bounding_box();
+
+      long board_width = Math.max(1, board_box.width());
+      long board_height = Math.max(1, board_box.height());
+
+      HashMap<Integer,ArrayList<BrdItem>> tile_map = new HashMap<Integer,ArrayList<BrdItem>>();
+
+      ArrayList<ArrayList<BrdItem>> risul = new ArrayList<ArrayList<BrdItem>>();
+
+      for ( BrdItem curr_item : p_items )
+         {
+         ShapeTileBox item_box = curr_item.bounding_box();
+
+         long centre_x = ((long)item_box.box_ll.v_x + item_box.box_ur.v_x) / 2;
+         long centre_y = ((long)item_box.box_ll.v_y + item_box.box_ur.v_y) / 2;
+
+         int tile_x = tile_no((centre_x - board_box.box_ll.v_x) * TILE_SIDE_COUNT / board_width);
+         int tile_y = tile_no((centre_y - board_box.box_ll.v_y) * TILE_SIDE_COUNT / board_height);
+
+         Integer tile_key = (curr_item.first_layer() * TILE_SIDE_COUNT + tile_y) * TILE_SIDE_COUNT + tile_x;
+
+         ArrayList<BrdItem> tile_items = tile_map.get(tile_key);
+
+         if ( tile_items == null )
+            {
+            tile_items = new ArrayList<BrdItem>();
+            tile_map.put(tile_key, tile_items);
+            risul.add(tile_items);
+            }
+
+         tile_items.add(curr_item);
+         }
+
+      return risul;
+      }
+
+   private int tile_no(long p_value)
+      {
+      return (int)Math.max(0, Math.min(TILE_SIDE_COUNT - 1, p_value));
+      }
+
+   private int scan_serial(ArrayList<ArrayList<BrdItem>> p_partitions, Set<BrdItem> p_scanned, BrdViolationListener p_listener)
+      {
+      int violation_count = 0;
+
+      for ( ArrayList<BrdItem> curr_partition : p_partitions )
+         {
+         for ( BrdItemViolation curr_violation : scan_partition(curr_partition, p_scanned) )
+            {
+            p_listener.violation_found(curr_violation);
+            violation_count++;
+            }
+         }
+
+      return violation_count;
+      }
+
+   private int scan_parallel(ArrayList<ArrayList<BrdItem>> p_partitions, final Set<BrdItem> p_scanned, BrdViolationListener p_listener)
+      {
+      final AwtreeShapeSearch default_tree = r_board.search_tree_manager.get_default_tree();
+
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(thread_count, p_partitions.size()));
+
+      CompletionService<ArrayList<BrdItemViolation>> completion = new ExecutorCompletionService<ArrayList<BrdItemViolation>>(executor);
+
+      for (final ArrayList<BrdItem> curr_partition : p_partitions )
+         {
+         completion.submit(new Callable<ArrayList<BrdItemViolation>>()
+            {
+            @Override
+            public ArrayList<BrdItemViolation> call()
+               {
+               default_tree.concurrent_reader_add();
+
+               try
+                  {
+                  return scan_partition(curr_partition, p_scanned);
+                  }
+               finally
+                  {
+                  default_tree.concurrent_reader_remove();
+                  }
+               }
+            });
+         }
+
+      int violation_count = 0;
+
+      try
+         {
+         // the listener has the violations of a part as soon as it is done, whatever the order
+         for (int index = 0; index < p_partitions.size(); ++index)
+            {
+            try
+               {
+               for ( BrdItemViolation curr_violation : completion.take().get() )
+                  {
+                  p_listener.violation_found(curr_violation);
+                  violation_count++;
+                  }
+               }
+            catch ( ExecutionException exc )
+               {
+               r_board.userPrintln(classname+"scan_parallel", exc);
+               }
+            }
+         }
+      catch ( InterruptedException exc )
+         {
+         r_board.userPrintln(classname+"scan_parallel: interrupted");
+         Thread.currentThread().interrupt();
+         }
+      finally
+         {
+         executor.shutdown();
+         }
+
+      return violation_count;
+      }
+
+   private ArrayList<BrdItemViolation> scan_partition(ArrayList<BrdItem> p_partition, Set<BrdItem> p_scanned)
+      {
+      ArrayList<BrdItemViolation> risul = new ArrayList<BrdItemViolation>();
+
+      for ( BrdItem curr_item : p_partition ) curr_item.clearance_violations(p_scanned, risul);
+
+      return risul;
+      }
+   }
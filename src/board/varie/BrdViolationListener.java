@@ -0,0 +1,31 @@
+package board.varie;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import board.infos.BrdItemViolation;
+
+/**
+ * Who wants the clearance violations of a BrdClearanceScan as they are found
+ * @author damiano
+ */
+public interface BrdViolationListener
+   {
+   /**
+    * Called by the thread that started the scan, each violating pair of items is given once
+    */
+   void violation_found(BrdItemViolation p_violation);
+   }
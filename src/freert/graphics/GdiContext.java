@@ -30,10 +30,13 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import board.BrdLayerStructure;
 import freert.main.Stat;
 import freert.planar.PlaArea;
@@ -57,6 +60,10 @@ public final class GdiContext implements java.io.Serializable
    private static final int update_offset = 10000;
    private static final boolean show_line_segments = false;
    private static final boolean show_area_division = false;
+   // in level of detail mode, shapes smaller than this many pixels are filled as a box and lines thinner than this are drawn together
+   private static final double LOD_SMALL_PIXELS = 3;
+   // in level of detail mode, the corners of a line nearer than this many pixels to the previous one are skipped
+   private static final double LOD_CORNER_PIXELS = 0.5;
    
    public ColorIntensityTable color_intensity_table;
 
@@ -71,6 +78,14 @@ public final class GdiContext implements java.io.Serializable
 
    public transient ItemColorTableModel item_color_table;
    public transient OtherColorTableModel other_color_table;
+
+   // the graphics drawn in level of detail mode, null if not in that mode
+   private transient Graphics2D lod_graphics;
+   // the small shapes and thin lines waiting to be drawn, one path for each color, translucency and line width
+   private transient LinkedHashMap<LodKey,Path2D.Float> lod_paths;
+   // the key and path last asked for
+   private transient LodKey lod_last_key;
+   private transient Path2D.Float lod_last_path;
    
    public GdiContext(ShapeTileBox p_design_bounds, Dimension p_panel_bounds, BrdLayerStructure p_layer_structure, Stat p_stat)
       {
@@ -158,8 +173,18 @@ public final class GdiContext implements java.io.Serializable
       ShapeTileBox clip_box = coordinate_transform.screen_to_board(clip_shape);
       double scaled_width = coordinate_transform.board_to_screen(p_half_width);
 
-      init_draw_graphics(g2, p_color, (float) scaled_width * 2);
-      set_translucency(g2, p_translucency_factor);
+      boolean lod_mode = lod_graphics == p_g;
+      
+      // a thin line is drawn with the other ones of the same color and width
+      boolean lod_line = lod_mode && ! show_line_segments && scaled_width * 2 < LOD_SMALL_PIXELS;
+      
+      PlaPointFloat[] draw_points = lod_mode ? lod_corners(p_points) : p_points;
+
+      if ( ! lod_line )
+         {
+         init_draw_graphics(g2, p_color, (float) scaled_width * 2);
+         set_translucency(g2, p_translucency_factor);
+         }
 
       GeneralPath draw_path = null;
 
@@ -168,16 +193,16 @@ public final class GdiContext implements java.io.Serializable
          draw_path = new GeneralPath();
          }
 
-      for (int i = 0; i < (p_points.length - 1); i++)
+      for (int i = 0; i < (draw_points.length - 1); i++)
          {
-         if (line_outside_update_box(p_points[i], p_points[i + 1], p_half_width + update_offset, clip_box))
+         if (line_outside_update_box(draw_points[i], draw_points[i + 1], p_half_width + update_offset, clip_box))
             {
             // this check should be unnessersary here, the system should do it in the draw(line) function
             continue;
             }
          
-         Point2D p1 = coordinate_transform.board_to_screen(p_points[i]);
-         Point2D p2 = coordinate_transform.board_to_screen(p_points[i + 1]);
+         Point2D p1 = coordinate_transform.board_to_screen(draw_points[i]);
+         Point2D p2 = coordinate_transform.board_to_screen(draw_points[i + 1]);
          Line2D line = new Line2D.Double(p1, p2);
 
          if (show_line_segments)
@@ -189,7 +214,12 @@ public final class GdiContext implements java.io.Serializable
             draw_path.append(line, false);
             }
          }
-      if (!show_line_segments)
+      
+      if ( lod_line )
+         {
+         lod_path(p_color, p_translucency_factor, (float) scaled_width * 2).append(draw_path, false);
+         }
+      else if (!show_line_segments)
          {
          g2.draw(draw_path);
          }
@@ -287,6 +317,12 @@ public final class GdiContext implements java.io.Serializable
 
       if (!point_near_rectangle(center.getX(), center.getY(), p_g.getClipBounds(), radius))  return;
 
+      if ( lod_graphics == p_g && radius * 2 < LOD_SMALL_PIXELS )
+         {
+         lod_fill_box(center.getX() - radius, center.getY() - radius, center.getX() + radius, center.getY() + radius, p_color, p_translucency_factor);
+         return;
+         }
+      
       double diameter = 2 * radius;
       Ellipse2D circle = new Ellipse2D.Double(center.getX() - radius, center.getY() - radius, diameter, diameter);
       Graphics2D g2 = (Graphics2D) p_g;
@@ -438,6 +474,9 @@ public final class GdiContext implements java.io.Serializable
             {
             return;
             }
+         
+         if ( lod_graphics == p_g && lod_fill_small(border.bounding_box(), p_color, p_translucency_factor) ) return;
+         
          PlaShape[] holes = p_area.get_holes();
 
          PlaPointFloat[][] draw_polygons = new PlaPointFloat[holes.length + 1][];
@@ -769,6 +808,159 @@ public final class GdiContext implements java.io.Serializable
       return layer_visibility_arr.length;
       }
 
+   /**
+    * Starts the level of detail mode for drawing to p_g
+    * Until lod_end() the shapes smaller than a few pixels are filled as boxes, the lines are simplified
+    * and the small shapes and thin lines are kept in one path for each color, drawn by lod_flush()
+    */
+   public void lod_begin(Graphics p_g)
+      {
+      lod_flush();
+      
+      lod_graphics = (Graphics2D) p_g;
+      }
+
+   /**
+    * Draws the small shapes and thin lines kept since the previous flush, in the order their color was first used
+    */
+   public void lod_flush()
+      {
+      if ( lod_graphics == null || lod_paths == null || lod_paths.isEmpty() ) return;
+      
+      for ( Map.Entry<LodKey,Path2D.Float> curr_entry : lod_paths.entrySet() )
+         {
+         LodKey curr_key = curr_entry.getKey();
+         
+         set_translucency(lod_graphics, curr_key.translucency);
+         
+         if ( curr_key.line_width < 0 )
+            {
+            lod_graphics.setColor(curr_key.color);
+            lod_graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            lod_graphics.fill(curr_entry.getValue());
+            }
+         else
+            {
+            init_draw_graphics(lod_graphics, curr_key.color, curr_key.line_width);
+            lod_graphics.draw(curr_entry.getValue());
+            }
+         }
+      
+      lod_paths.clear();
+      lod_last_key = null;
+      lod_last_path = null;
+      }
+
+   /**
+    * Draws what is kept and ends the level of detail mode
+    */
+   public void lod_end()
+      {
+      lod_flush();
+      
+      lod_graphics = null;
+      }
+
+   /**
+    * @return p_points without the inner corners nearer than LOD_CORNER_PIXELS to the previous corner kept
+    */
+   private PlaPointFloat[] lod_corners(PlaPointFloat[] p_points)
+      {
+      if (p_points.length <= 2) return p_points;
+      
+      double min_distance = coordinate_transform.screen_to_board(LOD_CORNER_PIXELS);
+      double min_distance_square = min_distance * min_distance;
+
+      PlaPointFloat[] risul = new PlaPointFloat[p_points.length];
+      
+      int risul_count = 0;
+      
+      risul[risul_count++] = p_points[0];
+      
+      for (int index = 1; index < p_points.length - 1; ++index)
+         {
+         PlaPointFloat curr_point = p_points[index];
+
+         if ( curr_point == null || risul[risul_count - 1] == null || curr_point.distance_square(risul[risul_count - 1]) >= min_distance_square )
+            risul[risul_count++] = curr_point;
+         }
+      
+      risul[risul_count++] = p_points[p_points.length - 1];
+      
+      if ( risul_count == p_points.length ) return p_points;
+      
+      PlaPointFloat[] shorter = new PlaPointFloat[risul_count];
+      
+      System.arraycopy(risul, 0, shorter, 0, risul_count);
+      
+      return shorter;
+      }
+
+   /**
+    * Keeps the screen box of p_board_box to be filled if it is smaller than LOD_SMALL_PIXELS
+    * @return true if kept, false if the shape must be drawn
+    */
+   private boolean lod_fill_small(ShapeTileBox p_board_box, Color p_color, double p_translucency_factor)
+      {
+      Point2D corner_1 = coordinate_transform.board_to_screen(p_board_box.box_ll.to_float());
+      Point2D corner_2 = coordinate_transform.board_to_screen(p_board_box.box_ur.to_float());
+      
+      // rounded as the corners of the polygons filled by fill_area()
+      double min_x = Math.round(Math.min(corner_1.getX(), corner_2.getX()));
+      double min_y = Math.round(Math.min(corner_1.getY(), corner_2.getY()));
+      double max_x = Math.round(Math.max(corner_1.getX(), corner_2.getX()));
+      double max_y = Math.round(Math.max(corner_1.getY(), corner_2.getY()));
+      
+      if ( max_x - min_x >= LOD_SMALL_PIXELS || max_y - min_y >= LOD_SMALL_PIXELS ) return false;
+      
+      lod_fill_box(min_x, min_y, max_x, max_y, p_color, p_translucency_factor);
+      
+      return true;
+      }
+
+   /**
+    * Keeps a box in screen coordinates to be filled
+    */
+   private void lod_fill_box(double p_min_x, double p_min_y, double p_max_x, double p_max_y, Color p_color, double p_translucency_factor)
+      {
+      // an empty box fills nothing, as the polygon it replaces
+      if ( p_max_x <= p_min_x || p_max_y <= p_min_y ) return;
+      
+      Path2D.Float fill_path = lod_path(p_color, p_translucency_factor, -1);
+
+      fill_path.moveTo(p_min_x, p_min_y);
+      fill_path.lineTo(p_max_x, p_min_y);
+      fill_path.lineTo(p_max_x, p_max_y);
+      fill_path.lineTo(p_min_x, p_max_y);
+      fill_path.closePath();
+      }
+
+   /**
+    * @return the path of the shapes waiting to be drawn with this color and translucency, a p_line_width less than 0 for the filled ones
+    */
+   private Path2D.Float lod_path(Color p_color, double p_translucency_factor, float p_line_width)
+      {
+      if ( lod_paths == null ) lod_paths = new LinkedHashMap<LodKey,Path2D.Float>();
+      
+      LodKey path_key = new LodKey(p_color, (float) p_translucency_factor, p_line_width);
+      
+      // the items drawn one after the other mostly have the same color
+      if ( path_key.equals(lod_last_key) ) return lod_last_path;
+      
+      Path2D.Float risul = lod_paths.get(path_key);
+      
+      if ( risul == null )
+         {
+         risul = new Path2D.Float();
+         lod_paths.put(path_key, risul);
+         }
+      
+      lod_last_key = path_key;
+      lod_last_path = risul;
+      
+      return risul;
+      }
+
    /**
     * filter lines, which cannot touch the update_box to improve the performance of the draw function by avoiding unnessesary calls
     * of draw (line)
@@ -849,4 +1041,37 @@ public final class GdiContext implements java.io.Serializable
       other_color_table.transient_update (p_stat);
       }
    
-   }
\ No newline at end of file
+   
+   /**
+    * What the shapes kept together in level of detail mode are drawn with
+    */
+   private static final class LodKey
+      {
+      final Color color;
+      final float translucency;
+      final float line_width;
+      
+      LodKey(Color p_color, float p_translucency, float p_line_width)
+         {
+         color = p_color;
+         translucency = p_translucency;
+         line_width = p_line_width;
+         }
+      
+      @Override
+      public boolean equals(Object p_other)
+         {
+         if ( ! (p_other instanceof LodKey) ) return false;
+         
+         LodKey other = (LodKey) p_other;
+         
+         return color.getRGB() == other.color.getRGB() && translucency == other.translucency && line_width == other.line_width;
+         }
+      
+      @Override
+      public int hashCode()
+         {
+         return (color.getRGB() * 31 + Float.floatToIntBits(translucency)) * 31 + Float.floatToIntBits(line_width);
+         }
+      }
+   }
@@ -20,21 +20,27 @@
 
 package freert.library;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectInputValidation;
 import java.util.Vector;
 import freert.planar.PlaShape;
 import freert.spectra.varie.DsnPackageKeepout;
+import freert.varie.NameIndex;
 
 /**
  * Describes a library of component packages.
  *
  * @author Alfons Wirtz
  */
-public final class LibPackages implements java.io.Serializable
+public final class LibPackages implements java.io.Serializable, ObjectInputValidation
    {
    private static final long serialVersionUID = 1L;
    private static final String classname="LibPackages.";
    
    private Vector<LibPackage> package_list = new Vector<LibPackage>();
+   // The packages by name, both sides of a package have the same name
+   private transient NameIndex<LibPackage> name_index = new NameIndex<LibPackage>();
 
    public final LibPadstacks padstack_list;
 
@@ -54,10 +60,8 @@ public final class LibPackages implements java.io.Serializable
       {
       LibPackage other_side_package = null;
       
-      for ( LibPackage curr_package : package_list )
+      for ( LibPackage curr_package : name_index.get(p_name) )
          {
-         if ( ! curr_package.name_is_equal(p_name) ) continue;
-         
          if (curr_package.is_front == p_is_front) return curr_package;
 
          other_side_package = curr_package;
@@ -106,6 +110,8 @@ public final class LibPackages implements java.io.Serializable
       
       package_list.add(new_package);
 
+      name_index.add(p_name, new_package);
+
       return new_package;
       }
 
@@ -118,4 +124,23 @@ public final class LibPackages implements java.io.Serializable
 
       return add(package_name, p_pin_arr, null, new DsnPackageKeepout[0], new DsnPackageKeepout[0], new DsnPackageKeepout[0], true);
       }
+
+   private void readObject(ObjectInputStream p_stream) throws IOException, ClassNotFoundException
+      {
+      p_stream.defaultReadObject();
+
+      // the objects in the list may be read only in part now, when they refer back to this one
+      p_stream.registerValidation(this, 0);
+      }
+
+   /**
+    * Called when the whole board has been read, the names of the objects are then set
+    */
+   @Override
+   public void validateObject()
+      {
+      name_index = new NameIndex<LibPackage>();
+
+      for ( LibPackage curr_package : package_list ) name_index.add(curr_package.pkg_name, curr_package);
+      }
    }
@@ -20,20 +20,26 @@
 
 package freert.library;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectInputValidation;
 import java.util.Vector;
 import board.BrdLayerStructure;
 import freert.planar.ShapeConvex;
+import freert.varie.NameIndex;
 
 /**
  * Describes a library of padstacks for pins or vias.
  *
  * @author alfons
  */
-public final class LibPadstacks implements java.io.Serializable
+public final class LibPadstacks implements java.io.Serializable, ObjectInputValidation
    {
    private static final long serialVersionUID = 1L;
 
    private final Vector<LibPadstack> padstack_list = new Vector<LibPadstack>();
+   // The padstacks by name, the dsn reader looks them up for every pin
+   private transient NameIndex<LibPadstack> name_index = new NameIndex<LibPadstack>();
    // The layer structure of each padstack
    public final BrdLayerStructure board_layer_structure;
    
@@ -47,14 +53,7 @@ public final class LibPadstacks implements java.io.Serializable
     */
    public LibPadstack get(String p_name)
       {
-      if ( p_name == null ) return null;
-      
-      for ( LibPadstack curr_padstack : padstack_list )
-         {
-         if ( curr_padstack.pads_name.compareToIgnoreCase(p_name) == 0) return curr_padstack;
-         }
-
-      return null;
+      return name_index.get_first(p_name);
       }
 
    /**
@@ -97,6 +96,8 @@ public final class LibPadstacks implements java.io.Serializable
       
       padstack_list.add(new_padstack);
       
+      name_index.add(p_name, new_padstack);
+      
       return new_padstack;
       }
 
@@ -133,4 +134,23 @@ public final class LibPadstacks implements java.io.Serializable
       
       return add(shape_arr);
       }
+
+   private void readObject(ObjectInputStream p_stream) throws IOException, ClassNotFoundException
+      {
+      p_stream.defaultReadObject();
+
+      // the objects in the list may be read only in part now, when they refer back to this one
+      p_stream.registerValidation(this, 0);
+      }
+
+   /**
+    * Called when the whole board has been read, the names of the objects are then set
+    */
+   @Override
+   public void validateObject()
+      {
+      name_index = new NameIndex<LibPadstack>();
+
+      for ( LibPadstack curr_padstack : padstack_list ) name_index.add(curr_padstack.pads_name, curr_padstack);
+      }
    }
@@ -65,7 +65,12 @@ public class MainApplication extends JFrame
     */
    public static void main(String p_args[])
       {
-      new MainApplication(p_args);
+      MainOptions options = new MainOptions(p_args);
+      
+      if ( options.batch_mode )
+         MainBatch.main(p_args);
+      else
+         new MainApplication(p_args);
       }
 
    public MainApplication(String p_args[])
@@ -77,6 +82,9 @@ public class MainApplication extends JFrame
       decideUILookAndFeel(main_options);
 
       stat.log = new WindowEventsLog(true);
+      
+      // a routing thread printing should not wait for the Swing thread
+      stat.log_async = new StatLog(stat.log);
 
       stat.jmanifest = new JarManifest();
       
@@ -0,0 +1,196 @@
+package freert.main;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.IteraBoard;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import autoroute.batch.BatchAutorouteThread;
+import board.varie.IdGenerator;
+import freert.varie.JarManifest;
+
+/**
+ * Headless batch router, reads a dsn file, runs fanout, autoroute and optimize and writes a ses file
+ * There is no Swing involved, so it can be run on build servers, eg:
+ * java -cp FreeRouting.jar freert.main.MainBatch -de board.dsn -do board.ses -threads 4
+ * With -log board.log the messages go to the file, with time and thread, instead of System.out
+ * With -metrics board.json the counters and timers of the autorouter passes are written as JSON
+ * @author damiano
+ */
+public final class MainBatch
+   {
+   private static final String classname="MainBatch.";
+
+   private final Stat stat = new Stat();
+   private final MainOptions main_options;
+
+   public static void main(String p_args[])
+      {
+      System.setProperty("java.awt.headless", "true");
+
+      MainBatch batch = new MainBatch(new MainOptions(p_args));
+
+      boolean routed = batch.batch_route();
+      
+      batch.log_close();
+      
+      System.exit(routed ? 0 : 1);
+      }
+
+   public MainBatch(MainOptions p_options)
+      {
+      main_options = p_options;
+
+      if ( main_options.options_locale != null ) stat.locale = main_options.options_locale;
+
+      Stat.instance = stat;
+
+      stat.jmanifest = new JarManifest();
+      
+      // the routing threads print without waiting for the writing of the log
+      stat.log_async = new StatLog(log_sink_new());
+      }
+
+   /**
+    * Writes what is still to be written to the log, call it before exit
+    */
+   public void log_close ()
+      {
+      if ( stat.log_async == null ) return;
+      
+      stat.log_async.close();
+      
+      stat.log_async = null;
+      }
+   
+   private StatLogSink log_sink_new ()
+      {
+      if ( main_options.log_file_name == null ) return new StatLogFile();
+      
+      try
+         {
+         return new StatLogFile(new File(main_options.log_file_name));
+         }
+      catch ( IOException exc )
+         {
+         System.err.println(classname+"log_sink_new: FAIL opening "+main_options.log_file_name+" "+exc);
+         return new StatLogFile();
+         }
+      }
+
+   /**
+    * Loads the design, route it in the current thread and save the result
+    * @return true if the session file has been written
+    */
+   public boolean batch_route ()
+      {
+      if ( ! main_options.haveDesignFname() )
+         {
+         stat.userPrintln(classname+"batch_route: missing -de design_file.dsn");
+         return false;
+         }
+
+      File design_file = new File(main_options.design_file_name);
+
+      IteraBoard itera_board = new IteraBoard(stat);
+
+      if ( ! import_design(itera_board, design_file) ) return false;
+
+      stat.userPrintln(classname+"batch_route: loaded "+design_file.getName());
+
+      if ( main_options.parallel_threads > 0 )
+         itera_board.itera_settings.autoroute_settings.set_parallel_threads(main_options.parallel_threads);
+
+      itera_board.itera_settings.autoroute_settings.maze_tree_queue = main_options.maze_tree_queue;
+
+      itera_board.get_routing_board().connectivity_validate = main_options.connectivity_validate;
+
+      BatchAutorouteThread route_thread = new BatchAutorouteThread(itera_board);
+
+      // no need to start a new thread, there is no GUI to keep alive
+      route_thread.run();
+
+      if ( main_options.metrics_file_name != null ) write_metrics(route_thread, new File(main_options.metrics_file_name));
+      
+      return write_session(itera_board, design_file.getName(), new File(main_options.getOutputFname()));
+      }
+
+   private boolean import_design ( IteraBoard p_itera_board, File p_design_file )
+      {
+      try
+         {
+         InputStream input_stream = new FileInputStream(p_design_file);
+
+         // import_design closes the stream
+         if ( p_itera_board.import_design(input_stream, new IdGenerator(), stat) ) return true;
+
+         stat.userPrintln(classname+"import_design: FAIL reading "+p_design_file);
+         }
+      catch ( Exception exc )
+         {
+         stat.userPrintln(classname+"import_design: "+p_design_file, exc);
+         }
+
+      return false;
+      }
+
+   private void write_metrics ( BatchAutorouteThread p_route_thread, File p_metrics_file )
+      {
+      try
+         {
+         FileWriter writer = new FileWriter(p_metrics_file);
+         
+         writer.write(p_route_thread.metrics_json());
+         writer.write('\n');
+         writer.close();
+
+         stat.userPrintln(classname+"write_metrics: written "+p_metrics_file);
+         }
+      catch ( Exception exc )
+         {
+         stat.userPrintln(classname+"write_metrics: "+p_metrics_file, exc);
+         }
+      }
+
+   private boolean write_session ( IteraBoard p_itera_board, String p_design_name, File p_output_file )
+      {
+      try
+         {
+         OutputStream output_stream = new FileOutputStream(p_output_file);
+
+         // the ses writer closes the stream
+         boolean write_ok = p_itera_board.export_specctra_session_file(p_design_name, output_stream);
+
+         if ( write_ok )
+            stat.userPrintln(classname+"write_session: written "+p_output_file);
+         else
+            stat.userPrintln(classname+"write_session: FAIL writing "+p_output_file);
+
+         return write_ok;
+         }
+      catch ( Exception exc )
+         {
+         stat.userPrintln(classname+"write_session: "+p_output_file, exc);
+         return false;
+         }
+      }
+   }
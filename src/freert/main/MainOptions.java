@@ -30,6 +30,13 @@ public class MainOptions
    String design_dir_name = null;
    Locale options_locale = null;
    boolean system_plaf=true;
+   boolean batch_mode=false;            // route from command line, no GUI at all
+   String output_file_name = null;      // the session file written by the batch mode
+   int parallel_threads = 0;            // batch autoroute worker threads, 0 means keep the board settings
+   boolean maze_tree_queue=false;       // use the old TreeSet maze expansion list, to compare timings
+   boolean connectivity_validate=false; // check the cached connected sets and contacts against the walk of the contacts
+   String log_file_name = null;         // the batch mode writes the log here, with time and thread, instead of System.out
+   String metrics_file_name = null;     // the batch mode writes here the autorouter metrics as JSON
 
    public MainOptions(String p_args[])
       {
@@ -51,6 +58,14 @@ public class MainOptions
                design_dir_name = p_args[index + 1];
                }
             }
+         else if (p_args[index].startsWith("-log"))
+            {
+            // the log file of the batch mode
+            if (p_args.length > index + 1 && !p_args[index + 1].startsWith("-"))
+               {
+               log_file_name = p_args[index + 1];
+               }
+            }
          else if (p_args[index].startsWith("-l"))
             {
             // the locale is provided
@@ -64,6 +79,49 @@ public class MainOptions
             {
             system_plaf=false;
             }
+         else if (p_args[index].startsWith("-batch"))
+            {
+            batch_mode=true;
+            }
+         else if (p_args[index].startsWith("-do"))
+            {
+            // the session output file is provided
+            if (p_args.length > index + 1 && !p_args[index + 1].startsWith("-"))
+               {
+               output_file_name = p_args[index + 1];
+               }
+            }
+         else if (p_args[index].startsWith("-metrics"))
+            {
+            // the autorouter metrics of the batch mode
+            if (p_args.length > index + 1 && !p_args[index + 1].startsWith("-"))
+               {
+               metrics_file_name = p_args[index + 1];
+               }
+            }
+         else if (p_args[index].startsWith("-mazetree"))
+            {
+            maze_tree_queue=true;
+            }
+         else if (p_args[index].startsWith("-connvalidate"))
+            {
+            connectivity_validate=true;
+            }
+         else if (p_args[index].startsWith("-threads"))
+            {
+            // number of threads used by the batch autorouter
+            if (p_args.length > index + 1 && !p_args[index + 1].startsWith("-"))
+               {
+               try
+                  {
+                  parallel_threads = Integer.parseInt(p_args[index + 1]);
+                  }
+               catch ( NumberFormatException exc )
+                  {
+                  System.err.println("MainOptions: bad -threads "+p_args[index + 1]);
+                  }
+               }
+            }
          }
       }
    
@@ -71,6 +129,18 @@ public class MainOptions
       {
       return design_file_name != null && design_file_name.length() > 3 ;
       }
+
+   /**
+    * @return the session file name to write, if not given it is the design file name with a .ses extension
+    */
+   public String getOutputFname ()
+      {
+      if ( output_file_name != null ) return output_file_name;
+      
+      String[] name_parts = design_file_name.split("\\.(?=[^\\.]+$)");
+      
+      return name_parts[0] + ".ses";
+      }
    
    
    }
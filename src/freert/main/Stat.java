@@ -33,7 +33,8 @@ public final class Stat
 
    public java.util.Locale locale;        // The Locale to be used in the whole program
    
-   public WindowEventsLog log;
+   public WindowEventsLog log;           // null when running headless, messages go to System.out
+   public StatLog log_async;             // when not null the messages go to it and are written by its thread
    public JarManifest jmanifest;        // use to pick up info about the program
    
    public int debug_mask;                // debug log mask
@@ -49,12 +50,26 @@ public final class Stat
    
    public void userPrintln(String message)
       {
-      log.userPrintln(message);
+      if ( log_async != null )
+         log_async.println(message);
+      else if ( log == null )
+         System.out.println(message);
+      else
+         log.userPrintln(message);
       }
 
    public void userPrintln(String message, Exception exc)
       {
-      log.exceptionPrint(message, exc);
+      // the lines printed before the exception come first
+      if ( log_async != null ) log_async.flush();
+      
+      if ( log == null )
+         {
+         System.err.println(message);
+         if ( exc != null ) exc.printStackTrace();
+         }
+      else
+         log.exceptionPrint(message, exc);
       }
    
    /**
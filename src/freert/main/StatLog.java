@@ -0,0 +1,200 @@
+package freert.main;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the printed lines in a ring and writes them to a sink from its own thread
+ * Printing never waits for the sink, eg: the Swing thread, if the ring is full the oldest lines are dropped and counted
+ * The lines are written every DRAIN_MILLIS, so the sink gets many lines at once
+ * @author damiano
+ */
+public final class StatLog
+   {
+   private static final String classname="StatLog.";
+   private static final int RING_SIZE = 4096;
+   private static final long DRAIN_MILLIS = 100;
+
+   private final StatLogSink log_sink;
+   private final Thread drain_thread;
+   // only one thread at a time takes lines from the ring and writes them, to keep the order
+   private final Object drain_lock = new Object();
+
+   private final long[]   ring_time    = new long[RING_SIZE];
+   private final String[] ring_thread  = new String[RING_SIZE];
+   private final String[] ring_message = new String[RING_SIZE];
+   private int ring_first;    // index of the oldest line
+   private int ring_count;
+   private int dropped_count;
+   private boolean closed;
+
+   public StatLog(StatLogSink p_sink)
+      {
+      log_sink = p_sink;
+
+      drain_thread = new Thread(new DrainRunnable(), "StatLog drain");
+      drain_thread.setDaemon(true);
+      drain_thread.start();
+      }
+
+   /**
+    * Puts a line in the ring, if it is full the oldest line is dropped
+    */
+   public void println(String p_message)
+      {
+      long now = System.currentTimeMillis();
+
+      String thread_name = Thread.currentThread().getName();
+
+      synchronized ( this )
+         {
+         if ( ring_count >= RING_SIZE )
+            {
+            ring_first = (ring_first + 1) % RING_SIZE;
+            ring_count--;
+            dropped_count++;
+            }
+
+         int index = (ring_first + ring_count) % RING_SIZE;
+
+         ring_time[index] = now;
+         ring_thread[index] = thread_name;
+         ring_message[index] = p_message;
+
+         ring_count++;
+
+         // do not wait for the next drain if the ring is getting full
+         if ( ring_count == RING_SIZE / 2 ) notifyAll();
+         }
+      }
+
+   /**
+    * Writes to the sink all the lines printed before this call
+    */
+   public void flush()
+      {
+      drain();
+      }
+
+   /**
+    * Writes the lines still in the ring and stops the drain thread
+    */
+   public void close()
+      {
+      synchronized ( this )
+         {
+         closed = true;
+         notifyAll();
+         }
+
+      try
+         {
+         drain_thread.join();
+         }
+      catch ( InterruptedException exc )
+         {
+         Thread.currentThread().interrupt();
+         }
+
+      drain();
+      }
+
+   private void drain()
+      {
+      synchronized ( drain_lock )
+         {
+         ArrayList<StatLogLine> lines = lines_take();
+
+         if ( lines.isEmpty() ) return;
+
+         try
+            {
+            log_sink.lines_write(lines);
+            }
+         catch ( Exception exc )
+            {
+            System.err.println(classname+"drain: "+exc);
+            }
+         }
+      }
+
+   /**
+    * @return the lines in the ring, that is emptied
+    */
+   private synchronized ArrayList<StatLogLine> lines_take()
+      {
+      ArrayList<StatLogLine> risul = new ArrayList<StatLogLine>(ring_count + 1);
+
+      if ( dropped_count > 0 )
+         {
+         risul.add(new StatLogLine(System.currentTimeMillis(), drain_thread.getName(), classname+"lines_take: dropped "+dropped_count+" lines"));
+         dropped_count = 0;
+         }
+
+      for (int count = 0; count < ring_count; ++count)
+         {
+         int index = (ring_first + count) % RING_SIZE;
+
+         risul.add(new StatLogLine(ring_time[index], ring_thread[index], ring_message[index]));
+
+         ring_thread[index] = null;
+         ring_message[index] = null;
+         }
+
+      ring_first = (ring_first + ring_count) % RING_SIZE;
+      ring_count = 0;
+
+      return risul;
+      }
+
+   /**
+    * @return true when the drain thread should stop
+    */
+   private synchronized boolean drain_wait()
+      {
+      if ( ! closed && ring_count < RING_SIZE / 2 )
+         {
+         try
+            {
+            wait(DRAIN_MILLIS);
+            }
+         catch ( InterruptedException exc )
+            {
+            return true;
+            }
+         }
+
+      return closed;
+      }
+
+   private final class DrainRunnable implements Runnable
+      {
+      @Override
+      public void run()
+         {
+         for (;;)
+            {
+            boolean stop = drain_wait();
+
+            drain();
+
+            if ( stop ) return;
+            }
+         }
+      }
+   }
@@ -0,0 +1,78 @@
+package freert.main;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes the log lines to a file, or to System.out, for headless runs
+ * With with_fields each line is: time TAB thread TAB message, so it can be read back by a script
+ * @author damiano
+ */
+public final class StatLogFile implements StatLogSink
+   {
+   private final PrintWriter writer;
+   private final boolean with_fields;
+   private final SimpleDateFormat time_format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+   private final Date line_date = new Date();
+
+   /**
+    * Writes the plain messages to System.out
+    */
+   public StatLogFile()
+      {
+      writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+      with_fields = false;
+      }
+
+   /**
+    * Writes the lines, with time and thread, to p_file
+    */
+   public StatLogFile(File p_file) throws IOException
+      {
+      writer = new PrintWriter(new BufferedWriter(new FileWriter(p_file)));
+      with_fields = true;
+      }
+
+   @Override
+   public void lines_write(List<StatLogLine> p_lines)
+      {
+      for ( StatLogLine curr_line : p_lines )
+         {
+         if ( with_fields )
+            {
+            line_date.setTime(curr_line.time_ms);
+            writer.print(time_format.format(line_date));
+            writer.print('\t');
+            writer.print(curr_line.thread_name);
+            writer.print('\t');
+            }
+
+         writer.println(curr_line.message);
+         }
+
+      writer.flush();
+      }
+   }
@@ -0,0 +1,35 @@
+package freert.main;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+/**
+ * A line of the log, with when and by which thread it has been printed
+ * @author damiano
+ */
+public final class StatLogLine
+   {
+   public final long time_ms;
+   public final String thread_name;
+   public final String message;
+   
+   public StatLogLine(long p_time_ms, String p_thread_name, String p_message)
+      {
+      time_ms = p_time_ms;
+      thread_name = p_thread_name;
+      message = p_message;
+      }
+   }
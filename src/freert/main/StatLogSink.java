@@ -0,0 +1,31 @@
+package freert.main;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.List;
+
+/**
+ * Where the lines of a StatLog end up, it is called by one thread at a time
+ * @author damiano
+ */
+public interface StatLogSink
+   {
+   /**
+    * Writes the lines in the order they have been printed
+    */
+   void lines_write(List<StatLogLine> p_lines);
+   }
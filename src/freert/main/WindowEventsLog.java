@@ -27,6 +27,7 @@ import java.io.InputStreamReader;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.PrintStream;
+import java.util.List;
 import javax.swing.ImageIcon;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
@@ -47,7 +48,7 @@ import javax.swing.SwingUtilities;
  * NOTE: Logging IS different than debugging, if you wish to have selective debugging you MUST
  * implement your own class that does what is needed.
  */
-public final class WindowEventsLog implements JComponentProvider
+public final class WindowEventsLog implements JComponentProvider, StatLogSink
   {
   private static final int REDIRECT_OUT=1;
   private static final int REDIRECT_ERROR=2;
@@ -210,6 +211,32 @@ public final class WindowEventsLog implements JComponentProvider
     }
 
 
+  /**
+   * The lines of a StatLog are added to the user area with one change from the Swing thread
+   */
+  @Override
+  public void lines_write ( List<StatLogLine> lines )
+    {
+    StringBuilder aBuilder = new StringBuilder(lines.size() * 64);
+    
+    for ( StatLogLine aLine : lines )
+      {
+      if ( aBuilder.length() > 0 ) aBuilder.append('\n');
+      aBuilder.append(aLine.message);
+      }
+    
+    final String message = aBuilder.toString();
+    
+    SwingUtilities.invokeLater(new Runnable()
+      {
+      public void run()
+        {
+        userArea.println(message);
+        }
+      });
+    }
+
+
   /**
    * Prints an exception.
    * It is printed using System.err.println(), so it will go to the "console" if you do not redired out/err to a gui.
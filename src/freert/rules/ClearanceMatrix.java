@@ -254,6 +254,25 @@ public final class ClearanceMatrix implements java.io.Serializable
       return clearance_rows[p_no];
       }
 
+   /**
+    * @return a copy of the values of row p_no for all columns and layers, to find out if the row has changed
+    */
+   public int[] get_row_values(int p_no)
+      {
+      if (p_no < 0 || p_no >= clearance_rows.length) return new int[0];
+      
+      int layer_count = layer_structure.size();
+      
+      int[] result = new int[class_count * layer_count];
+      
+      for (int col_no = 0; col_no < class_count; ++col_no)
+         {
+         System.arraycopy(clearance_rows[p_no].column[col_no].layer, 0, result, col_no * layer_count, layer_count);
+         }
+      
+      return result;
+      }
+
    public int get_class_count()
       {
       return class_count;
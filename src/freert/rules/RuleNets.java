@@ -19,17 +19,21 @@
  */
 package freert.rules;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectInputValidation;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Vector;
 import board.RoutingBoard;
+import freert.varie.NameIndex;
 
 /**
  * Describes the electrical Nets on a board.
  *
  * @author alfons
  */
-public final class RuleNets implements java.io.Serializable
+public final class RuleNets implements java.io.Serializable, ObjectInputValidation
    {
    private static final long serialVersionUID = 1L;
    // The maximum legal net number for nets
@@ -39,6 +43,8 @@ public final class RuleNets implements java.io.Serializable
    
    // The list of electrical nets on the board
    private final Vector<RuleNet> net_list = new Vector<RuleNet>();
+   // The nets by name, the dsn reader looks them up for every pin
+   private transient NameIndex<RuleNet> name_index = new NameIndex<RuleNet>();
    
    private RoutingBoard r_board;
 
@@ -55,12 +61,8 @@ public final class RuleNets implements java.io.Serializable
     */
    public RuleNet get(String p_name, int p_subnet_number)
       {
-      if ( p_name == null ) return null;
-      
-      for (RuleNet curr_net : net_list)
+      for (RuleNet curr_net : name_index.get(p_name))
          {
-         if ( curr_net.name.compareToIgnoreCase(p_name) != 0) continue;
-         
          if (curr_net.subnet_number == p_subnet_number) return curr_net;
          }
       
@@ -72,16 +74,7 @@ public final class RuleNets implements java.io.Serializable
     */
    public Collection<RuleNet> get(String p_name)
       {
-      Collection<RuleNet> result = new LinkedList<RuleNet>();
-      
-      if ( p_name == null ) return result;
-      
-      for (RuleNet curr_net : net_list)
-         {
-         if ( curr_net.name.compareToIgnoreCase(p_name) == 0)  result.add(curr_net);
-         }
-      
-      return result;
+      return new LinkedList<RuleNet>(name_index.get(p_name));
       }
 
    /**
@@ -131,6 +124,8 @@ public final class RuleNets implements java.io.Serializable
 
       net_list.add(new_net);
       
+      name_index.add(p_name, new_net);
+      
       return new_net;
       }
 
@@ -157,4 +152,23 @@ public final class RuleNets implements java.io.Serializable
       {
       return r_board;
       }
+
+   private void readObject(ObjectInputStream p_stream) throws IOException, ClassNotFoundException
+      {
+      p_stream.defaultReadObject();
+
+      // the objects in the list may be read only in part now, when they refer back to this one
+      p_stream.registerValidation(this, 0);
+      }
+
+   /**
+    * Called when the whole board has been read, the names of the objects are then set
+    */
+   @Override
+   public void validateObject()
+      {
+      name_index = new NameIndex<RuleNet>();
+
+      for (RuleNet curr_net : net_list) name_index.add(curr_net.name, curr_net);
+      }
    }
@@ -442,7 +442,7 @@ public class DsnKeywordNetwork extends DsnKeywordScope
             System.out.println("Network.read_net_scope: net not found in netlist");
             return false;
             }
-         curr_subnet.set_pins(curr_pin_list);
+         p_net_list.set_pins(curr_subnet, curr_pin_list);
          if (!net_rules.isEmpty())
             {
             // Evaluate the net rules.
@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.TreeSet;
 import board.BrdLayer;
 import board.RoutingBoard;
 import board.items.BrdAbitVia;
@@ -114,9 +115,21 @@ final class DsnKeywordWiring extends DsnKeywordScope
          }
       RoutingBoard board = p_par.i_board.get_routing_board();
 
-      for (int index = 1; index <= board.brd_rules.nets.max_net_no(); ++index)
+      // each normalize reads all the items, so only the nets having traces, in the same order as all the nets
+      TreeSet<Integer> trace_nets = new TreeSet<Integer>();
+
+      for (BrdItem curr_item : board.get_items())
+         {
+         if ( ! (curr_item instanceof BrdTracep) ) continue;
+
+         for (int index = 0; index < curr_item.net_count(); ++index) trace_nets.add(curr_item.get_net_no(index));
+         }
+
+      for (int net_no : trace_nets)
          {
-         board.normalize_traces(index);
+         if ( net_no < 1 || net_no > board.brd_rules.nets.max_net_no() ) continue;
+
+         board.normalize_traces(net_no);
          }
       return true;
       }
@@ -20,8 +20,9 @@
 
 package freert.spectra;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -36,6 +37,8 @@ public class DsnNetList
 
    /** The entries of this map are of type Net, the keys are the net_ids. */
    private final Map<DsnNetId, DsnNet> nets = new TreeMap<DsnNetId, DsnNet>();
+   // The nets of each pin, built when first needed and dropped when a net or its pins change
+   private TreeMap<DsnNetPin, ArrayList<DsnNet>> pin_nets = null;
 
    
    /**
@@ -62,6 +65,7 @@ public class DsnNetList
          {
          result = new DsnNet(p_net_id);
          nets.put(p_net_id, result);
+         pin_nets = null;
          }
       return result;
       }
@@ -75,24 +79,59 @@ public class DsnNetList
       return ((DsnNet) value);
       }
 
+   /**
+    * Sets the pins of p_net, that must be in this net list, use this so that the nets of a pin are found
+    */
+   public void set_pins(DsnNet p_net, Collection<DsnNetPin> p_pin_list)
+      {
+      p_net.set_pins(p_pin_list);
+      pin_nets = null;
+      }
+
    /**
     * Returns all nets in this net list containing the input pin.
+    * It is called for every pin of every component, so the nets of the pins are indexed
     */
    public Collection<DsnNet> get_nets(String p_component_name, String p_pin_name)
       {
-      Collection<DsnNet> result = new java.util.LinkedList<DsnNet>();
-      DsnNetPin search_pin = new DsnNetPin(p_component_name, p_pin_name);
-      Collection<DsnNet> net_list = nets.values();
-      Iterator<DsnNet> it = net_list.iterator();
-      while (it.hasNext())
+      if ( pin_nets == null ) pin_nets = pin_nets_build();
+      
+      Collection<DsnNet> result = new LinkedList<DsnNet>();
+      
+      ArrayList<DsnNet> found_nets = pin_nets.get(new DsnNetPin(p_component_name, p_pin_name));
+      
+      if ( found_nets != null ) result.addAll(found_nets);
+      
+      return result;
+      }
+
+   /**
+    * The nets of a pin are in the order of the net list, as they were found by a scan of it
+    */
+   private TreeMap<DsnNetPin, ArrayList<DsnNet>> pin_nets_build()
+      {
+      TreeMap<DsnNetPin, ArrayList<DsnNet>> result = new TreeMap<DsnNetPin, ArrayList<DsnNet>>();
+      
+      for (DsnNet curr_net : nets.values())
          {
-         DsnNet curr_net = it.next();
          Set<DsnNetPin> net_pins = curr_net.get_pins();
-         if (net_pins != null && net_pins.contains(search_pin))
+         
+         if (net_pins == null) continue;
+         
+         for (DsnNetPin curr_pin : net_pins)
             {
-            result.add(curr_net);
+            ArrayList<DsnNet> curr_nets = result.get(curr_pin);
+            
+            if (curr_nets == null)
+               {
+               curr_nets = new ArrayList<DsnNet>(1);
+               result.put(curr_pin, curr_nets);
+               }
+            
+            curr_nets.add(curr_net);
             }
          }
+      
       return result;
       }
 
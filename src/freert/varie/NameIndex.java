@@ -0,0 +1,91 @@
+package freert.varie;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Objects indexed by a name that is compared ignoring case, as String.equalsIgnoreCase does
+ * Names that are equal ignoring case have the same key, objects with the same key are kept in the order they are added
+ * It is not serializable, the owner keeps it transient and adds the objects again when it is read
+ * @author damiano
+ */
+public final class NameIndex<T>
+   {
+   private final HashMap<String,ArrayList<T>> name_map = new HashMap<String,ArrayList<T>>();
+
+   /**
+    * Two names have the same key if and only if equalsIgnoreCase is true for them
+    * The chars are mapped one by one, as equalsIgnoreCase compares them, String.toLowerCase may change the length
+    */
+   public static String key(String p_name)
+      {
+      char[] key_chars = new char[p_name.length()];
+
+      for (int index = 0; index < key_chars.length; index++)
+         key_chars[index] = Character.toLowerCase(Character.toUpperCase(p_name.charAt(index)));
+
+      return new String(key_chars);
+      }
+
+   public void add(String p_name, T p_object)
+      {
+      String name_key = key(p_name);
+
+      ArrayList<T> same_name = name_map.get(name_key);
+
+      if ( same_name == null )
+         {
+         // nearly all the names are unique
+         same_name = new ArrayList<T>(1);
+         name_map.put(name_key, same_name);
+         }
+
+      same_name.add(p_object);
+      }
+
+   /**
+    * @return the objects with p_name, in the order they have been added, an empty list if none
+    */
+   public List<T> get(String p_name)
+      {
+      if ( p_name == null ) return Collections.emptyList();
+
+      ArrayList<T> risul = name_map.get(key(p_name));
+
+      if ( risul == null ) return Collections.emptyList();
+
+      return risul;
+      }
+
+   /**
+    * @return the first object added with p_name or null if none
+    */
+   public T get_first(String p_name)
+      {
+      List<T> same_name = get(p_name);
+
+      return same_name.isEmpty() ? null : same_name.get(0);
+      }
+
+   public void clear()
+      {
+      name_map.clear();
+      }
+   }
@@ -0,0 +1,218 @@
+package freert.varie;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/> 
+ *   for more details.
+ *
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The current nodes of an UndoObjects, indexed by the id number of their object
+ * Ids are given in sequence, so they are stored in pages of an array, a page is allocated only when an id in its range is used
+ * Lookup is a couple of array accesses and reading is a scan of the pages, without the nodes of a skip list
+ * Objects are read from the highest id to the lowest, this is the order the sorted map had for board items
+ * @author damiano
+ */
+final class UndoObjectIdMap implements java.io.Serializable
+   {
+   private static final long serialVersionUID = 1L;
+   
+   private static final int PAGE_BITS = 10;
+   private static final int PAGE_SIZE = 1 << PAGE_BITS;
+   private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+   private UndoObjectNode[][] page_arr = new UndoObjectNode[16][];
+   // how many nodes are in each page, an empty page is released
+   private int[] page_used = new int[16];
+   private int node_count;
+
+   int size()
+      {
+      return node_count;
+      }
+   
+   UndoObjectNode get(int p_id_no)
+      {
+      if ( p_id_no < 0 ) return null;
+      
+      int page_no = p_id_no >>> PAGE_BITS;
+      
+      UndoObjectNode[][] pages = page_arr;
+      
+      if ( page_no >= pages.length ) return null;
+      
+      UndoObjectNode[] a_page = pages[page_no];
+      
+      if ( a_page == null ) return null;
+      
+      return a_page[p_id_no & PAGE_MASK];
+      }
+
+   /**
+    * Stores p_node with the id of its object, replacing the node that was there
+    * @return the node replaced or null
+    */
+   UndoObjectNode put(UndoObjectNode p_node)
+      {
+      int id_no = p_node.object.get_id_no();
+      
+      if ( id_no < 0 ) throw new IllegalArgumentException("UndoObjectIdMap.put: bad id_no="+id_no);
+      
+      int page_no = id_no >>> PAGE_BITS;
+      
+      if ( page_no >= page_arr.length ) pages_grow(page_no);
+      
+      UndoObjectNode[] a_page = page_arr[page_no];
+      
+      if ( a_page == null )
+         {
+         a_page = new UndoObjectNode[PAGE_SIZE];
+         page_arr[page_no] = a_page;
+         }
+      
+      int index = id_no & PAGE_MASK;
+      
+      UndoObjectNode previous = a_page[index];
+      
+      a_page[index] = p_node;
+      
+      if ( previous == null )
+         {
+         page_used[page_no]++;
+         node_count++;
+         }
+      
+      return previous;
+      }
+
+   private void pages_grow(int p_page_no)
+      {
+      int new_length = Math.max(page_arr.length * 2, p_page_no + 1);
+      
+      UndoObjectNode[][] new_pages = new UndoObjectNode[new_length][];
+      System.arraycopy(page_arr, 0, new_pages, 0, page_arr.length);
+      
+      int[] new_used = new int[new_length];
+      System.arraycopy(page_used, 0, new_used, 0, page_used.length);
+      
+      page_used = new_used;
+      page_arr = new_pages;
+      }
+
+   /**
+    * @return the node removed or null if there was none with this id
+    */
+   UndoObjectNode remove(int p_id_no)
+      {
+      if ( p_id_no < 0 ) return null;
+
+      int page_no = p_id_no >>> PAGE_BITS;
+      
+      if ( page_no >= page_arr.length ) return null;
+
+      UndoObjectNode[] a_page = page_arr[page_no];
+      
+      if ( a_page == null ) return null;
+      
+      int index = p_id_no & PAGE_MASK;
+
+      UndoObjectNode previous = a_page[index];
+      
+      if ( previous == null ) return null;
+      
+      a_page[index] = null;
+      node_count--;
+      
+      if ( --page_used[page_no] <= 0 ) page_arr[page_no] = null;
+      
+      return previous;
+      }
+
+   /**
+    * Nodes can be put or removed while reading, as with the concurrent map it replaces
+    * A node put after the reading position is not returned
+    */
+   Iterator<UndoObjectNode> iterator()
+      {
+      return new IdMapIterator();
+      }
+
+   private final class IdMapIterator implements Iterator<UndoObjectNode>
+      {
+      // the next id to look at, going down
+      private int next_id_no = page_arr.length * PAGE_SIZE - 1;
+      private UndoObjectNode next_node;
+      private int last_id_no = -1;
+
+      @Override
+      public boolean hasNext()
+         {
+         if ( next_node != null ) return true;
+         
+         UndoObjectNode[][] pages = page_arr;
+         
+         while ( next_id_no >= 0 )
+            {
+            int page_no = next_id_no >>> PAGE_BITS;
+            
+            UndoObjectNode[] a_page = page_no < pages.length ? pages[page_no] : null;
+            
+            if ( a_page == null )
+               {
+               // skip to the last id of the previous page
+               next_id_no = (page_no << PAGE_BITS) - 1;
+               continue;
+               }
+            
+            UndoObjectNode a_node = a_page[next_id_no & PAGE_MASK];
+            
+            next_id_no--;
+            
+            if ( a_node == null ) continue;
+            
+            next_node = a_node;
+            
+            return true;
+            }
+         
+         return false;
+         }
+
+      @Override
+      public UndoObjectNode next()
+         {
+         if ( ! hasNext() ) throw new NoSuchElementException();
+         
+         UndoObjectNode risul = next_node;
+         
+         next_node = null;
+         
+         last_id_no = risul.object.get_id_no();
+         
+         return risul;
+         }
+
+      @Override
+      public void remove()
+         {
+         if ( last_id_no < 0 ) throw new IllegalStateException();
+         
+         UndoObjectIdMap.this.remove(last_id_no);
+         
+         last_id_no = -1;
+         }
+      }
+   }
@@ -0,0 +1,86 @@
+package freert.varie;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import java.util.Arrays;
+
+/**
+ * The id numbers of the objects whose node has been given an undo level, one journal for each level
+ * Undo and pop of a level look only at these objects, so they cost as much as the change, not as the whole board
+ * An id may be added more than once, duplicates are removed when the ids are sorted
+ * @author damiano
+ */
+final class UndoObjectJournal implements java.io.Serializable
+   {
+   private static final long serialVersionUID = 1L;
+
+   private int[] id_arr = new int[16];
+   private int id_count;
+   // true if the ids are in ascending order and with no duplicates
+   private boolean sorted = true;
+
+   void add(int p_id_no)
+      {
+      if ( id_count >= id_arr.length ) id_arr = Arrays.copyOf(id_arr, id_arr.length * 2);
+
+      id_arr[id_count++] = p_id_no;
+
+      sorted = false;
+      }
+
+   void add_all(UndoObjectJournal p_other)
+      {
+      if ( id_count + p_other.id_count > id_arr.length )
+         id_arr = Arrays.copyOf(id_arr, Math.max(id_arr.length * 2, id_count + p_other.id_count));
+
+      System.arraycopy(p_other.id_arr, 0, id_arr, id_count, p_other.id_count);
+
+      id_count += p_other.id_count;
+
+      sorted = false;
+      }
+
+   /**
+    * Sorts the ids in ascending order and removes the duplicates
+    * @return the number of ids, to be read with id_at()
+    */
+   int sort_unique()
+      {
+      if ( sorted ) return id_count;
+
+      Arrays.sort(id_arr, 0, id_count);
+
+      int unique_count = 0;
+
+      for (int index = 0; index < id_count; index++)
+         {
+         if ( unique_count > 0 && id_arr[unique_count - 1] == id_arr[index] ) continue;
+
+         id_arr[unique_count++] = id_arr[index];
+         }
+
+      id_count = unique_count;
+      sorted = true;
+
+      return id_count;
+      }
+
+   int id_at(int p_index)
+      {
+      return id_arr[p_index];
+      }
+   }
@@ -18,6 +18,7 @@ package freert.varie;
 /**
  * Condition for an Object to be stored in an UndoableObjects database.
  * An object of class UndoableObjects.Storable must not contain any references.
+ * Two objects with the same id number are considered the same object
  */
 
 public interface UndoObjectStorable extends Comparable<Object>
@@ -28,5 +29,10 @@ public interface UndoObjectStorable extends Comparable<Object>
     */
    public Object copy();
 
+   /**
+    * The database stores the objects by this number, it must be > 0 and be the same for an object and its copies
+    */
+   public int get_id_no();
+
    }
 
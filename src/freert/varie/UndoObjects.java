@@ -23,12 +23,12 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Vector;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Database of objects, for which Undo and Redo operations are made possible. 
  * The algorithm works only for objects containing no references.
+ * Each undo level keeps a journal of the objects changed on it, so that undo and pop of a snapshot 
+ * cost as much as the change and a trial change can be taken back on a big board. Redo reads all the objects.
  *
  * @author Alfons Wirtz
  */
@@ -37,10 +37,12 @@ public final class UndoObjects implements java.io.Serializable
    private static final long serialVersionUID = 1L;
    private static final String classname="UndoableObjects.";
 
-   // The entries of this map are of type UnduableObject, the keys of type UndoableObjects.Storable
-   private final ConcurrentMap<UndoObjectStorable, UndoObjectNode> objects_map;
+   // The current node of each object, indexed by the id number of the object
+   private final UndoObjectIdMap objects_map;
    // the lists of deleted objects on each undo level, which where already existing before the previous snapshot.
    private final Vector<Collection<UndoObjectNode>> deleted_objects_stack;
+   // the ids of the objects whose node has been given each undo level, the same size as the deleted_objects_stack
+   private final Vector<UndoObjectJournal> journal_stack;
 
    // the current undo level
    private int stack_level=0;
@@ -49,8 +51,9 @@ public final class UndoObjects implements java.io.Serializable
    
    public UndoObjects()
       {
-      objects_map = new ConcurrentSkipListMap<UndoObjectStorable, UndoObjectNode>();
+      objects_map = new UndoObjectIdMap();
       deleted_objects_stack = new Vector<Collection<UndoObjectNode>>();
+      journal_stack = new Vector<UndoObjectJournal>();
       }
 
    /**
@@ -59,9 +62,19 @@ public final class UndoObjects implements java.io.Serializable
     */
    public Iterator<UndoObjectNode> start_read_object()
       {
-      Collection<UndoObjectNode> object_list = objects_map.values();
+      return objects_map.iterator();
+      }
+
+   /**
+    * @return the object with id p_id_no, null if there is none or if it is alive only by redo
+    */
+   public UndoObjectStorable get(int p_id_no)
+      {
+      UndoObjectNode curr_node = objects_map.get(p_id_no);
+      
+      if ( curr_node == null || curr_node.undo_level > stack_level ) return null;
       
-      return object_list.iterator();
+      return curr_node.object;
       }
 
    /**
@@ -102,7 +115,19 @@ public final class UndoObjects implements java.io.Serializable
       
       UndoObjectNode undoable_object = new UndoObjectNode(p_object, stack_level);
       
-      objects_map.put(p_object, undoable_object);
+      objects_map.put(undoable_object);
+      
+      journal_add(p_object.get_id_no());
+      }
+
+   /**
+    * Records that the node of p_id_no has now the current undo level, level 0 is never undone and has no journal
+    */
+   private void journal_add(int p_id_no)
+      {
+      if ( stack_level == 0 ) return;
+      
+      journal_stack.elementAt(stack_level - 1).add(p_id_no);
       }
 
    /**
@@ -124,7 +149,7 @@ public final class UndoObjects implements java.io.Serializable
          }
       
       // search p_object in the list
-      UndoObjectNode object_node = objects_map.get(p_object);
+      UndoObjectNode object_node = objects_map.get(p_object.get_id_no());
       
       if (object_node == null) return false;
 
@@ -148,7 +173,7 @@ public final class UndoObjects implements java.io.Serializable
             curr_delete_list.add(object_node.undo_object);
             }
          }
-      objects_map.remove(p_object);
+      objects_map.remove(p_object.get_id_no());
       return true;
       }
 
@@ -160,6 +185,7 @@ public final class UndoObjects implements java.io.Serializable
       disable_redo();
       Collection<UndoObjectNode> curr_deleted_objects_list = new LinkedList<UndoObjectNode>();
       deleted_objects_stack.add(curr_deleted_objects_list);
+      journal_stack.add(new UndoObjectJournal());
       ++stack_level;
       }
 
@@ -173,19 +199,20 @@ public final class UndoObjects implements java.io.Serializable
       {
       if (stack_level == 0) return false; // no more undo possible
       
-      Iterator<UndoObjectNode> it = objects_map.values().iterator();
-
-      while (it.hasNext())
+      UndoObjectJournal curr_journal = journal_stack.elementAt(stack_level - 1);
+      
+      // highest id first, the order of the objects map
+      for (int index = curr_journal.sort_unique() - 1; index >= 0; index--)
          {
-         UndoObjectNode curr_node = it.next();
+         UndoObjectNode curr_node = objects_map.get(curr_journal.id_at(index));
          
-         if (curr_node.undo_level != stack_level) continue;
+         if (curr_node == null || curr_node.undo_level != stack_level) continue;
          
          if (curr_node.undo_object != null)
             {
             // replace the current object by its previous state.
             curr_node.undo_object.redo_object = curr_node;
-            objects_map.put(curr_node.object, curr_node.undo_object);
+            objects_map.put(curr_node.undo_object);
             
             if (p_restored_objects != null)  p_restored_objects.add(curr_node.undo_object.object);
             }
@@ -203,7 +230,7 @@ public final class UndoObjects implements java.io.Serializable
          {
          UndoObjectNode curr_deleted_node = it2.next();
          
-         objects_map.put(curr_deleted_node.object, curr_deleted_node);
+         objects_map.put(curr_deleted_node);
          
          if (p_restored_objects != null) p_restored_objects.add(curr_deleted_node.object);
          }
@@ -225,7 +252,7 @@ public final class UndoObjects implements java.io.Serializable
 
       stack_level++;
       
-      Iterator<UndoObjectNode> it = objects_map.values().iterator();
+      Iterator<UndoObjectNode> it = objects_map.iterator();
       
       while (it.hasNext())
          {
@@ -235,7 +262,7 @@ public final class UndoObjects implements java.io.Serializable
             {
             // Object was created on a lower level and changed on the currenzt level,
             // replace the lower level object by the object on the current layer.
-            objects_map.put(curr_node.object, curr_node.redo_object);
+            objects_map.put(curr_node.redo_object);
             if (p_cancelled_objects != null)
                {
                p_cancelled_objects.add(curr_node.object);
@@ -263,7 +290,7 @@ public final class UndoObjects implements java.io.Serializable
             {
             curr_deleted_node = curr_deleted_node.redo_object;
             }
-         if (objects_map.remove(curr_deleted_node.object) == null)
+         if (objects_map.remove(curr_deleted_node.object.get_id_no()) == null)
             {
             System.out.println("previous deleted object not found");
             }
@@ -289,28 +316,29 @@ public final class UndoObjects implements java.io.Serializable
 
       if (stack_level == 0) return false;
 
-      Iterator<UndoObjectNode> it = objects_map.values().iterator();
-      while (it.hasNext())
+      UndoObjectJournal top_journal = journal_stack.elementAt(stack_level - 1);
+      
+      for (int index = top_journal.sort_unique() - 1; index >= 0; index--)
          {
-         UndoObjectNode curr_node = it.next();
-         if (curr_node.undo_level == stack_level - 1)
-            {
-            if (curr_node.redo_object != null && curr_node.redo_object.undo_level == stack_level)
-               {
-               curr_node.redo_object.undo_object = curr_node.undo_object;
-               if (curr_node.undo_object != null)
-                  {
-                  curr_node.undo_object.redo_object = curr_node.redo_object;
+         UndoObjectNode curr_node = objects_map.get(top_journal.id_at(index));
+         
+         if (curr_node == null || curr_node.undo_level != stack_level) continue;
 
-                  }
-               }
-            }
-         else if (curr_node.undo_level >= stack_level)
+         --curr_node.undo_level;
+         
+         UndoObjectNode prev_node = curr_node.undo_object;
+         
+         if (prev_node != null && prev_node.undo_level == curr_node.undo_level)
             {
-            --curr_node.undo_level;
+            // changed on both levels, an undo must restore the object as it was before the lower level
+            curr_node.undo_object = prev_node.undo_object;
+            
+            if (curr_node.undo_object != null) curr_node.undo_object.redo_object = curr_node;
             }
-
          }
+      
+      // the objects of the top level are now on the level below
+      if (stack_level >= 2) journal_stack.elementAt(stack_level - 2).add_all(top_journal);
 
       int deleted_objects_stack_size = deleted_objects_stack.size();
       if (deleted_objects_stack_size >= 2)
@@ -331,6 +359,7 @@ public final class UndoObjects implements java.io.Serializable
             }
          }
       deleted_objects_stack.remove(deleted_objects_stack_size - 1);
+      journal_stack.remove(deleted_objects_stack_size - 1);
       --stack_level;
       return true;
       }
@@ -344,7 +373,7 @@ public final class UndoObjects implements java.io.Serializable
       disable_redo();
       
       // search p_object in the map
-      UndoObjectNode curr_node = objects_map.get(p_object);
+      UndoObjectNode curr_node = objects_map.get(p_object.get_id_no());
       
       if (curr_node == null)
          {
@@ -359,6 +388,7 @@ public final class UndoObjects implements java.io.Serializable
          old_node.redo_object  = curr_node;
          curr_node.undo_object = old_node;
          curr_node.undo_level  = stack_level;
+         journal_add(p_object.get_id_no());
          return;
          }
       }
@@ -375,21 +405,25 @@ public final class UndoObjects implements java.io.Serializable
       // shorten the size of the deleted_objects_stack to stack_level
       for (int i = deleted_objects_stack.size() - 1; i >= stack_level; --i)
          {
-         deleted_objects_stack.remove(i);
-         }
-      
-      Iterator<UndoObjectNode> it = objects_map.values().iterator();
-      while (it.hasNext())
-         {
-         UndoObjectNode curr_node = it.next();
-         if (curr_node.undo_level > stack_level)
-            {
-            it.remove();
-            }
-         else if (curr_node.undo_level == stack_level)
+         // the objects alive only by redo and the objects restored by the undo are in the journal of the level
+         UndoObjectJournal curr_journal = journal_stack.elementAt(i);
+         
+         for (int index = curr_journal.sort_unique() - 1; index >= 0; index--)
             {
-            curr_node.redo_object = null;
+            int id_no = curr_journal.id_at(index);
+            
+            UndoObjectNode curr_node = objects_map.get(id_no);
+            
+            if (curr_node == null) continue;
+            
+            if (curr_node.undo_level > stack_level)
+               objects_map.remove(id_no);
+            else
+               curr_node.redo_object = null;
             }
+         
+         journal_stack.remove(i);
+         deleted_objects_stack.remove(i);
          }
       }
    }
@@ -86,6 +86,8 @@ public final class BoardPanel extends JPanel
 
    // Defines the appearance of the custom custom_cursor in the board panel.
    private GuiCursor custom_cursor = null;
+   // the board items already drawn, the overlays are drawn on top of them
+   private final BoardPanelTiles board_tiles = new BoardPanelTiles();
    
 
    public BoardPanel(ScreenMessages p_screen_messages, BoardFrame p_board_frame,  Stat p_stat)
@@ -277,7 +279,13 @@ public final class BoardPanel extends JPanel
       {
       super.paintComponent(p_g);
       
-      if (itera_board != null) itera_board.draw(p_g);
+      if (itera_board != null) 
+         {
+         if ( board_tiles.draw(p_g, itera_board, getBackground()) )
+            itera_board.draw_overlays(p_g);
+         else
+            itera_board.draw(p_g);
+         }
       
       if (custom_cursor != null) custom_cursor.draw(p_g);
       }
@@ -546,6 +554,7 @@ public final class BoardPanel extends JPanel
          {
          // redisplay board because some colors have changed.
          setBackground(itera_board.gdi_context.get_background_color());
+         board_tiles.clear();
          repaint();
          }
       }
@@ -0,0 +1,281 @@
+package gui;
+
+/*
+ *  Copyright (C) 2014  Damiano Bolla  website www.engidea.com
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License at <http://www.gnu.org/licenses/>
+ *   for more details.
+ *
+ */
+
+import interactive.IteraBoard;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import board.BrdItemListener;
+import board.RoutingBoard;
+import board.items.BrdItem;
+import freert.graphics.ColorIntensityName;
+import freert.graphics.GdiContext;
+import freert.graphics.GdiCoordinateTransform;
+import freert.planar.ShapeTileBox;
+
+/**
+ * The board items drawn into images of square tiles of the panel, so that a repaint copies them instead of drawing the items again
+ * The overlays, ratsnest, violations and what the interactive state draws, are drawn on top of the tiles at every repaint
+ * A tile is drawn again when an item changes over it or the board asks for it with gdi_update_join(), see gdi_update_take()
+ * All the tiles are dropped when the zoom, the rotation, the visibility or the colors change
+ * The tiles hold all the layers, since the items are drawn with their layers in priority order
+ * @author damiano
+ */
+final class BoardPanelTiles implements BrdItemListener
+   {
+   private static final int TILE_SIZE = 256;
+   // the tiles least recently drawn are dropped over this count, each one is 256KB
+   private static final int MAX_TILE_COUNT = 192;
+   // a change is enlarged by this, what is drawn for an item may go a bit out of its box
+   private static final int CHANGE_MARGIN_PIXELS = 4;
+
+   // in access order, so the first one is the least recently used
+   private final LinkedHashMap<Long,BufferedImage> tile_map = new LinkedHashMap<Long,BufferedImage>(64, 0.75f, true);
+
+   // the board and the settings the tiles have been drawn with
+   private RoutingBoard r_board;
+   private GdiContext gdi_context;
+   private GdiCoordinateTransform coordinate_transform;
+   private double[] draw_settings = new double[0];
+
+   // the items changed since the last paint and the box they had when the change started, the board may be changed by another thread
+   private final ArrayList<BrdItem> changed_items = new ArrayList<BrdItem>();
+   private ShapeTileBox changed_box = ShapeTileBox.EMPTY;
+
+   /**
+    * Draws the board items in the clip of p_graphics from the tiles, drawing the missing ones
+    * @return false if there is nothing to draw with, the board must be drawn directly
+    */
+   boolean draw(Graphics p_graphics, IteraBoard p_itera_board, Color p_background)
+      {
+      RoutingBoard curr_board = p_itera_board.get_routing_board();
+
+      GdiContext curr_context = p_itera_board.gdi_context;
+
+      Rectangle clip_rect = p_graphics.getClipBounds();
+
+      if ( curr_board == null || curr_context == null || clip_rect == null ) return false;
+
+      if ( curr_board != r_board ) board_set(curr_board);
+
+      double[] curr_settings = draw_settings_get(curr_context, p_background);
+
+      if ( curr_context != gdi_context || curr_context.coordinate_transform != coordinate_transform || ! Arrays.equals(curr_settings, draw_settings) )
+         {
+         gdi_context = curr_context;
+         coordinate_transform = curr_context.coordinate_transform;
+         draw_settings = curr_settings;
+         clear();
+         }
+
+      changes_apply();
+
+      int first_x = floor_tile(clip_rect.x);
+      int first_y = floor_tile(clip_rect.y);
+      int last_x = floor_tile(clip_rect.x + clip_rect.width - 1);
+      int last_y = floor_tile(clip_rect.y + clip_rect.height - 1);
+
+      for (int tile_y = first_y; tile_y <= last_y; ++tile_y)
+         {
+         for (int tile_x = first_x; tile_x <= last_x; ++tile_x)
+            {
+            BufferedImage tile_image = tile_get(tile_x, tile_y, p_background);
+
+            p_graphics.drawImage(tile_image, tile_x * TILE_SIZE, tile_y * TILE_SIZE, null);
+            }
+         }
+
+      return true;
+      }
+
+   /**
+    * Drops all the tiles, eg: when the colors change
+    */
+   void clear()
+      {
+      tile_map.clear();
+      }
+
+   @Override
+   public void item_changed(BrdItem p_item)
+      {
+      // the item may be in the middle of the change, the box it has now is the old one, the new one is read at the next paint
+      ShapeTileBox item_box = p_item.bounding_box();
+
+      synchronized ( changed_items )
+         {
+         changed_items.add(p_item);
+
+         if ( item_box != null ) changed_box = changed_box.union(item_box);
+         }
+      }
+
+   private void board_set(RoutingBoard p_board)
+      {
+      if ( r_board != null ) r_board.item_listener_remove(this);
+
+      r_board = p_board;
+
+      r_board.item_listener_add(this);
+
+      synchronized ( changed_items )
+         {
+         changed_items.clear();
+         changed_box = ShapeTileBox.EMPTY;
+         }
+
+      clear();
+      }
+
+   /**
+    * Drops the tiles over the items changed since the last paint and over the update box of the board
+    */
+   private void changes_apply()
+      {
+      ShapeTileBox update_box;
+
+      synchronized ( changed_items )
+         {
+         update_box = changed_box;
+
+         for ( BrdItem curr_item : changed_items )
+            {
+            ShapeTileBox item_box = curr_item.bounding_box();
+
+            if ( item_box != null ) update_box = update_box.union(item_box);
+            }
+
+         changed_items.clear();
+         changed_box = ShapeTileBox.EMPTY;
+         }
+
+      // taken and reset at once, a join made meanwhile by another thread is in the next one, the box used to repaint is not changed
+      ShapeTileBox board_update = r_board.gdi_update_take();
+
+      update_box = update_box.union(board_update);
+
+      if ( update_box.is_empty() || tile_map.isEmpty() ) return;
+
+      Rectangle update_rect = coordinate_transform.board_to_screen(update_box);
+
+      update_rect.grow(CHANGE_MARGIN_PIXELS, CHANGE_MARGIN_PIXELS);
+
+      int first_x = floor_tile(update_rect.x);
+      int first_y = floor_tile(update_rect.y);
+      int last_x = floor_tile(update_rect.x + update_rect.width);
+      int last_y = floor_tile(update_rect.y + update_rect.height);
+
+      // a change covering more tiles than the ones kept is checked against the kept ones
+      if ( (long)(last_x - first_x + 1) * (last_y - first_y + 1) > tile_map.size() )
+         {
+         Iterator<Map.Entry<Long,BufferedImage>> iter = tile_map.entrySet().iterator();
+
+         while ( iter.hasNext() )
+            {
+            long tile_key = iter.next().getKey();
+
+            int tile_x = (int)(tile_key >> 32);
+            int tile_y = (int)tile_key;
+
+            if ( tile_x >= first_x && tile_x <= last_x && tile_y >= first_y && tile_y <= last_y ) iter.remove();
+            }
+
+         return;
+         }
+
+      for (int tile_y = first_y; tile_y <= last_y; ++tile_y)
+         for (int tile_x = first_x; tile_x <= last_x; ++tile_x)
+            tile_map.remove(tile_key(tile_x, tile_y));
+      }
+
+   private BufferedImage tile_get(int p_tile_x, int p_tile_y, Color p_background)
+      {
+      Long tile_key = tile_key(p_tile_x, p_tile_y);
+
+      BufferedImage risul = tile_map.get(tile_key);
+
+      if ( risul != null ) return risul;
+
+      risul = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+
+      Graphics2D tile_graphics = risul.createGraphics();
+
+      tile_graphics.setColor(p_background);
+      tile_graphics.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+
+      // the items are drawn in panel coordinates, the clip tells the board what is in the tile
+      tile_graphics.translate(-p_tile_x * TILE_SIZE, -p_tile_y * TILE_SIZE);
+      tile_graphics.setClip(p_tile_x * TILE_SIZE, p_tile_y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+
+      r_board.draw(tile_graphics, gdi_context);
+
+      tile_graphics.dispose();
+
+      if ( tile_map.size() >= MAX_TILE_COUNT ) tile_map.remove(tile_map.keySet().iterator().next());
+
+      tile_map.put(tile_key, risul);
+
+      return risul;
+      }
+
+   /**
+    * @return what the items are drawn with, apart the color tables that tell when they change
+    */
+   private double[] draw_settings_get(GdiContext p_context, Color p_background)
+      {
+      int layer_count = p_context.layer_count();
+
+      int intensity_count = ColorIntensityName.values().length;
+
+      double[] risul = new double[4 + layer_count + intensity_count];
+
+      int index = 0;
+
+      risul[index++] = p_context.coordinate_transform.get_rotation();
+      risul[index++] = p_context.coordinate_transform.is_mirror_left_right() ? 1 : 0;
+      risul[index++] = p_context.coordinate_transform.is_mirror_top_bottom() ? 1 : 0;
+      risul[index++] = p_background.getRGB();
+
+      for (int layer_no = 0; layer_no < layer_count; ++layer_no) risul[index++] = p_context.get_layer_visibility(layer_no);
+
+      for (int intensity_no = 0; intensity_no < intensity_count; ++intensity_no) risul[index++] = p_context.color_intensity_table.get_value(intensity_no);
+
+      return risul;
+      }
+
+   private static int floor_tile(int p_coordinate)
+      {
+      int risul = p_coordinate / TILE_SIZE;
+
+      if ( p_coordinate < 0 && risul * TILE_SIZE != p_coordinate ) risul--;
+
+      return risul;
+      }
+
+   private static Long tile_key(int p_tile_x, int p_tile_y)
+      {
+      return ((long)p_tile_x << 32) | (p_tile_y & 0xFFFFFFFFL);
+      }
+   }
@@ -29,6 +29,7 @@ import interactive.IteraClearanceViolations;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import board.RoutingBoard;
 import board.infos.BrdItemViolation;
 import board.infos.BrdViolation;
 
@@ -61,11 +62,13 @@ public final class WindowClearanceViolations extends WindowObjectListWithFilter
       
       IteraBoard board_handling = board_frame.board_panel.itera_board;
 
-      IteraClearanceViolations clearance_violations = new IteraClearanceViolations(board_handling.get_routing_board().get_items());
+      RoutingBoard routing_board = board_handling.get_routing_board();
+
+      IteraClearanceViolations clearance_violations = new IteraClearanceViolations(routing_board, routing_board.get_items());
 
       SortedSet<BrdViolation> sorted_set = new TreeSet<BrdViolation>();
 
-      for (BrdItemViolation curr_violation : clearance_violations.violation_list)
+      for (BrdItemViolation curr_violation : clearance_violations.violation_list())
          {
          sorted_set.add(new BrdViolation(board_frame, resources, curr_violation));
          }
@@ -52,6 +52,7 @@ import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Set;
 import java.util.TreeSet;
+import javax.swing.SwingUtilities;
 import autoroute.batch.BatchAutorouteThread;
 import board.BrdLayer;
 import board.BrdLayerStructure;
@@ -112,9 +113,13 @@ public final class IteraBoard
    private BrdActionThread interactive_action_thread = null;
    // To display all incomplete connections on the screen. 
    private RatsNest ratsnest = null;
-   // To display all clearance violations between items on the screen.
-   private IteraClearanceViolations clearance_violations = null;
-   // The graphical panel used for displaying the board
+   // the ratsnest taken away by remove_ratsnest(), kept to be updated instead of created again
+   private RatsNest ratsnest_removed = null;
+   // To display all clearance violations between items on the screen, read by the thread that changes the board
+   private volatile IteraClearanceViolations clearance_violations = null;
+   // an update of the clearance violations has been posted to the Swing thread and not done yet
+   private boolean clearance_update_posted = false;
+   // The graphical panel used for displaying the board, null when running headless
    private final BoardPanel board_panel;
    // The file used for logging interactive action, so that they can be replayed later
    public final Actlog actlog = new Actlog();
@@ -131,11 +136,27 @@ public final class IteraBoard
       {
       stat = p_stat;
       board_panel = p_panel;
-      screen_messages = p_panel.screen_messages;
+      screen_messages = p_panel != null ? p_panel.screen_messages : new ScreenMessages(null, p_stat);
       set_interactive_state(new StateMenuSelect(this, actlog));
       resources = new GuiResources(p_stat, "interactive.resources.BoardHandling");
       }
 
+   /**
+    * Creates a board handling without any graphical panel, used by the batch (headless) router
+    */
+   public IteraBoard(Stat p_stat)
+      {
+      this(null, p_stat);
+      }
+
+   /**
+    * @return true if there is no graphical panel attached, eg: running from command line
+    */
+   public boolean is_headless()
+      {
+      return board_panel == null;
+      }
+
    public Stat get_stat()
       {
       return stat;
@@ -380,7 +401,7 @@ public final class IteraBoard
       // Change the selected layer in the select parameter window.
       int signal_layer_no = r_board.layer_structure.get_signal_layer_no(curr_layer);
       
-      if ( ! board_is_read_only)
+      if ( ! ( board_is_read_only || is_headless() ) )
          {
          board_panel.set_selected_signal_layer(signal_layer_no);
          }
@@ -389,7 +410,7 @@ public final class IteraBoard
       if (gdi_context.get_layer_visibility(p_layer_no) == 0)
          {
          gdi_context.set_layer_visibility(p_layer_no, 1);
-         board_panel.board_frame.refresh_windows();
+         if ( ! is_headless() ) board_panel.board_frame.refresh_windows();
          }
       
       gdi_context.set_fully_visible_layer(p_layer_no);
@@ -503,13 +524,15 @@ public final class IteraBoard
 
       if (clearance_violations == null)
          {
-         clearance_violations = new IteraClearanceViolations(r_board.get_items());
-         Integer violation_count = new Integer((clearance_violations.violation_list.size() + 1) / 2);
+         clearance_violations = new IteraClearanceViolations(r_board, r_board.get_items());
+         clearance_violations.changes_track();
+         Integer violation_count = new Integer(clearance_violations.violation_list().size());
          String curr_message = violation_count.toString() + " " + resources.getString("clearance_violations_found");
          screen_messages.set_status_message(curr_message);
          }
       else
          {
+         clearance_violations.dispose();
          clearance_violations = null;
          screen_messages.set_status_message("");
          }
@@ -566,10 +589,53 @@ public final class IteraBoard
     */
    public void update_ratsnest()
       {
-      if (ratsnest != null)
+      if (ratsnest != null && ! ratsnest.update(r_board))
          {
          ratsnest = new RatsNest(r_board, stat);
          }
+      
+      update_clearance_violations();
+      }
+
+   /**
+    * Checks again the items changed since the clearance violations were shown, if they are
+    */
+   public void update_clearance_violations()
+      {
+      IteraClearanceViolations violations = clearance_violations;
+      
+      if (violations == null ) return;
+      
+      if ( ! violations.update() ) return;
+      
+      Integer violation_count = new Integer(violations.violation_list().size());
+      screen_messages.set_status_message(violation_count.toString() + " " + resources.getString("clearance_violations_found"));
+      
+      repaint();
+      }
+
+   /**
+    * Posts an update of the clearance violations to the Swing thread, to be done after the current paint
+    * The changes of an action thread are checked by the thread when it is done
+    */
+   private void update_clearance_violations_later()
+      {
+      if ( clearance_update_posted ) return;
+      
+      clearance_update_posted = true;
+      
+      SwingUtilities.invokeLater(new Runnable()
+         {
+         @Override
+         public void run()
+            {
+            clearance_update_posted = false;
+            
+            if (interactive_action_thread != null && interactive_action_thread.isAlive()) return;
+            
+            update_clearance_violations();
+            }
+         });
       }
 
    /**
@@ -599,15 +665,30 @@ public final class IteraBoard
     */
    public void remove_ratsnest()
       {
+      if (ratsnest != null) ratsnest_removed = ratsnest;
+      
       ratsnest = null;
       }
 
    /**
     * Returns the ratsnest with the information about the incomplete connections.
+    * If one has been removed it is updated, only the nets changed since then are computed again
     */
    public RatsNest get_ratsnest()
       {
-      if (ratsnest == null) ratsnest = new RatsNest(r_board, stat);
+      if (ratsnest != null) return ratsnest;
+      
+      if (ratsnest_removed != null && ratsnest_removed.update(r_board))
+         {
+         ratsnest = ratsnest_removed;
+         ratsnest.filters_clear();
+         }
+      else
+         {
+         ratsnest = new RatsNest(r_board, stat);
+         }
+      
+      ratsnest_removed = null;
       
       return ratsnest;
       }
@@ -676,8 +757,8 @@ public final class IteraBoard
       coordinate_transform = new PlaCoordTransform(1, p_communication.host_unit, unit_factor, p_communication.host_unit);
       itera_settings = new IteraSettings(r_board, actlog);
 
-      // create a graphics context for the board
-      Dimension panel_size = board_panel.getPreferredSize();
+      // create a graphics context for the board, headless has no panel, any reasonable size will do
+      Dimension panel_size = is_headless() ? new Dimension(1000, 1000) : board_panel.getPreferredSize();
       gdi_context = new GdiContext(p_bounding_box, panel_size, p_layer_structure, stat);
       
       
@@ -719,6 +800,8 @@ public final class IteraBoard
     */
    public void repaint()
       {
+      if ( is_headless() ) return;
+      
       if (paint_immediately)
          {
          final Rectangle MAX_RECTAMGLE = new Rectangle(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
@@ -735,6 +818,8 @@ public final class IteraBoard
     */
    public void repaint(Rectangle p_rect)
       {
+      if ( is_headless() ) return;
+
       if (paint_immediately)
          {
          board_panel.paintImmediately(p_rect);
@@ -779,11 +864,28 @@ public final class IteraBoard
 
       r_board.draw(p_graphics, gdi_context);
 
+      draw_overlays(p_graphics);
+      }
+
+   /**
+    * Draws what is on top of the board items, the ratsnest, the violations and the construction graphics of the interactive state
+    */
+   public final void draw_overlays(Graphics p_graphics)
+      {
+      if (r_board == null) return;
+
       if (ratsnest != null)
          ratsnest.draw(p_graphics, gdi_context);
       
-      if (clearance_violations != null)
-         clearance_violations.draw(p_graphics, gdi_context);
+      IteraClearanceViolations violations = clearance_violations;
+      
+      if (violations != null)
+         {
+         // the scan is not done while painting, the list drawn now is the one of the last scan
+         if ( violations.has_changes() && (interactive_action_thread == null || ! interactive_action_thread.isAlive()) ) update_clearance_violations_later();
+
+         violations.draw(p_graphics, gdi_context);
+         }
 
       if (interactive_state != null)
          interactive_state.draw(p_graphics);
@@ -1095,6 +1197,12 @@ public final class IteraBoard
       
       r_board.reduce_nets_of_route_items();
       
+      // items are read one at a time, so the tree shape depends on the file order
+      r_board.search_tree_manager.rebalance();
+      
+      // build now the trees for autoroute, instead of stalling the first connection of each net class
+      r_board.search_tree_manager.build_autoroute_trees();
+      
       set_layer(0);
       
       for (int index = 0; index < r_board.get_layer_count(); ++index)
@@ -1698,7 +1806,7 @@ public final class IteraBoard
     */
    public void move_mouse(PlaPointFloat p_to_location)
       {
-      if ( board_is_read_only) return;
+      if ( board_is_read_only || is_headless() ) return;
 
       board_panel.move_mouse(gdi_context.coordinate_transform.board_to_screen(p_to_location));
       }
@@ -1719,7 +1827,7 @@ public final class IteraBoard
       
       interactive_state = p_state;
 
-      if (!board_is_read_only)
+      if ( ! ( board_is_read_only || is_headless() ) )
          {
          p_state.set_toolbar();
          board_panel.board_frame.set_context_sensitive_help(board_panel, p_state.get_help_id());
@@ -1776,6 +1884,7 @@ public final class IteraBoard
       itera_settings = null;
       interactive_state = null;
       ratsnest = null;
+      if ( clearance_violations != null ) clearance_violations.dispose();
       clearance_violations = null;
       r_board = null;
       }
@@ -23,32 +23,160 @@ package interactive;
 import freert.graphics.GdiContext;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import board.BrdItemListener;
+import board.RoutingBoard;
 import board.infos.BrdItemViolation;
 import board.items.BrdItem;
+import board.varie.BrdClearanceScan;
+import board.varie.BrdViolationListener;
 
 /**
  * To display the clearance violations between items on the screen.
+ * Each violating pair of items is in the list once
+ * A scan builds a new list and then publishes it, so the list can be drawn while the board thread scans again
  * @author alfons
  */
-public final class IteraClearanceViolations
+public final class IteraClearanceViolations implements BrdViolationListener, BrdItemListener
    {
-   public final Collection<BrdItemViolation> violation_list = new LinkedList<BrdItemViolation>();
+   // when more items than this part of the board have changed update() checks all of them again
+   private static final int UPDATE_ALL_RATIO = 4;
+   // when more items than this have changed they are not kept any more, update() checks all the board
+   private static final int CHANGED_ITEMS_MAX = 10000;
    
-   public IteraClearanceViolations(Collection<BrdItem> p_item_list)
+   private final RoutingBoard r_board;
+   // the violations of the last scan, the list is never changed once published
+   private volatile List<BrdItemViolation> violation_list;
+   // the list being filled by a scan
+   private ArrayList<BrdItemViolation> scan_list;
+   // the items changed since the last scan, by identity since an undo copy has the id of the item
+   private final Set<BrdItem> changed_items = Collections.newSetFromMap(new IdentityHashMap<BrdItem, Boolean>());
+   // more than CHANGED_ITEMS_MAX items have changed since the last scan
+   private boolean changed_all;
+   
+   public IteraClearanceViolations(RoutingBoard p_board, Collection<BrdItem> p_item_list)
+      {
+      r_board = p_board;
+      
+      scan_list = new ArrayList<BrdItemViolation>();
+
+      new BrdClearanceScan(r_board).scan(p_item_list, this);
+      
+      violation_list_publish();
+      }
+
+   /**
+    * @return the violations found by the last scan, the list does not change and can be read by any thread
+    */
+   public List<BrdItemViolation> violation_list()
+      {
+      return violation_list;
+      }
+   
+   @Override
+   public void violation_found(BrdItemViolation p_violation)
+      {
+      scan_list.add(p_violation);
+      }
+
+   private void violation_list_publish()
+      {
+      violation_list = Collections.unmodifiableList(scan_list);
+      
+      scan_list = null;
+      }
+   
+   /**
+    * Keeps note of the items that change on the board, so that update() checks only those
+    * Call it only if all the items of the board have been checked and call dispose() when done
+    */
+   public void changes_track()
+      {
+      r_board.item_listener_add(this);
+      }
+
+   @Override
+   public void item_changed(BrdItem p_item)
+      {
+      synchronized ( changed_items )
+         {
+         if ( changed_all ) return;
+         
+         changed_items.add(p_item);
+         
+         if ( changed_items.size() <= CHANGED_ITEMS_MAX ) return;
+         
+         changed_items.clear();
+         
+         changed_all = true;
+         }
+      }
+   
+   /**
+    * @return true if items have changed since the last scan
+    */
+   public boolean has_changes()
       {
-      for ( BrdItem curr_item : p_item_list )
+      synchronized ( changed_items )
          {
-         violation_list.addAll(curr_item.clearance_violations());
+         return changed_all || ! changed_items.isEmpty();
          }
       }
+   
+   /**
+    * Checks again the items changed since the last scan, by the thread that changes the board
+    * The drawing of the violations can go on meanwhile, the new list is published at the end
+    * @return true if the list may have changed
+    */
+   public synchronized boolean update()
+      {
+      ArrayList<BrdItem> changed_list;
+      boolean check_all;
+      
+      synchronized ( changed_items )
+         {
+         changed_list = new ArrayList<BrdItem>(changed_items);
+         check_all = changed_all;
+         changed_items.clear();
+         changed_all = false;
+         }
 
+      if ( ! check_all && changed_list.isEmpty() && r_board.changed_area.is_clear() ) return false;
+
+      BrdClearanceScan board_scan = new BrdClearanceScan(r_board);
+      
+      Collection<BrdItem> board_items = r_board.get_items();
+      
+      scan_list = new ArrayList<BrdItemViolation>();
+      
+      if ( check_all || changed_list.size() * UPDATE_ALL_RATIO > board_items.size() )
+         board_scan.scan(board_items, this);
+      else
+         board_scan.scan_changed(violation_list, changed_list, this);
+      
+      violation_list_publish();
+      
+      return true;
+      }
+   
+   /**
+    * Stops keeping note of the changes of the board
+    */
+   public void dispose()
+      {
+      r_board.item_listener_remove(this);
+      }
+   
    public void draw(Graphics p_graphics, GdiContext p_graphics_context)
       {
       Color draw_color = p_graphics_context.get_violations_color();
 
-      for ( BrdItemViolation curr_violation : violation_list )
+      for ( BrdItemViolation curr_violation : violation_list() )
          {
          double intensity = p_graphics_context.get_layer_visibility(curr_violation.layer_no);
 
@@ -25,6 +25,7 @@ import freert.main.Stat;
 import freert.varie.UndoObjectNode;
 import gui.varie.GuiResources;
 import java.awt.Graphics;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -36,13 +37,19 @@ import board.items.BrdItem;
 
 /**
  * Creates all Incompletes (Ratsnest) to display them on the screen
+ * Once created, update() computes again only the nets that have changed on the board
  *
  * @author Alfons Wirtz
  */
 public final class RatsNest
    {
+   private final RoutingBoard r_board;
    private final NetIncompletes[] net_incompletes;
+   // the change count of each net when its incompletes were computed, see RoutingBoard.get_net_change_count
+   private final int[] net_change_count;
    private final boolean[] is_filtered;
+   // the sum of the incompletes of all nets
+   private int incomplete_total;
 
    private final GuiResources resources;
 
@@ -50,6 +57,7 @@ public final class RatsNest
 
    public RatsNest(RoutingBoard p_board, Stat p_stat )
       {
+      r_board = p_board;
       resources = new GuiResources(p_stat,"interactive.resources.RatsNest");
       
       int max_net_no = p_board.brd_rules.nets.max_net_no();
@@ -78,16 +86,39 @@ public final class RatsNest
          }
       
       net_incompletes = new NetIncompletes[max_net_no];
+      net_change_count = new int[max_net_no];
       
       is_filtered = new boolean[max_net_no];
       
       for (int i = 0; i < net_incompletes.length; ++i)
          {
          net_incompletes[i] = new NetIncompletes(i + 1, net_item_lists.get(i), p_board, resources);
+         net_change_count[i] = p_board.get_net_change_count(i + 1);
+         incomplete_total += net_incompletes[i].count();
          is_filtered[i] = false;
          }
       }
 
+   /**
+    * Computes again the incomplete connections of the nets that have changed since they were computed
+    * @return false if this ratsnest cannot be updated, it is for another board or the nets are not the same, create a new one
+    */
+   public boolean update(RoutingBoard p_board)
+      {
+      if ( p_board != r_board ) return false;
+      
+      if ( p_board.brd_rules.nets.max_net_no() != net_incompletes.length ) return false;
+      
+      for (int index = 0; index < net_incompletes.length; ++index)
+         {
+         if ( net_change_count[index] == p_board.get_net_change_count(index + 1) ) continue;
+         
+         recalculate(index + 1, p_board);
+         }
+      
+      return true;
+      }
+   
    /**
     * Recalculates the incomplete connections for the input net
     */
@@ -96,7 +127,8 @@ public final class RatsNest
       if (p_net_no >= 1 && p_net_no <= net_incompletes.length)
          {
          Collection<BrdItem> item_list = p_board.get_connectable_items(p_net_no);
-         net_incompletes[p_net_no - 1] = new NetIncompletes(p_net_no, item_list, p_board, resources);
+         net_incompletes_set(p_net_no, new NetIncompletes(p_net_no, item_list, p_board, resources));
+         net_change_count[p_net_no - 1] = p_board.get_net_change_count(p_net_no);
          }
       }
 
@@ -109,18 +141,22 @@ public final class RatsNest
          {
          // copy p_item_list, because it will be changed inside the constructor of NetIncompletes
          Collection<BrdItem> item_list = new LinkedList<BrdItem>(p_item_list);
-         net_incompletes[p_net_no - 1] = new NetIncompletes(p_net_no, item_list, p_board, resources);
+         net_incompletes_set(p_net_no, new NetIncompletes(p_net_no, item_list, p_board, resources));
+         // these are not the items on the board, the next update() must compute the net again
+         net_change_count[p_net_no - 1] = p_board.get_net_change_count(p_net_no) - 1;
          }
       }
 
+   private void net_incompletes_set(int p_net_no, NetIncompletes p_incompletes)
+      {
+      incomplete_total -= net_incompletes[p_net_no - 1].count();
+      net_incompletes[p_net_no - 1] = p_incompletes;
+      incomplete_total += p_incompletes.count();
+      }
+   
    public int incomplete_count()
       {
-      int result = 0;
-      for (int i = 0; i < net_incompletes.length; ++i)
-         {
-         result += net_incompletes[i].count();
-         }
-      return result;
+      return incomplete_total;
       }
 
    public int incomplete_count(int p_net_no)
@@ -193,6 +229,16 @@ public final class RatsNest
       hidden = false;
       }
 
+   /**
+    * Shows the incompletes of all nets, as a new ratsnest does
+    */
+   public void filters_clear()
+      {
+      hidden = false;
+      
+      Arrays.fill(is_filtered, false);
+      }
+
    /**
     * Recalculate the length matching violations. Return false, if the length violations have not changed.
     */
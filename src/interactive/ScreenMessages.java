@@ -41,6 +41,7 @@ public final class ScreenMessages
    private final String active_layer_string;
    private final String target_layer_string;
 
+   // null when running headless, status messages are then sent to the log
    private final BoardPanelStatus statusPanel;
    
    private String prev_target_layer_name = EMPTY;
@@ -70,6 +71,12 @@ public final class ScreenMessages
       {
       if ( write_protected)  return;
 
+      if ( statusPanel == null )
+         {
+         if ( p_message != null && p_message.length() > 0 ) stat.userPrintln(p_message);
+         return;
+         }
+
       statusPanel.status_message.setText(p_message);
       }
 
@@ -78,31 +85,39 @@ public final class ScreenMessages
     */
    public void show_layer_name(BrdLayer p_layer)
       {
-      if ( write_protected ) return;
+      if ( write_protected || statusPanel == null ) return;
 
       statusPanel.current_layer.setText(active_layer_string + p_layer.name);
       }
 
    public void set_interactive_autoroute_info(int p_found, int p_not_found, int p_items_to_go)
       {
+      if ( statusPanel == null ) return;
+
       statusPanel.add_message.setText(resources.getString("to_route") + " " + p_items_to_go);
       statusPanel.current_layer.setText(resources.getString("found") + " " + p_found + ", " + resources.getString("failed") + " " + p_not_found);
       }
 
    public void set_batch_autoroute_info(int items_to_go, int routed, int ripped, int failed)
       {
+      if ( statusPanel == null ) return;
+
       statusPanel.add_message.setText(resources.getString("to_route") + " " + items_to_go + ", " + resources.getString("routed") + " " + routed + ", ");
       statusPanel.current_layer.setText(resources.getString("ripped") + " " + ripped + ", " + resources.getString("failed") + " " + failed);
       }
 
    public void set_batch_fanout_info(int p_pass_no, int p_components_to_go)
       {
+      if ( statusPanel == null ) return;
+
       statusPanel.add_message.setText(resources.getString("fanout_pass") + " " + p_pass_no + ": ");
       statusPanel.current_layer.setText(resources.getString("still") + " " + p_components_to_go + " " + resources.getString("components"));
       }
 
    public void set_post_route_info(int p_via_count, double p_trace_length)
       {
+      if ( statusPanel == null ) return;
+
       statusPanel.add_message.setText(resources.getString("via_count") + " " + p_via_count);
       statusPanel.current_layer.setText(resources.getString("trace_length") + " " + number_format.format(p_trace_length));
       }
@@ -112,7 +127,7 @@ public final class ScreenMessages
     */
    public void set_target_layer(String p_layer_name)
       {
-      if ( write_protected ) return;
+      if ( write_protected || statusPanel == null ) return;
       
       // tiny optimization, avoid updating the field if the value is the same..
       if ( p_layer_name.equals(prev_target_layer_name) ) return;
@@ -124,7 +139,7 @@ public final class ScreenMessages
 
    public void set_mouse_position(PlaPointFloat p_pos)
       {
-      if ( write_protected) return;
+      if ( write_protected || statusPanel == null ) return;
       
       statusPanel.mouse_position.setText(p_pos.to_string(stat.locale));
       }
@@ -134,7 +149,7 @@ public final class ScreenMessages
     */
    public void clear_add_field()
       {
-      if ( write_protected ) return;
+      if ( write_protected || statusPanel == null ) return;
 
       statusPanel.add_message.setText(EMPTY);
       
@@ -146,7 +161,7 @@ public final class ScreenMessages
     */
    public void clear()
       {
-      if ( write_protected ) return;
+      if ( write_protected || statusPanel == null ) return;
       
       statusPanel.add_message.setText(EMPTY);
       clear_add_field();
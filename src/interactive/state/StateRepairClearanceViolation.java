@@ -116,14 +116,14 @@ public final class StateRepairClearanceViolation extends StateInteractive
     */
    public void repair ( Set<BrdItem> p_items_list )
       {
-      IteraClearanceViolations clearance_violations = new IteraClearanceViolations(p_items_list);
+      IteraClearanceViolations clearance_violations = new IteraClearanceViolations(r_brd, p_items_list);
 
       
-      Iterator<BrdItemViolation> iter = clearance_violations.violation_list.iterator();
+      Iterator<BrdItemViolation> iter = clearance_violations.violation_list().iterator();
       
       if ( ! iter.hasNext() ) return;
 
-      int violation_count = clearance_violations.violation_list.size();
+      int violation_count = clearance_violations.violation_list().size();
       
       if ( debug(Mdbg.CLRVIOL, Ldbg.DEBUG)) i_brd.userPrintln(classname+"repair: violation_count="+violation_count);
 
@@ -898,8 +898,8 @@ public final class StateSelectedItem extends StateInteractive
       {
       if (clearance_violations == null)
          {
-         clearance_violations = new IteraClearanceViolations(items_list);
-         int violation_count = clearance_violations.violation_list.size();
+         clearance_violations = new IteraClearanceViolations(r_brd, items_list);
+         int violation_count = clearance_violations.violation_list().size();
          String curr_message = violation_count  + " " + resources.getString("clearance_violations_found");
          i_brd.screen_messages.set_status_message(curr_message);
          }